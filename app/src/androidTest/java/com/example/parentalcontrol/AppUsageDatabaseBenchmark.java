@@ -0,0 +1,203 @@
+package com.example.parentalcontrol;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Query latency over a simulated 90-day history, measured at each schema step:
+ * v1 (no indexes), v2 indexes, then WAL + connection pragmas.
+ * Results go to logcat under the AppUsageDbBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppUsageDatabaseBenchmark {
+    private static final String TAG = "AppUsageDbBenchmark";
+    private static final int HISTORY_DAYS = 90;
+    private static final int SESSIONS_PER_DAY = 150;
+    private static final int SCREEN_MINUTES_PER_DAY = 300;
+    private static final int APP_COUNT = 40;
+    private static final int ITERATIONS = 50;
+
+    private File dbFile;
+    private SQLiteDatabase db;
+    private long now;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dbFile = context.getDatabasePath("AppUsageBenchmark.db");
+        SQLiteDatabase.deleteDatabase(dbFile);
+        dbFile.getParentFile().mkdirs();
+
+        db = SQLiteDatabase.openOrCreateDatabase(dbFile, null);
+        AppUsageDatabaseHelper.createBaseSchema(db);
+        now = System.currentTimeMillis();
+        populateHistory();
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+        SQLiteDatabase.deleteDatabase(dbFile);
+    }
+
+    @Test
+    public void queryLatencyAtEachSchemaStep() {
+        runQueries("v1, no indexes");
+
+        AppUsageDatabaseHelper.migrateToV2(db);
+        runQueries("v2 indexes");
+        assertUsesIndex("SELECT start_time, end_time FROM app_usage WHERE end_time >= 0 AND start_time <= 0",
+                "idx_app_usage_end_start");
+        assertUsesIndex("SELECT id FROM app_usage WHERE app_name = 'a' AND start_time = 0",
+                "idx_app_usage_session");
+        assertUsesIndex("SELECT id FROM app_usage WHERE sync_status = 0",
+                "idx_app_usage_unsynced");
+        assertUsesIndex("SELECT minutes FROM screen_time WHERE timestamp >= '2024'",
+                "idx_screen_time_timestamp");
+
+        db.close();
+        db = SQLiteDatabase.openDatabase(dbFile.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+        AppUsageDatabaseHelper.configureConnection(db);
+        runQueries("v2 indexes + WAL/synchronous=NORMAL");
+        assertEquals("wal", queryString("PRAGMA journal_mode").toLowerCase(Locale.US));
+    }
+
+    private void runQueries(String step) {
+        long dayStart = now - TimeUnit.HOURS.toMillis(12);
+        String today = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date(now));
+
+        logLatency(step, "today's usage", () -> drain(db.rawQuery(
+                "SELECT start_time, end_time FROM app_usage WHERE end_time >= ? AND start_time <= ?",
+                new String[]{String.valueOf(dayStart), String.valueOf(now)})));
+
+        logLatency(step, "session upsert lookup", () -> drain(db.rawQuery(
+                "SELECT id, end_time FROM app_usage WHERE app_name = ? AND start_time = ? LIMIT 1",
+                new String[]{"com.example.app7", String.valueOf(dayStart)})));
+
+        logLatency(step, "unsynced sessions", () -> drain(db.rawQuery(
+                "SELECT id, app_name, start_time, end_time FROM app_usage WHERE sync_status = 0 LIMIT 500",
+                null)));
+
+        logLatency(step, "today's screen time", () -> drain(db.rawQuery(
+                "SELECT SUM(minutes) FROM screen_time WHERE timestamp >= ?",
+                new String[]{today + " 00:00"})));
+
+        long writeStart = System.nanoTime();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < 100; i++) {
+                insertSession("com.example.bench", now + i * 1000L, now + i * 1000L + 500, 0);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.i(TAG, String.format(Locale.US, "[%s] 100-session batch insert: %.2f ms",
+                step, (System.nanoTime() - writeStart) / 1e6));
+    }
+
+    private void logLatency(String step, String name, Runnable query) {
+        query.run(); // warm the page cache so every step is measured the same way
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.run();
+        }
+        double avgMs = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+        Log.i(TAG, String.format(Locale.US, "[%s] %s: %.3f ms avg", step, name, avgMs));
+    }
+
+    private void assertUsesIndex(String sql, String indexName) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null)) {
+            int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        assertTrue("Expected " + indexName + " in plan:\n" + plan, plan.toString().contains(indexName));
+    }
+
+    private void populateHistory() {
+        Random random = new Random(42);
+        SimpleDateFormat minuteFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+        long dayMs = TimeUnit.DAYS.toMillis(1);
+
+        db.beginTransaction();
+        try {
+            for (int day = HISTORY_DAYS; day >= 0; day--) {
+                long dayBase = now - day * dayMs;
+                // Everything older than two days has been synced
+                int syncStatus = day > 2 ? 1 : 0;
+
+                long cursor = dayBase - TimeUnit.HOURS.toMillis(14);
+                for (int i = 0; i < SESSIONS_PER_DAY; i++) {
+                    long length = 5000 + random.nextInt(600000);
+                    insertSession("com.example.app" + random.nextInt(APP_COUNT), cursor, cursor + length, syncStatus);
+                    cursor += length + random.nextInt(60000);
+                }
+
+                for (int minute = 0; minute < SCREEN_MINUTES_PER_DAY; minute++) {
+                    ContentValues values = new ContentValues();
+                    values.put("timestamp", minuteFormat.format(new Date(dayBase - minute * 60000L)));
+                    values.put("minutes", 1);
+                    values.put("sync_status", syncStatus);
+                    db.insert("screen_time", null, values);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.i(TAG, "Simulated " + HISTORY_DAYS + " days: " +
+                queryString("SELECT COUNT(*) FROM app_usage") + " sessions, " +
+                queryString("SELECT COUNT(*) FROM screen_time") + " screen time rows");
+    }
+
+    private void insertSession(String packageName, long start, long end, int syncStatus) {
+        ContentValues values = new ContentValues();
+        values.put("app_name", packageName);
+        values.put("start_time", start);
+        values.put("end_time", end);
+        values.put("sync_status", syncStatus);
+        db.insert("app_usage", null, values);
+    }
+
+    private String queryString(String sql) {
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : "";
+        }
+    }
+
+    private static void drain(Cursor cursor) {
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -7,19 +7,22 @@ import android.app.NotificationManager;
 import android.app.Service;
 import android.app.usage.UsageEvents;
 import android.app.usage.UsageStatsManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.os.Build;
 import android.os.IBinder;
 import android.os.Handler;
+import android.os.PowerManager;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
 import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class ActivityTrackerService extends Service {
@@ -33,14 +36,38 @@ public class ActivityTrackerService extends Service {
     private String currentForegroundApp = null;
     private long currentAppStartTime = 0;
     private AppUsageRepository repository;
+    private AppLimitEngine appLimitEngine;
     private long lastEventTime = 0;
-    private Map<String, Long> appStartTimes = new HashMap<>();
+    // End of the last closed session; new sessions never start before it (no overlaps)
+    private long lastSessionEndTime = 0;
+    private long lastAutoSaveTime = 0;
+    private static final long AUTO_SAVE_INTERVAL_MS = 30 * 1000;
+    // Foreground changes arrive as accessibility events; queryEvents only reconciles.
+    // Without the accessibility service the reconciliation pass is the only source.
+    private static final long RECONCILE_INTERVAL_MS = AUTO_SAVE_INTERVAL_MS;
+    private static final long FALLBACK_POLL_INTERVAL_MS = 5 * 1000;
+    // Time of the latest foreground switch; older usage events are already accounted for
+    private long lastForegroundChangeTime = 0;
+    private boolean screenInteractive = true;
+
+    private final BroadcastReceiver screenStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                onScreenOff();
+            } else if (Intent.ACTION_SCREEN_ON.equals(action) || Intent.ACTION_USER_PRESENT.equals(action)) {
+                onScreenOn();
+            }
+        }
+    };
 
     @Override
     public void onCreate() {
         super.onCreate();
         usageStatsManager = (UsageStatsManager) getSystemService(USAGE_STATS_SERVICE);
         repository = new AppUsageRepository(this);
+        appLimitEngine = AppLimitEngine.getInstance(this);
         lastEventTime = System.currentTimeMillis();
 
         handler = new Handler();
@@ -48,9 +75,19 @@ public class ActivityTrackerService extends Service {
             @Override
             public void run() {
                 trackForegroundApp();
-                handler.postDelayed(this, 1000); // Check every 1 second for more accurate tracking
+                handler.postDelayed(this, getReconcileInterval());
             }
         };
+
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        screenInteractive = powerManager == null || powerManager.isInteractive();
+
+        IntentFilter screenFilter = new IntentFilter();
+        screenFilter.addAction(Intent.ACTION_SCREEN_ON);
+        screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        screenFilter.addAction(Intent.ACTION_USER_PRESENT);
+        registerReceiver(screenStateReceiver, screenFilter);
+        EventBus.getDefault().register(this);
     }
 
     @SuppressLint("ForegroundServiceType")
@@ -60,8 +97,11 @@ public class ActivityTrackerService extends Service {
         Notification notification = buildNotification();
         startForeground(1, notification);
 
-        handler.post(trackingRunnable);
-        Log.d(TAG, "Service started");
+        handler.removeCallbacks(trackingRunnable);
+        if (screenInteractive) {
+            handler.post(trackingRunnable);
+        }
+        Log.d(TAG, "Service started (screen " + (screenInteractive ? "on" : "off") + ")");
         return START_STICKY;
     }
 
@@ -89,14 +129,16 @@ public class ActivityTrackerService extends Service {
     @Override
     public void onDestroy() {
         // Save any current session before destroying
-        if (currentForegroundApp != null && currentAppStartTime > 0) {
-            long endTime = System.currentTimeMillis();
-            repository.saveAppUsage(currentForegroundApp, currentAppStartTime, endTime);
-            Log.d(TAG, "Saved final session for " + currentForegroundApp + 
-                  ": " + (endTime - currentAppStartTime) + "ms");
-        }
+        closeCurrentSession(System.currentTimeMillis());
+        repository.flushPendingUsage();
         
         handler.removeCallbacks(trackingRunnable);
+        EventBus.getDefault().unregister(this);
+        try {
+            unregisterReceiver(screenStateReceiver);
+        } catch (Exception e) {
+            Log.w(TAG, "Error unregistering screen state receiver", e);
+        }
         super.onDestroy();
     }
 
@@ -105,6 +147,56 @@ public class ActivityTrackerService extends Service {
         return null;
     }
 
+    /**
+     * Foreground change seen by the accessibility service - the primary signal
+     */
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onForegroundApp(ForegroundAppEvent event) {
+        if (!screenInteractive) {
+            return;
+        }
+        handleAppMoveToForeground(event.packageName, event.timestamp);
+        checkCurrentApp();
+    }
+
+    private void onScreenOff() {
+        if (!screenInteractive) {
+            return;
+        }
+        // Pick up the last switches before the screen went off, then end the session there
+        trackForegroundApp();
+        screenInteractive = false;
+        handler.removeCallbacks(trackingRunnable);
+        long now = System.currentTimeMillis();
+        closeCurrentSession(now);
+        ForegroundAppTracker.getInstance().clear(now);
+        Log.d(TAG, "Screen off - foreground tracking suspended");
+    }
+
+    private void onScreenOn() {
+        if (screenInteractive) {
+            return;
+        }
+        screenInteractive = true;
+        // Nothing was in use while the screen was off; do not replay those events
+        long now = System.currentTimeMillis();
+        lastEventTime = now;
+        lastForegroundChangeTime = Math.max(lastForegroundChangeTime, now - 1000);
+        handler.removeCallbacks(trackingRunnable);
+        handler.post(trackingRunnable);
+        Log.d(TAG, "Screen on - foreground tracking resumed");
+    }
+
+    private long getReconcileInterval() {
+        return AppBlockAccessibilityService.isAccessibilityServiceEnabled(this)
+                ? RECONCILE_INTERVAL_MS
+                : FALLBACK_POLL_INTERVAL_MS;
+    }
+
+    /**
+     * Reconciliation pass over UsageStats events since the last pass
+     * Catches switches the accessibility service missed (or all of them when it is off).
+     */
     private void trackForegroundApp() {
         try {
             long currentTime = System.currentTimeMillis();
@@ -135,6 +227,11 @@ public class ActivityTrackerService extends Service {
         long eventTime = event.getTimeStamp();
         int eventType = event.getEventType();
         
+        // Already covered by a newer accessibility event
+        if (eventTime <= lastForegroundChangeTime) {
+            return;
+        }
+        
         Log.d(TAG, "Event: " + packageName + " type: " + eventType + " at " + eventTime);
         
         switch (eventType) {
@@ -149,52 +246,66 @@ public class ActivityTrackerService extends Service {
     }
     
     private void handleAppMoveToForeground(String packageName, long eventTime) {
-        // End current session if there's one
-        if (currentForegroundApp != null && currentAppStartTime > 0) {
-            repository.saveAppUsage(currentForegroundApp, currentAppStartTime, eventTime);
-            Log.d(TAG, "Ended session for " + currentForegroundApp + 
-                  ": " + (eventTime - currentAppStartTime) + "ms");
+        // The 1-second query overlap replays events; the session is already open
+        if (packageName.equals(currentForegroundApp)) {
+            return;
         }
         
-        // Start new session
+        // End current session if there's one
+        closeCurrentSession(eventTime);
+        
+        // Start new session, merged so it cannot overlap the previous one
+        lastForegroundChangeTime = Math.max(lastForegroundChangeTime, eventTime);
         currentForegroundApp = packageName;
-        currentAppStartTime = eventTime;
-        appStartTimes.put(packageName, eventTime);
+        currentAppStartTime = Math.max(eventTime, lastSessionEndTime);
+        lastAutoSaveTime = currentAppStartTime;
+        appLimitEngine.onAppForeground(packageName, currentAppStartTime);
+        
+        Log.d(TAG, "Started session for " + packageName + " at " + currentAppStartTime);
         
-        Log.d(TAG, "Started session for " + packageName + " at " + eventTime);
+        // Last: the tracker posts a ForegroundAppEvent synchronously, which comes back to
+        // onForegroundApp and must find this package already in front
+        ForegroundAppTracker.getInstance().onForegroundChanged(packageName, eventTime);
     }
     
     private void handleAppMoveToBackground(String packageName, long eventTime) {
-        Long startTime = appStartTimes.get(packageName);
-        if (startTime != null) {
-            repository.saveAppUsage(packageName, startTime, eventTime);
-            Log.d(TAG, "Background session for " + packageName + 
-                  ": " + (eventTime - startTime) + "ms");
-            appStartTimes.remove(packageName);
+        // Only the open session can be closed; stray background events are ignored
+        if (packageName.equals(currentForegroundApp)) {
+            closeCurrentSession(eventTime);
+        }
+    }
+    
+    /**
+     * Close the open session at endTime, writing its single row
+     */
+    private void closeCurrentSession(long endTime) {
+        if (currentForegroundApp == null || currentAppStartTime <= 0) {
+            return;
         }
         
-        // Clear current if this was the current app
-        if (packageName.equals(currentForegroundApp)) {
-            currentForegroundApp = null;
-            currentAppStartTime = 0;
+        if (endTime > currentAppStartTime) {
+            repository.saveAppUsage(currentForegroundApp, currentAppStartTime, endTime);
+            lastSessionEndTime = endTime;
+            Log.d(TAG, "Ended session for " + currentForegroundApp + 
+                  ": " + (endTime - currentAppStartTime) + "ms");
         }
+        appLimitEngine.onAppBackground(currentForegroundApp);
+        
+        currentForegroundApp = null;
+        currentAppStartTime = 0;
     }
     
     private void checkCurrentApp() {
-        // If we have a current foreground app but haven't seen events for a while,
-        // we might need to save periodic usage to avoid losing long sessions
+        // Extend the open session in place every 30 seconds so long sessions
+        // are not lost, without creating a new row per autosave
         if (currentForegroundApp != null && currentAppStartTime > 0) {
             long currentTime = System.currentTimeMillis();
-            long sessionDuration = currentTime - currentAppStartTime;
             
-            // Save intermediate progress every 30 seconds to avoid losing data
-            if (sessionDuration > 30 * 1000) {
-                repository.saveAppUsage(currentForegroundApp, currentAppStartTime, currentTime);
-                Log.d(TAG, "Saved intermediate session for " + currentForegroundApp + 
-                      ": " + sessionDuration + "ms (auto-save)");
-                
-                // Reset start time to continue tracking
-                currentAppStartTime = currentTime;
+            if (currentTime - lastAutoSaveTime > AUTO_SAVE_INTERVAL_MS) {
+                repository.updateOpenSession(currentForegroundApp, currentAppStartTime, currentTime);
+                lastAutoSaveTime = currentTime;
+                Log.d(TAG, "Extended open session for " + currentForegroundApp + 
+                      ": " + (currentTime - currentAppStartTime) + "ms (auto-save)");
             }
         }
     }
@@ -0,0 +1,110 @@
+package com.example.parentalcontrol;
+
+/**
+ * Polling cadence for server-side changes (block list, screen time rules)
+ * Most devices go days without a rule change, so the interval grows additively with every
+ * poll that finds nothing new, up to MAX_INTERVAL_MS. A change cuts it multiplicatively,
+ * and parent activity resets it to the fastest rate and holds it there for a while, since
+ * one edit is usually followed by more. The result never undercuts the floor set by
+ * battery, screen, Doze and metered-network state.
+ * Pure state, no clock or Android calls of its own, so it can be replayed in tests.
+ */
+public class AdaptiveCadence {
+    public static final long MIN_INTERVAL_MS = 10000;
+    public static final long MAX_INTERVAL_MS = 15 * 60000;
+    // Additive increase per quiet poll; reaches MAX after ~90 quiet polls (~2.5 h)
+    public static final long INCREASE_STEP_MS = 10000;
+    // Multiplicative decrease on a change
+    public static final int DECREASE_FACTOR = 8;
+    // After parent activity polling stays at MIN this long
+    public static final long PARENT_ACTIVE_HOLD_MS = 5 * 60000;
+
+    // Power and network floors
+    static final long LOW_BATTERY_INTERVAL_MS = 20000;
+    static final long CRITICAL_BATTERY_INTERVAL_MS = 30000;
+    static final long SCREEN_OFF_INTERVAL_MS = 60000;
+    static final long DOZE_INTERVAL_MS = 5 * 60000;
+
+    /**
+     * Device state the cadence has to respect
+     */
+    public static final class Conditions {
+        public int batteryPercent = 100;
+        public boolean charging;
+        public boolean screenOn = true;
+        public boolean deviceIdle;
+        public boolean networkMetered;
+    }
+
+    private long intervalMs = MIN_INTERVAL_MS;
+    private long holdFastUntil;
+
+    /**
+     * Feed back the outcome of one poll
+     * @param changed the server reported changes
+     */
+    public void onPollResult(boolean changed, long now) {
+        if (changed) {
+            onChange();
+        } else if (now >= holdFastUntil) {
+            intervalMs = Math.min(MAX_INTERVAL_MS, intervalMs + INCREASE_STEP_MS);
+        }
+    }
+
+    /**
+     * A change arrived, from a poll or from elsewhere (push event)
+     */
+    public void onChange() {
+        intervalMs = Math.max(MIN_INTERVAL_MS, intervalMs / DECREASE_FACTOR);
+    }
+
+    /**
+     * The parent is editing rules right now: poll at full speed for a while
+     */
+    public void onParentActive(long now) {
+        intervalMs = MIN_INTERVAL_MS;
+        holdFastUntil = now + PARENT_ACTIVE_HOLD_MS;
+    }
+
+    /**
+     * The change-driven interval alone, ignoring device state
+     */
+    public long getAdaptiveIntervalMs() {
+        return intervalMs;
+    }
+
+    /**
+     * Poll interval under the given device state
+     */
+    public long getIntervalMs(Conditions conditions) {
+        return adjustForNetwork(conditions, Math.max(intervalMs, getPowerFloorMs(conditions)));
+    }
+
+    /**
+     * Interval when changes are expected any moment: only device state applies
+     */
+    public static long getBaseIntervalMs(Conditions conditions) {
+        return adjustForNetwork(conditions, getPowerFloorMs(conditions));
+    }
+
+    /**
+     * The shortest interval device state allows, from the strongest constraint
+     */
+    public static long getPowerFloorMs(Conditions conditions) {
+        if (conditions.deviceIdle) {
+            return DOZE_INTERVAL_MS;
+        } else if (!conditions.screenOn) {
+            return SCREEN_OFF_INTERVAL_MS;
+        } else if (!conditions.charging && conditions.batteryPercent <= 15) {
+            return CRITICAL_BATTERY_INTERVAL_MS;
+        } else if (!conditions.charging && conditions.batteryPercent <= 30) {
+            return LOW_BATTERY_INTERVAL_MS;
+        }
+        return MIN_INTERVAL_MS;
+    }
+
+    private static long adjustForNetwork(Conditions conditions, long interval) {
+        // Metered data costs the user money; halve the rate unless charging (likely at home)
+        return conditions.networkMetered && !conditions.charging ? interval * 2 : interval;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.parentalcontrol;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Durable queue for API writes (JSON POSTs)
+ * Callers enqueue a write - in the same transaction as the local change it reports, if
+ * they like - and return; the outbox owns delivery. Writes go out in order per endpoint,
+ * each endpoint paced by CircuitBreaker, so a backend outage costs a bounded, jittered
+ * trickle of probes instead of every device retrying on every sync tick. Each write
+ * carries an Idempotency-Key, so a retry after a lost response is harmless.
+ */
+public class ApiOutbox {
+    private static final String TAG = "ApiOutbox";
+
+    // Rows handled per drain pass
+    private static final int DRAIN_BATCH = 50;
+    // Writes nobody could deliver in a week are stale
+    private static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(7);
+    private static final long NO_TOKEN_RETRY_MS = 30000;
+    private static final long MIN_DRAIN_DELAY_MS = 1000;
+
+    private static ApiOutbox instance;
+
+    private final Context context;
+    private final Handler handler;
+    private final CircuitBreaker breaker = CircuitBreaker.getInstance();
+    private final Runnable drainRunnable = this::drain;
+
+    public static synchronized ApiOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new ApiOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ApiOutbox(Context context) {
+        this.context = context;
+        HandlerThread thread = new HandlerThread("ApiOutbox");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+        // Deliver whatever a previous process left behind
+        drainSoon(0);
+    }
+
+    /**
+     * Queue a JSON POST to BASE_URL + endpoint
+     * @param dedupeKey when set, replaces an unsent write with the same key
+     */
+    public void enqueue(String endpoint, String jsonBody, String dedupeKey) {
+        enqueue(getDatabase(), endpoint, jsonBody, dedupeKey);
+        drainSoon(0);
+    }
+
+    /**
+     * Queue a write inside the caller's transaction on db; call drainSoon(0) after committing
+     */
+    public void enqueue(SQLiteDatabase db, String endpoint, String jsonBody, String dedupeKey) {
+        ContentValues values = new ContentValues();
+        values.put("endpoint", endpoint);
+        values.put("body", jsonBody);
+        values.put("dedupe_key", dedupeKey);
+        values.put("created_at", System.currentTimeMillis());
+        db.insertWithOnConflict("outbox", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        Log.d(TAG, "📥 Queued write to " + endpoint);
+    }
+
+    /**
+     * Schedule a drain pass; an earlier pending pass wins
+     */
+    public void drainSoon(long delayMs) {
+        handler.post(() -> {
+            handler.removeCallbacks(drainRunnable);
+            handler.postDelayed(drainRunnable, delayMs);
+        });
+    }
+
+    public int getPendingCount() {
+        try (Cursor cursor = getDatabase().rawQuery("SELECT COUNT(*) FROM outbox", null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    private void drain() {
+        SQLiteDatabase db = getDatabase();
+        long now = System.currentTimeMillis();
+        db.delete("outbox", "created_at < ?", new String[]{String.valueOf(now - MAX_AGE_MS)});
+
+        String authToken = AppController.getInstance().getAuthToken();
+        if (authToken == null || authToken.isEmpty()) {
+            if (getPendingCount() > 0) {
+                handler.postDelayed(drainRunnable, NO_TOKEN_RETRY_MS);
+            }
+            return;
+        }
+
+        // An endpoint that fails or is paced stops for this pass, keeping its writes in order
+        Set<String> blockedEndpoints = new HashSet<>();
+        int sent = 0;
+        try (Cursor cursor = db.rawQuery("SELECT id, endpoint, body, created_at FROM outbox " +
+                "WHERE next_attempt_at <= ? ORDER BY id LIMIT " + DRAIN_BATCH, new String[]{String.valueOf(now)})) {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                String endpoint = cursor.getString(1);
+                if (blockedEndpoints.contains(endpoint)) {
+                    continue;
+                }
+                if (!breaker.tryAcquire(endpoint)) {
+                    blockedEndpoints.add(endpoint);
+                    deferEndpoint(db, endpoint);
+                    continue;
+                }
+                if (deliver(db, id, endpoint, cursor.getString(2), cursor.getLong(3), authToken)) {
+                    sent++;
+                } else {
+                    blockedEndpoints.add(endpoint);
+                }
+            }
+        }
+        if (sent > 0) {
+            Log.d(TAG, "📤 Delivered " + sent + " queued writes");
+        }
+        scheduleNextDrain(db);
+    }
+
+    /**
+     * @return true if the row is done with (delivered or rejected for good)
+     */
+    private boolean deliver(SQLiteDatabase db, long id, String endpoint, String body, long createdAt, String authToken) {
+        Request request = new Request.Builder()
+                .url(AuthService.BASE_URL + endpoint)
+                .addHeader("Authorization", "Bearer " + authToken)
+                .addHeader("Idempotency-Key", "outbox-" + createdAt + "-" + id)
+                .post(RequestBody.create(body, AuthService.JSON))
+                .build();
+
+        String error;
+        long retryAfterMs = 0;
+        try (Response response = AppController.getHttpClient().newCall(request).execute()) {
+            if (response.isSuccessful()) {
+                breaker.recordSuccess(endpoint);
+                db.delete("outbox", "id = ?", new String[]{String.valueOf(id)});
+                return true;
+            }
+            if (!CircuitBreaker.isRetryable(response.code()) && response.code() != 401) {
+                // The server will never accept this write; retrying only adds load
+                Log.e(TAG, "❌ Dropping write to " + endpoint + ": " + response.code() + " " + response.message());
+                db.delete("outbox", "id = ?", new String[]{String.valueOf(id)});
+                breaker.recordSuccess(endpoint);
+                return true;
+            }
+            error = "HTTP " + response.code();
+            retryAfterMs = parseRetryAfterMs(response.header("Retry-After"));
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+
+        breaker.recordFailure(endpoint, retryAfterMs);
+        Log.w(TAG, "Write to " + endpoint + " failed (" + error + "), retry in " + breaker.getDelayMs(endpoint) + "ms");
+        db.execSQL("UPDATE outbox SET attempts = attempts + 1, last_error = ? WHERE id = ?", new Object[]{error, id});
+        deferEndpoint(db, endpoint);
+        return false;
+    }
+
+    /**
+     * Hold every queued write for the endpoint until the breaker lets requests through again
+     */
+    private void deferEndpoint(SQLiteDatabase db, String endpoint) {
+        long retryAt = System.currentTimeMillis() + Math.max(MIN_DRAIN_DELAY_MS, breaker.getDelayMs(endpoint));
+        db.execSQL("UPDATE outbox SET next_attempt_at = ? WHERE endpoint = ? AND next_attempt_at < ?",
+                new Object[]{retryAt, endpoint, retryAt});
+    }
+
+    private void scheduleNextDrain(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT MIN(next_attempt_at) FROM outbox", null)) {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                return;
+            }
+            long delay = Math.max(MIN_DRAIN_DELAY_MS, cursor.getLong(0) - System.currentTimeMillis());
+            handler.removeCallbacks(drainRunnable);
+            handler.postDelayed(drainRunnable, delay);
+        }
+    }
+
+    private SQLiteDatabase getDatabase() {
+        return ServiceLocator.getInstance(context).getDatabaseHelper().getWritableDatabase();
+    }
+
+    private static long parseRetryAfterMs(String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            // HTTP-date form is not used by our backend
+            return 0;
+        }
+    }
+}
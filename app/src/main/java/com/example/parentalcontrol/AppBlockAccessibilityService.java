@@ -4,29 +4,47 @@ import android.accessibilityservice.AccessibilityService;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
+import android.content.pm.PackageManager;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.inputmethod.InputMethodInfo;
+import android.view.inputmethod.InputMethodManager;
 import android.widget.Toast;
 
 import org.greenrobot.eventbus.EventBus;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class AppBlockAccessibilityService extends AccessibilityService {
     private static final String TAG = "AppBlockAccessibility";
-    private List<String> blockedPackages = new ArrayList<>();
+    private BlockedAppsStore blockedApps;
     private Handler handler = new Handler();
-    private static final long BLOCK_DELAY = 500; // 500ms delay before blocking
+    private final AppExecutors.TaskScope tasks = new AppExecutors.TaskScope("AppBlockAccessibility");
+    // Delay before going home so the app has finished launching; part of every block's latency
+    static final long BLOCK_DELAY_MS = 500;
+    private BlockEnforcement enforcement;
+    private AppLimitEngine appLimitEngine;
+    private AppPolicyEngine appPolicyEngine;
+    // Main thread only: component (package/class) to whether it is an activity
+    private final Map<String, Boolean> activityWindows = new HashMap<>();
+    private Set<String> inputMethodPackages = new HashSet<>();
     
     @Override
     public void onServiceConnected() {
         super.onServiceConnected();
         Log.d(TAG, "Accessibility Service Connected");
-        loadBlockedAppsFromDatabase();
+        appLimitEngine = AppLimitEngine.getInstance(this);
+        blockedApps = BlockedAppsStore.getInstance(this);
+        blockedApps.preload(tasks);
+        enforcement = new BlockEnforcement(BlockLatencyTracer.getInstance(),
+                handler::postDelayed, SystemClock::elapsedRealtime, BLOCK_DELAY_MS, blockActions);
+        appPolicyEngine = AppPolicyEngine.getInstance(this);
+        refreshInputMethods();
         
         // Register for EventBus notifications about blocked app updates
         EventBus.getDefault().register(this);
@@ -36,49 +54,102 @@ public class AppBlockAccessibilityService extends AccessibilityService {
     public void onAccessibilityEvent(AccessibilityEvent event) {
         if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
             if (event.getPackageName() != null) {
-                String packageName = event.getPackageName().toString();
-                
-                // Don't block our own app or system UI
-                if (packageName.equals(getPackageName()) || 
-                    packageName.equals("com.android.systemui") ||
-                    packageName.equals("android")) {
+                if (!isAppWindow(event.getPackageName().toString(), event.getClassName())) {
                     return;
                 }
-                
-                Log.d(TAG, "Window state changed for: " + packageName);
-                
-                synchronized (blockedPackages) {
-                    if (blockedPackages.contains(packageName)) {
-                        Log.d(TAG, "Blocked app detected: " + packageName);
-                        blockApp(packageName);
-                    }
-                }
+                // Event time is uptime-based; translate it so time spent in dispatch is counted
+                long seenAt = SystemClock.elapsedRealtime() - (SystemClock.uptimeMillis() - event.getEventTime());
+                handleForegroundWindow(event.getPackageName().toString(), BlockLatencyTracer.Path.ACCESSIBILITY, seenAt);
             }
         }
     }
 
-    private void blockApp(String packageName) {
-        // Add a small delay to ensure the app has fully launched
-        handler.postDelayed(() -> {
+    /**
+     * Only activity windows are app switches; a keyboard, dialog or overlay coming up over
+     * an app leaves that app in the foreground
+     */
+    private boolean isAppWindow(String packageName, CharSequence className) {
+        if (className == null) {
+            return false;
+        }
+        String component = packageName + "/" + className;
+        Boolean isActivity = activityWindows.get(component);
+        if (isActivity == null) {
+            // New windows are rare; also a good moment to notice a changed keyboard
+            refreshInputMethods();
+            try {
+                getPackageManager().getActivityInfo(new ComponentName(packageName, className.toString()), 0);
+                isActivity = true;
+            } catch (PackageManager.NameNotFoundException e) {
+                isActivity = false;
+            }
+            activityWindows.put(component, isActivity);
+        }
+        return isActivity && !inputMethodPackages.contains(packageName);
+    }
+
+    private void refreshInputMethods() {
+        Set<String> packages = new HashSet<>();
+        InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+        if (imm != null) {
+            for (InputMethodInfo info : imm.getEnabledInputMethodList()) {
+                packages.add(info.getPackageName());
+            }
+        }
+        inputMethodPackages = packages;
+    }
+
+    private void handleForegroundWindow(String packageName, BlockLatencyTracer.Path path, long seenAt) {
+        // System UI windows (shade, recents) are not app switches
+        if (packageName.equals("com.android.systemui") ||
+            packageName.equals("android")) {
+            return;
+        }
+        
+        // Drives foreground tracking; UsageStats polling only reconciles
+        ForegroundAppTracker.getInstance().onForegroundChanged(packageName, System.currentTimeMillis());
+        
+        // Don't block our own app
+        if (packageName.equals(getPackageName())) {
+            return;
+        }
+        
+        Log.d(TAG, "Window state changed for: " + packageName);
+        
+        if (blockedApps != null && blockedApps.isBlocked(packageName)) {
+            Log.d(TAG, "Blocked app detected: " + packageName);
+            blockApp(packageName, path, seenAt);
+        } else if (appLimitEngine != null && appLimitEngine.isLimitReached(packageName)) {
+            Log.d(TAG, "Daily limit used up: " + packageName);
+            blockApp(packageName, path, seenAt);
+        } else if (appPolicyEngine != null && appPolicyEngine.isBlocked(packageName)) {
+            Log.d(TAG, "Blocked by schedule: " + packageName);
+            blockApp(packageName, path, seenAt);
+        }
+    }
+
+    private void blockApp(String packageName, BlockLatencyTracer.Path path, long seenAt) {
+        enforcement.block(packageName, path, seenAt);
+    }
+
+    private final BlockEnforcement.Actions blockActions = new BlockEnforcement.Actions() {
+        @Override
+        public void goHome(String packageName) {
+            Log.d(TAG, "Blocking app: " + packageName);
+            performGlobalAction(GLOBAL_ACTION_HOME);
+        }
+
+        @Override
+        public void onBlocked(String packageName) {
             try {
-                Log.d(TAG, "Blocking app: " + packageName);
-                
-                // Method 1: Go to home screen
-                performGlobalAction(GLOBAL_ACTION_HOME);
-                
-                // Method 2: Show a blocking message
                 showBlockingMessage(packageName);
-                
-                // Method 3: Send EventBus notification
                 EventBus.getDefault().post(new BlockedAppEvent(packageName));
-                
                 Log.d(TAG, "Successfully blocked: " + packageName);
-                
             } catch (Exception e) {
                 Log.e(TAG, "Error blocking app: " + packageName, e);
             }
-        }, BLOCK_DELAY);
-    }
+        }
+    };
     
     private void showBlockingMessage(String packageName) {
         try {
@@ -113,109 +184,41 @@ public class AppBlockAccessibilityService extends AccessibilityService {
         }
     }
 
-    private void loadBlockedAppsFromDatabase() {
-        try {
-            SQLiteDatabase db = new AppUsageDatabaseHelper(this).getReadableDatabase();
-            Cursor cursor = db.rawQuery("SELECT package_name FROM blocked_apps", null);
-            
-            synchronized (blockedPackages) {
-                blockedPackages.clear();
-                while (cursor.moveToNext()) {
-                    String packageName = cursor.getString(0);
-                    blockedPackages.add(packageName);
-                    Log.d(TAG, "Loaded blocked app: " + packageName);
-                }
-            }
-            
-            cursor.close();
-            db.close();
-            
-            Log.d(TAG, "Loaded " + blockedPackages.size() + " blocked apps from database");
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading blocked apps from database", e);
+    // The store already holds the new list; only enforce it on what is in front right now
+    @org.greenrobot.eventbus.Subscribe
+    public void onBlockedAppsUpdated(BlockedAppsUpdatedEvent event) {
+        Log.d(TAG, "Blocked apps updated " + event + ". Total: " + event.snapshot.size());
+        if (!event.added.isEmpty()) {
+            checkCurrentForegroundApp();
         }
     }
     
-    // EventBus subscriber to refresh blocked apps when updated
-    @org.greenrobot.eventbus.Subscribe
-    public void onNewBlockedApp(NewBlockedAppEvent event) {
-        Log.d(TAG, "Received new blocked app event: " + event.packageName);
-        loadBlockedAppsFromDatabase();
-        Log.d(TAG, "Updated blocked apps list. Total: " + blockedPackages.size());
+    @org.greenrobot.eventbus.Subscribe(threadMode = org.greenrobot.eventbus.ThreadMode.MAIN)
+    public void onAppLimitReached(AppLimitReachedEvent event) {
+        Log.d(TAG, "Received app limit reached event: " + event.packageName);
+        checkCurrentForegroundApp();
     }
     
-    @org.greenrobot.eventbus.Subscribe
-    public void onBlockedAppsUpdated(BlockedAppsUpdatedEvent event) {
-        Log.d(TAG, "Received blocked apps updated event");
-        loadBlockedAppsFromDatabase();
-        Log.d(TAG, "Refreshed blocked apps list from database. Total: " + blockedPackages.size());
-        
-        // Ensure we're enforcing blocking rules immediately
+    @org.greenrobot.eventbus.Subscribe(threadMode = org.greenrobot.eventbus.ThreadMode.MAIN)
+    public void onAppPolicyBlock(AppPolicyBlockEvent event) {
+        Log.d(TAG, "Received policy block event: " + event.packageName);
         checkCurrentForegroundApp();
     }
     
     private void checkCurrentForegroundApp() {
         try {
-            // This will immediately check the current foreground app
-            // and block it if it matches our block list
-            AccessibilityEvent dummyEvent = AccessibilityEvent.obtain();
-            dummyEvent.setEventType(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
-            
-            // Get current foreground package using UsageStats or other methods
+            // A rule change may block what is already on screen; the clock starts now
             String currentPackage = getCurrentForegroundPackage();
             if (currentPackage != null) {
-                dummyEvent.setPackageName(currentPackage);
-                onAccessibilityEvent(dummyEvent);
+                handleForegroundWindow(currentPackage, BlockLatencyTracer.Path.RULE_PUSH, SystemClock.elapsedRealtime());
             }
-            
-            dummyEvent.recycle();
         } catch (Exception e) {
             Log.e(TAG, "Error checking current app", e);
         }
     }
     
     private String getCurrentForegroundPackage() {
-        try {
-            // Multiple ways to get foreground app
-            // Method 1: Use ActivityManager (legacy)
-            android.app.ActivityManager am = (android.app.ActivityManager) getSystemService(ACTIVITY_SERVICE);
-            if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                @SuppressWarnings("deprecation")
-                android.app.ActivityManager.RunningTaskInfo foregroundTaskInfo = am.getRunningTasks(1).get(0);
-                return foregroundTaskInfo.topActivity.getPackageName();
-            }
-            
-            // Method 2: Use UsageStatsManager (Android 5.0+)
-            // Requires PACKAGE_USAGE_STATS permission
-            final long USAGE_STATS_INTERVAL = 1000 * 60; // 1 minute
-            
-            android.app.usage.UsageStatsManager usageStatsManager = 
-                (android.app.usage.UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
-            long time = System.currentTimeMillis();
-            
-            android.app.usage.UsageEvents usageEvents = usageStatsManager.queryEvents(
-                time - USAGE_STATS_INTERVAL, time);
-            android.app.usage.UsageEvents.Event event = new android.app.usage.UsageEvents.Event();
-            String lastPackage = null;
-            
-            while (usageEvents.hasNextEvent()) {
-                usageEvents.getNextEvent(event);
-                if (event.getEventType() == android.app.usage.UsageEvents.Event.MOVE_TO_FOREGROUND) {
-                    lastPackage = event.getPackageName();
-                }
-            }
-            
-            if (lastPackage != null) {
-                return lastPackage;
-            }
-            
-            // Fallback method - less reliable
-            return am.getRunningAppProcesses().get(0).processName;
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting foreground package", e);
-            return null;
-        }
+        return ForegroundAppTracker.getInstance().getForegroundPackage();
     }
 
     @Override
@@ -226,6 +229,8 @@ public class AppBlockAccessibilityService extends AccessibilityService {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        handler.removeCallbacksAndMessages(null);
+        tasks.cancelAll();
         EventBus.getDefault().unregister(this);
         Log.d(TAG, "Accessibility Service Destroyed");
     }
@@ -1,41 +1,31 @@
 package com.example.parentalcontrol;
 
-import android.annotation.SuppressLint;
 import android.app.ActivityManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
-import android.content.ContentValues;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
-import android.provider.Settings;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.greenrobot.eventbus.ThreadMode;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
-
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import java.util.Set;
 
 public class AppBlockerService extends Service {
     private static final String TAG = "AppBlockerService";
@@ -44,8 +34,36 @@ public class AppBlockerService extends Service {
     
     private ActivityManager activityManager;
     private Handler handler;
-    private List<String> blockedPackages = new ArrayList<>();
-    private static final long SYNC_INTERVAL = 30 * 60 * 1000; // 30 minutes
+    private final AppExecutors.TaskScope tasks = new AppExecutors.TaskScope("AppBlockerService");
+    private BlockedAppsStore blockedApps;
+    private static final long FALLBACK_CHECK_INTERVAL = 1000;
+    // While the accessibility service blocks on window events, only re-check whether it is still enabled
+    private static final long ACCESSIBILITY_RECHECK_INTERVAL = 30 * 1000;
+    // Without the accessibility service the tracker is refreshed by a 5 s UsageStats pass, so
+    // the snapshot keeps naming a blocked app for a while after it was sent home. A snapshot
+    // already enforced is only blocked again if it is still unchanged after this long.
+    private static final long FALLBACK_REBLOCK_INTERVAL = 10 * 1000;
+    private Runnable monitoringRunnable;
+    private boolean screenInteractive = true;
+    // Main thread only: the tracker snapshot last blocked by the fallback poll, and when
+    private ForegroundAppTracker.Snapshot fallbackBlocked;
+    private long fallbackBlockedAt;
+
+    private final BroadcastReceiver screenStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
+                screenInteractive = false;
+                handler.removeCallbacks(monitoringRunnable);
+                Log.d("AppBlocker", "Screen off - fallback monitoring suspended");
+            } else if (!screenInteractive) {
+                screenInteractive = true;
+                handler.removeCallbacks(monitoringRunnable);
+                handler.post(monitoringRunnable);
+                Log.d("AppBlocker", "Screen on - fallback monitoring resumed");
+            }
+        }
+    };
 
     @Override
     public void onCreate() {
@@ -63,11 +81,15 @@ public class AppBlockerService extends Service {
         // Register this service with the AppController
         AppController.getInstance().setAppBlockerService(this);
         
-        // Load blocked apps from local database first
-        loadBlockedAppsFromDatabase();
+        // One block list for the whole process, loaded off the main thread
+        blockedApps = BlockedAppsStore.getInstance(this);
+        blockedApps.preload(tasks);
+        // Compiles the scheduled policies and arms their transition timer
+        AppPolicyEngine.getInstance(this);
         
         startMonitoring();
-        syncBlockedApps();
+        // The block list is refreshed by SyncCoordinator; updates arrive as BlockedAppsUpdatedEvent
+        SyncCoordinator.getInstance(this).requestSync(SyncCoordinator.TASK_BLOCKED_APPS);
         
         Log.d(TAG, "AppBlockerService created and running as foreground service");
     }
@@ -111,142 +133,89 @@ public class AppBlockerService extends Service {
     }
 
     private void startMonitoring() {
-        handler.postDelayed(new Runnable() {
+        monitoringRunnable = new Runnable() {
             @Override
             public void run() {
-                checkForegroundApp();
-                handler.postDelayed(this, 1000); // Check every second
+                long nextCheck = checkForegroundApp() ? FALLBACK_CHECK_INTERVAL : ACCESSIBILITY_RECHECK_INTERVAL;
+                handler.postDelayed(this, nextCheck);
             }
-        }, 1000);
-    }
-
-    private void syncBlockedApps() {
-        new Thread(() -> {
-            try {
-                String authToken = AppController.getInstance().getAuthToken();
-                if (authToken == null || authToken.isEmpty()) {
-                    return;
-                }
-
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(10, TimeUnit.SECONDS)
-                        .readTimeout(10, TimeUnit.SECONDS)
-                        .build();
-
-                @SuppressLint("HardwareIds") String deviceId = Settings.Secure.getString(
-                        getContentResolver(),
-                        Settings.Secure.ANDROID_ID
-                );
-
-                Request request = new Request.Builder()
-                        .url(AuthService.BASE_URL + "api/get_blocked_apps/" + deviceId + "/")
-                        .addHeader("Authorization", "Bearer " + authToken)
-                        .build();
-
-                Response response = client.newCall(request).execute();
-                if (response.isSuccessful()) {
-                    String responseBody = response.body().string();
-                    JSONObject json = new JSONObject(responseBody);
-                    JSONArray blockedApps = json.getJSONArray("blocked_apps");
+        };
 
-                    synchronized (blockedPackages) {
-                        blockedPackages.clear();
-                        for (int i = 0; i < blockedApps.length(); i++) {
-                            blockedPackages.add(blockedApps.getString(i));
-                        }
-                    }
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        screenInteractive = powerManager == null || powerManager.isInteractive();
 
-                    // Save to local database
-                    saveBlockedAppsToDatabase(blockedPackages);
-                }
-            } catch (IOException | JSONException e) {
-                Log.e("AppBlocker", "Error syncing blocked apps", e);
-            }
+        IntentFilter screenFilter = new IntentFilter();
+        screenFilter.addAction(Intent.ACTION_SCREEN_ON);
+        screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        screenFilter.addAction(Intent.ACTION_USER_PRESENT);
+        registerReceiver(screenStateReceiver, screenFilter);
 
-            // Schedule next sync
-            handler.postDelayed(this::syncBlockedApps, SYNC_INTERVAL);
-        }).start();
-    }
-
-    private void loadBlockedAppsFromDatabase() {
-        try {
-            SQLiteDatabase db = new AppUsageDatabaseHelper(this).getReadableDatabase();
-            Cursor cursor = db.rawQuery("SELECT package_name FROM blocked_apps", null);
-            
-            synchronized (blockedPackages) {
-                blockedPackages.clear();
-                while (cursor.moveToNext()) {
-                    String packageName = cursor.getString(0);
-                    blockedPackages.add(packageName);
-                    Log.d("AppBlocker", "Loaded blocked app from database: " + packageName);
-                }
-            }
-            
-            cursor.close();
-            db.close();
-            
-            Log.d("AppBlocker", "Loaded " + blockedPackages.size() + " blocked apps from database");
-        } catch (Exception e) {
-            Log.e("AppBlocker", "Error loading blocked apps from database", e);
+        if (screenInteractive) {
+            handler.postDelayed(monitoringRunnable, FALLBACK_CHECK_INTERVAL);
         }
     }
 
-    private void saveBlockedAppsToDatabase(List<String> packageNames) {
-        SQLiteDatabase db = new AppUsageDatabaseHelper(this).getWritableDatabase();
-        db.beginTransaction();
-        try {
-            // Clear existing blocked apps
-            db.execSQL("DELETE FROM blocked_apps");
-
-            // Insert new blocked apps
-            for (String packageName : packageNames) {
-                ContentValues values = new ContentValues();
-                values.put("package_name", packageName);
-                db.insert("blocked_apps", null, values);
-            }
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
-            db.close();
-        }
-    }
-
-    private void checkForegroundApp() {
+    /**
+     * Fallback blocking check
+     * @return true if this service is polling (accessibility service not available)
+     */
+    private boolean checkForegroundApp() {
         // Only do basic checking if accessibility service is not available
         if (AppBlockAccessibilityService.isAccessibilityServiceEnabled(this)) {
             // Accessibility service is handling the blocking, we just log
-            return;
+            return false;
         }
         
-        List<ActivityManager.RunningTaskInfo> tasks = activityManager.getRunningTasks(1);
-        if (!tasks.isEmpty()) {
-            String packageName = tasks.get(0).topActivity.getPackageName();
+        ForegroundAppTracker.Snapshot snapshot = ForegroundAppTracker.getInstance().getSnapshot();
+        String packageName = snapshot.packageName;
+        if (snapshot == fallbackBlocked
+                && SystemClock.elapsedRealtime() - fallbackBlockedAt < FALLBACK_REBLOCK_INTERVAL) {
+            // Already sent home; the tracker has not caught up yet
+            return true;
+        }
+        if (packageName != null) {
 
-            synchronized (blockedPackages) {
-                if (blockedPackages.contains(packageName)) {
-                    Log.d("AppBlocker", "Blocking app (fallback method): " + packageName);
-                    
-                    // Multiple methods to block the app
-                    activityManager.killBackgroundProcesses(packageName);
-                    
-                    // Send user to home screen
-                    Intent homeIntent = new Intent(Intent.ACTION_MAIN);
-                    homeIntent.addCategory(Intent.CATEGORY_HOME);
-                    homeIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    startActivity(homeIntent);
+            if (blockedApps.isBlocked(packageName) ||
+                    AppLimitEngine.getInstance(this).isLimitReached(packageName) ||
+                    AppPolicyEngine.getInstance(this).isBlocked(packageName)) {
+                Log.d("AppBlocker", "Blocking app (fallback method): " + packageName);
+                BlockLatencyTracer tracer = BlockLatencyTracer.getInstance();
+                // The app came up when the tracker saw it, not when this poll noticed it
+                long seenAt = SystemClock.elapsedRealtime()
+                        - Math.max(0, System.currentTimeMillis() - snapshot.since);
+                fallbackBlocked = snapshot;
+                fallbackBlockedAt = SystemClock.elapsedRealtime();
+                BlockLatencyTracer.Trace trace = tracer.begin(BlockLatencyTracer.Path.POLLING, packageName, seenAt);
+                tracer.decided(trace);
+                
+                // Multiple methods to block the app
+                activityManager.killBackgroundProcesses(packageName);
+                
+                // Send user to home screen
+                Intent homeIntent = new Intent(Intent.ACTION_MAIN);
+                homeIntent.addCategory(Intent.CATEGORY_HOME);
+                homeIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                startActivity(homeIntent);
+                tracer.enforced(trace);
 
-                    // Notify user
-                    EventBus.getDefault().post(new BlockedAppEvent(packageName));
-                    
-                    Log.d("AppBlocker", "Successfully blocked and closed (fallback): " + packageName);
-                }
+                // Notify user
+                EventBus.getDefault().post(new BlockedAppEvent(packageName));
+                
+                Log.d("AppBlocker", "Successfully blocked and closed (fallback): " + packageName);
             }
         }
+        return true;
     }
 
     @Override
     public void onDestroy() {
         handler.removeCallbacksAndMessages(null);
+        tasks.cancelAll();
+        try {
+            unregisterReceiver(screenStateReceiver);
+        } catch (Exception e) {
+            Log.w("AppBlocker", "Error unregistering screen state receiver", e);
+        }
         EventBus.getDefault().unregister(this);
         // Unregister from AppController
         AppController.getInstance().setAppBlockerService(null);
@@ -259,42 +228,14 @@ public class AppBlockerService extends Service {
         return null;
     }
 
-    @Subscribe
-    public void onNewBlockedApp(NewBlockedAppEvent event) {
-        Log.d("AppBlocker", "Received new blocked app event: " + event.packageName);
-        
-        // Reload blocked apps from database to get latest changes
-        loadBlockedAppsFromDatabase();
-        
-        Log.d("AppBlocker", "Updated blocked apps list. Total blocked apps: " + blockedPackages.size());
-    }
-    
     @Subscribe
     public void onBlockedAppsUpdated(BlockedAppsUpdatedEvent event) {
-        Log.d("AppBlocker", "Received blocked apps updated event");
-        
-        // Reload blocked apps from database to get latest changes
-        List<String> oldBlockedPackages = new ArrayList<>(blockedPackages);
-        loadBlockedAppsFromDatabase();
-        
-        // Find newly added blocks
-        List<String> newlyAddedBlocks = new ArrayList<>();
-        for (String packageName : blockedPackages) {
-            if (!oldBlockedPackages.contains(packageName)) {
-                newlyAddedBlocks.add(packageName);
-            }
-        }
-        
-        // Find removed blocks
-        List<String> removedBlocks = new ArrayList<>();
-        for (String packageName : oldBlockedPackages) {
-            if (!blockedPackages.contains(packageName)) {
-                removedBlocks.add(packageName);
-            }
-        }
+        Log.d("AppBlocker", "Received blocked apps updated event: " + event);
+        Set<String> newlyAddedBlocks = event.added;
+        Set<String> removedBlocks = event.removed;
         
         // Log detailed information
-        Log.d("AppBlocker", "Refreshed blocked apps list from database. Total blocked apps: " + blockedPackages.size());
+        Log.d("AppBlocker", "Blocked apps list updated. Total blocked apps: " + event.snapshot.size());
         
         if (!newlyAddedBlocks.isEmpty()) {
             Log.d("AppBlocker", "Newly blocked apps: " + newlyAddedBlocks.toString());
@@ -314,6 +255,20 @@ public class AppBlockerService extends Service {
         }
     }
     
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAppLimitReached(AppLimitReachedEvent event) {
+        Log.d("AppBlocker", "Daily limit reached for " + event.packageName);
+        BlockingDebugger.log("Daily limit reached: " + event.packageName);
+        enforceBlocking(event.packageName);
+    }
+    
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onAppPolicyBlock(AppPolicyBlockEvent event) {
+        Log.d("AppBlocker", "Schedule now blocks " + event.packageName);
+        BlockingDebugger.log("Blocked by schedule: " + event.packageName);
+        enforceBlocking(event.packageName);
+    }
+    
     /**
      * Enforce blocking for a specific package immediately
      */
@@ -328,12 +283,17 @@ public class AppBlockerService extends Service {
             if (foregroundApp != null && foregroundApp.equals(packageName)) {
                 Log.d("AppBlocker", "Enforcing immediate blocking for: " + packageName);
                 BlockingDebugger.log("Enforcing immediate block on foreground app: " + packageName);
+                BlockLatencyTracer tracer = BlockLatencyTracer.getInstance();
+                BlockLatencyTracer.Trace trace = tracer.begin(BlockLatencyTracer.Path.RULE_PUSH,
+                        packageName, SystemClock.elapsedRealtime());
+                tracer.decided(trace);
                 
                 // Go to home screen
                 Intent homeIntent = new Intent(Intent.ACTION_MAIN);
                 homeIntent.addCategory(Intent.CATEGORY_HOME);
                 homeIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 startActivity(homeIntent);
+                tracer.enforced(trace);
                 
                 // Show blocking notification
                 AlertNotifier.showNotification(
@@ -364,34 +324,7 @@ public class AppBlockerService extends Service {
      * Get the package name of the foreground app
      */
     private String getForegroundPackage() {
-        try {
-            ActivityManager am = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
-            
-            // For Android 10 (API 29) and above, we can only get our own app's tasks
-            // or use the UsageStatsManager which requires special permissions
-            // Here we'll use a simplified approach that works in older versions
-            List<ActivityManager.RunningAppProcessInfo> processes = am.getRunningAppProcesses();
-            if (processes != null) {
-                for (ActivityManager.RunningAppProcessInfo process : processes) {
-                    if (process.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
-                        if (process.pkgList.length > 0) {
-                            return process.pkgList[0];
-                        }
-                    }
-                }
-            }
-            
-            // Fallback for older versions
-            @SuppressWarnings("deprecation")
-            List<ActivityManager.RunningTaskInfo> tasks = am.getRunningTasks(1);
-            if (tasks != null && !tasks.isEmpty()) {
-                return tasks.get(0).topActivity.getPackageName();
-            }
-        } catch (Exception e) {
-            Log.e("AppBlocker", "Error getting foreground app", e);
-        }
-        
-        return null;
+        return ForegroundAppTracker.getInstance().getForegroundPackage();
     }
     
     /**
@@ -405,7 +338,9 @@ public class AppBlockerService extends Service {
                 Log.d("AppBlocker", "Checking if we need to block current app: " + foregroundPackage);
                 
                 // Check if this app is blocked
-                if (blockedPackages.contains(foregroundPackage)) {
+                if (blockedApps.isBlocked(foregroundPackage) ||
+                        AppLimitEngine.getInstance(this).isLimitReached(foregroundPackage) ||
+                        AppPolicyEngine.getInstance(this).isBlocked(foregroundPackage)) {
                     Log.d("AppBlocker", "Current app is blocked, enforcing block: " + foregroundPackage);
                     enforceBlocking(foregroundPackage);
                 }
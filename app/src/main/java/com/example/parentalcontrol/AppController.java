@@ -10,9 +10,17 @@ import androidx.work.ExistingPeriodicWorkPolicy;
 import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.logging.HttpLoggingInterceptor;
 
 public class AppController extends Application {
@@ -20,6 +28,15 @@ public class AppController extends Application {
     private static final String PREFS_NAME = "ParentalControlAuth";
     private static final String KEY_AUTH_TOKEN = "auth_token";
     private static final String KEY_REFRESH_TOKEN = "refresh_token";
+
+    // Shared HTTP stack: default timeouts, and the endpoint-specific ones callers pick from
+    public static final int HTTP_TIMEOUT_SECONDS = 10;
+    public static final int HTTP_FAST_TIMEOUT_SECONDS = 5;
+    public static final int HTTP_DOWNLOAD_TIMEOUT_SECONDS = 30;
+
+    private static volatile OkHttpClient httpClient;
+    // Clients derived from httpClient with other timeouts, keyed by "connect/read"
+    private static final Map<String, OkHttpClient> timeoutClients = new ConcurrentHashMap<>();
     
     private String authToken;
     private String refreshToken;
@@ -36,14 +53,9 @@ public class AppController extends Application {
         // Load persisted tokens
         loadTokensFromStorage();
 
-        // Enable network logging
-        HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-        logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+        // Build the shared HTTP stack before any service starts syncing
+        getHttpClient();
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .addInterceptor(logging)
-                .build();
-                
         // Initialize blocking debugger for diagnostics
         initBlockingDebugger();
         
@@ -137,6 +149,9 @@ public class AppController extends Application {
             
             // Schedule periodic service watchdog worker as backup
             schedulePeriodicServiceWatchdog();
+
+            // Daily compaction of raw usage rows already folded into rollups
+            scheduleUsageRetention();
             
             Log.d(TAG, "Service management initialized successfully");
         } catch (Exception e) {
@@ -169,6 +184,111 @@ public class AppController extends Application {
         }
     }
 
+    /**
+     * Schedule the daily raw usage retention worker
+     */
+    private void scheduleUsageRetention() {
+        try {
+            PeriodicWorkRequest retentionRequest = new PeriodicWorkRequest.Builder(
+                    UsageRetentionWorker.class,
+                    1, TimeUnit.DAYS)
+                    .addTag("usage_retention")
+                    .build();
+
+            // KEEP so app restarts do not keep pushing the next run back
+            WorkManager.getInstance(this).enqueueUniquePeriodicWork(
+                    "usage_retention",
+                    ExistingPeriodicWorkPolicy.KEEP,
+                    retentionRequest
+            );
+
+            Log.d(TAG, "Usage retention worker scheduled");
+        } catch (Exception e) {
+            Log.e(TAG, "Error scheduling usage retention worker", e);
+        }
+    }
+
+    /**
+     * The app-wide HTTP client
+     * Every sync path shares its connection pool (kept-alive connections, HTTP/2 where the
+     * server negotiates it) and dispatcher threads, so periodic syncs reuse an open
+     * connection instead of paying a new handshake per request. There is no response cache:
+     * every sync is a poll for fresh state, and a heuristically cached GET would hide changes.
+     */
+    public static OkHttpClient getHttpClient() {
+        OkHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (AppController.class) {
+                client = httpClient;
+                if (client == null) {
+                    client = buildHttpClient();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * The shared client with endpoint-specific timeouts (same pool and dispatcher)
+     */
+    public static OkHttpClient getHttpClient(int connectTimeoutSeconds, int readTimeoutSeconds) {
+        if (connectTimeoutSeconds == HTTP_TIMEOUT_SECONDS && readTimeoutSeconds == HTTP_TIMEOUT_SECONDS) {
+            return getHttpClient();
+        }
+        return timeoutClients.computeIfAbsent(connectTimeoutSeconds + "/" + readTimeoutSeconds,
+                key -> getHttpClient().newBuilder()
+                        .connectTimeout(connectTimeoutSeconds, TimeUnit.SECONDS)
+                        .readTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                        .build());
+    }
+
+    private static OkHttpClient buildHttpClient() {
+        // Request lines leak URLs (device ids) to logcat; debug builds only
+        HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+        logging.setLevel(BuildConfig.DEBUG ? HttpLoggingInterceptor.Level.BASIC : HttpLoggingInterceptor.Level.NONE);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(4);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .connectTimeout(HTTP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(HTTP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .addInterceptor(AppController::addAuthHeader)
+                .authenticator(new TokenAuthenticator())
+                .addInterceptor(logging)
+                .eventListenerFactory(HttpMetricsListener.FACTORY);
+
+        Log.d(TAG, "Shared HTTP client created");
+        return builder.build();
+    }
+
+    /**
+     * Attach the current access token to backend requests that don't set one themselves
+     * (token endpoints are left alone). A token about to expire is renewed first, also when
+     * the caller set it explicitly, so requests rarely have to collect a 401.
+     */
+    private static Response addAuthHeader(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        AppController app = instance;
+        String url = request.url().toString();
+        if (app == null || !app.isAuthenticated()
+                || !url.startsWith(AuthService.BASE_URL) || url.startsWith(AuthService.BASE_URL + "api/token/")) {
+            return chain.proceed(request);
+        }
+        String header = request.header("Authorization");
+        if (header != null && !header.equals("Bearer " + app.getAuthToken())) {
+            // A credential other than ours (e.g. a parent token during registration)
+            return chain.proceed(request);
+        }
+        return chain.proceed(request.newBuilder()
+                .header("Authorization", "Bearer " + TokenManager.getInstance().getFreshToken())
+                .build());
+    }
+
 //    private void startServices() {
 //
 //        startService(new Intent(this, ActivityTrackerService.class));
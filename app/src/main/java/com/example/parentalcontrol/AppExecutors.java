@@ -0,0 +1,286 @@
+package com.example.parentalcontrol;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * App-wide background execution, replacing ad-hoc new Thread() calls
+ * - IO: network calls and other blocking waits, a few threads and a bounded queue
+ * - DB_WRITE: the single database writer thread (see DatabaseManager), so writes never contend
+ * - CPU: parsing, hashing and model work, one thread per spare core
+ * A full IO or CPU queue rejects the task (logged and counted) instead of growing without
+ * bound behind a slow backend. Tasks are named for logs, thread names and metrics; tasks
+ * started through a TaskScope are cancelled together when their owner is destroyed.
+ * Nothing is posted back to the main thread unless the caller asks via runOnMain.
+ */
+public final class AppExecutors {
+    private static final String TAG = "AppExecutors";
+
+    public enum Pool { IO, DB_WRITE, CPU }
+
+    private static final int IO_THREADS = 4;
+    private static final int IO_QUEUE_CAPACITY = 64;
+    private static final int CPU_QUEUE_CAPACITY = 32;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+    // Tasks that waited or ran longer than this are logged by name
+    private static final long SLOW_WAIT_MS = 1000;
+    private static final long SLOW_RUN_MS = 10000;
+
+    private static AppExecutors instance;
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ThreadPoolExecutor ioExecutor;
+    private final ScheduledThreadPoolExecutor dbWriteExecutor;
+    private final ThreadPoolExecutor cpuExecutor;
+    private final Map<Pool, PoolMetrics> metrics = new EnumMap<>(Pool.class);
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    private AppExecutors() {
+        ioExecutor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(IO_QUEUE_CAPACITY), namedThreads("io"));
+        ioExecutor.allowCoreThreadTimeOut(true);
+
+        dbWriteExecutor = new ScheduledThreadPoolExecutor(1, namedThreads("db-writer"));
+
+        int cpuThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        cpuExecutor = new ThreadPoolExecutor(cpuThreads, cpuThreads,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(CPU_QUEUE_CAPACITY), namedThreads("cpu"));
+        cpuExecutor.allowCoreThreadTimeOut(true);
+
+        for (Pool pool : Pool.values()) {
+            metrics.put(pool, new PoolMetrics());
+        }
+    }
+
+    /**
+     * Run a named task on a pool
+     * @return handle for cancellation; check isRejected() when the work must not be lost
+     */
+    public TaskHandle execute(Pool pool, String name, Runnable task) {
+        return execute(pool, new TaskHandle(name), task);
+    }
+
+    private TaskHandle execute(Pool pool, TaskHandle handle, Runnable task) {
+        String name = handle.name;
+        PoolMetrics poolMetrics = metrics.get(pool);
+        long enqueuedAt = SystemClock.elapsedRealtime();
+        Runnable measured = () -> runMeasured(pool, poolMetrics, handle, enqueuedAt, task);
+        try {
+            handle.future = executorFor(pool).submit(measured);
+            poolMetrics.submitted.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            poolMetrics.rejected.incrementAndGet();
+            handle.rejected = true;
+            Log.e(TAG, "❌ " + pool + " queue full - dropped task " + name
+                    + " (queued: " + queueFor(pool).size() + ")");
+        }
+        return handle;
+    }
+
+    /**
+     * The database writer thread, for components that schedule delayed writes themselves
+     */
+    public ScheduledExecutorService getDbWriteExecutor() {
+        return dbWriteExecutor;
+    }
+
+    /**
+     * For results that touch views or must be delivered on the main thread
+     */
+    public static void runOnMain(Runnable task) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            task.run();
+        } else {
+            mainHandler.post(task);
+        }
+    }
+
+    /**
+     * Queue depth, activity and latency per pool, for diagnostics
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Pool pool : Pool.values()) {
+            PoolMetrics poolMetrics = metrics.get(pool);
+            long completed = poolMetrics.completed.get();
+            summary.append(String.format("%s: %d active, %d queued, %d done (%d failed, %d rejected), " +
+                            "avg wait %dms (max %dms), avg run %dms\n",
+                    pool, activeFor(pool), queueFor(pool).size(), completed,
+                    poolMetrics.failed.get(), poolMetrics.rejected.get(),
+                    completed > 0 ? poolMetrics.totalWaitMs.get() / completed : 0,
+                    poolMetrics.maxWaitMs.get(),
+                    completed > 0 ? poolMetrics.totalRunMs.get() / completed : 0));
+        }
+        return summary.toString();
+    }
+
+    private void runMeasured(Pool pool, PoolMetrics poolMetrics, TaskHandle handle, long enqueuedAt, Runnable task) {
+        long startedAt = SystemClock.elapsedRealtime();
+        long waitMs = startedAt - enqueuedAt;
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        thread.setName(threadName + ":" + handle.name);
+        try {
+            task.run();
+        } catch (Exception e) {
+            poolMetrics.failed.incrementAndGet();
+            Log.e(TAG, "Task " + handle.name + " failed", e);
+        } finally {
+            thread.setName(threadName);
+            long runMs = SystemClock.elapsedRealtime() - startedAt;
+            poolMetrics.completed.incrementAndGet();
+            poolMetrics.totalWaitMs.addAndGet(waitMs);
+            poolMetrics.totalRunMs.addAndGet(runMs);
+            poolMetrics.maxWaitMs.accumulateAndGet(waitMs, Math::max);
+            if (waitMs > SLOW_WAIT_MS || runMs > SLOW_RUN_MS) {
+                Log.w(TAG, "🐢 " + pool + " task " + handle.name + " waited " + waitMs + "ms, ran " + runMs + "ms");
+            }
+            handle.finish();
+        }
+    }
+
+    private ExecutorService executorFor(Pool pool) {
+        switch (pool) {
+            case DB_WRITE:
+                return dbWriteExecutor;
+            case CPU:
+                return cpuExecutor;
+            default:
+                return ioExecutor;
+        }
+    }
+
+    private BlockingQueue<Runnable> queueFor(Pool pool) {
+        return ((ThreadPoolExecutor) executorFor(pool)).getQueue();
+    }
+
+    private int activeFor(Pool pool) {
+        return ((ThreadPoolExecutor) executorFor(pool)).getActiveCount();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+    }
+
+    private static final class PoolMetrics {
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong totalWaitMs = new AtomicLong();
+        final AtomicLong totalRunMs = new AtomicLong();
+        final AtomicLong maxWaitMs = new AtomicLong();
+    }
+
+    /**
+     * A submitted task; cancelling interrupts it if it already runs
+     */
+    public static final class TaskHandle {
+        final String name;
+        volatile Future<?> future;
+        volatile boolean rejected;
+        volatile Runnable onFinish;
+
+        TaskHandle(String name) {
+            this.name = name;
+        }
+
+        public void cancel() {
+            Future<?> current = future;
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            Future<?> current = future;
+            return current != null && current.isCancelled();
+        }
+
+        public boolean isDone() {
+            Future<?> current = future;
+            return rejected || (current != null && current.isDone());
+        }
+
+        public boolean isRejected() {
+            return rejected;
+        }
+
+        void finish() {
+            Runnable callback = onFinish;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * Tasks owned by one component (activity, service); cancelAll() from its onDestroy
+     */
+    public static final class TaskScope {
+        private final String owner;
+        private final Set<TaskHandle> running = Collections.synchronizedSet(new HashSet<>());
+
+        public TaskScope(String owner) {
+            this.owner = owner;
+        }
+
+        public TaskHandle execute(Pool pool, String name, Runnable task) {
+            TaskHandle handle = new TaskHandle(owner + "/" + name);
+            handle.onFinish = () -> running.remove(handle);
+            running.add(handle);
+            getInstance().execute(pool, handle, task);
+            if (handle.isRejected()) {
+                running.remove(handle);
+            }
+            return handle;
+        }
+
+        public void cancelAll() {
+            TaskHandle[] handles;
+            synchronized (running) {
+                handles = running.toArray(new TaskHandle[0]);
+                running.clear();
+            }
+            for (TaskHandle handle : handles) {
+                handle.cancel();
+            }
+            if (handles.length > 0) {
+                Log.d(TAG, "Cancelled " + handles.length + " tasks of " + owner);
+            }
+        }
+    }
+}
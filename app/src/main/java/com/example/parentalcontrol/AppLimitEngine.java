@@ -0,0 +1,292 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.greenrobot.eventbus.EventBus;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-app daily time budgets enforced from in-memory counters
+ * Usage per package is seeded from the hourly rollup once, then fed by the activity
+ * tracker as sessions are counted. For the app in the foreground the engine knows the
+ * exact moment its budget runs out and fires an AppLimitReachedEvent at that deadline,
+ * so the blocking services never query the database to decide.
+ */
+public class AppLimitEngine {
+    private static final String TAG = "AppLimitEngine";
+
+    private static AppLimitEngine instance;
+
+    private final AppUsageDatabaseHelper dbHelper;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable deadlineCheck = this::onDeadlineReached;
+
+    // Budgets in ms; replaced as a whole, never mutated
+    private volatile Map<String, Long> limitsMs = Collections.emptyMap();
+    // Packages out of budget for today, read by the blocking services on every window change
+    private final Set<String> exhaustedPackages = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this
+    private final Map<String, Long> usedTodayMs = new HashMap<>();
+    private long dayStart;
+    private long nextDayStart;
+    private String foregroundPackage;
+    // Foreground usage up to this time is already in usedTodayMs
+    private long foregroundCountedUntil;
+    // Packages that just ran out, posted by postLimitReached() once the lock is released
+    private final List<String> reachedToPost = new ArrayList<>();
+
+    public static synchronized AppLimitEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppLimitEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AppLimitEngine(Context context) {
+        this.dbHelper = ServiceLocator.getInstance(context).getDatabaseHelper();
+        // Make sure journaled sessions from a previous process are in the rollups first
+        UsageSessionJournal.getInstance(context);
+        loadLimits();
+        reloadTodayUsage(System.currentTimeMillis());
+        postLimitReached();
+    }
+
+    /**
+     * Replace the per-app budgets (minutes per day) and persist them
+     */
+    public void setAppLimits(Map<String, Integer> limitsMinutes) {
+        try {
+            dbHelper.replaceAppLimits(limitsMinutes);
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving app limits", e);
+        }
+        applyLimits(limitsMinutes);
+        postLimitReached();
+    }
+
+    /**
+     * O(1) check used by the blocking path on every foreground change
+     */
+    public boolean isLimitReached(String packageName) {
+        return exhaustedPackages.contains(packageName);
+    }
+
+    /**
+     * Time at which the package runs out of budget if it stays in the foreground,
+     * or Long.MAX_VALUE if it has no budget
+     */
+    public synchronized long getExhaustionDeadline(String packageName, long now) {
+        Long limit = limitsMs.get(packageName);
+        if (limit == null) {
+            return Long.MAX_VALUE;
+        }
+        long remaining = limit - getUsed(packageName);
+        long countedUntil = packageName.equals(foregroundPackage) ? Math.max(foregroundCountedUntil, 0) : now;
+        return countedUntil + Math.max(remaining, 0);
+    }
+
+    /**
+     * Add counted usage for a package (each stretch of time is reported once)
+     */
+    public void recordUsage(String packageName, long from, long to) {
+        synchronized (this) {
+            rollOverIfNeeded(System.currentTimeMillis());
+
+            long start = Math.max(from, dayStart);
+            long end = Math.min(to, nextDayStart);
+            if (end > start) {
+                usedTodayMs.put(packageName, getUsed(packageName) + (end - start));
+            }
+            if (packageName.equals(foregroundPackage)) {
+                foregroundCountedUntil = Math.max(foregroundCountedUntil, to);
+            }
+            checkBudget(packageName);
+        }
+        postLimitReached();
+    }
+
+    /**
+     * The tracker opened a session for packageName at startTime
+     */
+    public void onAppForeground(String packageName, long startTime) {
+        trackForeground(packageName, startTime);
+        postLimitReached();
+    }
+
+    private synchronized void trackForeground(String packageName, long startTime) {
+        long now = System.currentTimeMillis();
+        rollOverIfNeeded(now);
+
+        foregroundPackage = packageName;
+        foregroundCountedUntil = startTime;
+        mainHandler.removeCallbacks(deadlineCheck);
+
+        if (!limitsMs.containsKey(packageName)) {
+            return;
+        }
+        if (exhaustedPackages.contains(packageName)) {
+            reachedToPost.add(packageName);
+            return;
+        }
+        scheduleDeadline(getExhaustionDeadline(packageName, now), now);
+    }
+
+    /**
+     * The tracker closed the session of packageName
+     */
+    public synchronized void onAppBackground(String packageName) {
+        if (packageName.equals(foregroundPackage)) {
+            foregroundPackage = null;
+            mainHandler.removeCallbacks(deadlineCheck);
+        }
+    }
+
+    private void onDeadlineReached() {
+        checkDeadline();
+        postLimitReached();
+    }
+
+    private synchronized void checkDeadline() {
+        rollOverIfNeeded(System.currentTimeMillis());
+        String packageName = foregroundPackage;
+        if (packageName == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long deadline = getExhaustionDeadline(packageName, now);
+        if (now < deadline) {
+            // Budget was raised since the deadline was scheduled
+            scheduleDeadline(deadline, now);
+            return;
+        }
+        if (exhaustedPackages.add(packageName)) {
+            Log.d(TAG, "⏰ Daily limit reached for " + packageName);
+        }
+        reachedToPost.add(packageName);
+    }
+
+    private void scheduleDeadline(long deadline, long now) {
+        // A day rollover also resets budgets, so never wait past midnight
+        long wakeAt = Math.min(deadline, nextDayStart);
+        mainHandler.postDelayed(deadlineCheck, Math.max(0, wakeAt - now));
+        Log.d(TAG, "Next limit check for " + foregroundPackage + " in " + (wakeAt - now) + " ms");
+    }
+
+    private void checkBudget(String packageName) {
+        Long limit = limitsMs.get(packageName);
+        if (limit != null && getUsed(packageName) >= limit && exhaustedPackages.add(packageName)) {
+            Log.d(TAG, "⏰ Daily limit reached for " + packageName);
+            reachedToPost.add(packageName);
+        }
+    }
+
+    /**
+     * Post what checkBudget() and friends queued; never called with the lock held, so
+     * POSTING subscribers that call back into the engine cannot deadlock
+     */
+    private void postLimitReached() {
+        List<String> reached;
+        synchronized (this) {
+            if (reachedToPost.isEmpty()) {
+                return;
+            }
+            reached = new ArrayList<>(reachedToPost);
+            reachedToPost.clear();
+        }
+        for (String packageName : reached) {
+            EventBus.getDefault().post(new AppLimitReachedEvent(packageName));
+        }
+    }
+
+    private void loadLimits() {
+        try {
+            applyLimits(dbHelper.getAppLimits());
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading app limits", e);
+        }
+    }
+
+    private synchronized void applyLimits(Map<String, Integer> limitsMinutes) {
+        Map<String, Long> limits = new HashMap<>();
+        for (Map.Entry<String, Integer> limit : limitsMinutes.entrySet()) {
+            limits.put(limit.getKey(), TimeUnit.MINUTES.toMillis(limit.getValue()));
+        }
+        limitsMs = Collections.unmodifiableMap(limits);
+
+        exhaustedPackages.retainAll(limits.keySet());
+        for (String packageName : limits.keySet()) {
+            if (getUsed(packageName) < limits.get(packageName)) {
+                exhaustedPackages.remove(packageName);
+            } else {
+                checkBudget(packageName);
+            }
+        }
+        Log.d(TAG, "Applied " + limits.size() + " app limits");
+
+        if (foregroundPackage != null) {
+            trackForeground(foregroundPackage, foregroundCountedUntil);
+        }
+    }
+
+    private long getUsed(String packageName) {
+        Long used = usedTodayMs.get(packageName);
+        return used != null ? used : 0;
+    }
+
+    private synchronized void reloadTodayUsage(long now) {
+        dayStart = getStartOfDay(now);
+        nextDayStart = getStartOfNextDay(dayStart);
+        usedTodayMs.clear();
+        exhaustedPackages.clear();
+        try {
+            usedTodayMs.putAll(dbHelper.getAppUsageMsSince(dayStart));
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading today's per-app usage", e);
+        }
+        for (String packageName : limitsMs.keySet()) {
+            checkBudget(packageName);
+        }
+    }
+
+    private void rollOverIfNeeded(long now) {
+        if (now < dayStart) {
+            reloadTodayUsage(now);
+        } else if (now >= nextDayStart) {
+            dayStart = getStartOfDay(now);
+            nextDayStart = getStartOfNextDay(dayStart);
+            usedTodayMs.clear();
+            exhaustedPackages.clear();
+            Log.d(TAG, "Day rollover - app budgets reset");
+        }
+    }
+
+    private static long getStartOfDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long getStartOfNextDay(long dayStart) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(dayStart);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+}
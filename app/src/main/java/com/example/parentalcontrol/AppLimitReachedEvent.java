@@ -0,0 +1,12 @@
+package com.example.parentalcontrol;
+
+/**
+ * Event that's fired when an app has used up its daily time budget
+ */
+public class AppLimitReachedEvent {
+    public final String packageName;
+
+    public AppLimitReachedEvent(String packageName) {
+        this.packageName = packageName;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.parentalcontrol;
+
+import android.content.pm.ApplicationInfo;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Scheduled and conditional blocking rules compiled into one minute-of-week bitmap per target
+ * Each policy names packages and/or app categories, an action, a weekly schedule (same window
+ * format as BedtimeSchedule) and optionally a condition flag set by the parent:
+ * [{"packages": ["com.google.android.youtube"], "action": "allow_only",
+ *   "schedule": [{"days": "daily", "start": "17:00", "end": "20:00"}], "condition": "homework_done"},
+ *  {"categories": ["game"], "action": "block",
+ *   "schedule": [{"days": "school_nights", "start": "19:00", "end": "07:00"}]}]
+ * "block" blocks during its schedule (always if there is none); "allow_only" blocks at all
+ * other times. A policy whose condition is not set contributes no blocked minutes for
+ * "block" and no allowed minutes for "allow_only". Everything that applies to a package or
+ * category is folded into a single BedtimeSchedule when the policies or conditions change,
+ * so checking an app at a window change is a map lookup and a bit test.
+ */
+public final class AppPolicies {
+    static final String ACTION_BLOCK = "block";
+    static final String ACTION_ALLOW_ONLY = "allow_only";
+
+    private static final Map<String, Integer> CATEGORY_NAMES = new HashMap<>();
+    static {
+        CATEGORY_NAMES.put("game", ApplicationInfo.CATEGORY_GAME);
+        CATEGORY_NAMES.put("audio", ApplicationInfo.CATEGORY_AUDIO);
+        CATEGORY_NAMES.put("video", ApplicationInfo.CATEGORY_VIDEO);
+        CATEGORY_NAMES.put("image", ApplicationInfo.CATEGORY_IMAGE);
+        CATEGORY_NAMES.put("social", ApplicationInfo.CATEGORY_SOCIAL);
+        CATEGORY_NAMES.put("news", ApplicationInfo.CATEGORY_NEWS);
+        CATEGORY_NAMES.put("maps", ApplicationInfo.CATEGORY_MAPS);
+        CATEGORY_NAMES.put("productivity", ApplicationInfo.CATEGORY_PRODUCTIVITY);
+    }
+
+    public static final AppPolicies EMPTY = new AppPolicies(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<String, BedtimeSchedule> byPackage;
+    private final Map<Integer, BedtimeSchedule> byCategory;
+
+    private AppPolicies(Map<String, BedtimeSchedule> byPackage, Map<Integer, BedtimeSchedule> byCategory) {
+        this.byPackage = byPackage;
+        this.byCategory = byCategory;
+    }
+
+    /**
+     * Blocked and allowed minutes collected for one package or category
+     */
+    private static final class Target {
+        BedtimeSchedule blocked = BedtimeSchedule.EMPTY;
+        BedtimeSchedule allowed = BedtimeSchedule.EMPTY;
+        boolean allowOnly;
+
+        BedtimeSchedule compile() {
+            return allowOnly ? blocked.or(allowed.not()) : blocked;
+        }
+    }
+
+    /**
+     * Compile policies in the JSON format described above against the current condition flags
+     */
+    public static AppPolicies compile(String json, Map<String, Boolean> conditions) throws JSONException {
+        JSONArray policies = new JSONArray(json);
+        Map<String, Target> packages = new HashMap<>();
+        Map<Integer, Target> categories = new HashMap<>();
+
+        for (int i = 0; i < policies.length(); i++) {
+            JSONObject policy = policies.getJSONObject(i);
+            String action = policy.optString("action", ACTION_BLOCK);
+            if (!ACTION_BLOCK.equals(action) && !ACTION_ALLOW_ONLY.equals(action)) {
+                throw new JSONException("Unknown policy action: " + action);
+            }
+            JSONArray windows = policy.optJSONArray("schedule");
+            BedtimeSchedule schedule = windows != null ? BedtimeSchedule.fromJson(windows) : BedtimeSchedule.EMPTY.not();
+            String condition = policy.optString("condition", null);
+            boolean active = condition == null || Boolean.TRUE.equals(conditions.get(condition));
+
+            JSONArray packageNames = policy.optJSONArray("packages");
+            for (int j = 0; packageNames != null && j < packageNames.length(); j++) {
+                Target target = packages.computeIfAbsent(packageNames.getString(j), key -> new Target());
+                addTo(target, action, schedule, active);
+            }
+            JSONArray categoryNames = policy.optJSONArray("categories");
+            for (int j = 0; categoryNames != null && j < categoryNames.length(); j++) {
+                Target target = categories.computeIfAbsent(parseCategory(categoryNames.getString(j)), key -> new Target());
+                addTo(target, action, schedule, active);
+            }
+        }
+
+        Map<String, BedtimeSchedule> byPackage = new HashMap<>();
+        for (Map.Entry<String, Target> entry : packages.entrySet()) {
+            BedtimeSchedule compiled = entry.getValue().compile();
+            if (!compiled.isEmpty()) {
+                byPackage.put(entry.getKey(), compiled);
+            }
+        }
+        Map<Integer, BedtimeSchedule> byCategory = new HashMap<>();
+        for (Map.Entry<Integer, Target> entry : categories.entrySet()) {
+            BedtimeSchedule compiled = entry.getValue().compile();
+            if (!compiled.isEmpty()) {
+                byCategory.put(entry.getKey(), compiled);
+            }
+        }
+        return new AppPolicies(Collections.unmodifiableMap(byPackage), Collections.unmodifiableMap(byCategory));
+    }
+
+    private static void addTo(Target target, String action, BedtimeSchedule schedule, boolean active) {
+        if (ACTION_ALLOW_ONLY.equals(action)) {
+            target.allowOnly = true;
+            if (active) {
+                target.allowed = target.allowed.or(schedule);
+            }
+        } else if (active) {
+            target.blocked = target.blocked.or(schedule);
+        }
+    }
+
+    public boolean isEmpty() {
+        return byPackage.isEmpty() && byCategory.isEmpty();
+    }
+
+    /**
+     * True if any policy targets categories, so callers know whether to look one up
+     */
+    public boolean hasCategoryPolicies() {
+        return !byCategory.isEmpty();
+    }
+
+    /**
+     * O(1): blocked by its own policies or by those of its category
+     * @param category ApplicationInfo.CATEGORY_* of the package
+     */
+    public boolean isBlocked(String packageName, int category, int minuteOfWeek) {
+        BedtimeSchedule schedule = byPackage.get(packageName);
+        if (schedule != null && schedule.isRestricted(minuteOfWeek)) {
+            return true;
+        }
+        schedule = byCategory.get(category);
+        return schedule != null && schedule.isRestricted(minuteOfWeek);
+    }
+
+    /**
+     * Wall-clock time of the next change in any package's or category's blocked state,
+     * or Long.MAX_VALUE if none ever changes
+     */
+    public long getNextTransition(long timeMillis) {
+        long next = Long.MAX_VALUE;
+        for (BedtimeSchedule schedule : byPackage.values()) {
+            next = Math.min(next, schedule.getNextTransition(timeMillis));
+        }
+        for (BedtimeSchedule schedule : byCategory.values()) {
+            next = Math.min(next, schedule.getNextTransition(timeMillis));
+        }
+        return next;
+    }
+
+    public int getPackageCount() {
+        return byPackage.size();
+    }
+
+    public int getCategoryCount() {
+        return byCategory.size();
+    }
+
+    private static int parseCategory(String name) throws JSONException {
+        Integer category = CATEGORY_NAMES.get(name.trim().toLowerCase(Locale.US));
+        if (category == null) {
+            throw new JSONException("Unknown app category: " + name);
+        }
+        return category;
+    }
+}
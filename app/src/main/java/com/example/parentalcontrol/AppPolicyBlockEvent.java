@@ -0,0 +1,12 @@
+package com.example.parentalcontrol;
+
+/**
+ * Event that's fired when a schedule or condition change blocks the app in the foreground
+ */
+public class AppPolicyBlockEvent {
+    public final String packageName;
+
+    public AppPolicyBlockEvent(String packageName) {
+        this.packageName = packageName;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.greenrobot.eventbus.EventBus;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enforces the synced AppPolicies next to the flat block list
+ * Policies and condition flags are persisted as received and recompiled whenever either
+ * changes. The blocking services ask isBlocked() on every window change; a timer armed
+ * for the next policy transition re-checks the app that is already open, so an evening
+ * block starts on time without waiting for the next app switch, and posts an
+ * AppPolicyBlockEvent when it is now blocked. The timer runs on uptime and may fire late
+ * in deep sleep; lookups always use the wall clock, so the next window change is right.
+ */
+public class AppPolicyEngine {
+    private static final String TAG = "AppPolicyEngine";
+
+    private static final String PREFS_NAME = "AppPolicyPrefs";
+    private static final String KEY_POLICIES = "policies";
+    private static final String KEY_CONDITIONS = "conditions";
+
+    private static AppPolicyEngine instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable transitionCheck = this::onTransition;
+
+    // Replaced as a whole on every recompile
+    private volatile AppPolicies policies = AppPolicies.EMPTY;
+    // ApplicationInfo.category per package, only consulted when a policy targets categories
+    private final Map<String, Integer> categories = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private String policiesJson;
+    private Map<String, Boolean> conditions = new HashMap<>();
+
+    public static synchronized AppPolicyEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppPolicyEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AppPolicyEngine(Context context) {
+        this.context = context;
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        policiesJson = prefs.getString(KEY_POLICIES, null);
+        try {
+            conditions = parseConditions(prefs.getString(KEY_CONDITIONS, null));
+        } catch (JSONException e) {
+            Log.e(TAG, "Stored policy conditions are corrupt - ignoring them", e);
+        }
+        recompile();
+    }
+
+    /**
+     * Replace the policies (JSON format in AppPolicies) and persist them
+     */
+    public synchronized void setPolicies(String json) throws JSONException {
+        // Invalid policies throw here and the previous ones stay in force
+        AppPolicies compiled = AppPolicies.compile(json, conditions);
+        policiesJson = json;
+        save();
+        install(compiled);
+    }
+
+    /**
+     * Replace the condition flags ({"homework_done": true, ...}) and persist them
+     */
+    public synchronized void setConditions(JSONObject flags) throws JSONException {
+        conditions = parseConditions(flags.toString());
+        save();
+        recompile();
+    }
+
+    /**
+     * O(1) check used by the blocking path on every foreground change
+     */
+    public boolean isBlocked(String packageName) {
+        AppPolicies current = policies;
+        if (current.isEmpty()) {
+            return false;
+        }
+        int category = current.hasCategoryPolicies() ? getCategory(packageName) : ApplicationInfo.CATEGORY_UNDEFINED;
+        return current.isBlocked(packageName, category,
+                BedtimeSchedule.minuteOfWeek(System.currentTimeMillis()));
+    }
+
+    public synchronized String getSummary() {
+        AppPolicies current = policies;
+        return current.getPackageCount() + " packages, " + current.getCategoryCount() + " categories, conditions "
+                + conditions;
+    }
+
+    private synchronized void recompile() {
+        AppPolicies compiled = AppPolicies.EMPTY;
+        if (policiesJson != null) {
+            try {
+                compiled = AppPolicies.compile(policiesJson, conditions);
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid app policies - keeping none", e);
+            }
+        }
+        install(compiled);
+    }
+
+    private synchronized void install(AppPolicies compiled) {
+        policies = compiled;
+        // Installs and updates may have changed categories
+        categories.clear();
+        Log.d(TAG, "Compiled app policies: " + getSummary());
+        onTransition();
+    }
+
+    /**
+     * Re-check the open app and arm the timer for the next transition
+     */
+    private void onTransition() {
+        mainHandler.removeCallbacks(transitionCheck);
+        AppPolicies current = policies;
+        long now = System.currentTimeMillis();
+
+        String foreground = ForegroundAppTracker.getInstance().getForegroundPackage();
+        if (foreground != null && isBlocked(foreground)) {
+            Log.d(TAG, "⏰ Policy now blocks " + foreground);
+            EventBus.getDefault().post(new AppPolicyBlockEvent(foreground));
+        }
+
+        long next = current.getNextTransition(now);
+        if (next != Long.MAX_VALUE) {
+            mainHandler.postDelayed(transitionCheck, Math.max(0, next - now));
+            Log.d(TAG, "Next policy transition in " + (next - now) + " ms");
+        }
+    }
+
+    private int getCategory(String packageName) {
+        Integer category = categories.get(packageName);
+        if (category == null) {
+            try {
+                ApplicationInfo info = context.getPackageManager().getApplicationInfo(packageName, 0);
+                category = info.category;
+                if (category == ApplicationInfo.CATEGORY_UNDEFINED && (info.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
+                    // Older games only set the legacy flag
+                    category = ApplicationInfo.CATEGORY_GAME;
+                }
+            } catch (PackageManager.NameNotFoundException e) {
+                // Not installed (anymore) or not visible to us despite QUERY_ALL_PACKAGES;
+                // not cached, so the app is looked up again once it is installed
+                Log.w(TAG, "No package info for " + packageName + " - category policies skipped");
+                return ApplicationInfo.CATEGORY_UNDEFINED;
+            }
+            categories.put(packageName, category);
+        }
+        return category;
+    }
+
+    private void save() {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(KEY_POLICIES, policiesJson)
+                .putString(KEY_CONDITIONS, new JSONObject(conditions).toString())
+                .apply();
+    }
+
+    private static Map<String, Boolean> parseConditions(String json) throws JSONException {
+        Map<String, Boolean> flags = new HashMap<>();
+        if (json == null) {
+            return flags;
+        }
+        JSONObject object = new JSONObject(json);
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            flags.put(key, object.getBoolean(key));
+        }
+        return Collections.unmodifiableMap(flags);
+    }
+}
@@ -8,22 +8,102 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
-import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class AppUsageDatabaseHelper extends SQLiteOpenHelper {
+    private static final String TAG = "AppUsageDB";
     private static final String DB_NAME = "AppUsage.db";
-    private static final int DB_VERSION = 1;
+    // Schema history:
+    // 1 - base tables (app_usage, screen_time, screen_time_rules, blocked_apps)
+    // 2 - indexes for the time-range, sync-status and session-upsert queries
+    // 3 - app_usage_hourly / usage_daily rollups
+    // 4 - app_limits (per-app daily budgets)
+    // 5 - screen_time_rules.bedtime_schedule (weekly bedtime rules, JSON)
+    // 6 - sync_checkpoints (upload high-water marks)
+    // 7 - outbox (pending API writes, see ApiOutbox)
+    private static final int DB_VERSION = 7;
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final int DB_PAGE_SIZE = 4096;
     private final Context context;
 
-    public AppUsageDatabaseHelper(Context context) {
+    // Only DatabaseManager opens the database; everyone else shares its helper
+    AppUsageDatabaseHelper(Context context) {
 
         super(context, DB_NAME, null, DB_VERSION);
         this.context = context;
+        // Readers (countdown, sync) no longer block behind the session writer
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        configureConnection(db);
+    }
+
+    /**
+     * Per-connection tuning. page_size only takes effect on a database that is still empty.
+     */
+    static void configureConnection(SQLiteDatabase db) {
+        db.execSQL("PRAGMA page_size = " + DB_PAGE_SIZE);
+        // With WAL, NORMAL only risks the last commits on power loss, never corruption
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        db.execSQL("PRAGMA temp_store = MEMORY");
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
+        createBaseSchema(db);
+        migrate(db, 1, DB_VERSION);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Log.i(TAG, "Upgrading AppUsage.db from v" + oldVersion + " to v" + newVersion);
+        migrate(db, oldVersion, newVersion);
+    }
+
+    /**
+     * Apply each migration step in order. Fresh installs run the same steps on top of
+     * the v1 schema, so new and upgraded databases always end up identical.
+     */
+    static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            switch (version) {
+                case 2:
+                    migrateToV2(db);
+                    break;
+                case 3:
+                    migrateToV3(db);
+                    break;
+                case 4:
+                    migrateToV4(db);
+                    break;
+                case 5:
+                    migrateToV5(db);
+                    break;
+                case 6:
+                    migrateToV6(db);
+                    break;
+                case 7:
+                    migrateToV7(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration to AppUsage.db v" + version);
+            }
+            Log.d(TAG, "Applied AppUsage.db migration v" + version);
+        }
+    }
+
+    /**
+     * Version 1 schema, as shipped in the first release
+     */
+    static void createBaseSchema(SQLiteDatabase db) {
         // Existing tables
         db.execSQL("CREATE TABLE app_usage (" +
                 "id INTEGER PRIMARY KEY AUTOINCREMENT," +
@@ -52,16 +132,124 @@ public class AppUsageDatabaseHelper extends SQLiteOpenHelper {
                 "package_name TEXT UNIQUE)");
     }
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Handle database upgrades
-        if (oldVersion < 2) {
-            db.execSQL("CREATE TABLE screen_time (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "date TEXT," +
-                    "total_minutes INTEGER," +
-                    "sync_status INTEGER DEFAULT 0)");
+    /**
+     * v2: indexes for every hot filter
+     * - app_usage(end_time, start_time): today's usage / recent-minute scans, covering
+     * - app_usage(app_name, start_time, end_time): session upsert lookup, covering
+     * - app_usage(sync_status) partial on unsynced rows: upload batches
+     * - screen_time(timestamp) and partial (sync_status), screen_time_rules(last_updated)
+     */
+    static void migrateToV2(SQLiteDatabase db) {
+        repairLegacyScreenTimeTable(db);
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_app_usage_end_start " +
+                "ON app_usage(end_time, start_time)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_app_usage_session " +
+                "ON app_usage(app_name, start_time, end_time)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_app_usage_unsynced " +
+                "ON app_usage(sync_status) WHERE sync_status = 0");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_screen_time_timestamp " +
+                "ON screen_time(timestamp)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_screen_time_unsynced " +
+                "ON screen_time(sync_status) WHERE sync_status = 0");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_screen_time_rules_updated " +
+                "ON screen_time_rules(last_updated)");
+        db.execSQL("ANALYZE");
+    }
+
+    /**
+     * v3: rollups kept in step with app_usage by every session write
+     * - app_usage_hourly: usage per app per hour (hour_start is epoch-hour aligned)
+     * - usage_daily: device usage per local day
+     * Backfilled from the raw sessions already stored.
+     */
+    static void migrateToV3(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS app_usage_hourly (" +
+                "app_name TEXT NOT NULL," +
+                "hour_start INTEGER NOT NULL," +
+                "usage_ms INTEGER NOT NULL DEFAULT 0," +
+                "PRIMARY KEY (app_name, hour_start)) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_app_usage_hourly_hour " +
+                "ON app_usage_hourly(hour_start)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS usage_daily (" +
+                "day_start INTEGER PRIMARY KEY," +
+                "usage_ms INTEGER NOT NULL DEFAULT 0)");
+        rebuildRollups(db, 0);
+    }
+
+    /**
+     * v4: per-app daily time budgets
+     */
+    static void migrateToV4(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS app_limits (" +
+                "package_name TEXT PRIMARY KEY," +
+                "daily_limit_minutes INTEGER NOT NULL," +
+                "last_updated INTEGER)");
+    }
+
+    /**
+     * v5: weekly bedtime rules next to the legacy single nightly window (see BedtimeSchedule)
+     */
+    static void migrateToV5(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE screen_time_rules ADD COLUMN bedtime_schedule TEXT");
+    }
+
+    /**
+     * v6: last acknowledged row id per upload stream, so interrupted uploads resume there
+     */
+    static void migrateToV6(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS sync_checkpoints (" +
+                "stream TEXT PRIMARY KEY," +
+                "high_water_mark INTEGER NOT NULL," +
+                "updated_at INTEGER)");
+    }
+
+    /**
+     * v7: durable queue of API writes, drained in order per endpoint
+     * dedupe_key lets a newer write replace an unsent older one for the same thing.
+     */
+    static void migrateToV7(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS outbox (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "endpoint TEXT NOT NULL," +
+                "body TEXT NOT NULL," +
+                "dedupe_key TEXT UNIQUE," +
+                "attempts INTEGER NOT NULL DEFAULT 0," +
+                "next_attempt_at INTEGER NOT NULL DEFAULT 0," +
+                "created_at INTEGER NOT NULL," +
+                "last_error TEXT)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_outbox_next_attempt " +
+                "ON outbox(next_attempt_at)");
+    }
+
+    /**
+     * Older builds' onUpgrade could create screen_time as (date, total_minutes).
+     * Convert such a table to the (timestamp, minutes) layout the app reads.
+     */
+    private static void repairLegacyScreenTimeTable(SQLiteDatabase db) {
+        boolean hasTimestamp = false;
+        boolean hasDate = false;
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(screen_time)", null)) {
+            while (cursor.moveToNext()) {
+                String column = cursor.getString(1);
+                if ("timestamp".equals(column)) hasTimestamp = true;
+                if ("date".equals(column)) hasDate = true;
+            }
         }
+        if (hasTimestamp || !hasDate) {
+            return;
+        }
+
+        Log.w(TAG, "Converting legacy screen_time(date, total_minutes) table");
+        db.execSQL("ALTER TABLE screen_time RENAME TO screen_time_legacy");
+        db.execSQL("CREATE TABLE screen_time (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "timestamp TEXT," +
+                "minutes INTEGER," +
+                "sync_status INTEGER DEFAULT 0)");
+        db.execSQL("INSERT INTO screen_time (timestamp, minutes, sync_status) " +
+                "SELECT date || ' 00:00', total_minutes, sync_status FROM screen_time_legacy");
+        db.execSQL("DROP TABLE screen_time_legacy");
     }
 
     // Add these new methods to AppUsageDatabaseHelper
@@ -71,34 +259,300 @@ public class AppUsageDatabaseHelper extends SQLiteOpenHelper {
         values.put("timestamp", timestamp);
         values.put("minutes", minutes);
         db.insert("screen_time", null, values);
-        db.close();
     }
 
 
-    public void updateScreenTimeSyncStatus(String date, int syncStatus) {
+    /**
+     * Set the sync status of every unsynced screen_time row up to and including upToId
+     */
+    public void updateScreenTimeSyncStatus(long upToId, int syncStatus) {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put("sync_status", syncStatus);
-        db.update("screen_time", values, "date = ?", new String[]{date});
-        db.close();
+        db.update("screen_time", values, "sync_status = 0 AND id <= ?", new String[]{String.valueOf(upToId)});
     }
 
+    /**
+     * Unsynced minutes summed per day: (date yyyy-MM-dd, total_minutes, highest row id)
+     */
     public Cursor getUnsyncedScreenTime() {
         SQLiteDatabase db = getReadableDatabase();
         return db.rawQuery(
-                "SELECT date, total_minutes FROM screen_time WHERE sync_status = 0",
+                "SELECT substr(timestamp, 1, 10) AS date, SUM(minutes) AS total_minutes, MAX(id) " +
+                "FROM screen_time WHERE sync_status = 0 GROUP BY date ORDER BY date",
                 null
         );
     }
 
     public void saveAppUsage(String appName, long startTime, long endTime) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put("app_name", appName);
-        values.put("start_time", startTime);
-        values.put("end_time", endTime);
-        db.insert("app_usage", null, values);
-        db.close();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("app_name", appName);
+            values.put("start_time", startTime);
+            values.put("end_time", endTime);
+            db.insert("app_usage", null, values);
+            addToRollups(db, appName, startTime, endTime);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Write a batch of sessions in a single transaction, one row per session
+     * A session is identified by app_name + start_time: an existing row only has its
+     * end_time extended (and is queued for re-sync), otherwise a new row is inserted.
+     */
+    public void upsertAppUsageBatch(List<AppUsage> sessions) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (AppUsage session : sessions) {
+                long existingId = -1;
+                long existingEnd = 0;
+                try (Cursor cursor = db.rawQuery(
+                        "SELECT id, end_time FROM app_usage WHERE app_name = ? AND start_time = ? LIMIT 1",
+                        new String[]{session.getPackageName(), String.valueOf(session.getStartTime())})) {
+                    if (cursor.moveToFirst()) {
+                        existingId = cursor.getLong(0);
+                        existingEnd = cursor.getLong(1);
+                    }
+                }
+
+                values.clear();
+                if (existingId == -1) {
+                    values.put("app_name", session.getPackageName());
+                    values.put("start_time", session.getStartTime());
+                    values.put("end_time", session.getEndTime());
+                    db.insert("app_usage", null, values);
+                    addToRollups(db, session.getPackageName(), session.getStartTime(), session.getEndTime());
+                } else if (session.getEndTime() > existingEnd) {
+                    values.put("end_time", session.getEndTime());
+                    values.put("sync_status", 0);
+                    db.update("app_usage", values, "id = ?", new String[]{String.valueOf(existingId)});
+                    // Only the newly covered stretch is added, so replays never double count
+                    addToRollups(db, session.getPackageName(),
+                            Math.max(existingEnd, session.getStartTime()), session.getEndTime());
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Spread [from, to) over the hourly per-app and daily rollup rows it touches
+     * Must run inside the transaction that wrote the raw session.
+     */
+    private static void addToRollups(SQLiteDatabase db, String appName, long from, long to) {
+        if (to <= from) {
+            return;
+        }
+        addToHourlyRollup(db, appName, from, to);
+        addToDailyRollup(db, from, to);
+    }
+
+    // Hourly buckets are aligned to epoch hours
+    private static void addToHourlyRollup(SQLiteDatabase db, String appName, long from, long to) {
+        for (long hourStart = from - Math.floorMod(from, HOUR_MS); hourStart < to; hourStart += HOUR_MS) {
+            long ms = Math.min(to, hourStart + HOUR_MS) - Math.max(from, hourStart);
+            db.execSQL("INSERT OR IGNORE INTO app_usage_hourly (app_name, hour_start, usage_ms) VALUES (?, ?, 0)",
+                    new Object[]{appName, hourStart});
+            db.execSQL("UPDATE app_usage_hourly SET usage_ms = usage_ms + ? WHERE app_name = ? AND hour_start = ?",
+                    new Object[]{ms, appName, hourStart});
+        }
+    }
+
+    // Daily buckets are aligned to local midnight, which is not an hour boundary in every timezone
+    private static void addToDailyRollup(SQLiteDatabase db, long from, long to) {
+        for (long dayStart = getStartOfDay(from); dayStart < to; ) {
+            long nextDayStart = getStartOfNextDay(dayStart);
+            long ms = Math.min(to, nextDayStart) - Math.max(from, dayStart);
+            db.execSQL("INSERT OR IGNORE INTO usage_daily (day_start, usage_ms) VALUES (?, 0)",
+                    new Object[]{dayStart});
+            db.execSQL("UPDATE usage_daily SET usage_ms = usage_ms + ? WHERE day_start = ?",
+                    new Object[]{ms, dayStart});
+            dayStart = nextDayStart;
+        }
+    }
+
+    /**
+     * Recompute the rollups from the raw sessions, from the start of the day containing
+     * since onwards. Used for the v3 backfill and after raw rows are deleted in bulk.
+     * Each table is cleared and refilled from its own bucket boundary (the hour and the
+     * local day containing since), so no kept bucket is counted again.
+     */
+    private static void rebuildRollups(SQLiteDatabase db, long since) {
+        long dayFrom = getStartOfDay(since);
+        long hourFrom = dayFrom - Math.floorMod(dayFrom, HOUR_MS);
+        db.execSQL("DELETE FROM app_usage_hourly WHERE hour_start >= ?", new Object[]{hourFrom});
+        db.execSQL("DELETE FROM usage_daily WHERE day_start >= ?", new Object[]{dayFrom});
+
+        int sessionCount = 0;
+        try (Cursor cursor = db.rawQuery(
+                "SELECT app_name, start_time, end_time FROM app_usage WHERE end_time > ?",
+                new String[]{String.valueOf(hourFrom)})) {
+            while (cursor.moveToNext()) {
+                long start = cursor.getLong(1);
+                long end = cursor.getLong(2);
+                if (end > Math.max(start, hourFrom)) {
+                    addToHourlyRollup(db, cursor.getString(0), Math.max(start, hourFrom), end);
+                    sessionCount++;
+                }
+                if (end > Math.max(start, dayFrom)) {
+                    addToDailyRollup(db, Math.max(start, dayFrom), end);
+                }
+            }
+        }
+        Log.d(TAG, "Rebuilt usage rollups from " + sessionCount + " sessions since " + hourFrom);
+    }
+
+    public void rebuildRollupsSince(long since) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            rebuildRollups(db, since);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Device usage for one local day, from usage_daily
+     */
+    public long getDayUsageMs(long dayStart) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT usage_ms FROM usage_daily WHERE day_start = ?",
+                new String[]{String.valueOf(getStartOfDay(dayStart))})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Device usage per local day in [fromDayStart, toDayStart), keyed by day start (weekly reports)
+     */
+    public Map<Long, Long> getDailyUsageMs(long fromDayStart, long toDayStart) {
+        Map<Long, Long> usage = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT day_start, usage_ms FROM usage_daily WHERE day_start >= ? AND day_start < ?",
+                new String[]{String.valueOf(fromDayStart), String.valueOf(toDayStart)})) {
+            while (cursor.moveToNext()) {
+                usage.put(cursor.getLong(0), cursor.getLong(1));
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Usage per app from since onwards
+     * Whole epoch hours come from app_usage_hourly. When since is not on an hour boundary
+     * (local midnight in a half-hour timezone) the stretch up to the next hour is summed
+     * from app_usage, clipped to since, so nothing before it is counted.
+     */
+    public Map<String, Long> getAppUsageMsSince(long since) {
+        Map<String, Long> usage = new HashMap<>();
+        long firstFullHour = since + Math.floorMod(-since, HOUR_MS);
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(
+                "SELECT app_name, SUM(usage_ms) FROM app_usage_hourly WHERE hour_start >= ? GROUP BY app_name",
+                new String[]{String.valueOf(firstFullHour)})) {
+            while (cursor.moveToNext()) {
+                usage.put(cursor.getString(0), cursor.getLong(1));
+            }
+        }
+        if (firstFullHour > since) {
+            String from = String.valueOf(since);
+            String to = String.valueOf(firstFullHour);
+            try (Cursor cursor = db.rawQuery(
+                    "SELECT app_name, SUM(MIN(end_time, ?) - MAX(start_time, ?)) FROM app_usage " +
+                    "WHERE start_time < ? AND end_time > ? GROUP BY app_name",
+                    new String[]{to, from, to, from})) {
+                while (cursor.moveToNext()) {
+                    usage.merge(cursor.getString(0), cursor.getLong(1), Long::sum);
+                }
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Per-app daily budgets in minutes, keyed by package name
+     */
+    public Map<String, Integer> getAppLimits() {
+        Map<String, Integer> limits = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT package_name, daily_limit_minutes FROM app_limits", null)) {
+            while (cursor.moveToNext()) {
+                limits.put(cursor.getString(0), cursor.getInt(1));
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * Replace all per-app budgets in one transaction
+     */
+    public void replaceAppLimits(Map<String, Integer> limits) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete("app_limits", null, null);
+            long now = System.currentTimeMillis();
+            ContentValues values = new ContentValues();
+            for (Map.Entry<String, Integer> limit : limits.entrySet()) {
+                values.clear();
+                values.put("package_name", limit.getKey());
+                values.put("daily_limit_minutes", limit.getValue());
+                values.put("last_updated", now);
+                db.insert("app_limits", null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Drop raw rows older than cutoff that the server already has. Their time stays in
+     * the rollups; unsynced rows are kept until they upload.
+     * @return number of raw app_usage rows removed
+     */
+    public int compactRawUsage(long cutoff, String cutoffTimestamp) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            int sessions = db.delete("app_usage", "end_time < ? AND sync_status = 1",
+                    new String[]{String.valueOf(cutoff)});
+            int minutes = db.delete("screen_time", "timestamp < ? AND sync_status = 1",
+                    new String[]{cutoffTimestamp});
+            db.setTransactionSuccessful();
+            Log.d(TAG, "Compacted " + sessions + " sessions and " + minutes + " screen time minutes");
+            return sessions;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    static long getStartOfDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    static long getStartOfNextDay(long dayStart) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(dayStart);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
     }
 
     public Context getContext() {
@@ -106,11 +560,11 @@ public class AppUsageDatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Get all blocked package names from the database
-     * @return List of blocked package names
+     * Read blocked_apps; BlockedAppsStore keeps the in-memory copy, use that for lookups
+     * @return Set of blocked package names
      */
-    public List<String> getAllBlockedPackages() {
-        List<String> blockedPackages = new ArrayList<>();
+    public Set<String> getAllBlockedPackages() {
+        Set<String> blockedPackages = new HashSet<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
         try {
@@ -123,9 +577,7 @@ public class AppUsageDatabaseHelper extends SQLiteOpenHelper {
 
             cursor.close();
         } catch (Exception e) {
-            Log.e("AppUsageDB", "Error getting blocked packages", e);
-        } finally {
-            db.close();
+            Log.e(TAG, "Error getting blocked packages", e);
         }
 
         return blockedPackages;
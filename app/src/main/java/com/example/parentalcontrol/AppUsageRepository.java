@@ -7,34 +7,91 @@ import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class AppUsageRepository {
+    private static final int REPORT_DAYS = 7;
+
+    /**
+     * Usage over the last REPORT_DAYS local days, read from the rollup tables only
+     */
+    public static final class WeeklyReport {
+        // Day start to usage, oldest first; days without usage are 0
+        public final Map<Long, Long> dailyUsageMs;
+        public final Map<String, Long> appUsageMs;
+
+        WeeklyReport(Map<Long, Long> dailyUsageMs, Map<String, Long> appUsageMs) {
+            this.dailyUsageMs = dailyUsageMs;
+            this.appUsageMs = appUsageMs;
+        }
+    }
+
     private final AppUsageDatabaseHelper dbHelper;
     private final DataSync dataSync;
+    private final DailyUsageAggregator usageAggregator;
+    private final UsageSessionJournal sessionJournal;
+    private final AppLimitEngine appLimitEngine;
+
+    // Open session already counted into today's total, up to countedSessionEnd
+    private String countedSessionPackage;
+    private long countedSessionStart;
+    private long countedSessionEnd;
 
     public AppUsageRepository(Context context) {
         this.dbHelper = ServiceLocator.getInstance(context).getDatabaseHelper();
+        this.usageAggregator = DailyUsageAggregator.getInstance(context);
+        this.sessionJournal = UsageSessionJournal.getInstance(context);
+        this.appLimitEngine = AppLimitEngine.getInstance(context);
         this.dataSync = new DataSync();
     }
 
-    // In AppUsageRepository.java
+    /**
+     * Record the final extent of a session (app left the foreground). The row is buffered
+     * in the session journal and committed in a batch later, so this does no database
+     * work on the caller's thread.
+     */
     public void saveAppUsage(String packageName, long startTime, long endTime) {
         Log.d("DB", "Saving app usage: " + packageName +
                 " from " + startTime + " to " + endTime);
 
-        dbHelper.saveAppUsage(packageName, startTime, endTime);
+        sessionJournal.append(packageName, startTime, endTime);
+        countUsage(packageName, startTime, endTime);
+        countedSessionPackage = null;
+    }
 
-        // Verify the save
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery(
-                "SELECT COUNT(*) FROM app_usage WHERE app_name = ? AND start_time = ?",
-                new String[]{packageName, String.valueOf(startTime)}
-        );
-        if (cursor.moveToFirst()) {
-            Log.d("DB", "Records found: " + cursor.getInt(0));
+    /**
+     * Extend the session that is still in the foreground (periodic autosave)
+     */
+    public void updateOpenSession(String packageName, long startTime, long endTime) {
+        sessionJournal.updateOpenSession(packageName, startTime, endTime);
+        countUsage(packageName, startTime, endTime);
+    }
+
+    /**
+     * Feed only the part of a session not yet counted into today's totals
+     */
+    private void countUsage(String packageName, long startTime, long endTime) {
+        long countFrom = startTime;
+        if (packageName.equals(countedSessionPackage) && startTime == countedSessionStart) {
+            countFrom = Math.max(startTime, countedSessionEnd);
         }
-        cursor.close();
+        if (endTime > countFrom) {
+            usageAggregator.recordSession(countFrom, endTime);
+            appLimitEngine.recordUsage(packageName, countFrom, endTime);
+        }
+
+        countedSessionPackage = packageName;
+        countedSessionStart = startTime;
+        countedSessionEnd = Math.max(endTime, countFrom);
+    }
+
+    /**
+     * Commit buffered sessions now (service shutdown)
+     */
+    public void flushPendingUsage() {
+        sessionJournal.flushNow();
     }
 
     public List<AppUsage> getTodayAppUsage() {
@@ -58,4 +115,26 @@ public class AppUsageRepository {
         }
         return appUsages;
     }
-}
\ No newline at end of file
+
+    /**
+     * Weekly parent report: a few dozen rollup rows instead of a scan of raw sessions
+     */
+    public WeeklyReport getWeeklyReport(long now) {
+        long tomorrow = AppUsageDatabaseHelper.getStartOfNextDay(AppUsageDatabaseHelper.getStartOfDay(now));
+        List<Long> dayStarts = new ArrayList<>();
+        long dayStart = tomorrow;
+        for (int i = 0; i < REPORT_DAYS; i++) {
+            // Step back through the calendar so DST days keep their real length
+            dayStart = AppUsageDatabaseHelper.getStartOfDay(dayStart - 1);
+            dayStarts.add(0, dayStart);
+        }
+
+        Map<Long, Long> stored = dbHelper.getDailyUsageMs(dayStart, tomorrow);
+        Map<Long, Long> daily = new LinkedHashMap<>();
+        for (long day : dayStarts) {
+            Long usage = stored.get(day);
+            daily.put(day, usage != null ? usage : 0L);
+        }
+        return new WeeklyReport(daily, dbHelper.getAppUsageMsSince(dayStart));
+    }
+}
@@ -1,13 +1,12 @@
 package com.example.parentalcontrol;
 
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 // krishna#1
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 
 import okhttp3.*;
 public class AuthService {
@@ -22,12 +21,9 @@ public class AuthService {
     }
 
     public static void login(String username, String password, AuthCallback callback) {
-        new Thread(() -> {
+        AppExecutors.TaskHandle handle = AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "login", () -> {
             try {
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(10, TimeUnit.SECONDS)
-                        .readTimeout(10, TimeUnit.SECONDS)
-                        .build();
+                OkHttpClient client = AppController.getHttpClient();
 
                 JSONObject json = new JSONObject();
                 json.put("username", username);
@@ -52,55 +48,48 @@ public class AuthService {
                     // Store both tokens in AppController
                     AppController.getInstance().setTokens(accessToken, refreshToken);
 
-                    new Handler(Looper.getMainLooper()).post(() ->
+                    AppExecutors.runOnMain(() ->
                             callback.onSuccess(accessToken, refreshToken));
                 } else {
                     throw new IOException("Login failed: " + responseBody);
                 }
             } catch (Exception e) {
                 Log.e("AuthService", "Login error", e);
-                new Handler(Looper.getMainLooper()).post(() ->
+                AppExecutors.runOnMain(() ->
                         callback.onFailure(e));
             }
-        }).start();
+        });
+        if (handle.isRejected()) {
+            AppExecutors.runOnMain(() -> callback.onFailure(new RejectedExecutionException("Login not started - IO queue full")));
+        }
     }
 
-    public static void refreshToken(String refreshToken, AuthCallback callback) {
-        new Thread(() -> {
-            try {
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(10, TimeUnit.SECONDS)
-                        .readTimeout(10, TimeUnit.SECONDS)
-                        .build();
-
-                JSONObject json = new JSONObject();
-                json.put("refresh", refreshToken);
-
-                Request request = new Request.Builder()
-                        .url(BASE_URL + "api/token/refresh/")
-                        .post(RequestBody.create(json.toString(), JSON))
-                        .build();
-
-                Response response = client.newCall(request).execute();
-                String responseBody = response.body().string();
-
-                if (response.isSuccessful()) {
-                    JSONObject tokens = new JSONObject(responseBody);
-                    String accessToken = tokens.getString("access");
-                    
-                    // Update the access token in AppController
-                    AppController.getInstance().setAuthToken(accessToken);
-
-                    new Handler(Looper.getMainLooper()).post(() ->
-                            callback.onSuccess(accessToken, refreshToken));
-                } else {
-                    throw new IOException("Token refresh failed: " + responseBody);
-                }
-            } catch (Exception e) {
-                Log.e("AuthService", "Token refresh error", e);
-                new Handler(Looper.getMainLooper()).post(() ->
-                        callback.onFailure(e));
+    /**
+     * Exchange the refresh token for a new access token and store it (blocking).
+     * Only TokenManager calls this, so concurrent callers share one refresh.
+     */
+    static String refreshAccessToken(String refreshToken) throws IOException, JSONException {
+        OkHttpClient client = AppController.getHttpClient();
+
+        JSONObject json = new JSONObject();
+        json.put("refresh", refreshToken);
+
+        Request request = new Request.Builder()
+                .url(BASE_URL + "api/token/refresh/")
+                .post(RequestBody.create(json.toString(), JSON))
+                .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            String responseBody = response.body().string();
+            if (!response.isSuccessful()) {
+                throw new IOException("Token refresh failed: " + response.code() + " " + responseBody);
             }
-        }).start();
+            JSONObject tokens = new JSONObject(responseBody);
+            String accessToken = tokens.getString("access");
+            // Servers that rotate refresh tokens send a new one along
+            String newRefreshToken = tokens.optString("refresh", refreshToken);
+            AppController.getInstance().setTokens(accessToken, newRefreshToken);
+            return accessToken;
+        }
     }
 }
\ No newline at end of file
@@ -58,7 +58,7 @@ public class BedtimeEnforcementTest {
         values.put("last_updated", System.currentTimeMillis());
         
         long result = db.insert("screen_time_rules", null, values);
-        db.close();
+        BedtimeEnforcer.onRulesChanged(context);
         
         if (result != -1) {
             Log.d(TAG, "✅ Database insert test passed");
@@ -133,9 +133,14 @@ public class BedtimeEnforcementTest {
      */
     private static void testTimeScenario(String description, String bedtimeStart, String bedtimeEnd, 
                                        String currentTime, boolean expectedResult) {
-        // This is a simplified test - in a real implementation you'd need to mock the current time
-        Log.d(TAG, String.format("Testing scenario: %s - Current: %s, Expected: %s", 
-              description, currentTime, expectedResult ? "IN BEDTIME" : "NOT IN BEDTIME"));
+        // Check a Wednesday at currentTime against the compiled nightly schedule
+        BedtimeSchedule schedule = BedtimeSchedule.nightly(bedtimeStart, bedtimeEnd);
+        int minuteOfWeek = 3 * BedtimeSchedule.MINUTES_PER_DAY + BedtimeSchedule.parseTime(currentTime);
+        boolean result = schedule.isRestricted(minuteOfWeek);
+        
+        Log.d(TAG, String.format("%s Scenario: %s - Current: %s, Expected: %s", 
+              result == expectedResult ? "✅" : "❌", description, currentTime,
+              expectedResult ? "IN BEDTIME" : "NOT IN BEDTIME"));
     }
     
     /**
@@ -162,7 +167,6 @@ public class BedtimeEnforcementTest {
             SQLiteDatabase db = dbHelper.getReadableDatabase();
             Cursor cursor = db.rawQuery("SELECT bedtime_start, bedtime_end FROM screen_time_rules LIMIT 1", null);
             cursor.close();
-            db.close();
             Log.d(TAG, "✅ Database bedtime columns exist");
             
         } catch (Exception e) {
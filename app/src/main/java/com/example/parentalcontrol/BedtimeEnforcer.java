@@ -1,23 +1,34 @@
 // BedtimeEnforcer.java
 package com.example.parentalcontrol;
 
+import android.app.AlarmManager;
+import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
 import android.util.Log;
 
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 
 /**
  * Handles bedtime enforcement by checking current time against bedtime rules
- * Integrates with existing device locking system when bedtime periods are active
+ * Integrates with existing device locking system when bedtime periods are active.
+ * Rules are compiled once into a BedtimeSchedule; each check is a bit test, and the next
+ * check is an exact alarm at the next warning mark or bedtime start/end - no polling.
  */
 public class BedtimeEnforcer {
     private static final String TAG = "BedtimeEnforcer";
+    private static final int BEDTIME_ALARM_REQUEST_CODE = 1001;
+    // Minutes before bedtime at which a warning is due
+    private static final int[] WARNING_MARKS = {60, 30, 15, 5};
+    private static final long MINUTE_MS = 60 * 1000;
+    
+    // Compiled once per process; cleared by onRulesChanged
+    private static volatile BedtimeSchedule cachedSchedule;
     
     private final Context context;
     private final AppUsageDatabaseHelper dbHelper;
@@ -27,32 +38,71 @@ public class BedtimeEnforcer {
         this.dbHelper = ServiceLocator.getInstance(context).getDatabaseHelper();
     }
     
+    /**
+     * Bedtime rules were rewritten; recompile them and re-arm the next check
+     */
+    public static void onRulesChanged(Context context) {
+        cachedSchedule = null;
+        new BedtimeEnforcer(context).checkAndEnforceBedtime();
+    }
+    
+    /**
+     * Publish the current status and arm the next check without warning or locking
+     * Safe to call repeatedly: warnings and locks come only from onRulesChanged and the
+     * alarm itself, and re-arming replaces the same PendingIntent.
+     */
+    public void armNextCheck() {
+        try {
+            long now = System.currentTimeMillis();
+            BedtimeSchedule schedule = getSchedule();
+            if (schedule.isEmpty()) {
+                ScreenTimeState.getInstance().publishBedtime(new BedtimeStatus(false, null, null, false));
+                cancelNextCheck();
+                return;
+            }
+            boolean inBedtime = schedule.isRestrictedAt(now);
+            long nextTransition = schedule.getNextTransition(now);
+            ScreenTimeState.getInstance().publishBedtime(buildStatus(schedule, now, inBedtime, nextTransition));
+            scheduleNextCheck(now, inBedtime, nextTransition);
+        } catch (Exception e) {
+            Log.e(TAG, "Error arming bedtime check", e);
+        }
+    }
+
     /**
      * Enhanced bedtime check with warning notifications
      * @return true if device should be locked due to bedtime
      */
     public boolean checkAndEnforceBedtime() {
         try {
-            BedtimeRule rule = getCurrentBedtimeRule();
-            if (rule == null) {
+            long now = System.currentTimeMillis();
+            BedtimeSchedule schedule = getSchedule();
+            if (schedule.isEmpty()) {
                 Log.d(TAG, "No bedtime rules found");
+                ScreenTimeState.getInstance().publishBedtime(new BedtimeStatus(false, null, null, false));
+                cancelNextCheck();
                 return false;
             }
             
             // Check current bedtime status
-            boolean inBedtime = isCurrentTimeInBedtime(rule);
+            boolean inBedtime = schedule.isRestrictedAt(now);
+            long nextTransition = schedule.getNextTransition(now);
+            BedtimeStatus status = buildStatus(schedule, now, inBedtime, nextTransition);
+            ScreenTimeState.getInstance().publishBedtime(status);
             
             // Check for approaching bedtime (warning notifications)
-            int minutesToBedtime = getMinutesToBedtime(rule);
+            int minutesToBedtime = inBedtime ? -1 : getMinutesUntil(now, nextTransition);
             
             Log.d(TAG, String.format("Enhanced bedtime check - Start: %s, End: %s, Current in bedtime: %s, Minutes to bedtime: %d", 
-                    rule.bedtimeStart, rule.bedtimeEnd, inBedtime, minutesToBedtime));
+                    status.bedtimeStart, status.bedtimeEnd, inBedtime, minutesToBedtime));
             
             // Send warning notifications if bedtime is approaching
-            if (!inBedtime && minutesToBedtime > 0 && minutesToBedtime <= 60) {
-                sendBedtimeWarningNotifications(minutesToBedtime, rule);
+            if (minutesToBedtime > 0 && minutesToBedtime <= 60) {
+                sendBedtimeWarningNotifications(minutesToBedtime, status.bedtimeStart);
             }
             
+            scheduleNextCheck(now, inBedtime, nextTransition);
+            
             if (inBedtime) {
                 Log.d(TAG, "🌙 Current time is within bedtime period - triggering device lock");
                 
@@ -72,47 +122,64 @@ public class BedtimeEnforcer {
     }
     
     /**
-     * Calculate minutes until bedtime starts
-     * @return minutes until bedtime, or -1 if bedtime has passed for today
+     * Arm one exact alarm for the next point that needs a check: the next warning mark
+     * before bedtime, or the start/end of the restricted period
      */
-    private int getMinutesToBedtime(BedtimeRule rule) {
-        try {
-            Calendar now = Calendar.getInstance();
-            int currentHour = now.get(Calendar.HOUR_OF_DAY);
-            int currentMinute = now.get(Calendar.MINUTE);
-            int currentTimeMinutes = currentHour * 60 + currentMinute;
-            
-            int startTimeMinutes = parseTimeToMinutes(rule.bedtimeStart);
-            if (startTimeMinutes == -1) {
-                return -1;
-            }
-            
-            // Calculate minutes until bedtime
-            int minutesToBedtime;
-            
-            if (startTimeMinutes > currentTimeMinutes) {
-                // Bedtime is later today
-                minutesToBedtime = startTimeMinutes - currentTimeMinutes;
-            } else {
-                // Bedtime is tomorrow (add 24 hours)
-                minutesToBedtime = (24 * 60) - currentTimeMinutes + startTimeMinutes;
+    private void scheduleNextCheck(long now, boolean inBedtime, long nextTransition) {
+        if (nextTransition == Long.MAX_VALUE) {
+            cancelNextCheck();
+            return;
+        }
+        
+        long nextCheck = nextTransition;
+        if (!inBedtime) {
+            for (int mark : WARNING_MARKS) {
+                long warningTime = nextTransition - mark * MINUTE_MS;
+                if (warningTime > now) {
+                    nextCheck = warningTime;
+                    break;
+                }
             }
-            
-            Log.d(TAG, String.format("Minutes to bedtime calculation - Current: %d, Start: %d, Result: %d", 
-                    currentTimeMinutes, startTimeMinutes, minutesToBedtime));
-            
-            return minutesToBedtime;
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error calculating minutes to bedtime", e);
+        }
+        
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = getCheckIntent();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, nextCheck, pendingIntent);
+        } else {
+            // Without the exact alarm permission the system may defer this by a few minutes
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, nextCheck, pendingIntent);
+        }
+        
+        Log.d(TAG, "Next bedtime check in " + (nextCheck - now) / 1000 + " s");
+    }
+    
+    private void cancelNextCheck() {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getCheckIntent());
+    }
+    
+    private PendingIntent getCheckIntent() {
+        Intent intent = new Intent(context, BedtimeCheckReceiver.class);
+        return PendingIntent.getBroadcast(
+                context,
+                BEDTIME_ALARM_REQUEST_CODE,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+    
+    private static int getMinutesUntil(long now, long time) {
+        if (time == Long.MAX_VALUE) {
             return -1;
         }
+        return (int) Math.min(Integer.MAX_VALUE, (time - now + MINUTE_MS - 1) / MINUTE_MS);
     }
     
     /**
      * Send progressive bedtime warning notifications
      */
-    private void sendBedtimeWarningNotifications(int minutesToBedtime, BedtimeRule rule) {
+    private void sendBedtimeWarningNotifications(int minutesToBedtime, String bedtimeStart) {
         try {
             String title;
             String message;
@@ -121,25 +188,25 @@ public class BedtimeEnforcer {
             if (minutesToBedtime <= 5) {
                 // Critical warning - 5 minutes or less
                 title = "Bedtime in " + minutesToBedtime + " minutes!";
-                message = "Bedtime starts at " + rule.bedtimeStart + ". Device will lock in " + minutesToBedtime + " minutes.";
+                message = "Bedtime starts at " + bedtimeStart + ". Device will lock in " + minutesToBedtime + " minutes.";
                 isCritical = true;
                 
             } else if (minutesToBedtime <= 15) {
                 // High priority - 15 minutes or less
                 title = "Bedtime approaching - " + minutesToBedtime + " min";
-                message = "Bedtime starts at " + rule.bedtimeStart + ". Please start winding down.";
+                message = "Bedtime starts at " + bedtimeStart + ". Please start winding down.";
                 isCritical = false;
                 
             } else if (minutesToBedtime <= 30) {
                 // Normal warning - 30 minutes or less
                 title = "Bedtime reminder";
-                message = "Bedtime starts at " + rule.bedtimeStart + " (" + minutesToBedtime + " minutes). Time to prepare for bed.";
+                message = "Bedtime starts at " + bedtimeStart + " (" + minutesToBedtime + " minutes). Time to prepare for bed.";
                 isCritical = false;
                 
             } else if (minutesToBedtime <= 60) {
                 // Early warning - 60 minutes or less
                 title = "Bedtime reminder";
-                message = "Bedtime starts at " + rule.bedtimeStart + " in " + minutesToBedtime + " minutes.";
+                message = "Bedtime starts at " + bedtimeStart + " in " + minutesToBedtime + " minutes.";
                 isCritical = false;
                 
             } else {
@@ -157,101 +224,72 @@ public class BedtimeEnforcer {
     }
     
     /**
-     * Get current bedtime rule from database
+     * Compiled schedule, read from screen_time_rules on first use only
      */
-    private BedtimeRule getCurrentBedtimeRule() {
+    private BedtimeSchedule getSchedule() {
+        BedtimeSchedule schedule = cachedSchedule;
+        if (schedule == null) {
+            schedule = loadSchedule();
+            cachedSchedule = schedule;
+        }
+        return schedule;
+    }
+    
+    /**
+     * Weekly rules (bedtime_schedule) win over the legacy single nightly window
+     */
+    private BedtimeSchedule loadSchedule() {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = null;
         
-        try {
-            cursor = db.rawQuery(
-                "SELECT bedtime_start, bedtime_end FROM screen_time_rules " +
-                "WHERE bedtime_start IS NOT NULL AND bedtime_end IS NOT NULL " +
+        try (Cursor cursor = db.rawQuery(
+                "SELECT bedtime_schedule, bedtime_start, bedtime_end FROM screen_time_rules " +
+                "WHERE bedtime_schedule IS NOT NULL OR (bedtime_start IS NOT NULL AND bedtime_end IS NOT NULL) " +
                 "ORDER BY last_updated DESC LIMIT 1",
-                null
-            );
+                null)) {
             
             if (cursor.moveToFirst()) {
-                String bedtimeStart = cursor.getString(0);
-                String bedtimeEnd = cursor.getString(1);
+                String weeklyRules = cursor.getString(0);
+                if (weeklyRules != null && !weeklyRules.trim().isEmpty()) {
+                    Log.d(TAG, "Compiled weekly bedtime rules");
+                    return BedtimeSchedule.fromJson(weeklyRules);
+                }
                 
-                if (bedtimeStart != null && bedtimeEnd != null && 
-                    !bedtimeStart.trim().isEmpty() && !bedtimeEnd.trim().isEmpty()) {
-                    return new BedtimeRule(bedtimeStart, bedtimeEnd);
+                String bedtimeStart = cursor.getString(1);
+                String bedtimeEnd = cursor.getString(2);
+                if (bedtimeStart != null && bedtimeEnd != null) {
+                    Log.d(TAG, "Compiled nightly bedtime " + bedtimeStart + " to " + bedtimeEnd);
+                    return BedtimeSchedule.nightly(bedtimeStart, bedtimeEnd);
                 }
             }
             
         } catch (Exception e) {
-            Log.e(TAG, "Error fetching bedtime rule", e);
-        } finally {
-            if (cursor != null) cursor.close();
-            db.close();
+            Log.e(TAG, "Error loading bedtime rules", e);
         }
         
-        return null;
+        return BedtimeSchedule.EMPTY;
     }
     
     /**
-     * Check if current time falls within bedtime period
-     * Handles overnight periods (e.g., 22:00 to 07:00)
+     * Start/end of the current restricted period, or of the next one
      */
-    private boolean isCurrentTimeInBedtime(BedtimeRule rule) {
-        try {
-            Calendar now = Calendar.getInstance();
-            int currentHour = now.get(Calendar.HOUR_OF_DAY);
-            int currentMinute = now.get(Calendar.MINUTE);
-            int currentTimeMinutes = currentHour * 60 + currentMinute;
-            
-            // Parse bedtime start and end
-            int startTimeMinutes = parseTimeToMinutes(rule.bedtimeStart);
-            int endTimeMinutes = parseTimeToMinutes(rule.bedtimeEnd);
-            
-            Log.d(TAG, String.format("Time comparison - Current: %02d:%02d (%d min), Start: %d min, End: %d min", 
-                    currentHour, currentMinute, currentTimeMinutes, startTimeMinutes, endTimeMinutes));
-            
-            if (startTimeMinutes == -1 || endTimeMinutes == -1) {
-                Log.w(TAG, "Invalid bedtime format");
-                return false;
-            }
-            
-            // Handle overnight bedtime (e.g., 22:00 to 07:00)
-            if (startTimeMinutes > endTimeMinutes) {
-                // Overnight period: current time is either >= start OR <= end
-                boolean result = (currentTimeMinutes >= startTimeMinutes) || (currentTimeMinutes <= endTimeMinutes);
-                Log.d(TAG, "Overnight bedtime check: " + result);
-                return result;
-            } else {
-                // Same day period: current time is >= start AND <= end
-                boolean result = (currentTimeMinutes >= startTimeMinutes) && (currentTimeMinutes <= endTimeMinutes);
-                Log.d(TAG, "Same-day bedtime check: " + result);
-                return result;
-            }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking current time against bedtime", e);
-            return false;
+    private static BedtimeStatus buildStatus(BedtimeSchedule schedule, long now, boolean inBedtime, long nextTransition) {
+        long start;
+        long end;
+        if (inBedtime) {
+            start = schedule.getPreviousTransition(now);
+            end = nextTransition;
+        } else {
+            start = nextTransition;
+            end = schedule.getNextTransition(nextTransition);
         }
+        return new BedtimeStatus(true, formatTime(start), formatTime(end), inBedtime);
     }
     
-    /**
-     * Parse time string (HH:mm or HH:mm:ss) to minutes since midnight
-     */
-    private int parseTimeToMinutes(String timeStr) {
-        try {
-            String[] parts = timeStr.split(":");
-            if (parts.length >= 2) {
-                int hours = Integer.parseInt(parts[0]);
-                int minutes = Integer.parseInt(parts[1]);
-                
-                // Validate ranges
-                if (hours >= 0 && hours <= 23 && minutes >= 0 && minutes <= 59) {
-                    return hours * 60 + minutes;
-                }
-            }
-        } catch (NumberFormatException e) {
-            Log.e(TAG, "Failed to parse time: " + timeStr, e);
+    private static String formatTime(long time) {
+        if (time == Long.MAX_VALUE || time == Long.MIN_VALUE) {
+            return null;
         }
-        return -1;
+        return new SimpleDateFormat("HH:mm", Locale.getDefault()).format(new Date(time));
     }
     
     /**
@@ -266,31 +304,19 @@ public class BedtimeEnforcer {
         context.sendBroadcast(intent);
     }
     
-    /**
-     * Data class for bedtime rule
-     */
-    private static class BedtimeRule {
-        final String bedtimeStart;
-        final String bedtimeEnd;
-        
-        BedtimeRule(String bedtimeStart, String bedtimeEnd) {
-            this.bedtimeStart = bedtimeStart;
-            this.bedtimeEnd = bedtimeEnd;
-        }
-    }
-    
     /**
      * Get bedtime status information for UI display
      */
     public BedtimeStatus getBedtimeStatus() {
         try {
-            BedtimeRule rule = getCurrentBedtimeRule();
-            if (rule == null) {
+            BedtimeSchedule schedule = getSchedule();
+            if (schedule.isEmpty()) {
                 return new BedtimeStatus(false, null, null, false);
             }
             
-            boolean inBedtime = isCurrentTimeInBedtime(rule);
-            return new BedtimeStatus(true, rule.bedtimeStart, rule.bedtimeEnd, inBedtime);
+            long now = System.currentTimeMillis();
+            boolean inBedtime = schedule.isRestrictedAt(now);
+            return buildStatus(schedule, now, inBedtime, schedule.getNextTransition(now));
             
         } catch (Exception e) {
             Log.e(TAG, "Error getting bedtime status", e);
@@ -0,0 +1,286 @@
+package com.example.parentalcontrol;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Weekly restricted periods compiled into a minute-of-week bitmap
+ * Rules are parsed once; afterwards "is this minute restricted?" is a single bit test and
+ * the next start/end of a restricted period is a binary search over the precomputed
+ * transitions, so callers can arm one exact alarm instead of polling.
+ *
+ * Weekly rules (screen_time_rules.bedtime_schedule) are a JSON array of windows:
+ * [{"days": ["mon", "tue"], "start": "21:00", "end": "07:00"},
+ *  {"days": "school_nights", "start": "21:00", "end": "07:00"},
+ *  {"days": "weekend", "start": "23:00", "end": "09:00"}]
+ * A window starts on each listed day; when end is not after start it runs into the next day.
+ * "school_nights" are Sunday to Thursday, "weekend" is Friday and Saturday night.
+ */
+public final class BedtimeSchedule {
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    // Day index 0 is Sunday, matching Calendar.DAY_OF_WEEK - 1
+    private static final String[] DAY_NAMES = {"sun", "mon", "tue", "wed", "thu", "fri", "sat"};
+    private static final int[] SCHOOL_NIGHTS = {0, 1, 2, 3, 4};
+    private static final int[] WEEKEND_NIGHTS = {5, 6};
+    private static final int[] EVERY_DAY = {0, 1, 2, 3, 4, 5, 6};
+
+    public static final BedtimeSchedule EMPTY = new BedtimeSchedule(new ArrayList<>());
+
+    /**
+     * One restricted window, starting on a given day
+     */
+    public static final class Window {
+        final int day;
+        final int startMinute;
+        final int endMinute;
+
+        Window(int day, int startMinute, int endMinute) {
+            this.day = day;
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+        }
+
+        int lengthMinutes() {
+            return endMinute > startMinute
+                    ? endMinute - startMinute
+                    : MINUTES_PER_DAY - startMinute + endMinute;
+        }
+    }
+
+    private final long[] bits = new long[(MINUTES_PER_WEEK + 63) / 64];
+    // Minutes of the week at which the restricted state flips, ascending
+    private final int[] transitions;
+
+    private BedtimeSchedule(List<Window> windows) {
+        for (Window window : windows) {
+            int from = window.day * MINUTES_PER_DAY + window.startMinute;
+            int length = window.lengthMinutes();
+            for (int i = 0; i < length; i++) {
+                int minute = (from + i) % MINUTES_PER_WEEK;
+                bits[minute >> 6] |= 1L << (minute & 63);
+            }
+        }
+        transitions = findTransitions();
+    }
+
+    private BedtimeSchedule(long[] bits) {
+        System.arraycopy(bits, 0, this.bits, 0, this.bits.length);
+        // Bits past the end of the week stay clear
+        this.bits[this.bits.length - 1] &= -1L >>> (64 * this.bits.length - MINUTES_PER_WEEK);
+        transitions = findTransitions();
+    }
+
+    private int[] findTransitions() {
+        int[] found = new int[MINUTES_PER_WEEK];
+        int count = 0;
+        for (int minute = 0; minute < MINUTES_PER_WEEK; minute++) {
+            int previous = minute == 0 ? MINUTES_PER_WEEK - 1 : minute - 1;
+            if (isRestricted(minute) != isRestricted(previous)) {
+                found[count++] = minute;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * The same nightly window every day (legacy bedtime_start / bedtime_end)
+     */
+    public static BedtimeSchedule nightly(String start, String end) {
+        int startMinute = parseTime(start);
+        int endMinute = parseTime(end);
+        if (startMinute < 0 || endMinute < 0) {
+            return EMPTY;
+        }
+        List<Window> windows = new ArrayList<>();
+        for (int day : EVERY_DAY) {
+            windows.add(new Window(day, startMinute, endMinute));
+        }
+        return new BedtimeSchedule(windows);
+    }
+
+    /**
+     * Compile weekly rules in the JSON format described above
+     */
+    public static BedtimeSchedule fromJson(String json) throws JSONException {
+        return fromJson(new JSONArray(json));
+    }
+
+    static BedtimeSchedule fromJson(JSONArray rules) throws JSONException {
+        List<Window> windows = new ArrayList<>();
+        for (int i = 0; i < rules.length(); i++) {
+            JSONObject rule = rules.getJSONObject(i);
+            int startMinute = parseTime(rule.getString("start"));
+            int endMinute = parseTime(rule.getString("end"));
+            if (startMinute < 0 || endMinute < 0) {
+                throw new JSONException("Invalid bedtime window: " + rule);
+            }
+            for (int day : parseDays(rule.opt("days"))) {
+                windows.add(new Window(day, startMinute, endMinute));
+            }
+        }
+        return new BedtimeSchedule(windows);
+    }
+
+    /**
+     * Restricted whenever either schedule is
+     */
+    public BedtimeSchedule or(BedtimeSchedule other) {
+        long[] union = new long[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            union[i] = bits[i] | other.bits[i];
+        }
+        return new BedtimeSchedule(union);
+    }
+
+    /**
+     * Restricted exactly when this schedule is not
+     */
+    public BedtimeSchedule not() {
+        long[] complement = new long[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            complement[i] = ~bits[i];
+        }
+        return new BedtimeSchedule(complement);
+    }
+
+    public boolean isEmpty() {
+        return transitions.length == 0 && !isRestricted(0);
+    }
+
+    /**
+     * O(1) bit test for a minute of the week (0 = Sunday 00:00)
+     */
+    public boolean isRestricted(int minuteOfWeek) {
+        return (bits[minuteOfWeek >> 6] & (1L << (minuteOfWeek & 63))) != 0;
+    }
+
+    public boolean isRestrictedAt(long timeMillis) {
+        return isRestricted(minuteOfWeek(timeMillis));
+    }
+
+    /**
+     * Wall-clock time at which the restricted state next flips after timeMillis,
+     * or Long.MAX_VALUE if it never does
+     */
+    public long getNextTransition(long timeMillis) {
+        if (transitions.length == 0) {
+            return Long.MAX_VALUE;
+        }
+        int minute = minuteOfWeek(timeMillis);
+        int index = Arrays.binarySearch(transitions, minute + 1);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        int next = index < transitions.length ? transitions[index] : transitions[0] + MINUTES_PER_WEEK;
+        return toWallClock(timeMillis, minute, next);
+    }
+
+    /**
+     * Wall-clock time at which the restricted state last flipped at or before timeMillis,
+     * or Long.MIN_VALUE if it never does
+     */
+    public long getPreviousTransition(long timeMillis) {
+        if (transitions.length == 0) {
+            return Long.MIN_VALUE;
+        }
+        int minute = minuteOfWeek(timeMillis);
+        int index = Arrays.binarySearch(transitions, minute);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        int previous = index >= 0 ? transitions[index] : transitions[transitions.length - 1] - MINUTES_PER_WEEK;
+        return toWallClock(timeMillis, minute, previous);
+    }
+
+    static int minuteOfWeek(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return (calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY) * MINUTES_PER_DAY
+                + calendar.get(Calendar.HOUR_OF_DAY) * 60
+                + calendar.get(Calendar.MINUTE);
+    }
+
+    /**
+     * Local time of targetMinute, counted in minutes of the week relative to the week that
+     * contains timeMillis (may be negative or past the end). Goes through the calendar so
+     * a DST change in between lands on the right wall-clock time.
+     */
+    private static long toWallClock(long timeMillis, int minute, int targetMinute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH,
+                Math.floorDiv(targetMinute, MINUTES_PER_DAY) - minute / MINUTES_PER_DAY);
+        int minuteOfDay = Math.floorMod(targetMinute, MINUTES_PER_DAY);
+        calendar.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        calendar.set(Calendar.MINUTE, minuteOfDay % 60);
+        return calendar.getTimeInMillis();
+    }
+
+    private static int[] parseDays(Object days) throws JSONException {
+        if (days == null || "daily".equals(days) || "all".equals(days)) {
+            return EVERY_DAY;
+        }
+        if ("school_nights".equals(days)) {
+            return SCHOOL_NIGHTS;
+        }
+        if ("weekend".equals(days)) {
+            return WEEKEND_NIGHTS;
+        }
+        if (!(days instanceof JSONArray)) {
+            throw new JSONException("Unknown bedtime days: " + days);
+        }
+        JSONArray list = (JSONArray) days;
+        int[] result = new int[list.length()];
+        for (int i = 0; i < list.length(); i++) {
+            result[i] = parseDay(list.getString(i));
+        }
+        return result;
+    }
+
+    private static int parseDay(String name) throws JSONException {
+        String prefix = name.trim().toLowerCase(Locale.US);
+        if (prefix.length() >= 3) {
+            prefix = prefix.substring(0, 3);
+            for (int day = 0; day < DAY_NAMES.length; day++) {
+                if (DAY_NAMES[day].equals(prefix)) {
+                    return day;
+                }
+            }
+        }
+        throw new JSONException("Unknown day: " + name);
+    }
+
+    /**
+     * "HH:mm" or "HH:mm:ss" to minutes since midnight, or -1 if malformed
+     */
+    static int parseTime(String time) {
+        if (time == null) {
+            return -1;
+        }
+        String[] parts = time.trim().split(":");
+        if (parts.length < 2) {
+            return -1;
+        }
+        try {
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = Integer.parseInt(parts[1]);
+            if (hours >= 0 && hours <= 23 && minutes >= 0 && minutes <= 59) {
+                return hours * 60 + minutes;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.parentalcontrol;
+
+/**
+ * The traced decide - wait - go home sequence that gets a blocked app off the screen
+ * The service supplies its main-thread Handler, elapsedRealtime and the actual actions;
+ * BlockLatencyTracerTest supplies a virtual clock and looper, so the test times the same
+ * code path the device runs.
+ */
+class BlockEnforcement {
+
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+    }
+
+    interface Clock {
+        long elapsedRealtime();
+    }
+
+    interface Actions {
+        /** Take the app off the screen (GLOBAL_ACTION_HOME on a device) */
+        void goHome(String packageName);
+
+        /** Everything after the app is gone: message, events */
+        void onBlocked(String packageName);
+    }
+
+    private final BlockLatencyTracer tracer;
+    private final Scheduler scheduler;
+    private final Clock clock;
+    private final long delayMs;
+    private final Actions actions;
+
+    BlockEnforcement(BlockLatencyTracer tracer, Scheduler scheduler, Clock clock, long delayMs, Actions actions) {
+        this.tracer = tracer;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.delayMs = delayMs;
+        this.actions = actions;
+    }
+
+    /**
+     * Block an app seen in front at seenAt (elapsedRealtime) once the launch has settled
+     */
+    void block(String packageName, BlockLatencyTracer.Path path, long seenAt) {
+        BlockLatencyTracer.Trace trace = tracer.begin(path, packageName, seenAt);
+        tracer.decided(trace, clock.elapsedRealtime());
+        scheduler.postDelayed(() -> {
+            actions.goHome(packageName);
+            tracer.enforced(trace, clock.elapsedRealtime());
+            actions.onBlocked(packageName);
+        }, delayMs);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.parentalcontrol;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How long a blocked app stays visible, end to end
+ * A trace starts when the app is seen in front (window event, fallback poll or a rule
+ * change that blocks the current app) and records the block decision, the enforcement
+ * action and finally the confirmed switch away from the app as reported to
+ * ForegroundAppTracker. Completed traces go into one latency histogram per path; a trace
+ * that is never confirmed within CONFIRM_TIMEOUT_MS counts as unconfirmed (the app most
+ * likely stayed on screen). All times are elapsedRealtime milliseconds.
+ */
+public class BlockLatencyTracer {
+    private static final String TAG = "BlockLatency";
+
+    public enum Path { ACCESSIBILITY, POLLING, RULE_PUSH }
+
+    // Seen-to-gone target for p95
+    public static final long BUDGET_MS = 1000;
+    static final long CONFIRM_TIMEOUT_MS = 30000;
+    // 50ms steps around the budget, so a p95 bound there is off by at most 50ms
+    private static final long[] BUCKET_BOUNDS_MS = {50, 100, 200, 300, 400, 500, 600, 700, 750, 800, 850, 900,
+            950, 1000, 1050, 1100, 1150, 1200, 1300, 1500, 2000, 3000, 5000, 10000, 30000};
+
+    private static final BlockLatencyTracer instance = new BlockLatencyTracer();
+
+    /**
+     * One attempt to get a blocked app off the screen
+     */
+    public static final class Trace {
+        final Path path;
+        final String packageName;
+        final long seenAt;
+        volatile long decidedAt;
+        volatile long enforcedAt;
+
+        Trace(Path path, String packageName, long seenAt) {
+            this.path = path;
+            this.packageName = packageName;
+            this.seenAt = seenAt;
+        }
+    }
+
+    static final class Histogram {
+        final long[] buckets = new long[BUCKET_BOUNDS_MS.length + 1];
+        long count;
+        long totalMs;
+        long maxMs;
+        long overBudget;
+        long unconfirmed;
+        long decideTotalMs;
+        long enforceTotalMs;
+
+        void record(long latencyMs, long decideMs, long enforceMs) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && latencyMs > BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            count++;
+            totalMs += latencyMs;
+            maxMs = Math.max(maxMs, latencyMs);
+            decideTotalMs += decideMs;
+            enforceTotalMs += enforceMs;
+            if (latencyMs > BUDGET_MS) {
+                overBudget++;
+            }
+        }
+
+        /**
+         * Upper bound of the bucket holding the p-th latency (capped at the observed max)
+         */
+        long percentileMs(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return i < BUCKET_BOUNDS_MS.length ? Math.min(BUCKET_BOUNDS_MS[i], maxMs) : maxMs;
+                }
+            }
+            return maxMs;
+        }
+    }
+
+    // Guarded by this
+    private final Map<Path, Histogram> histograms = new EnumMap<>(Path.class);
+    private final List<Trace> pending = new ArrayList<>();
+
+    public static BlockLatencyTracer getInstance() {
+        return instance;
+    }
+
+    BlockLatencyTracer() {
+        for (Path path : Path.values()) {
+            histograms.put(path, new Histogram());
+        }
+    }
+
+    /**
+     * Start (or join) the trace for a blocked app seen in front
+     * Repeated window events for the same app share the earliest trace.
+     */
+    public synchronized Trace begin(Path path, String packageName, long seenAt) {
+        expire(seenAt);
+        for (Trace trace : pending) {
+            if (trace.packageName.equals(packageName)) {
+                return trace;
+            }
+        }
+        Trace trace = new Trace(path, packageName, seenAt);
+        pending.add(trace);
+        return trace;
+    }
+
+    public void decided(Trace trace) {
+        decided(trace, SystemClock.elapsedRealtime());
+    }
+
+    public void enforced(Trace trace) {
+        enforced(trace, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * The app is no longer in front (another app came up or the screen went off)
+     */
+    public void onLeftForeground(String packageName) {
+        onLeftForeground(packageName, SystemClock.elapsedRealtime());
+    }
+
+    void decided(Trace trace, long at) {
+        if (trace.decidedAt == 0) {
+            trace.decidedAt = at;
+        }
+    }
+
+    void enforced(Trace trace, long at) {
+        if (trace.enforcedAt == 0) {
+            trace.enforcedAt = at;
+        }
+    }
+
+    synchronized void onLeftForeground(String packageName, long at) {
+        Iterator<Trace> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Trace trace = iterator.next();
+            if (!trace.packageName.equals(packageName)) {
+                continue;
+            }
+            iterator.remove();
+            if (trace.enforcedAt == 0) {
+                // Left before we acted; not a block
+                continue;
+            }
+            long latency = at - trace.seenAt;
+            long decidedAt = trace.decidedAt > 0 ? trace.decidedAt : trace.enforcedAt;
+            histograms.get(trace.path).record(latency, decidedAt - trace.seenAt, trace.enforcedAt - decidedAt);
+            if (latency > BUDGET_MS) {
+                Log.w(TAG, "🐢 " + trace.path + " block of " + packageName + " took " + latency + "ms");
+            }
+        }
+    }
+
+    /**
+     * p-th percentile of seen-to-gone latency for a path, in ms
+     */
+    public synchronized long getPercentileMs(Path path, double p) {
+        return histograms.get(path).percentileMs(p);
+    }
+
+    synchronized long getUnconfirmed(Path path) {
+        return histograms.get(path).unconfirmed;
+    }
+
+    /**
+     * Per-path latency table for the diagnostics screen
+     */
+    public synchronized String getSummary() {
+        expire(SystemClock.elapsedRealtime());
+        StringBuilder summary = new StringBuilder();
+        summary.append("p95 budget ").append(BUDGET_MS).append("ms\n");
+        for (Path path : Path.values()) {
+            Histogram histogram = histograms.get(path);
+            summary.append(path).append(": ").append(histogram.count).append(" blocks");
+            if (histogram.count > 0) {
+                summary.append(String.format(", p50 %dms, p95 %dms, max %dms, %d over budget\n" +
+                                "  avg decide %dms, enforce %dms, leave %dms",
+                        histogram.percentileMs(0.5), histogram.percentileMs(0.95), histogram.maxMs,
+                        histogram.overBudget,
+                        histogram.decideTotalMs / histogram.count,
+                        histogram.enforceTotalMs / histogram.count,
+                        (histogram.totalMs - histogram.decideTotalMs - histogram.enforceTotalMs) / histogram.count));
+            }
+            if (histogram.unconfirmed > 0) {
+                summary.append(", ").append(histogram.unconfirmed).append(" never left");
+            }
+            summary.append("\n");
+        }
+        return summary.toString();
+    }
+
+    public synchronized void reset() {
+        pending.clear();
+        for (Path path : Path.values()) {
+            histograms.put(path, new Histogram());
+        }
+    }
+
+    private void expire(long now) {
+        Iterator<Trace> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Trace trace = iterator.next();
+            if (now - trace.seenAt > CONFIRM_TIMEOUT_MS) {
+                iterator.remove();
+                if (trace.enforcedAt > 0) {
+                    histograms.get(trace.path).unconfirmed++;
+                    Log.w(TAG, "❌ " + trace.packageName + " still in front " + CONFIRM_TIMEOUT_MS + "ms after "
+                            + trace.path + " block");
+                }
+            }
+        }
+    }
+}
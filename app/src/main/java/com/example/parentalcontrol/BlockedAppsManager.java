@@ -2,21 +2,14 @@ package com.example.parentalcontrol;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 import android.widget.Toast;
 
-import org.greenrobot.eventbus.EventBus;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import okhttp3.MediaType;
@@ -38,99 +31,25 @@ public class BlockedAppsManager {
     private static final String TEST_PACKAGE_NAME = "com.example.testapp";
     
     /**
-     * Poll the force_sync_blocked_apps endpoint to check for immediate updates
-     * Call this when the app receives a notification that the web interface has updated blocked apps
+     * Fetch the block list from the force_sync_blocked_apps endpoint as soon as possible
+     * Call this when the app receives a notification that the web interface has updated blocked apps.
+     * The fetch runs as a SyncCoordinator task, so it shares a cycle with any sync already due
+     * and is not repeated if one is in flight.
      */
-    @SuppressLint("HardwareIds")
     public static void forceImmediateSync(Context context, String deviceId) {
         Log.d(TAG, "Force immediate sync requested for device: " + deviceId);
-        
-        ImmediateBlockingHandler.forceImmediateCheckAndEnforce(context, new ImmediateBlockingHandler.BlockingStatusCallback() {
-            @Override
-            public void onBlockingStatusUpdated(boolean newBlocksFound) {
-                Log.d(TAG, "Blocking status updated. New blocks found: " + newBlocksFound);
-                if (newBlocksFound) {
-                    // Show notification to user that new blocks have been applied
-                    AlertNotifier.showNotification(
-                        context,
-                        "App Blocking Updated", 
-                        "The list of blocked apps has been updated from the web interface"
-                    );
-                }
-            }
-            
-            @Override
-            public void onError(Exception e) {
-                Log.e(TAG, "Error during immediate sync", e);
-            }
-        });
+        SyncCoordinator.getInstance(context).requestSync(SyncCoordinator.TASK_BLOCKED_APPS);
     }
     
     /**
-     * Start a background thread that polls for app block changes every few seconds
-     * This is a more aggressive approach that can be used when immediate updates are critical
+     * Make sure block changes are being polled
+     * Polling is owned by SyncCoordinator, which picks the interval from battery and network
+     * state; intervalSeconds is no longer used.
      */
     public static void startRealTimeBlockPolling(Context context, int intervalSeconds) {
-        Handler handler = new Handler(Looper.getMainLooper());
-        
-        @SuppressLint("HardwareIds") String deviceId = Settings.Secure.getString(
-            context.getContentResolver(),
-            Settings.Secure.ANDROID_ID
-        );
-        
-        Runnable pollTask = new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    pollForBlockChanges(context, deviceId);
-                } finally {
-                    // Schedule next run regardless of success/failure
-                    handler.postDelayed(this, intervalSeconds * 1000);
-                }
-            }
-        };
-        
-        // Start the polling
-        handler.post(pollTask);
-    }
-    
-    /**
-     * Check if there are any block changes by polling the API
-     */
-    private static void pollForBlockChanges(Context context, String deviceId) {
-        new Thread(() -> {
-            try {
-                String authToken = AppController.getInstance().getAuthToken();
-                if (authToken == null || authToken.isEmpty()) {
-                    Log.d(TAG, "No auth token available for polling");
-                    return;
-                }
-                
-                OkHttpClient client = new OkHttpClient.Builder()
-                    .connectTimeout(5, TimeUnit.SECONDS)
-                    .readTimeout(5, TimeUnit.SECONDS)
-                    .build();
-                
-                Request request = new Request.Builder()
-                    .url(AuthService.BASE_URL + "api/check_block_changes/" + deviceId + "/")
-                    .addHeader("Authorization", "Bearer " + authToken)
-                    .build();
-                
-                Response response = client.newCall(request).execute();
-                if (response.isSuccessful()) {
-                    String responseBody = response.body().string();
-                    JSONObject json = new JSONObject(responseBody);
-                    
-                    boolean hasChanges = json.optBoolean("has_changes", false);
-                    if (hasChanges) {
-                        Log.d(TAG, "Block changes detected! Forcing immediate sync");
-                        forceImmediateSync(context, deviceId);
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error polling for block changes", e);
-            }
-        }).start();
+        SyncCoordinator coordinator = SyncCoordinator.getInstance(context);
+        coordinator.start();
+        coordinator.requestSync(SyncCoordinator.TASK_BLOCKED_APPS);
     }
     
     /**
@@ -162,7 +81,7 @@ public class BlockedAppsManager {
             Settings.Secure.ANDROID_ID
         );
         
-        new Thread(() -> {
+        AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "immediate-blocking-test", () -> {
             AtomicBoolean testPassed = new AtomicBoolean(false);
             String result = "";
             
@@ -170,7 +89,7 @@ public class BlockedAppsManager {
                 // Step 1: Add test app to blocked list via API
                 boolean added = addTestAppToBlockList(context, deviceId);
                 if (!added) {
-                    new Handler(Looper.getMainLooper()).post(() -> 
+                    AppExecutors.runOnMain(() -> 
                         listener.onTestResult(false, "Failed to add test app to block list"));
                     return;
                 }
@@ -201,10 +120,7 @@ public class BlockedAppsManager {
                 }
                 
                 // Step 4: Check if test app is now in the local block list
-                AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(context);
-                List<String> blockedApps = dbHelper.getAllBlockedPackages();
-                
-                testPassed.set(blockedApps.contains(TEST_PACKAGE_NAME));
+                testPassed.set(BlockedAppsStore.getInstance(context).isBlocked(TEST_PACKAGE_NAME));
                 result = testPassed.get() 
                     ? "Test successful! Immediate blocking is working correctly."
                     : "Test failed: Test app was not found in local block list";
@@ -219,9 +135,9 @@ public class BlockedAppsManager {
             
             // Final result
             String finalResult = result;
-            new Handler(Looper.getMainLooper()).post(() -> 
+            AppExecutors.runOnMain(() -> 
                 listener.onTestResult(testPassed.get(), finalResult));
-        }).start();
+        });
     }
     
     /**
@@ -233,10 +149,8 @@ public class BlockedAppsManager {
             return false;
         }
         
-        OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(5, TimeUnit.SECONDS)
-            .readTimeout(5, TimeUnit.SECONDS)
-            .build();
+        OkHttpClient client = AppController.getHttpClient(AppController.HTTP_FAST_TIMEOUT_SECONDS,
+                AppController.HTTP_FAST_TIMEOUT_SECONDS);
         
         JSONObject jsonBody = new JSONObject();
         jsonBody.put("device_id", deviceId);
@@ -251,8 +165,9 @@ public class BlockedAppsManager {
             .post(body)
             .build();
         
-        Response response = client.newCall(request).execute();
-        return response.isSuccessful();
+        try (Response response = client.newCall(request).execute()) {
+            return response.isSuccessful();
+        }
     }
     
     /**
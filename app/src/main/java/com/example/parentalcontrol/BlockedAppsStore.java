@@ -0,0 +1,125 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.greenrobot.eventbus.EventBus;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The process-wide block list
+ * Enforcers check it on every window change, so a read is a lock-free contains() on an
+ * immutable HashSet snapshot behind a volatile reference. The snapshot is loaded from
+ * blocked_apps once; after that, changes (normally from BlockedAppsSync) build a patched
+ * copy, swap it in and publish it with its diff as a BlockedAppsUpdatedEvent, so no
+ * subscriber has to re-query the database.
+ */
+public class BlockedAppsStore {
+    private static final String TAG = "BlockedAppsStore";
+
+    private static BlockedAppsStore instance;
+
+    private final AppUsageDatabaseHelper dbHelper;
+    // Immutable; replaced as a whole, never modified. Null until first loaded.
+    private volatile Set<String> snapshot;
+
+    public static synchronized BlockedAppsStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new BlockedAppsStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BlockedAppsStore(Context context) {
+        this.dbHelper = ServiceLocator.getInstance(context).getDatabaseHelper();
+    }
+
+    /**
+     * O(1), no locking; safe from any thread
+     */
+    public boolean isBlocked(String packageName) {
+        return getSnapshot().contains(packageName);
+    }
+
+    /**
+     * Load the snapshot on the IO pool so the first isBlocked() on the main thread does
+     * not read the database. Services call this when they start, in their own TaskScope.
+     */
+    public void preload(AppExecutors.TaskScope scope) {
+        if (snapshot == null) {
+            scope.execute(AppExecutors.Pool.IO, "blocked-apps-preload", this::getSnapshot);
+        }
+    }
+
+    /**
+     * The current block list; immutable, so callers may keep and iterate it freely
+     */
+    public Set<String> getSnapshot() {
+        Set<String> current = snapshot;
+        return current != null ? current : load();
+    }
+
+    /**
+     * Add and remove packages (already written to blocked_apps by the caller) and publish
+     * what actually changed. Nothing is published when nothing changed.
+     * Events are posted in the order the snapshots were made.
+     */
+    public synchronized BlockedAppsUpdatedEvent apply(Set<String> added, Set<String> removed) {
+        Set<String> current = getSnapshot();
+        Set<String> next = new HashSet<>(current);
+        Set<String> applied = new HashSet<>();
+        Set<String> deleted = new HashSet<>();
+        for (String packageName : removed) {
+            if (next.remove(packageName)) {
+                deleted.add(packageName);
+            }
+        }
+        for (String packageName : added) {
+            if (next.add(packageName)) {
+                applied.add(packageName);
+            }
+        }
+        if (applied.isEmpty() && deleted.isEmpty()) {
+            return new BlockedAppsUpdatedEvent(current, applied, deleted);
+        }
+
+        Set<String> published = Collections.unmodifiableSet(next);
+        snapshot = published;
+        BlockedAppsUpdatedEvent event = new BlockedAppsUpdatedEvent(published, applied, deleted);
+        Log.d(TAG, "📝 Block list now " + published.size() + " apps " + event);
+        EventBus.getDefault().post(event);
+        return event;
+    }
+
+    /**
+     * Re-read blocked_apps after it was changed without going through the store
+     */
+    public BlockedAppsUpdatedEvent reload() {
+        Set<String> stored = dbHelper.getAllBlockedPackages();
+        Set<String> removed;
+        synchronized (this) {
+            removed = new HashSet<>(getSnapshot());
+            removed.removeAll(stored);
+            return apply(stored, removed);
+        }
+    }
+
+    /**
+     * An event for "nothing changed" carrying the current snapshot
+     */
+    public BlockedAppsUpdatedEvent unchanged() {
+        return new BlockedAppsUpdatedEvent(getSnapshot(), Collections.emptySet(), Collections.emptySet());
+    }
+
+    private synchronized Set<String> load() {
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableSet(dbHelper.getAllBlockedPackages());
+            Log.d(TAG, "Loaded " + snapshot.size() + " blocked apps");
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.parentalcontrol;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Versioned block-list sync
+ * Each request carries the ETag of the last applied list (If-None-Match) and its version
+ * (?since=N). An unchanged list costs a 304; otherwise the server answers either with a
+ * delta ({"version", "added", "removed"}) or, when it cannot build one, the full list
+ * ({"version", "blocked_apps"}), which is diffed locally. Either way only the changed rows
+ * are written, and BlockedAppsStore publishes the applied delta as a BlockedAppsUpdatedEvent.
+ */
+public class BlockedAppsSync {
+    private static final String TAG = "BlockedAppsSync";
+
+    private static final String PREFS_NAME = "BlockedAppsSyncPrefs";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_VERSION = "version";
+
+    /**
+     * Blocking call; run it off the main thread
+     * @return the applied delta, empty when nothing changed
+     */
+    public static BlockedAppsUpdatedEvent syncNow(Context context, String deviceId, String authToken)
+            throws IOException, JSONException {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long version = prefs.getLong(KEY_VERSION, 0);
+        String etag = prefs.getString(KEY_ETAG, null);
+
+        HttpUrl.Builder url = HttpUrl.get(AuthService.BASE_URL + "api/get_blocked_apps/" + deviceId + "/").newBuilder();
+        if (version > 0) {
+            url.addQueryParameter("since", Long.toString(version));
+        }
+        Request.Builder request = new Request.Builder()
+                .url(url.build())
+                .addHeader("Authorization", "Bearer " + authToken);
+        if (etag != null) {
+            request.addHeader("If-None-Match", etag);
+        }
+
+        try (Response response = AppController.getHttpClient().newCall(request.build()).execute()) {
+            if (response.code() == 304) {
+                Log.d(TAG, "✅ Blocked apps unchanged (version " + version + ")");
+                return BlockedAppsStore.getInstance(context).unchanged();
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Failed to get blocked apps: " + response.code() + " - " + response.message());
+            }
+            JSONObject json = new JSONObject(response.body().string());
+
+            BlockedAppsUpdatedEvent delta;
+            if (json.has("added") || json.has("removed")) {
+                delta = applyDelta(context, toSet(json.optJSONArray("added")), toSet(json.optJSONArray("removed")));
+            } else {
+                delta = applyFullList(context, toSet(json.getJSONArray("blocked_apps")));
+            }
+            applyAppLimits(context, json.optJSONObject("app_limits"));
+            applyAppPolicies(context, json.optJSONArray("app_policies"), json.optJSONObject("policy_conditions"));
+
+            // Only remember the version once its changes are stored
+            prefs.edit()
+                    .putLong(KEY_VERSION, json.optLong("version", 0))
+                    .putString(KEY_ETAG, response.header("ETag"))
+                    .apply();
+            return delta;
+        }
+    }
+
+    /**
+     * Make blocked_apps match a full list, touching only the rows that differ
+     */
+    public static BlockedAppsUpdatedEvent applyFullList(Context context, Collection<String> packageNames) {
+        Set<String> wanted = new HashSet<>(packageNames);
+        Set<String> current = ServiceLocator.getInstance(context).getDatabaseHelper().getAllBlockedPackages();
+
+        Set<String> added = new HashSet<>(wanted);
+        added.removeAll(current);
+        Set<String> removed = new HashSet<>(current);
+        removed.removeAll(wanted);
+        return applyDelta(context, added, removed);
+    }
+
+    /**
+     * Insert added and delete removed packages in one transaction, then patch
+     * BlockedAppsStore, which publishes what actually changed (nothing for an empty delta)
+     */
+    public static BlockedAppsUpdatedEvent applyDelta(Context context, Set<String> added, Set<String> removed) {
+        SQLiteDatabase db = ServiceLocator.getInstance(context).getDatabaseHelper().getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String packageName : removed) {
+                db.delete("blocked_apps", "package_name = ?", new String[]{packageName});
+            }
+            for (String packageName : added) {
+                ContentValues values = new ContentValues();
+                values.put("package_name", packageName);
+                db.insertWithOnConflict("blocked_apps", null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        BlockedAppsUpdatedEvent event = BlockedAppsStore.getInstance(context).apply(added, removed);
+        if (event.isEmpty()) {
+            Log.d(TAG, "✅ Blocked apps already up to date");
+        }
+        return event;
+    }
+
+    /**
+     * Forget the stored version so the next sync fetches the full list
+     * Call after blocked_apps was changed outside of this class.
+     */
+    public static void resetVersion(Context context) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    // Per-app daily budgets ({"package": minutes}), when the server sends them
+    private static void applyAppLimits(Context context, JSONObject appLimits) throws JSONException {
+        if (appLimits == null) {
+            return;
+        }
+        Map<String, Integer> limits = new HashMap<>();
+        Iterator<String> keys = appLimits.keys();
+        while (keys.hasNext()) {
+            String packageName = keys.next();
+            limits.put(packageName, appLimits.getInt(packageName));
+        }
+        AppLimitEngine.getInstance(context).setAppLimits(limits);
+        Log.d(TAG, "Synced " + limits.size() + " per-app limits");
+    }
+
+    // Scheduled/conditional policies and the parent's condition flags, when the server sends them
+    private static void applyAppPolicies(Context context, JSONArray policies, JSONObject conditions) throws JSONException {
+        AppPolicyEngine engine = AppPolicyEngine.getInstance(context);
+        if (conditions != null) {
+            engine.setConditions(conditions);
+        }
+        if (policies != null) {
+            engine.setPolicies(policies.toString());
+            Log.d(TAG, "Synced " + policies.length() + " app policies");
+        }
+    }
+
+    private static Set<String> toSet(JSONArray array) throws JSONException {
+        Set<String> packageNames = new HashSet<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                packageNames.add(array.getString(i));
+            }
+        }
+        return packageNames;
+    }
+}
@@ -1,9 +1,35 @@
 package com.example.parentalcontrol;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
- * Event that's fired when the blocked apps list is updated from the server
+ * Event that's fired when the blocked apps list changed
+ * Carries the new BlockedAppsStore snapshot and the diff that produced it, so subscribers
+ * neither keep their own copy nor re-query the database.
  */
 public class BlockedAppsUpdatedEvent {
-    // This is a simple event class with no additional data
-    // It's used to notify components that blocked apps have been updated
+    // Immutable block list after the change
+    public final Set<String> snapshot;
+    public final Set<String> added;
+    public final Set<String> removed;
+
+    public BlockedAppsUpdatedEvent(Set<String> snapshot, Set<String> added, Set<String> removed) {
+        this.snapshot = snapshot;
+        this.added = Collections.unmodifiableSet(new HashSet<>(added));
+        this.removed = Collections.unmodifiableSet(new HashSet<>(removed));
+    }
+
+    /**
+     * True when nothing changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added + " -" + removed;
+    }
 }
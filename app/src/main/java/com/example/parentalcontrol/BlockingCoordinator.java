@@ -1,15 +1,12 @@
 package com.example.parentalcontrol;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 import android.widget.Toast;
 
-import org.greenrobot.eventbus.EventBus;
-
 import java.util.List;
+import java.util.Set;
 
 /**
  * Flow coordinator that connects ImmediateSyncService with blocking mechanisms
@@ -20,8 +17,8 @@ public class BlockingCoordinator {
     /**
      * Coordinate the full app blocking flow
      * 1. Fetch blocked apps from server
-     * 2. Save to local database
-     * 3. Notify components via EventBus
+     * 2. Apply the changes to the local database
+     * 3. Notify components via EventBus (with the applied delta)
      * 4. Enforce blocking
      */
     public static void syncAndEnforceBlocking(Context context) {
@@ -34,11 +31,8 @@ public class BlockingCoordinator {
             public void onSyncSuccess(List<String> blockedApps) {
                 Log.d(TAG, "Sync successful, received " + blockedApps.size() + " blocked apps");
                 
-                // Step 2: Save to database
-                saveBlockedAppsToDatabase(context, blockedApps);
-                
-                // Step 3: Notify components
-                notifyBlockedAppsUpdated();
+                // Steps 2 and 3: store only the changed rows and publish the delta
+                BlockedAppsSync.applyFullList(context, blockedApps);
                 
                 // Show success message
                 Toast.makeText(context, 
@@ -59,51 +53,6 @@ public class BlockingCoordinator {
         });
     }
     
-    /**
-     * Save blocked app list to database
-     */
-    private static void saveBlockedAppsToDatabase(Context context, List<String> blockedApps) {
-        Log.d(TAG, "Saving " + blockedApps.size() + " apps to database");
-        
-        AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(context);
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        
-        try {
-            db.beginTransaction();
-            
-            // Clear existing blocked apps
-            db.execSQL("DELETE FROM blocked_apps");
-            Log.d(TAG, "Cleared existing blocked apps");
-            
-            // Insert new blocked apps
-            for (String packageName : blockedApps) {
-                ContentValues values = new ContentValues();
-                values.put("package_name", packageName);
-                db.insert("blocked_apps", null, values);
-                Log.d(TAG, "Added blocked app: " + packageName);
-            }
-            
-            db.setTransactionSuccessful();
-            Log.d(TAG, "Database transaction successful");
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving blocked apps to database", e);
-        } finally {
-            if (db != null) {
-                db.endTransaction();
-                db.close();
-            }
-        }
-    }
-    
-    /**
-     * Notify all components that blocked apps have been updated
-     */
-    private static void notifyBlockedAppsUpdated() {
-        Log.d(TAG, "Broadcasting blocked apps updated event");
-        BlockedAppsUpdatedEvent event = new BlockedAppsUpdatedEvent();
-        EventBus.getDefault().post(event);
-    }
-    
     /**
      * Enforce blocking on currently running apps
      */
@@ -147,8 +96,7 @@ public class BlockingCoordinator {
         }
         
         // Fetch blocked apps to verify data flow
-        AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(context);
-        List<String> blockedApps = dbHelper.getAllBlockedPackages();
+        Set<String> blockedApps = BlockedAppsStore.getInstance(context).getSnapshot();
         
         Toast.makeText(context, 
             "Currently blocking " + blockedApps.size() + " apps", 
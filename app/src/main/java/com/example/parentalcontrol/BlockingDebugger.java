@@ -123,7 +123,7 @@ public class BlockingDebugger {
      */
     @Subscribe
     public void onBlockedAppsUpdated(BlockedAppsUpdatedEvent event) {
-        log("Blocked apps updated event received");
+        log("Blocked apps updated event received: " + event);
     }
     
     /**
@@ -24,6 +24,7 @@ import java.util.List;
 public class BlockingDiagnosticsFragment extends Fragment {
 
     private TextView logsTextView;
+    private TextView latencyTextView;
     private Button testButton;
     private Button forceSyncButton;
     private Button toggleDebugButton;
@@ -48,6 +49,7 @@ public class BlockingDiagnosticsFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
         
         logsTextView = view.findViewById(R.id.tv_debug_logs);
+        latencyTextView = view.findViewById(R.id.tv_block_latency);
         testButton = view.findViewById(R.id.btn_test_immediate_blocking);
         forceSyncButton = view.findViewById(R.id.btn_force_sync);
         toggleDebugButton = view.findViewById(R.id.btn_toggle_debug);
@@ -115,6 +117,7 @@ public class BlockingDiagnosticsFragment extends Fragment {
     
     private void clearLogs() {
         BlockingDebugger.clearLogs();
+        BlockLatencyTracer.getInstance().reset();
         updateLogs();
     }
     
@@ -135,6 +138,9 @@ public class BlockingDiagnosticsFragment extends Fragment {
     }
     
     private void updateLogs() {
+        if (latencyTextView != null) {
+            latencyTextView.setText(BlockLatencyTracer.getInstance().getSummary());
+        }
         if (logsTextView != null) {
             StringBuilder sb = new StringBuilder();
             List<BlockingDebugger.LogEntry> logs = BlockingDebugger.getLogEntries();
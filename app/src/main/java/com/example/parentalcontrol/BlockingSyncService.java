@@ -1,87 +1,44 @@
 package com.example.parentalcontrol;
 
-import android.annotation.SuppressLint;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.os.BatteryManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
-import android.provider.Settings;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
 /**
- * Background service that watches for web blocking updates
- * and triggers immediate enforcement
+ * Foreground service that keeps block-list sync and the other services running
+ * The block list itself is polled by SyncCoordinator on its shared cadence.
  */
 public class BlockingSyncService extends Service {
     private static final String TAG = "BlockingSyncService";
     private static final String CHANNEL_ID = "blocking_sync_channel";
     private static final int NOTIFICATION_ID = 3001;
     
-    // Different poll intervals based on battery level - Updated for 10 second interval
-    private static final int POLL_INTERVAL_NORMAL = 10000;   // 10 seconds (as requested)
-    private static final int POLL_INTERVAL_LOW_BATTERY = 20000;  // 20 seconds
-    private static final int POLL_INTERVAL_CRITICAL = 30000; // 30 seconds
-    
     // Service watchdog intervals
     private static final int WATCHDOG_INTERVAL = 60000; // 1 minute
     
-    private Handler handler;
     private Handler watchdogHandler;
-    private boolean isRunning = false;
-    private int currentPollInterval = POLL_INTERVAL_NORMAL;
-    private boolean isLowPowerMode = false;
-    
-    // Battery level monitoring
-    private BroadcastReceiver batteryReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
-                int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
-                int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
-                int batteryPct = level * 100 / scale;
-                
-                adjustPollingInterval(batteryPct);
-            } else if (Intent.ACTION_BATTERY_LOW.equals(intent.getAction())) {
-                isLowPowerMode = true;
-                currentPollInterval = POLL_INTERVAL_LOW_BATTERY;
-                Log.d(TAG, "Battery low, reducing polling frequency to " + currentPollInterval + "ms");
-            } else if (Intent.ACTION_BATTERY_OKAY.equals(intent.getAction())) {
-                isLowPowerMode = false;
-                currentPollInterval = POLL_INTERVAL_NORMAL;
-                Log.d(TAG, "Battery okay, resuming normal polling frequency: " + currentPollInterval + "ms");
-            }
-        }
-    };
+    private final AppExecutors.TaskScope tasks = new AppExecutors.TaskScope("BlockingSyncService");
     
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "BlockingSyncService created");
-        handler = new Handler();
         watchdogHandler = new Handler();
         
         createNotificationChannel();
         startForeground(NOTIFICATION_ID, createForegroundNotification());
         
-        // Register battery level receiver
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intent.ACTION_BATTERY_CHANGED);
-        filter.addAction(Intent.ACTION_BATTERY_LOW);
-        filter.addAction(Intent.ACTION_BATTERY_OKAY);
-        registerReceiver(batteryReceiver, filter);
-        
         // Start service watchdog
         startServiceWatchdog();
     }
@@ -89,11 +46,7 @@ public class BlockingSyncService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "BlockingSyncService started");
-        
-        if (!isRunning) {
-            isRunning = true;
-            startPolling();
-        }
+        SyncCoordinator.getInstance(this).start();
         
         // If killed, restart
         return START_STICKY;
@@ -108,10 +61,8 @@ public class BlockingSyncService extends Service {
     @Override
     public void onDestroy() {
         Log.d(TAG, "BlockingSyncService destroyed - attempting restart");
-        isRunning = false;
-        handler.removeCallbacksAndMessages(null);
         watchdogHandler.removeCallbacksAndMessages(null);
-        unregisterReceiver(batteryReceiver);
+        tasks.cancelAll();
         
         // Restart service immediately
         restartService();
@@ -134,7 +85,8 @@ public class BlockingSyncService extends Service {
             @Override
             public void run() {
                 Log.d(TAG, "Service watchdog check - ensuring all services are running");
-                ensureAllServicesRunning();
+                // Six binder calls into the system server; keep them off the main thread
+                tasks.execute(AppExecutors.Pool.IO, "service-watchdog", () -> ensureAllServicesRunning());
                 watchdogHandler.postDelayed(this, WATCHDOG_INTERVAL);
             }
         };
@@ -147,62 +99,6 @@ public class BlockingSyncService extends Service {
         serviceManager.ensureServicesRunning();
     }
     
-    private void adjustPollingInterval(int batteryPercent) {
-        int newInterval;
-        
-        if (batteryPercent <= 15) {
-            // Critical battery
-            newInterval = POLL_INTERVAL_CRITICAL;
-        } else if (batteryPercent <= 30) {
-            // Low battery
-            newInterval = POLL_INTERVAL_LOW_BATTERY;
-        } else {
-            // Normal battery
-            newInterval = POLL_INTERVAL_NORMAL;
-        }
-        
-        // Only log if interval changed
-        if (currentPollInterval != newInterval) {
-            Log.d(TAG, "Adjusting polling interval based on battery level (" + 
-                  batteryPercent + "%): " + newInterval + "ms");
-            currentPollInterval = newInterval;
-        }
-    }
-    
-    private void startPolling() {
-        @SuppressLint("HardwareIds")
-        final String deviceId = Settings.Secure.getString(
-                getContentResolver(),
-                Settings.Secure.ANDROID_ID);
-        
-        Runnable pollTask = new Runnable() {
-            @Override
-            public void run() {
-                if (isRunning) {
-                    checkForBlockingUpdates(deviceId);
-                    handler.postDelayed(this, currentPollInterval);
-                }
-            }
-        };
-        
-        handler.post(pollTask);
-    }
-    
-    private void checkForBlockingUpdates(String deviceId) {
-        // Direct sync instead of using WorkManager to achieve 10-second polling
-        Log.d(TAG, "Checking for blocking updates every 10 seconds...");
-        
-        // Use the existing BlockedAppsManager to force immediate sync
-        // This will call the force_sync_blocked_apps endpoint and update local database
-        new Thread(() -> {
-            try {
-                BlockedAppsManager.forceImmediateSync(this, deviceId);
-            } catch (Exception e) {
-                Log.e(TAG, "Error during immediate sync in service", e);
-            }
-        }).start();
-    }
-    
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             String name = "App Blocking Sync";
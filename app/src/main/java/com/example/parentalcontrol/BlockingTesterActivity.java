@@ -28,8 +28,8 @@ import org.greenrobot.eventbus.ThreadMode;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 public class BlockingTesterActivity extends AppCompatActivity {
     private static final String TAG = "BlockingTester";
@@ -37,6 +37,7 @@ public class BlockingTesterActivity extends AppCompatActivity {
     private TextView statusTextView;
     private Handler handler = new Handler();
     private StringBuilder logBuffer = new StringBuilder();
+    private final AppExecutors.TaskScope tasks = new AppExecutors.TaskScope("BlockingTester");
     
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -72,6 +73,7 @@ public class BlockingTesterActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         EventBus.getDefault().unregister(this);
+        tasks.cancelAll();
         super.onDestroy();
     }
     
@@ -96,9 +98,8 @@ public class BlockingTesterActivity extends AppCompatActivity {
         log("App Blocker Service: " + (appBlockerRunning ? "RUNNING ✓" : "NOT RUNNING ✗"));
         
         // Check blocked apps in database
-        AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(this);
-        List<String> blockedApps = dbHelper.getAllBlockedPackages();
-        log("Blocked Apps in Database: " + blockedApps.size());
+        Set<String> blockedApps = BlockedAppsStore.getInstance(this).getSnapshot();
+        log("Blocked Apps: " + blockedApps.size());
         
         for (String app : blockedApps) {
             log("- " + getAppNameForPackage(app) + " (" + app + ")");
@@ -122,27 +123,26 @@ public class BlockingTesterActivity extends AppCompatActivity {
         }
         
         // Test the flow
-        new Thread(() -> {
+        tasks.execute(AppExecutors.Pool.IO, "test-blocking-flow", () -> {
             try {
                 // Step 1: Clear local database
                 log("Step 1: Clearing local blocked apps...");
-                AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(this);
+                AppUsageDatabaseHelper dbHelper = ServiceLocator.getInstance(this).getDatabaseHelper();
                 SQLiteDatabase db = dbHelper.getWritableDatabase();
                 db.execSQL("DELETE FROM blocked_apps");
-                db.close();
+                // The local list no longer matches the synced version
+                BlockedAppsSync.resetVersion(this);
                 
                 // Step 2: Add a test app
                 log("Step 2: Adding test app to database...");
                 String testPackage = "com.instagram.android"; // Using Instagram as test
                 ContentValues values = new ContentValues();
                 values.put("package_name", testPackage);
-                db = dbHelper.getWritableDatabase();
                 db.insert("blocked_apps", null, values);
-                db.close();
                 
                 // Step 3: Send notification
                 log("Step 3: Broadcasting blocked apps updated event...");
-                EventBus.getDefault().post(new BlockedAppsUpdatedEvent());
+                BlockedAppsStore.getInstance(this).reload();
                 
                 // Step 4: Check if notification was received
                 log("Step 4: Checking if notification was received...");
@@ -163,7 +163,7 @@ public class BlockingTesterActivity extends AppCompatActivity {
             } catch (Exception e) {
                 log("ERROR: " + e.getMessage());
             }
-        }).start();
+        });
     }
     
     private void openAccessibilitySettings() {
@@ -214,11 +214,6 @@ public class BlockingTesterActivity extends AppCompatActivity {
         log("✓ Received BlockedAppsUpdatedEvent");
     }
     
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onNewBlockedApp(NewBlockedAppEvent event) {
-        log("✓ Received NewBlockedAppEvent for " + event.packageName);
-    }
-    
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onBlockedApp(BlockedAppEvent event) {
         log("✓ Received BlockedAppEvent for " + event.packageName);
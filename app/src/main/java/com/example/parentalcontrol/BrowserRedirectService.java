@@ -1,6 +1,5 @@
 package com.example.parentalcontrol;
 
-import android.app.ActivityManager;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
@@ -9,7 +8,6 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.util.Log;
 
-import java.util.List;
 
 /**
  * Service that provides immediate browser redirect as backup mechanism
@@ -64,76 +62,21 @@ public class BrowserRedirectService extends Service {
     }
     
     /**
-     * Check if a browser app is currently in the foreground using multiple detection methods
+     * Check if a browser app is currently in the foreground (shared tracker, O(1))
      */
     private boolean isBrowserActive() {
-        // Use multiple detection methods and be more permissive
-        boolean method1 = isBrowserActiveViaRunningTasks();
-        boolean method2 = isBrowserActiveViaRunningProcesses();
-        boolean method3 = shouldAllowFallbackRedirect(); // Fallback when detection is uncertain
+        ForegroundAppTracker.Snapshot foreground = ForegroundAppTracker.getInstance().getSnapshot();
+        // Only fall back to the browsing-hours heuristic when the foreground app is unknown
+        boolean fallback = foreground.packageName == null && shouldAllowFallbackRedirect();
         
-        boolean result = method1 || method2 || method3;
+        boolean result = foreground.isBrowser || fallback;
         
-        Log.d(TAG, String.format("[isBrowserActive] Methods - Tasks: %s, Processes: %s, Fallback: %s → Result: %s", 
-                method1, method2, method3, result));
+        Log.d(TAG, String.format("[isBrowserActive] Foreground: %s, Fallback: %s → Result: %s", 
+                foreground.packageName, fallback, result));
         
         return result;
     }
     
-    /**
-     * Legacy method using getRunningTasks
-     */
-    private boolean isBrowserActiveViaRunningTasks() {
-        try {
-            ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
-            if (activityManager == null) return false;
-            
-            List<ActivityManager.RunningTaskInfo> runningTasks = activityManager.getRunningTasks(1);
-            if (runningTasks.isEmpty()) return false;
-            
-            String topActivity = runningTasks.get(0).topActivity.getPackageName();
-            boolean isBrowser = isBrowserPackage(topActivity);
-            
-            Log.d(TAG, "[isBrowserActiveViaRunningTasks] Top app: " + topActivity + ", is browser: " + isBrowser);
-            return isBrowser;
-            
-        } catch (Exception e) {
-            Log.w(TAG, "[isBrowserActiveViaRunningTasks] Error", e);
-            return false;
-        }
-    }
-    
-    /**
-     * Check running processes for browser applications
-     */
-    private boolean isBrowserActiveViaRunningProcesses() {
-        try {
-            ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
-            if (activityManager == null) return false;
-            
-            List<ActivityManager.RunningAppProcessInfo> runningProcesses = activityManager.getRunningAppProcesses();
-            if (runningProcesses == null) return false;
-            
-            for (ActivityManager.RunningAppProcessInfo processInfo : runningProcesses) {
-                if (processInfo.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND ||
-                    processInfo.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
-                    
-                    for (String processName : processInfo.pkgList) {
-                        if (isBrowserPackage(processName)) {
-                            Log.d(TAG, "[isBrowserActiveViaRunningProcesses] Found active browser process: " + processName);
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
-            
-        } catch (Exception e) {
-            Log.w(TAG, "[isBrowserActiveViaRunningProcesses] Error", e);
-            return false;
-        }
-    }
-    
     /**
      * Fallback when browser detection is uncertain - be more permissive during likely browsing times
      */
@@ -148,34 +91,6 @@ public class BrowserRedirectService extends Service {
         return isDuringBrowsingHours;
     }
     
-    /**
-     * Check if a package name corresponds to a browser application
-     */
-    private boolean isBrowserPackage(String packageName) {
-        if (packageName == null) return false;
-        
-        String lowerPackage = packageName.toLowerCase();
-        
-        return lowerPackage.contains("chrome") ||
-               lowerPackage.contains("firefox") ||
-               lowerPackage.contains("browser") ||
-               lowerPackage.contains("opera") ||
-               lowerPackage.contains("edge") ||
-               lowerPackage.contains("samsung") ||
-               lowerPackage.contains("webview") ||
-               lowerPackage.contains("brave") ||
-               lowerPackage.contains("vivaldi") ||
-               lowerPackage.contains("dolphin") ||
-               lowerPackage.contains("uc.browser") ||
-               lowerPackage.contains("duckduckgo") ||
-               lowerPackage.equals("com.android.browser") ||
-               lowerPackage.equals("com.google.android.apps.chrome") ||
-               lowerPackage.equals("org.mozilla.firefox") ||
-               lowerPackage.equals("com.opera.browser") ||
-               lowerPackage.equals("com.microsoft.emmx") ||
-               lowerPackage.equals("com.sec.android.app.sbrowser");
-    }
-
     /**
      * Perform the actual browser redirect
      */
@@ -0,0 +1,202 @@
+package com.example.parentalcontrol;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Per-endpoint retry pacing shared by every background API caller
+ * After a failure the endpoint backs off exponentially with full jitter (a random delay
+ * between 0 and the current cap), so devices that failed together do not retry together.
+ * Independently, outcomes of the last minute are kept per endpoint; when at least half of
+ * them failed the circuit opens and nothing is sent for a cool-down that grows with each
+ * consecutive trip. After the cool-down a single probe request decides whether it closes.
+ */
+public class CircuitBreaker {
+    private static final String TAG = "CircuitBreaker";
+
+    private static final long BASE_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 10 * 60000;
+    private static final long WINDOW_MS = 60000;
+    private static final int WINDOW_MAX_SAMPLES = 100;
+    private static final int MIN_SAMPLES_TO_TRIP = 5;
+    private static final double TRIP_ERROR_RATE = 0.5;
+    private static final long BASE_OPEN_MS = 30000;
+    private static final long MAX_OPEN_MS = 10 * 60000;
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final class Endpoint {
+        // Outcome times of the last WINDOW_MS; negative = failure
+        final ArrayDeque<Long> window = new ArrayDeque<>();
+        State state = State.CLOSED;
+        int consecutiveFailures;
+        int consecutiveTrips;
+        long retryAt;
+        boolean probeInFlight;
+    }
+
+    /**
+     * Thrown instead of sending a request the breaker refused; the work is deferred, not
+     * failed, so callers pacing themselves on failures must not count it as one
+     */
+    public static class BackingOffException extends IOException {
+        public BackingOffException(String what, long delayMs) {
+            super(what + " backing off for " + delayMs + "ms");
+        }
+    }
+
+    private static CircuitBreaker instance;
+
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final Random random = new Random();
+
+    public static synchronized CircuitBreaker getInstance() {
+        if (instance == null) {
+            instance = new CircuitBreaker();
+        }
+        return instance;
+    }
+
+    /**
+     * Whether a request to this endpoint may go out now. In the half-open state only one
+     * caller gets a yes until its outcome is recorded.
+     */
+    public synchronized boolean tryAcquire(String endpoint) {
+        Endpoint state = get(endpoint);
+        long now = SystemClock.elapsedRealtime();
+        if (now < state.retryAt) {
+            return false;
+        }
+        if (state.state == State.OPEN) {
+            state.state = State.HALF_OPEN;
+            state.probeInFlight = false;
+            Log.d(TAG, endpoint + " half-open - sending probe");
+        }
+        if (state.state == State.HALF_OPEN) {
+            if (state.probeInFlight) {
+                return false;
+            }
+            state.probeInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * Give back a permit from tryAcquire without an outcome (the caller deferred the
+     * request), so a half-open endpoint can still send its probe
+     */
+    public synchronized void release(String endpoint) {
+        get(endpoint).probeInFlight = false;
+    }
+
+    /**
+     * Milliseconds until tryAcquire can succeed again (0 = now)
+     */
+    public synchronized long getDelayMs(String endpoint) {
+        return Math.max(0, get(endpoint).retryAt - SystemClock.elapsedRealtime());
+    }
+
+    public synchronized void recordSuccess(String endpoint) {
+        Endpoint state = get(endpoint);
+        record(state, SystemClock.elapsedRealtime(), true);
+        if (state.state != State.CLOSED) {
+            Log.d(TAG, "✅ " + endpoint + " recovered - circuit closed");
+        }
+        state.state = State.CLOSED;
+        state.consecutiveFailures = 0;
+        state.consecutiveTrips = 0;
+        state.probeInFlight = false;
+        state.retryAt = 0;
+    }
+
+    /**
+     * @param retryAfterMs server-requested delay (Retry-After), or 0
+     */
+    public synchronized void recordFailure(String endpoint, long retryAfterMs) {
+        Endpoint state = get(endpoint);
+        long now = SystemClock.elapsedRealtime();
+        record(state, now, false);
+        state.consecutiveFailures++;
+        state.probeInFlight = false;
+
+        long delay;
+        if (state.state == State.HALF_OPEN || shouldTrip(state)) {
+            // Failed probe or too many errors in the window: (re)open with a longer cool-down
+            long openMs = Math.min(MAX_OPEN_MS, BASE_OPEN_MS << Math.min(state.consecutiveTrips, 10));
+            state.consecutiveTrips++;
+            state.state = State.OPEN;
+            // Equal jitter: never shorter than half the cool-down
+            delay = openMs / 2 + (long) (random.nextDouble() * (openMs / 2));
+            Log.w(TAG, "🔌 " + endpoint + " circuit open for " + delay + "ms (trip " + state.consecutiveTrips + ")");
+        } else {
+            long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(state.consecutiveFailures - 1, 10));
+            delay = (long) (random.nextDouble() * cap);
+        }
+        state.retryAt = now + Math.max(delay, retryAfterMs);
+    }
+
+    public void recordFailure(String endpoint) {
+        recordFailure(endpoint, 0);
+    }
+
+    /**
+     * Status codes worth retrying; other 4xx mean the request itself is wrong
+     */
+    public static boolean isRetryable(int code) {
+        return code >= 500 || code == 408 || code == 429;
+    }
+
+    /**
+     * One line per endpoint that is not healthy, for diagnostics
+     */
+    public synchronized String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        long now = SystemClock.elapsedRealtime();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Endpoint state = entry.getValue();
+            if (state.state == State.CLOSED && state.consecutiveFailures == 0) {
+                continue;
+            }
+            summary.append("  ").append(entry.getKey()).append(": ").append(state.state)
+                    .append(", ").append(state.consecutiveFailures).append(" failures, retry in ")
+                    .append(Math.max(0, state.retryAt - now) / 1000).append("s\n");
+        }
+        return summary.length() == 0 ? "All endpoints healthy\n" : summary.toString();
+    }
+
+    private Endpoint get(String endpoint) {
+        Endpoint state = endpoints.get(endpoint);
+        if (state == null) {
+            state = new Endpoint();
+            endpoints.put(endpoint, state);
+        }
+        return state;
+    }
+
+    private static void record(Endpoint state, long now, boolean success) {
+        state.window.addLast(success ? now : -now);
+        while (!state.window.isEmpty()
+                && (state.window.size() > WINDOW_MAX_SAMPLES || now - Math.abs(state.window.peekFirst()) > WINDOW_MS)) {
+            state.window.removeFirst();
+        }
+    }
+
+    private static boolean shouldTrip(Endpoint state) {
+        if (state.window.size() < MIN_SAMPLES_TO_TRIP) {
+            return false;
+        }
+        int failures = 0;
+        for (long outcome : state.window) {
+            if (outcome < 0) {
+                failures++;
+            }
+        }
+        return failures >= state.window.size() * TRIP_ERROR_RATE;
+    }
+}
@@ -8,11 +8,16 @@ import java.util.Arrays;
 import java.util.List;
 
 public class ContentFilter {
-    private static final List<String> BLOCKED_APPS = Arrays.asList("com.instagram.android", "com.tiktok");
     private static final List<String> BLOCKED_URLS = Arrays.asList("pornhub", "xxx");
 
-    public static boolean isAppAllowed(String packageName) {
-        return !BLOCKED_APPS.contains(packageName);
+    /**
+     * Same decision the blocking services make: the synced block list, daily budgets and
+     * scheduled policies at this minute
+     */
+    public static boolean isAppAllowed(Context context, String packageName) {
+        return !BlockedAppsStore.getInstance(context).isBlocked(packageName)
+                && !AppLimitEngine.getInstance(context).isLimitReached(packageName)
+                && !AppPolicyEngine.getInstance(context).isBlocked(packageName);
     }
 
     public static WebViewClient getFilteredWebClient() {
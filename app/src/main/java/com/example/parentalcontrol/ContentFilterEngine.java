@@ -4,12 +4,16 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Engine that analyzes network packets to detect and block inappropriate content
@@ -29,8 +33,13 @@ public class ContentFilterEngine {
     private final Set<String> blockedDomains;
     private final Set<String> blockedKeywords;
     
-    // Machine Learning classifier for adult content detection
-    private final MLUrlClassifier mlClassifier;
+    // Machine Learning classifier for adult content detection (hot-swappable via registry)
+    private final MLModelRegistry modelRegistry;
+    
+    // ML verdicts per domain, valid only for the model version that produced them
+    private static final int MAX_ML_VERDICT_CACHE_SIZE = 2000;
+    private final Map<String, Boolean> mlVerdictCache = new ConcurrentHashMap<>();
+    private volatile int mlVerdictCacheModelVersion = -1;
     
     // Adult content domains
     private static final String[] ADULT_DOMAINS = {
@@ -161,6 +170,13 @@ public class ContentFilterEngine {
     };
     private final Set<String> whitelistedDomains = new HashSet<>(Arrays.asList(WHITELISTED_SUBDOMAINS));
     
+    // Held in a field: SharedPreferences only keeps weak references to listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener configListener = (sharedPrefs, key) -> {
+        if (KEY_BLOCK_ADULT_CONTENT.equals(key) || KEY_BLOCK_SOCIAL_MEDIA.equals(key) || KEY_BLOCK_GAMING.equals(key)) {
+            reinitializeBlockLists();
+        }
+    };
+    
     public ContentFilterEngine(Context context) {
         this.context = context;
         this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
@@ -168,12 +184,13 @@ public class ContentFilterEngine {
         this.blockedKeywords = new HashSet<>();
         
         // Initialize ML classifier for adult content detection
-        this.mlClassifier = new MLUrlClassifier(context);
+        this.modelRegistry = MLModelRegistry.getInstance(context);
         
         initializeBlockLists();
+        prefs.registerOnSharedPreferenceChangeListener(configListener);
         
         Log.i(TAG, "ContentFilterEngine initialized with ML-based adult content detection");
-        Log.d(TAG, mlClassifier.getModelStats());
+        Log.d(TAG, getMLStats());
     }
     
     private void initializeBlockLists() {
@@ -220,6 +237,30 @@ public class ContentFilterEngine {
         reinitializeBlockLists();
     }
     
+    /**
+     * Apply a filter_config change pushed by the server, e.g. {"block_gaming": true}
+     * Keys missing from the payload keep their current value; running engines reload
+     * through their preference listener.
+     */
+    public static void applyRemoteConfig(Context context, String json) {
+        if (json == null || json.trim().isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject config = new JSONObject(json);
+            SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+            for (String key : new String[]{KEY_BLOCK_ADULT_CONTENT, KEY_BLOCK_SOCIAL_MEDIA, KEY_BLOCK_GAMING}) {
+                if (config.has(key)) {
+                    editor.putBoolean(key, config.getBoolean(key));
+                }
+            }
+            editor.apply();
+            Log.d(TAG, "🔄 Applied remote filter config: " + json);
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid remote filter config: " + json, e);
+        }
+    }
+    
     public boolean isBlockingAdultContent() {
         return prefs.getBoolean(KEY_BLOCK_ADULT_CONTENT, true);
     }
@@ -481,10 +522,8 @@ public class ContentFilterEngine {
         
         // 🤖 ML-BASED ADULT CONTENT DETECTION (replaces hardcoded adult domains)
         if (prefs.getBoolean(KEY_BLOCK_ADULT_CONTENT, true)) {
-            if (mlClassifier.isAdultContent(domain)) {
-                double confidence = mlClassifier.getAdultContentConfidence(domain);
-                Log.d(TAG, "ML blocked adult content: " + domain + " (confidence: " + 
-                      String.format("%.4f", confidence) + ")");
+            if (isAdultByModel(domain)) {
+                Log.d(TAG, "ML blocked adult content: " + domain);
                 return true;
             }
         }
@@ -516,6 +555,36 @@ public class ContentFilterEngine {
         return false;
     }
     
+    /**
+     * ML verdict for a domain, cached until the registry swaps in a new model version
+     */
+    private boolean isAdultByModel(String domain) {
+        // Read the live model once so this decision is made entirely on one version
+        MLUrlClassifier classifier = modelRegistry.getClassifier();
+        int modelVersion = classifier.getModelVersion();
+        
+        if (modelVersion != mlVerdictCacheModelVersion) {
+            mlVerdictCache.clear();
+            mlVerdictCacheModelVersion = modelVersion;
+            Log.d(TAG, "ML verdict cache invalidated for model version " + modelVersion);
+        }
+        
+        Boolean cached = mlVerdictCache.get(domain);
+        if (cached != null) {
+            return cached;
+        }
+        
+        boolean isAdult = classifier.isAdultContent(domain);
+        if (mlVerdictCache.size() >= MAX_ML_VERDICT_CACHE_SIZE) {
+            mlVerdictCache.clear();
+        }
+        // Don't cache a stale verdict if a newer model went live meanwhile
+        if (modelVersion == mlVerdictCacheModelVersion) {
+            mlVerdictCache.put(domain, isAdult);
+        }
+        return isAdult;
+    }
+    
     private String extractStringFromPayload(byte[] data, int offset, int length) {
         try {
             // Only extract printable ASCII characters to avoid binary data
@@ -712,6 +781,7 @@ public class ContentFilterEngine {
     public boolean testMLClassification(String url) {
         Log.d(TAG, "=== Testing ML Classification for: " + url + " ===");
         
+        MLUrlClassifier mlClassifier = modelRegistry.getClassifier();
         boolean isAdult = mlClassifier.isAdultContent(url);
         double confidence = mlClassifier.getAdultContentConfidence(url);
         boolean isModelReady = mlClassifier.isModelReady();
@@ -731,7 +801,7 @@ public class ContentFilterEngine {
      * Get ML classifier statistics
      */
     public String getMLStats() {
-        return mlClassifier.getModelStats();
+        return modelRegistry.getClassifier().getModelStats();
     }
     
     /**
@@ -741,6 +811,7 @@ public class ContentFilterEngine {
         Log.d(TAG, "=== ML Batch Testing ===");
         Log.d(TAG, "Model Status: " + getMLStats());
         
+        MLUrlClassifier mlClassifier = modelRegistry.getClassifier();
         for (String url : testUrls) {
             boolean wouldBlock = shouldBlockDomain(url);
             boolean mlResult = mlClassifier.isAdultContent(url);
@@ -769,7 +840,7 @@ public class ContentFilterEngine {
             "- Social Media Blocking: %s\n" +
             "- Gaming Blocking: %s\n" +
             "- Whitelisted Domains: %d",
-            mlClassifier.isModelReady() ? "Ready" : "Fallback",
+            modelRegistry.getClassifier().isModelReady() ? "Ready" : "Fallback",
             blockedDomains.size(),
             blockedKeywords.size(),
             prefs.getBoolean(KEY_BLOCK_ADULT_CONTENT, true) ? "ML-based" : "Disabled",
@@ -0,0 +1,125 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import java.util.Calendar;
+
+/**
+ * Process-wide running total of today's app usage
+ * Read from the usage_daily rollup once when the process starts, then kept current by every
+ * session write, so screen time reads are O(1) instead of a table scan per tick.
+ */
+public class DailyUsageAggregator {
+    private static final String TAG = "DailyUsageAggregator";
+
+    private static DailyUsageAggregator instance;
+
+    private final AppUsageDatabaseHelper dbHelper;
+
+    // Guarded by this
+    private long dayStart;
+    private long nextDayStart;
+    private long todayUsageMs;
+    private long lastUsageEndMs;
+
+    public static synchronized DailyUsageAggregator getInstance(Context context) {
+        if (instance == null) {
+            instance = new DailyUsageAggregator(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DailyUsageAggregator(Context context) {
+        this.dbHelper = ServiceLocator.getInstance(context).getDatabaseHelper();
+        // Replays any journaled sessions from a previous process into app_usage first
+        UsageSessionJournal.getInstance(context);
+        rebuildFromDatabase();
+    }
+
+    /**
+     * Add a session that was just written to app_usage
+     * Only the part that falls inside today counts towards the total.
+     */
+    public synchronized void recordSession(long startTime, long endTime) {
+        rollOverIfNeeded(System.currentTimeMillis());
+        lastUsageEndMs = Math.max(lastUsageEndMs, endTime);
+
+        long sessionStart = Math.max(startTime, dayStart);
+        long sessionEnd = Math.min(endTime, nextDayStart);
+        if (sessionEnd > sessionStart) {
+            todayUsageMs += sessionEnd - sessionStart;
+        }
+    }
+
+    /**
+     * Today's usage in milliseconds (memory read, no database access)
+     */
+    public synchronized long getTodayUsageMs() {
+        rollOverIfNeeded(System.currentTimeMillis());
+        return todayUsageMs;
+    }
+
+    /**
+     * End of the latest usage recorded so far (including the open session)
+     */
+    public synchronized long getLastUsageEndMs() {
+        return lastUsageEndMs;
+    }
+
+    /**
+     * Re-read today's total from the usage_daily rollup
+     * Used at startup and after today's rows are deleted or rewritten in bulk.
+     */
+    public synchronized void rebuildFromDatabase() {
+        long currentTime = System.currentTimeMillis();
+        dayStart = getStartOfDay(currentTime);
+        nextDayStart = getStartOfNextDay(dayStart);
+
+        long totalUsageMs = 0;
+        try {
+            totalUsageMs = dbHelper.getDayUsageMs(dayStart);
+            try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                    "SELECT MAX(end_time) FROM app_usage", null)) {
+                if (cursor.moveToFirst()) {
+                    lastUsageEndMs = Math.max(lastUsageEndMs, cursor.getLong(0));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error rebuilding today's usage", e);
+        }
+
+        todayUsageMs = totalUsageMs;
+        Log.d(TAG, "Rebuilt today's usage: " + totalUsageMs + " ms");
+    }
+
+    private void rollOverIfNeeded(long now) {
+        if (now < dayStart) {
+            // Clock moved backwards past midnight - the stored rows are the only truth
+            rebuildFromDatabase();
+        } else if (now >= nextDayStart) {
+            dayStart = getStartOfDay(now);
+            nextDayStart = getStartOfNextDay(dayStart);
+            todayUsageMs = 0;
+            Log.d(TAG, "Day rollover - usage total reset");
+        }
+    }
+
+    private static long getStartOfDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long getStartOfNextDay(long dayStart) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(dayStart);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+}
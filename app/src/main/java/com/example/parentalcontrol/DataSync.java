@@ -1,7 +1,10 @@
 package com.example.parentalcontrol;
 
 import okhttp3.*;
-import org.json.JSONArray;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
 import org.json.JSONObject;
 
 import android.annotation.SuppressLint;
@@ -9,99 +12,288 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.os.Handler;
-import android.os.Looper;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.Settings;
-import android.text.TextUtils;
 import android.util.Log;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Uploads unsynced app_usage rows in bounded chunks
+ * Rows are streamed from a cursor straight into the request body as gzip-compressed
+ * NDJSON (one usage entry per line), so memory stays flat however long the device was
+ * offline. Each acknowledged chunk marks its rows synced and advances the stream's
+ * high-water mark in one transaction; an interrupted upload resumes after the last
+ * acknowledged row. Once a pass reaches the end the mark goes back to 0, so sessions that
+ * were extended after being uploaded (sync_status reset to 0) are picked up next time.
+ * Every entry carries its local row id as session_id, which the server upserts on (per
+ * device): a re-sent chunk whose ack was lost, or a session sent again with a later end
+ * time, replaces the stored entry instead of adding a second one.
+ */
 public class DataSync {
     private static final String TAG = "DataSync";
 
+    private static final String CHECKPOINT_STREAM = "app_usage";
+    // Rows per request; a chunk compresses to a few KB
+    private static final int CHUNK_ROWS = 500;
+    private static final MediaType NDJSON = MediaType.parse("application/x-ndjson; charset=utf-8");
+    private static final DateTimeFormatter UTC_TIMESTAMP = DateTimeFormatter.ISO_INSTANT;
+
+    // One upload pass at a time; callers (coordinator, worker, UI) may overlap
+    private static final Object uploadLock = new Object();
+    // Set once the server answered the NDJSON endpoint with 404/415; later chunks use the JSON endpoint
+    private static volatile boolean ndjsonUnsupported;
+    private static final CircuitBreaker breaker = CircuitBreaker.getInstance();
+
     public interface SyncCallback {
         void onSuccess();
         void onFailure(Exception e);
     }
 
-    @SuppressLint("HardwareIds")
     public static void syncAppUsage(Context context, String jwtToken, SyncCallback callback) {
-        new Thread(() -> {
-            SQLiteDatabase db = null;
+        AppExecutors.TaskHandle handle = AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "usage-upload", () -> {
             try {
-                AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(context);
-                db = dbHelper.getWritableDatabase();
+                uploadNow(context, jwtToken);
+                AppExecutors.runOnMain(callback::onSuccess);
+            } catch (Exception e) {
+                Log.e(TAG, "Sync error", e);
+                AppExecutors.runOnMain(() -> callback.onFailure(e));
+            }
+        });
+        if (handle.isRejected()) {
+            // The rows stay unsynced; the next sync cycle uploads them
+            AppExecutors.runOnMain(() -> callback.onFailure(
+                    new RejectedExecutionException("Usage upload not started - IO queue full")));
+        }
+    }
 
-                Cursor cursor = db.rawQuery("SELECT id, app_name, start_time, end_time FROM app_usage WHERE sync_status = 0", null);
+    /**
+     * Blocking upload pass on the caller's thread, for callers already in the background
+     * @return number of rows acknowledged
+     */
+    @SuppressLint("HardwareIds")
+    public static int uploadNow(Context context, String jwtToken) throws IOException {
+        String deviceId = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+        int uploaded;
+        synchronized (uploadLock) {
+            uploaded = uploadPendingChunks(context, deviceId, jwtToken);
+        }
+        Log.d(TAG, "✅ Usage upload complete: " + uploaded + " rows");
+        return uploaded;
+    }
 
-                JSONArray usageData = new JSONArray();
-                ArrayList<Long> recordIds = new ArrayList<>();
-                while (cursor.moveToNext()) {
-                    JSONObject entry = new JSONObject();
-                    entry.put("app_name", cursor.getString(1));
-                    entry.put("start_time", formatDate(cursor.getLong(2)));
-                    entry.put("end_time", formatDate(cursor.getLong(3)));
-                    usageData.put(entry);
-                    recordIds.add(cursor.getLong(0));
+    /**
+     * Upload chunk after chunk from the checkpoint until no unsynced rows are left
+     * @return number of rows acknowledged
+     */
+    private static int uploadPendingChunks(Context context, String deviceId, String jwtToken) throws IOException {
+        SQLiteDatabase db = ServiceLocator.getInstance(context).getDatabaseHelper().getWritableDatabase();
+        long fromId = readCheckpoint(db);
+        if (fromId > 0) {
+            Log.d(TAG, "Resuming usage upload after row " + fromId);
+        }
+
+        int uploaded = 0;
+        while (true) {
+            long toId = findChunkEnd(db, fromId);
+            if (toId <= fromId) {
+                break;
+            }
+            UsageChunkBody body = new UsageChunkBody(db, fromId, toId, ndjsonUnsupported ? deviceId : null);
+            if (!uploadChunk(body, deviceId, jwtToken)) {
+                ndjsonUnsupported = true;
+                Log.w(TAG, "Server has no NDJSON usage endpoint - using the JSON endpoint");
+                body = new UsageChunkBody(db, fromId, toId, deviceId);
+                uploadChunk(body, deviceId, jwtToken);
+            }
+            uploaded += acknowledgeChunk(db, body, toId);
+            fromId = toId;
+        }
+
+        // Pass finished: start from the beginning next time to catch re-opened sessions
+        saveCheckpoint(db, 0);
+        return uploaded;
+    }
+
+    /**
+     * @return false if the server does not accept NDJSON uploads (caller switches format)
+     */
+    private static boolean uploadChunk(UsageChunkBody body, String deviceId, String jwtToken) throws IOException {
+        String endpoint = body.isJson() ? "api/sync-usage/" : "api/sync-usage/ndjson/";
+        if (!breaker.tryAcquire(endpoint)) {
+            // The rows stay unsynced and the checkpoint stays put; the next pass resumes here
+            throw new CircuitBreaker.BackingOffException("Usage upload", breaker.getDelayMs(endpoint));
+        }
+        Request.Builder request = new Request.Builder()
+                .addHeader("Authorization", "Bearer " + jwtToken);
+        request.url(AuthService.BASE_URL + endpoint);
+        if (!body.isJson()) {
+            request.addHeader("X-Device-Id", deviceId)
+                    .addHeader("Content-Encoding", "gzip");
+        }
+
+        Response response;
+        try {
+            response = AppController.getHttpClient().newCall(request.post(body).build()).execute();
+        } catch (IOException e) {
+            breaker.recordFailure(endpoint);
+            throw e;
+        }
+        try (Response result = response) {
+            if (!body.isJson() && (result.code() == 404 || result.code() == 415)) {
+                breaker.recordSuccess(endpoint);
+                return false;
+            }
+            if (!result.isSuccessful()) {
+                // Only server-side trouble counts against the endpoint
+                if (CircuitBreaker.isRetryable(result.code())) {
+                    breaker.recordFailure(endpoint);
+                } else {
+                    breaker.recordSuccess(endpoint);
                 }
-                cursor.close();
+                String responseBody = result.body() != null ? result.body().string() : "No response body";
+                throw new IOException("Sync failed: " + result.code() + " " + result.message() + ", Body: " + responseBody);
+            }
+            breaker.recordSuccess(endpoint);
+        }
+        Log.d(TAG, "📤 Uploaded usage rows " + body.fromId + "-" + body.toId + " (" + body.rowCount + " rows)");
+        return true;
+    }
 
-                if (usageData.length() > 0) {
-                    OkHttpClient client = new OkHttpClient.Builder()
-                            .connectTimeout(10, TimeUnit.SECONDS)
-                            .readTimeout(10, TimeUnit.SECONDS)
-                            .build();
+    /**
+     * Mark exactly what was sent as synced and move the checkpoint, atomically.
+     * A row whose end_time changed since it was read stays unsynced.
+     */
+    private static int acknowledgeChunk(SQLiteDatabase db, UsageChunkBody body, long toId) {
+        int marked = 0;
+        db.beginTransaction();
+        try {
+            SQLiteStatement markSynced = db.compileStatement(
+                    "UPDATE app_usage SET sync_status = 1 WHERE id = ? AND end_time = ? AND sync_status = 0");
+            for (int i = 0; i < body.rowCount; i++) {
+                markSynced.bindLong(1, body.sentIds[i]);
+                markSynced.bindLong(2, body.sentEndTimes[i]);
+                marked += markSynced.executeUpdateDelete();
+            }
+            markSynced.close();
+            saveCheckpoint(db, toId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return marked;
+    }
+
+    /**
+     * Highest row id of the next chunk after fromId, or fromId when nothing is left
+     */
+    private static long findChunkEnd(SQLiteDatabase db, long fromId) {
+        String[] args = {String.valueOf(fromId)};
+        try (Cursor cursor = db.rawQuery("SELECT id FROM app_usage WHERE sync_status = 0 AND id > ? " +
+                "ORDER BY id LIMIT 1 OFFSET " + (CHUNK_ROWS - 1), args)) {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT MAX(id) FROM app_usage WHERE sync_status = 0 AND id > ?", args)) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : fromId;
+        }
+    }
 
-                    JSONObject payload = new JSONObject();
-                    payload.put("device_id", Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID));
-                    payload.put("usage_data", usageData);
+    private static long readCheckpoint(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT high_water_mark FROM sync_checkpoints WHERE stream = ?",
+                new String[]{CHECKPOINT_STREAM})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static void saveCheckpoint(SQLiteDatabase db, long highWaterMark) {
+        ContentValues values = new ContentValues();
+        values.put("stream", CHECKPOINT_STREAM);
+        values.put("high_water_mark", highWaterMark);
+        values.put("updated_at", System.currentTimeMillis());
+        db.insertWithOnConflict("sync_checkpoints", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static String formatDate(long timestamp) {
+        return UTC_TIMESTAMP.format(Instant.ofEpochMilli(timestamp).truncatedTo(ChronoUnit.SECONDS));
+    }
 
-                    Log.d(TAG, "Sync Payload: " + payload.toString()); // Log the payload
+    /**
+     * Request body for the unsynced rows with fromId < id <= toId, read from a cursor while
+     * it is written. Gzipped NDJSON by default; the legacy {"device_id", "usage_data": [...]}
+     * document when a device id is given. Remembers the (id, end_time) pairs it sent for the ack.
+     */
+    private static final class UsageChunkBody extends RequestBody {
+        final long fromId;
+        final long toId;
+        final long[] sentIds = new long[CHUNK_ROWS];
+        final long[] sentEndTimes = new long[CHUNK_ROWS];
+        int rowCount;
+        private final SQLiteDatabase db;
+        private final String legacyDeviceId;
 
-                    Request request = new Request.Builder()
-                            .url(AuthService.BASE_URL + "api/sync-usage/")
-                            .addHeader("Authorization", "Bearer " + jwtToken)
-                            .post(RequestBody.create(payload.toString(), AuthService.JSON))
-                            .build();
+        UsageChunkBody(SQLiteDatabase db, long fromId, long toId, String legacyDeviceId) {
+            this.db = db;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.legacyDeviceId = legacyDeviceId;
+        }
 
-                    Response response = client.newCall(request).execute();
+        boolean isJson() {
+            return legacyDeviceId != null;
+        }
 
-                    if (response.isSuccessful()) {
-                        ContentValues values = new ContentValues();
-                        values.put("sync_status", 1);
+        @Override
+        public MediaType contentType() {
+            return isJson() ? AuthService.JSON : NDJSON;
+        }
 
-                        String whereClause = "id IN (" + TextUtils.join(",", recordIds) + ")";
-                        db.update("app_usage", values, whereClause, null);
+        @Override
+        public long contentLength() {
+            // Unknown up front: sent with chunked transfer encoding
+            return -1;
+        }
 
-                        new Handler(Looper.getMainLooper()).post(callback::onSuccess);
-                    } else {
-                        String responseBody = response.body() != null ? response.body().string() : "No response body";
-                        throw new IOException("Sync failed: " + response.message() + ", Body: " + responseBody);
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            // May run again when OkHttp retries, so always start from a fresh cursor
+            rowCount = 0;
+            BufferedSink out = isJson() ? sink : Okio.buffer(new GzipSink(sink));
+            if (isJson()) {
+                out.writeUtf8("{\"device_id\":").writeUtf8(JSONObject.quote(legacyDeviceId)).writeUtf8(",\"usage_data\":[");
+            }
+            try (Cursor cursor = db.rawQuery("SELECT id, app_name, start_time, end_time FROM app_usage " +
+                            "WHERE sync_status = 0 AND id > ? AND id <= ? ORDER BY id LIMIT " + CHUNK_ROWS,
+                    new String[]{String.valueOf(fromId), String.valueOf(toId)})) {
+                while (cursor.moveToNext()) {
+                    if (isJson() && rowCount > 0) {
+                        out.writeByte(',');
                     }
-                } else {
-                    new Handler(Looper.getMainLooper()).post(callback::onSuccess);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Sync error", e);
-                new Handler(Looper.getMainLooper()).post(() -> callback.onFailure(e));
-            } finally {
-                if (db != null && db.isOpen()) {
-                    db.close();
+                    long endTime = cursor.getLong(3);
+                    out.writeUtf8("{\"session_id\":").writeDecimalLong(cursor.getLong(0))
+                            .writeUtf8(",\"app_name\":").writeUtf8(JSONObject.quote(cursor.getString(1)))
+                            .writeUtf8(",\"start_time\":\"").writeUtf8(formatDate(cursor.getLong(2)))
+                            .writeUtf8("\",\"end_time\":\"").writeUtf8(formatDate(endTime))
+                            .writeUtf8("\"}");
+                    if (!isJson()) {
+                        out.writeByte('\n');
+                    }
+                    sentIds[rowCount] = cursor.getLong(0);
+                    sentEndTimes[rowCount] = endTime;
+                    rowCount++;
                 }
             }
-        }).start();
-    }
-
-    private static String formatDate(long timestamp) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.getDefault());
-        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return sdf.format(new Date(timestamp));
+            if (isJson()) {
+                out.writeUtf8("]}");
+            } else {
+                // Finishes the gzip trailer
+                out.close();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Owns the app's single AppUsage.db connection for the lifetime of the process
+ * The database is opened once in WAL mode, so SQLite keeps one primary connection for
+ * writes and a small pool of read connections that run alongside it. Callers share the
+ * returned SQLiteDatabase and must never close it. Background writes go through one
+ * serialized executor so they never queue up behind each other on caller threads.
+ */
+public class DatabaseManager {
+    private static final String TAG = "DatabaseManager";
+
+    private static DatabaseManager instance;
+
+    private final AppUsageDatabaseHelper dbHelper;
+    // The app-wide DB_WRITE pool: one thread, shared with every other writer
+    private final ScheduledExecutorService writeExecutor = AppExecutors.getInstance().getDbWriteExecutor();
+
+    public static synchronized DatabaseManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DatabaseManager(Context context) {
+        this.dbHelper = new AppUsageDatabaseHelper(context);
+        Log.d(TAG, "Database manager created");
+    }
+
+    public AppUsageDatabaseHelper getHelper() {
+        return dbHelper;
+    }
+
+    /**
+     * Shared database for queries; reads use the WAL read connection pool
+     */
+    public SQLiteDatabase getReadableDatabase() {
+        return dbHelper.getReadableDatabase();
+    }
+
+    /**
+     * Shared database for writes. Do not close it.
+     */
+    public SQLiteDatabase getWritableDatabase() {
+        return dbHelper.getWritableDatabase();
+    }
+
+    /**
+     * Run a write on the serialized writer thread (fire and forget)
+     */
+    public void executeWrite(Runnable write) {
+        AppExecutors.getInstance().execute(AppExecutors.Pool.DB_WRITE, "db-write", write);
+    }
+
+    /**
+     * Run a write on the serialized writer thread and hand back its result
+     */
+    public <T> Future<T> submitWrite(Callable<T> write) {
+        return writeExecutor.submit(write);
+    }
+
+    /**
+     * The writer thread itself, for components that schedule delayed writes (batch flushes)
+     */
+    public ScheduledExecutorService getWriteExecutor() {
+        return writeExecutor;
+    }
+}
@@ -2,8 +2,6 @@ package com.example.parentalcontrol;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 
@@ -11,7 +9,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 
 import okhttp3.*;
 
@@ -24,17 +22,14 @@ public class DeviceRegistration {
     }
 
     public static void registerDevice(Context context, String parentToken, RegistrationCallback callback) {
-        new Thread(() -> {
+        AppExecutors.TaskHandle handle = AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "register-device", () -> {
             try {
                 @SuppressLint("HardwareIds") String deviceId = Settings.Secure.getString(
                         context.getContentResolver(),
                         Settings.Secure.ANDROID_ID
                 );
 
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(10, TimeUnit.SECONDS)
-                        .readTimeout(10, TimeUnit.SECONDS)
-                        .build();
+                OkHttpClient client = AppController.getHttpClient();
 
                 JSONObject json = new JSONObject();
                 json.put("device_id", deviceId);
@@ -48,15 +43,19 @@ public class DeviceRegistration {
                 try (Response response = client.newCall(request).execute()) {
 
                     if (response.isSuccessful()) {
-                        new Handler(Looper.getMainLooper()).post(callback::onSuccess);
+                        AppExecutors.runOnMain(callback::onSuccess);
                     } else {
                         throw new IOException("Registration failed: " + response.message());
                     }
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Device registration error", e);
-                new Handler(Looper.getMainLooper()).post(() -> callback.onFailure(e));
+                AppExecutors.runOnMain(() -> callback.onFailure(e));
             }
-        }).start();
+        });
+        if (handle.isRejected()) {
+            AppExecutors.runOnMain(() -> callback.onFailure(
+                    new RejectedExecutionException("Registration not started - IO queue full")));
+        }
     }
 }
\ No newline at end of file
@@ -2,9 +2,6 @@
 package com.example.parentalcontrol;
 
 import android.content.Context;
-import android.content.Intent;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import org.greenrobot.eventbus.EventBus;
 import org.json.JSONException;
@@ -38,11 +35,10 @@ public class ErrorHandler {
 
         EventBus.getDefault().post(new ErrorEvent(operation + " failed: " + message));
 
-        // Retry logic for critical operations
+        // Retry critical operations on the coordinator's next cycle, paced by CircuitBreaker,
+        // rather than restarting the service after a fixed delay
         if (operation.equals("data_sync")) {
-            new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                context.startService(new Intent(context, DataSyncService.class));
-            }, 5000);
+            SyncCoordinator.getInstance(context).markDue(SyncCoordinator.TASK_APP_USAGE);
         }
     }
 }
\ No newline at end of file
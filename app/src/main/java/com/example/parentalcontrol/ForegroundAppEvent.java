@@ -0,0 +1,14 @@
+package com.example.parentalcontrol;
+
+/**
+ * Event that's fired by ForegroundAppTracker when a different app comes to the foreground
+ */
+public class ForegroundAppEvent {
+    public final String packageName;
+    public final long timestamp;
+
+    public ForegroundAppEvent(String packageName, long timestamp) {
+        this.packageName = packageName;
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.parentalcontrol;
+
+import android.util.Log;
+
+import org.greenrobot.eventbus.EventBus;
+
+/**
+ * Process-wide record of which app is in the foreground
+ * Fed by the accessibility service's window events and by ActivityTrackerService's
+ * UsageStats reconciliation; cleared when the screen goes off. Every consumer (DNS
+ * path, blockers, redirect service) reads the current snapshot in O(1) instead of
+ * querying ActivityManager or UsageStatsManager itself.
+ */
+public class ForegroundAppTracker {
+    private static final String TAG = "ForegroundAppTracker";
+
+    private static final ForegroundAppTracker instance = new ForegroundAppTracker();
+
+    /**
+     * Immutable view of the foreground app; packageName is null when unknown or screen off
+     */
+    public static final class Snapshot {
+        public final String packageName;
+        public final long since;
+        public final boolean isBrowser;
+
+        Snapshot(String packageName, long since) {
+            this.packageName = packageName;
+            this.since = since;
+            this.isBrowser = isBrowserPackage(packageName);
+        }
+    }
+
+    private volatile Snapshot current = new Snapshot(null, 0);
+
+    public static ForegroundAppTracker getInstance() {
+        return instance;
+    }
+
+    private ForegroundAppTracker() {
+    }
+
+    /**
+     * Record a foreground switch; posts a ForegroundAppEvent when the package changes
+     */
+    public void onForegroundChanged(String packageName, long timestamp) {
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            if (packageName.equals(previous.packageName) || timestamp < previous.since) {
+                return;
+            }
+            current = new Snapshot(packageName, timestamp);
+        }
+        Log.d(TAG, "Foreground: " + previous.packageName + " → " + packageName);
+        if (previous.packageName != null) {
+            BlockLatencyTracer.getInstance().onLeftForeground(previous.packageName);
+        }
+        EventBus.getDefault().post(new ForegroundAppEvent(packageName, timestamp));
+    }
+
+    /**
+     * Nothing is in the foreground (screen off)
+     */
+    public void clear(long timestamp) {
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            current = new Snapshot(null, timestamp);
+        }
+        if (previous.packageName != null) {
+            // A blocked app that is gone with the screen counts as enforced
+            BlockLatencyTracer.getInstance().onLeftForeground(previous.packageName);
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Current foreground package, or null if not known
+     */
+    public String getForegroundPackage() {
+        return current.packageName;
+    }
+
+    public boolean isForeground(String packageName) {
+        return packageName != null && packageName.equals(current.packageName);
+    }
+
+    /**
+     * True once any source has reported a foreground app since the last screen-on
+     */
+    public boolean isKnown() {
+        return current.packageName != null;
+    }
+
+    public boolean isBrowserForeground() {
+        return current.isBrowser;
+    }
+
+    /**
+     * Check if a package name corresponds to a browser application
+     */
+    public static boolean isBrowserPackage(String packageName) {
+        if (packageName == null) return false;
+
+        String lowerPackage = packageName.toLowerCase();
+
+        // Common browser package patterns
+        return lowerPackage.contains("chrome") ||
+               lowerPackage.contains("firefox") ||
+               lowerPackage.contains("browser") ||
+               lowerPackage.contains("opera") ||
+               lowerPackage.contains("edge") ||
+               lowerPackage.contains("samsung") ||
+               lowerPackage.contains("webview") ||
+               lowerPackage.contains("brave") ||
+               lowerPackage.contains("vivaldi") ||
+               lowerPackage.contains("dolphin") ||
+               lowerPackage.contains("uc.browser") ||
+               lowerPackage.contains("duckduckgo") ||
+               // Specific package names
+               lowerPackage.equals("com.android.browser") ||
+               lowerPackage.equals("com.google.android.apps.chrome") ||
+               lowerPackage.equals("org.mozilla.firefox") ||
+               lowerPackage.equals("com.opera.browser") ||
+               lowerPackage.equals("com.microsoft.emmx") ||
+               lowerPackage.equals("com.sec.android.app.sbrowser");
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.parentalcontrol;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * Per-call timing and connection reuse for the shared HTTP client
+ * One listener is created per call by FACTORY; totals are process-wide so the
+ * effect of connection pooling can be checked from logcat or the diagnostics screen.
+ */
+public class HttpMetricsListener extends EventListener {
+    private static final String TAG = "HttpMetrics";
+
+    private static final AtomicLong totalCalls = new AtomicLong();
+    private static final AtomicLong failedCalls = new AtomicLong();
+    private static final AtomicLong newConnections = new AtomicLong();
+    private static final AtomicLong totalCallMs = new AtomicLong();
+
+    public static final EventListener.Factory FACTORY = call -> new HttpMetricsListener();
+
+    private long callStart;
+    private long connectStart;
+    private boolean connected;
+
+    @Override
+    public void callStart(Call call) {
+        callStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = SystemClock.elapsedRealtime();
+        connected = true;
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        newConnections.incrementAndGet();
+        Log.d(TAG, "New " + protocol + " connection to " + inetSocketAddress
+                + " in " + (SystemClock.elapsedRealtime() - connectStart) + "ms");
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        finish(call, true);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        failedCalls.incrementAndGet();
+        finish(call, false);
+    }
+
+    private void finish(Call call, boolean success) {
+        long durationMs = SystemClock.elapsedRealtime() - callStart;
+        totalCalls.incrementAndGet();
+        totalCallMs.addAndGet(durationMs);
+        Log.d(TAG, (success ? "✅ " : "❌ ") + call.request().url().encodedPath() + " " + durationMs + "ms"
+                + (connected ? " (new connection)" : " (pooled connection)"));
+    }
+
+    /**
+     * One-line summary of all calls made through the shared client so far
+     */
+    public static String getSummary() {
+        long calls = totalCalls.get();
+        long connections = newConnections.get();
+        return String.format("HTTP calls: %d (%d failed), new connections: %d, reused: %d, avg: %dms",
+                calls, failedCalls.get(), connections, Math.max(0, calls - connections),
+                calls > 0 ? totalCallMs.get() / calls : 0);
+    }
+}
@@ -1,23 +1,20 @@
 package com.example.parentalcontrol;
 
 import android.annotation.SuppressLint;
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 
-import org.greenrobot.eventbus.EventBus;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -55,7 +52,7 @@ public class ImmediateBlockingHandler {
     private static void forceImmediateCheckAndEnforceWithRetry(Context context, 
                                                              BlockingStatusCallback callback,
                                                              int retryCount) {
-        new Thread(() -> {
+        AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "force-block-check", () -> {
             try {
                 Log.d(TAG, "Starting immediate blocking check... (Attempt " + (retryCount + 1) + ")");
 
@@ -82,54 +79,9 @@ public class ImmediateBlockingHandler {
                     throw new IOException("No authentication token available - user needs to log in");
                 }
 
-                // Create client with appropriate timeouts
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(10, TimeUnit.SECONDS)  // Increased timeout
-                        .readTimeout(10, TimeUnit.SECONDS)     // Increased timeout
-                        .build();
-
-                String deviceId = Settings.Secure.getString(
-                        context.getContentResolver(),
-                        Settings.Secure.ANDROID_ID
-                );
-                
-                // Use the specific force-sync endpoint for immediate updates
-                Request request = new Request.Builder()
-                        .url(AuthService.BASE_URL + "api/force_sync_blocked_apps/" + deviceId + "/")
-                        .addHeader("Authorization", "Bearer " + authToken)
-                        .post(okhttp3.RequestBody.create(new byte[0], null))
-                        .build();
-
-                Response response = client.newCall(request).execute();
-                if (response.isSuccessful()) {
-                    String responseBody = response.body().string();
-                    Log.d(TAG, "Immediate block check response: " + responseBody);
-                    
-                    JSONObject json = new JSONObject(responseBody);
-                    JSONArray blockedApps = json.getJSONArray("blocked_apps");
-                    
-                    List<String> packageNames = new ArrayList<>();
-                    for (int i = 0; i < blockedApps.length(); i++) {
-                        packageNames.add(blockedApps.getString(i));
-                    }
-                    
-                    boolean newBlocksFound = checkForNewBlocks(context, packageNames);
-                    
-                    // Save to local database
-                    saveBlockedAppsToDatabase(context, packageNames);
-                    
-                    // Notify all components about the update
-                    EventBus.getDefault().post(new BlockedAppsUpdatedEvent());
-                    
-                    // Return success
-                    new Handler(Looper.getMainLooper()).post(() -> 
-                            callback.onBlockingStatusUpdated(newBlocksFound));
-                    
-                    Log.d(TAG, "Successfully enforced " + packageNames.size() + " blocked apps");
-                } else {
-                    handleError(context, callback, new IOException("Error checking for blocks: " + 
-                               response.code() + " - " + response.message()), retryCount);
-                }
+                boolean newBlocksFound = syncBlockedAppsNow(context, authToken);
+                AppExecutors.runOnMain(() ->
+                        callback.onBlockingStatusUpdated(newBlocksFound));
             } catch (SocketTimeoutException e) {
                 Log.e(TAG, "Timeout connecting to server", e);
                 // Network timeouts should be retried
@@ -143,7 +95,51 @@ public class ImmediateBlockingHandler {
                 // Other errors may indicate a more serious issue
                 handleError(context, callback, e, retryCount);
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Fetch the block list, store the changes and notify components; blocking, run off the main thread
+     * @return true if the list differs from what was enforced before
+     */
+    public static boolean syncBlockedAppsNow(Context context, String authToken) throws IOException, JSONException {
+        // Shared client - reuses the pooled connection to the backend
+        OkHttpClient client = AppController.getHttpClient();
+
+        String deviceId = Settings.Secure.getString(
+                context.getContentResolver(),
+                Settings.Secure.ANDROID_ID
+        );
+
+        // Use the specific force-sync endpoint for immediate updates
+        Request request = new Request.Builder()
+                .url(AuthService.BASE_URL + "api/force_sync_blocked_apps/" + deviceId + "/")
+                .addHeader("Authorization", "Bearer " + authToken)
+                .post(okhttp3.RequestBody.create(new byte[0], null))
+                .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Error checking for blocks: " +
+                        response.code() + " - " + response.message());
+            }
+            String responseBody = response.body().string();
+            Log.d(TAG, "Immediate block check response: " + responseBody);
+
+            JSONObject json = new JSONObject(responseBody);
+            JSONArray blockedApps = json.getJSONArray("blocked_apps");
+
+            List<String> packageNames = new ArrayList<>();
+            for (int i = 0; i < blockedApps.length(); i++) {
+                packageNames.add(blockedApps.getString(i));
+            }
+
+            // Writes only the changed rows and notifies components with the delta
+            BlockedAppsUpdatedEvent delta = BlockedAppsSync.applyFullList(context, packageNames);
+
+            Log.d(TAG, "Successfully enforced " + packageNames.size() + " blocked apps");
+            return !delta.isEmpty();
+        }
     }
 
     /**
@@ -163,65 +159,16 @@ public class ImmediateBlockingHandler {
         } else {
             // Max retries exceeded
             Log.e(TAG, "Max retries exceeded for immediate blocking check", error);
-            new Handler(Looper.getMainLooper()).post(() -> callback.onError(error));
+            AppExecutors.runOnMain(() -> callback.onError(error));
             
             // Try to recover by checking local data anyway - not ideal but better than nothing
             try {
-                AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(context);
-                List<String> existingBlocks = dbHelper.getAllBlockedPackages();
-                if (!existingBlocks.isEmpty()) {
-                    // At least notify the components with what we have
-                    Log.d(TAG, "Falling back to local database with " + existingBlocks.size() + " blocked apps");
-                    EventBus.getDefault().post(new BlockedAppsUpdatedEvent());
-                }
+                // Publishes only if blocked_apps holds something the store has not seen
+                BlockedAppsUpdatedEvent delta = BlockedAppsStore.getInstance(context).reload();
+                Log.d(TAG, "Falling back to local block list with " + delta.snapshot.size() + " blocked apps");
             } catch (Exception e) {
                 Log.e(TAG, "Failed to recover using local database", e);
             }
         }
     }
-    
-    /**
-     * Check if there are new blocks that weren't already enforced
-     */
-    private static boolean checkForNewBlocks(Context context, List<String> newBlockedPackages) {
-        AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(context);
-        List<String> existingBlocks = dbHelper.getAllBlockedPackages();
-        
-        // Check if any new block is not in the existing list
-        for (String packageName : newBlockedPackages) {
-            if (!existingBlocks.contains(packageName)) {
-                return true; // Found a new block
-            }
-        }
-        
-        // Check if any existing block was removed
-        for (String packageName : existingBlocks) {
-            if (!newBlockedPackages.contains(packageName)) {
-                return true; // A previously blocked app is now unblocked
-            }
-        }
-        
-        return false; // No changes
-    }
-
-    private static void saveBlockedAppsToDatabase(Context context, List<String> packageNames) {
-        SQLiteDatabase db = new AppUsageDatabaseHelper(context).getWritableDatabase();
-        db.beginTransaction();
-        try {
-            // Clear existing blocked apps
-            db.execSQL("DELETE FROM blocked_apps");
-
-            // Insert new blocked apps
-            for (String packageName : packageNames) {
-                ContentValues values = new ContentValues();
-                values.put("package_name", packageName);
-                db.insert("blocked_apps", null, values);
-            }
-            db.setTransactionSuccessful();
-            Log.d(TAG, "Saved " + packageNames.size() + " blocked apps to database");
-        } finally {
-            db.endTransaction();
-            db.close();
-        }
-    }
 }
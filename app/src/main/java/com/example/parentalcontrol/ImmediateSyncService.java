@@ -8,7 +8,6 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import android.provider.Settings;
 import android.annotation.SuppressLint;
 
@@ -17,7 +16,7 @@ import android.annotation.SuppressLint;
  */
 public class ImmediateSyncService {
     private static final String TAG = "ImmediateSyncService";
-    private static final long SYNC_TIMEOUT = 10; // 10 seconds timeout
+    private static final int SYNC_TIMEOUT = 10; // 10 seconds timeout
     
     /**
      * Interface for sync callbacks
@@ -31,7 +30,7 @@ public class ImmediateSyncService {
      * Force sync blocked apps immediately
      */
     public static void forceSyncBlockedApps(Context context, SyncCallback callback) {
-        new Thread(() -> {
+        AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "force-sync-blocked-apps", () -> {
             try {
                 String authToken = AppController.getInstance().getAuthToken();
                 if (authToken == null || authToken.isEmpty()) {
@@ -39,10 +38,7 @@ public class ImmediateSyncService {
                     return;
                 }
 
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(SYNC_TIMEOUT, TimeUnit.SECONDS)
-                        .readTimeout(SYNC_TIMEOUT, TimeUnit.SECONDS)
-                        .build();
+                OkHttpClient client = AppController.getHttpClient(SYNC_TIMEOUT, SYNC_TIMEOUT);
 
                 @SuppressLint("HardwareIds") String deviceId = Settings.Secure.getString(
                         context.getContentResolver(),
@@ -56,32 +52,33 @@ public class ImmediateSyncService {
                         .post(RequestBody.create(new byte[0])) // Empty POST body
                         .build();
 
-                Response response = client.newCall(request).execute();
-                if (response.isSuccessful()) {
-                    String responseBody = response.body().string();
-                    JSONObject json = new JSONObject(responseBody);
+                try (Response response = client.newCall(request).execute()) {
+                    if (response.isSuccessful()) {
+                        String responseBody = response.body().string();
+                        JSONObject json = new JSONObject(responseBody);
                     
-                    if (json.getString("status").equals("success")) {
-                        JSONArray blockedApps = json.getJSONArray("blocked_apps");
-                        List<String> packageNames = new ArrayList<>();
+                        if (json.getString("status").equals("success")) {
+                            JSONArray blockedApps = json.getJSONArray("blocked_apps");
+                            List<String> packageNames = new ArrayList<>();
                         
-                        for (int i = 0; i < blockedApps.length(); i++) {
-                            packageNames.add(blockedApps.getString(i));
-                        }
+                            for (int i = 0; i < blockedApps.length(); i++) {
+                                packageNames.add(blockedApps.getString(i));
+                            }
                         
-                        Log.d(TAG, "Force sync successful. Retrieved " + packageNames.size() + " blocked apps");
-                        callback.onSyncSuccess(packageNames);
+                            Log.d(TAG, "Force sync successful. Retrieved " + packageNames.size() + " blocked apps");
+                            callback.onSyncSuccess(packageNames);
+                        } else {
+                            callback.onSyncFailure(new Exception("Server returned error status"));
+                        }
                     } else {
-                        callback.onSyncFailure(new Exception("Server returned error status"));
+                        callback.onSyncFailure(new Exception("HTTP error: " + response.code()));
                     }
-                } else {
-                    callback.onSyncFailure(new Exception("HTTP error: " + response.code()));
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error in force sync", e);
                 callback.onSyncFailure(e);
             }
-        }).start();
+        });
     }
     
     /**
@@ -0,0 +1,291 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Process-wide registry for the URL classifier model
+ * Holds the live MLUrlClassifier behind a volatile reference so a new model can be
+ * validated (checksum + held-out accuracy gate) and swapped in while the VPN keeps running.
+ * Classifications already in progress keep using the instance they started with.
+ */
+public class MLModelRegistry {
+    private static final String TAG = "MLModelRegistry";
+    private static final String MODEL_DIR = "ml_model";
+    private static final String ACTIVE_MODEL_FILE = "active_model.bin";
+    private static final String HOLDOUT_ASSET = "ml_model/holdout.json";
+
+    // Accuracy gate for candidate models on the held-out set
+    private static final double MIN_HOLDOUT_ACCURACY = 0.85;
+    private static final double MAX_ACCURACY_REGRESSION = 0.02;
+
+    private static MLModelRegistry instance;
+
+    private final Context context;
+    private final Object installLock = new Object();
+    private final List<LabeledUrl> holdoutSet;
+    private volatile MLUrlClassifier activeClassifier;
+
+    public interface InstallCallback {
+        void onInstalled(int modelVersion);
+        void onRejected(String reason);
+    }
+
+    /**
+     * Labeled example from the held-out evaluation set
+     */
+    public static class LabeledUrl {
+        public final String url;
+        public final boolean isAdult;
+
+        public LabeledUrl(String url, boolean isAdult) {
+            this.url = url;
+            this.isAdult = isAdult;
+        }
+    }
+
+    public static synchronized MLModelRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new MLModelRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MLModelRegistry(Context context) {
+        this.context = context;
+        this.holdoutSet = loadHoldoutSet();
+        this.activeClassifier = loadActiveClassifier();
+        Log.i(TAG, "Model registry ready: " + activeClassifier.getModelStats());
+    }
+
+    /**
+     * Get the live classifier. Callers should read it once per classification
+     * so the whole decision is made against a single model version.
+     */
+    public MLUrlClassifier getClassifier() {
+        return activeClassifier;
+    }
+
+    public int getModelVersion() {
+        return activeClassifier.getModelVersion();
+    }
+
+    /**
+     * Load the last installed model from internal storage, falling back to the bundled assets
+     */
+    private MLUrlClassifier loadActiveClassifier() {
+        File modelFile = getActiveModelFile();
+        if (modelFile.exists()) {
+            try (InputStream is = new FileInputStream(modelFile)) {
+                MLUrlClassifier classifier = MLUrlClassifier.fromBinary(is);
+                Log.d(TAG, "Loaded installed model version " + classifier.getModelVersion());
+                return classifier;
+            } catch (Exception e) {
+                Log.e(TAG, "Installed model is unreadable, reverting to bundled model", e);
+                if (!modelFile.delete()) {
+                    Log.w(TAG, "Could not delete unreadable model file");
+                }
+            }
+        }
+        return new MLUrlClassifier(context);
+    }
+
+    /**
+     * Validate a binary model and atomically make it the live model
+     * @param modelBytes model in MLUrlClassifier binary format
+     * @param expectedSha256 hex SHA-256 of modelBytes as published by the server
+     * @return null if installed, otherwise the rejection reason
+     */
+    public String installModel(byte[] modelBytes, String expectedSha256) {
+        synchronized (installLock) {
+            String actualSha256 = sha256Hex(modelBytes);
+            if (expectedSha256 == null || !expectedSha256.equalsIgnoreCase(actualSha256)) {
+                return reject("Checksum mismatch (expected " + expectedSha256 + ", got " + actualSha256 + ")");
+            }
+
+            MLUrlClassifier candidate;
+            try {
+                candidate = MLUrlClassifier.fromBinary(new ByteArrayInputStream(modelBytes));
+            } catch (IOException e) {
+                return reject("Model could not be parsed: " + e.getMessage());
+            }
+
+            MLUrlClassifier current = activeClassifier;
+            if (candidate.getModelVersion() <= current.getModelVersion()) {
+                return reject("Model version " + candidate.getModelVersion() +
+                        " is not newer than live version " + current.getModelVersion());
+            }
+
+            double candidateAccuracy = evaluateAccuracy(candidate);
+            double currentAccuracy = evaluateAccuracy(current);
+            if (candidateAccuracy < MIN_HOLDOUT_ACCURACY) {
+                return reject(String.format(Locale.US, "Held-out accuracy %.3f below minimum %.3f",
+                        candidateAccuracy, MIN_HOLDOUT_ACCURACY));
+            }
+            if (candidateAccuracy < currentAccuracy - MAX_ACCURACY_REGRESSION) {
+                return reject(String.format(Locale.US, "Held-out accuracy %.3f regresses from live %.3f",
+                        candidateAccuracy, currentAccuracy));
+            }
+
+            try {
+                persistModel(modelBytes);
+            } catch (IOException e) {
+                return reject("Model could not be stored: " + e.getMessage());
+            }
+
+            activeClassifier = candidate;
+            Log.i(TAG, String.format(Locale.US, "✅ Model version %d is live (accuracy %.3f, was v%d at %.3f)",
+                    candidate.getModelVersion(), candidateAccuracy, current.getModelVersion(), currentAccuracy));
+            return null;
+        }
+    }
+
+    /**
+     * Download a binary model (IO pool) and install it (CPU pool)
+     */
+    public void downloadAndInstall(String modelUrl, String expectedSha256, InstallCallback callback) {
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.execute(AppExecutors.Pool.IO, "model-download", () -> {
+            byte[] modelBytes;
+            try {
+                OkHttpClient client = AppController.getHttpClient(AppController.HTTP_TIMEOUT_SECONDS,
+                        AppController.HTTP_DOWNLOAD_TIMEOUT_SECONDS);
+
+                Request request = new Request.Builder().url(modelUrl).build();
+                try (Response response = client.newCall(request).execute()) {
+                    if (!response.isSuccessful() || response.body() == null) {
+                        throw new IOException("Model download failed: " + response.code());
+                    }
+                    modelBytes = response.body().bytes();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error downloading model from " + modelUrl, e);
+                if (callback != null) {
+                    AppExecutors.runOnMain(() -> callback.onRejected(e.getMessage()));
+                }
+                return;
+            }
+
+            // Hashing, parsing and evaluation are CPU work; free the IO thread
+            executors.execute(AppExecutors.Pool.CPU, "model-install", () -> {
+                try {
+                    String rejection = installModel(modelBytes, expectedSha256);
+                    if (callback != null) {
+                        if (rejection == null) {
+                            int version = getModelVersion();
+                            AppExecutors.runOnMain(() -> callback.onInstalled(version));
+                        } else {
+                            AppExecutors.runOnMain(() -> callback.onRejected(rejection));
+                        }
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error installing model from " + modelUrl, e);
+                    if (callback != null) {
+                        AppExecutors.runOnMain(() -> callback.onRejected(e.getMessage()));
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Fraction of the held-out set the classifier labels correctly
+     */
+    public double evaluateAccuracy(MLUrlClassifier classifier) {
+        if (holdoutSet.isEmpty()) {
+            return 0.0;
+        }
+        int correct = 0;
+        for (LabeledUrl example : holdoutSet) {
+            if (classifier.isAdultContent(example.url) == example.isAdult) {
+                correct++;
+            }
+        }
+        return (double) correct / holdoutSet.size();
+    }
+
+    /**
+     * Write to a temporary file and rename so a crash never leaves a half-written model
+     */
+    private void persistModel(byte[] modelBytes) throws IOException {
+        File modelFile = getActiveModelFile();
+        File tmpFile = new File(modelFile.getParentFile(), ACTIVE_MODEL_FILE + ".tmp");
+
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(modelBytes);
+            out.getFD().sync();
+        }
+        if (!tmpFile.renameTo(modelFile)) {
+            tmpFile.delete();
+            throw new IOException("Rename to " + modelFile + " failed");
+        }
+    }
+
+    private File getActiveModelFile() {
+        File dir = new File(context.getFilesDir(), MODEL_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create model directory " + dir);
+        }
+        return new File(dir, ACTIVE_MODEL_FILE);
+    }
+
+    private List<LabeledUrl> loadHoldoutSet() {
+        List<LabeledUrl> examples = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(context.getAssets().open(HOLDOUT_ASSET)))) {
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+            }
+
+            JSONArray array = new JSONArray(sb.toString());
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject entry = array.getJSONObject(i);
+                examples.add(new LabeledUrl(entry.getString("url"), entry.getBoolean("adult")));
+            }
+            Log.d(TAG, "Loaded " + examples.size() + " held-out examples");
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading held-out set - candidate models will be rejected", e);
+        }
+        return examples;
+    }
+
+    private String reject(String reason) {
+        Log.w(TAG, "❌ Model rejected: " + reason);
+        return reason;
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(data)) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -8,8 +8,12 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -48,12 +52,115 @@ public class MLUrlClassifier {
     // Adult content threshold
     private static final double ADULT_THRESHOLD = 0.5;
     
+    // Binary model format (see fromBinary/writeBinary)
+    private static final int BINARY_MAGIC = 0x50434D4C; // "PCML"
+    private static final int BINARY_FORMAT_VERSION = 1;
+    
+    // Version of the model bundled in assets; downloaded models must be newer
+    public static final int BUNDLED_MODEL_VERSION = 1;
+    
     private boolean isModelLoaded = false;
+    private int modelVersion = BUNDLED_MODEL_VERSION;
     
     public MLUrlClassifier(Context context) {
         loadPreTrainedModel(context);
     }
     
+    private MLUrlClassifier(int modelVersion, Set<String> vocabulary, Map<String, Double> featureWeights,
+                            Map<String, Double> classLogPriors, Set<String> stopWords) {
+        this.modelVersion = modelVersion;
+        this.vocabulary = vocabulary;
+        this.featureWeights = featureWeights;
+        this.classLogPriors = classLogPriors;
+        this.stopWords = stopWords;
+        this.isModelLoaded = true;
+    }
+    
+    /**
+     * Read a model from its binary representation
+     * Layout: magic, format version, model version, then vocabulary, Adult feature
+     * weights, class log priors and stop words as length-prefixed sections
+     */
+    public static MLUrlClassifier fromBinary(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a classifier model (bad magic)");
+        }
+        int formatVersion = in.readInt();
+        if (formatVersion != BINARY_FORMAT_VERSION) {
+            throw new IOException("Unsupported model format version: " + formatVersion);
+        }
+        int modelVersion = in.readInt();
+        
+        int vocabularySize = in.readInt();
+        Set<String> vocabulary = new HashSet<>(vocabularySize * 2);
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary.add(in.readUTF());
+        }
+        
+        int weightCount = in.readInt();
+        Map<String, Double> featureWeights = new HashMap<>(weightCount * 2);
+        for (int i = 0; i < weightCount; i++) {
+            featureWeights.put(in.readUTF(), in.readDouble());
+        }
+        
+        int priorCount = in.readInt();
+        Map<String, Double> classLogPriors = new HashMap<>(priorCount * 2);
+        for (int i = 0; i < priorCount; i++) {
+            classLogPriors.put(in.readUTF(), in.readDouble());
+        }
+        
+        int stopWordCount = in.readInt();
+        Set<String> stopWords = new HashSet<>(stopWordCount * 2);
+        for (int i = 0; i < stopWordCount; i++) {
+            stopWords.add(in.readUTF());
+        }
+        
+        if (vocabulary.isEmpty() || featureWeights.isEmpty() || !classLogPriors.containsKey("Adult")) {
+            throw new IOException("Model is missing vocabulary, weights or Adult prior");
+        }
+        
+        return new MLUrlClassifier(modelVersion, vocabulary, featureWeights, classLogPriors, stopWords);
+    }
+    
+    /**
+     * Write this model in the binary format understood by fromBinary
+     */
+    public void writeBinary(OutputStream os) throws IOException {
+        if (!isModelLoaded) {
+            throw new IOException("Fallback model cannot be exported");
+        }
+        
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_FORMAT_VERSION);
+        out.writeInt(modelVersion);
+        
+        out.writeInt(vocabulary.size());
+        for (String term : vocabulary) {
+            out.writeUTF(term);
+        }
+        
+        out.writeInt(featureWeights.size());
+        for (Map.Entry<String, Double> entry : featureWeights.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+        
+        out.writeInt(classLogPriors.size());
+        for (Map.Entry<String, Double> entry : classLogPriors.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+        
+        out.writeInt(stopWords.size());
+        for (String stopWord : stopWords) {
+            out.writeUTF(stopWord);
+        }
+        out.flush();
+    }
+    
     /**
      * Load the pre-trained model parameters from assets
      */
@@ -328,6 +435,13 @@ public class MLUrlClassifier {
         }
     }
     
+    /**
+     * Get the version of the loaded model
+     */
+    public int getModelVersion() {
+        return modelVersion;
+    }
+    
     /**
      * Check if the ML model is loaded and ready
      */
@@ -343,7 +457,8 @@ public class MLUrlClassifier {
             return "Model not loaded - using fallback";
         }
         
-        return String.format("ML Model Stats: Vocabulary=%d, Features=%d, Classes=%d", 
+        return String.format("ML Model Stats: Version=%d, Vocabulary=%d, Features=%d, Classes=%d", 
+                           modelVersion,
                            vocabulary.size(), 
                            featureWeights.size(), 
                            classLogPriors.size());
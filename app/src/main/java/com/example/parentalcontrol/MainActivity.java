@@ -65,6 +65,8 @@ public class MainActivity extends AppCompatActivity {
     
     // VPN Content Filter Manager for automatic activation
     private VpnContentFilterManager vpnContentFilterManager;
+    // Background work started from this screen; cancelled when it is destroyed
+    private final AppExecutors.TaskScope tasks = new AppExecutors.TaskScope("MainActivity");
 
     private boolean isDeviceRegistered() {
         SharedPreferences prefs = getSharedPreferences("ParentalControlPrefs", MODE_PRIVATE);
@@ -250,7 +252,7 @@ public class MainActivity extends AppCompatActivity {
         }
 
         // Log app usage data
-        AppUsageDatabaseHelper dbHelper = new AppUsageDatabaseHelper(this);
+        AppUsageDatabaseHelper dbHelper = ServiceLocator.getInstance(this).getDatabaseHelper();
         dbHelper.logScreenTimeRulesData();
 
         logAllSharedPreferences();
@@ -622,9 +624,9 @@ public class MainActivity extends AppCompatActivity {
                 syncRequest
         );
 
-        // NOTE: Blocked apps sync is now handled by BlockingSyncService every 10 seconds
+        // NOTE: Blocked apps sync is handled by SyncCoordinator on its battery/network-aware cadence
         // No need for WorkManager periodic task as it has 15-minute minimum interval
-        Log.d("SYNC", "Blocked apps sync is handled by BlockingSyncService at 10-second intervals");
+        Log.d("SYNC", "Blocked apps sync is handled by SyncCoordinator");
 
         // Additional worker for daily screen time calculation
         PeriodicWorkRequest dailyScreenTimeRequest = new PeriodicWorkRequest.Builder(
@@ -720,7 +722,7 @@ public class MainActivity extends AppCompatActivity {
             showLoading("Testing enhanced sync system...");
             
             // Run tests in background thread
-            new Thread(() -> {
+            tasks.execute(AppExecutors.Pool.IO, "sync-test", () -> {
                 try {
                     EnhancedScreenTimeSyncTest syncTest = new EnhancedScreenTimeSyncTest(this);
                     syncTest.runAllTests();
@@ -742,7 +744,7 @@ public class MainActivity extends AppCompatActivity {
                                 Toast.LENGTH_LONG).show();
                     });
                 }
-            }).start();
+            });
             
         } catch (Exception e) {
             Log.e("MainActivity", "Error starting enhanced sync test", e);
@@ -764,7 +766,7 @@ public class MainActivity extends AppCompatActivity {
                         showLoading("Resetting screen time...");
                         
                         // Perform reset in background thread
-                        new Thread(() -> {
+                        tasks.execute(AppExecutors.Pool.DB_WRITE, "reset-screen-time", () -> {
                             try {
                                 // Get screen time manager and reset
                                 ScreenTimeManager screenTimeManager = ServiceLocator.getInstance(MainActivity.this)
@@ -791,7 +793,7 @@ public class MainActivity extends AppCompatActivity {
                                             Toast.LENGTH_LONG).show();
                                 });
                             }
-                        }).start();
+                        });
                         
                     } catch (Exception e) {
                         Log.e("MainActivity", "Error initiating screen time reset", e);
@@ -808,15 +810,9 @@ public class MainActivity extends AppCompatActivity {
      */
     private void refreshScreenTimeDisplay() {
         try {
-            // Check if ScreenTimeCountdownFragment is currently displayed
-            androidx.fragment.app.Fragment currentFragment = getSupportFragmentManager()
-                    .findFragmentById(R.id.fragment_container);
-            
-            if (currentFragment instanceof ScreenTimeCountdownFragment) {
-                // Reload the fragment to show updated data
-                loadScreenTimeCountdownFragment();
-                Log.d("MainActivity", "Screen time countdown fragment refreshed");
-            }
+            // Recompute once; the countdown fragment re-renders from the shared state
+            ScreenTimeEnforcementScheduler.getInstance(this).reschedule();
+            Log.d("MainActivity", "Screen time state refresh requested");
         } catch (Exception e) {
             Log.e("MainActivity", "Error refreshing screen time display", e);
         }
@@ -825,6 +821,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        tasks.cancelAll();
         // Unregister the immediate screen time limit receiver
         unregisterImmediateScreenTimeLimitReceiver();
     }
@@ -968,7 +965,7 @@ public class MainActivity extends AppCompatActivity {
     private void setTimerBasedLimit(long minutes) {
         showLoading("Setting timer-based limit...");
         
-        new Thread(() -> {
+        tasks.execute(AppExecutors.Pool.DB_WRITE, "set-timer-limit", () -> {
             try {
                 Log.d("MainActivity", "🎯 Setting timer-based limit: " + minutes + " minutes");
                 
@@ -1007,7 +1004,7 @@ public class MainActivity extends AppCompatActivity {
                     Toast.makeText(this, "Error setting timer: " + e.getMessage(), Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
     }
     
     /**
@@ -1017,7 +1014,7 @@ public class MainActivity extends AppCompatActivity {
     private void simulateWebRuleUpdate(long newLimitMinutes) {
         showLoading("Simulating timer-based limit from web interface...");
         
-        new Thread(() -> {
+        tasks.execute(AppExecutors.Pool.IO, "simulate-rule-update", () -> {
             try {
                 Log.d("MainActivity", "🧪 Simulating web interface timer-based rule update to " + newLimitMinutes + " minutes");
                 
@@ -1068,8 +1065,6 @@ public class MainActivity extends AppCompatActivity {
                     showCurrentScreenTimeData();
                 });
                 
-                db.close();
-                
             } catch (Exception e) {
                 Log.e("MainActivity", "Error simulating web rule update", e);
                 runOnUiThread(() -> {
@@ -1079,7 +1074,7 @@ public class MainActivity extends AppCompatActivity {
                         Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
     }
     
     /**
@@ -1088,7 +1083,7 @@ public class MainActivity extends AppCompatActivity {
     private void simulateServerTimestampUpdate() {
         showLoading("Simulating server timestamp update...");
         
-        new Thread(() -> {
+        tasks.execute(AppExecutors.Pool.IO, "simulate-timestamp-update", () -> {
             try {
                 // Get current limit from database
                 AppUsageDatabaseHelper dbHelper = ServiceLocator.getInstance(this).getDatabaseHelper();
@@ -1131,8 +1126,6 @@ public class MainActivity extends AppCompatActivity {
                         Toast.LENGTH_LONG).show();
                 });
                 
-                db.close();
-                
             } catch (Exception e) {
                 Log.e("MainActivity", "Error simulating timestamp update", e);
                 runOnUiThread(() -> {
@@ -1140,34 +1133,38 @@ public class MainActivity extends AppCompatActivity {
                     Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
     }
     
     /**
      * Show current screen time data for verification
      */
     private void showCurrentScreenTimeData() {
-        new Thread(() -> {
+        tasks.execute(AppExecutors.Pool.IO, "show-screen-time", () -> {
             try {
-                ScreenTimeCalculator calculator = new ScreenTimeCalculator(this);
-                ScreenTimeCalculator.ScreenTimeCountdownData data = calculator.getCountdownData();
+                ScreenTimeState.Snapshot data = ScreenTimeState.getInstance().getSnapshot(this);
+                String weekly = formatWeeklyReport(new AppUsageRepository(this).getWeeklyReport(System.currentTimeMillis()));
                 
                 runOnUiThread(() -> {
-                    String timerStatus = calculator.getTimerStatus();
+                    String timerStatus = data.timerActive
+                            ? "🎯 Timer Active - Target: " + data.timerTargetMinutes + "m"
+                            : "❌ No timer active";
                     String message = String.format(
                         "Current Screen Time Status:\n\n" +
                         "📊 Daily Limit: %d minutes\n" +
                         "⏱️ Used Today: %d minutes\n" +
                         "⏳ Remaining: %d minutes\n" +
                         "📈 Usage: %.1f%%\n" +
-                        "🔄 Rules Updated: %s\n\n" +
-                        "Timer Status:\n%s",
+                        "🌙 Bedtime: %s\n\n" +
+                        "Timer Status:\n%s\n\n" +
+                        "📅 Last 7 Days:\n%s",
                         data.dailyLimitMinutes,
                         data.usedMinutes,
                         data.remainingMinutes,
                         data.percentageUsed,
-                        data.wasUpdated ? "Yes" : "No",
-                        timerStatus
+                        data.isBedtime() ? "Active" : "No",
+                        timerStatus,
+                        weekly
                     );
                     
                     new androidx.appcompat.app.AlertDialog.Builder(this)
@@ -1181,14 +1178,34 @@ public class MainActivity extends AppCompatActivity {
             } catch (Exception e) {
                 Log.e("MainActivity", "Error getting screen time data", e);
             }
-        }).start();
+        });
+    }
+    
+    /**
+     * Minutes per day and the top apps of the week, from the usage rollups
+     */
+    private static String formatWeeklyReport(AppUsageRepository.WeeklyReport report) {
+        StringBuilder text = new StringBuilder();
+        java.text.SimpleDateFormat dayFormat = new java.text.SimpleDateFormat("EEE dd MMM", java.util.Locale.getDefault());
+        for (Map.Entry<Long, Long> day : report.dailyUsageMs.entrySet()) {
+            text.append(dayFormat.format(new java.util.Date(day.getKey())))
+                    .append(": ").append(day.getValue() / 60000).append("m\n");
+        }
+        List<Map.Entry<String, Long>> apps = new ArrayList<>(report.appUsageMs.entrySet());
+        apps.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        for (int i = 0; i < Math.min(5, apps.size()); i++) {
+            text.append(i == 0 ? "Top apps:\n" : "")
+                    .append("  ").append(apps.get(i).getKey())
+                    .append(" ").append(apps.get(i).getValue() / 60000).append("m\n");
+        }
+        return text.toString().trim();
     }
     
     /**
      * Clear timer for testing purposes
      */
     private void clearTimerForTesting() {
-        new Thread(() -> {
+        tasks.execute(AppExecutors.Pool.DB_WRITE, "clear-timer", () -> {
             try {
                 ScreenTimeCalculator calculator = new ScreenTimeCalculator(this);
                 calculator.clearTimerLimit();
@@ -1204,7 +1221,7 @@ public class MainActivity extends AppCompatActivity {
                     Toast.makeText(this, "Error clearing timer: " + e.getMessage(), Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
     }
     
     /**
@@ -1,9 +0,0 @@
-package com.example.parentalcontrol;
-
-public class NewBlockedAppEvent {
-    public final String packageName;
-
-    public NewBlockedAppEvent(String packageName) {
-        this.packageName = packageName;
-    }
-}
\ No newline at end of file
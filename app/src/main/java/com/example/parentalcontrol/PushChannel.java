@@ -0,0 +1,333 @@
+package com.example.parentalcontrol;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Long-lived server-sent events stream carrying rule and block-list changes
+ * The server sends one event per change, each with a sequence number as its SSE id:
+ *
+ *   id: 42
+ *   event: blocked_apps
+ *   data: {"changed_at": "..."}
+ *
+ * plus a heartbeat (comment line or "heartbeat" event) at least every heartbeat interval.
+ * A stream that stays silent for longer than the heartbeat timeout is treated as dead.
+ * On reconnect the last seen sequence number goes out as Last-Event-ID so the server can
+ * replay what was missed; replayed events at or below it are dropped. While the stream is
+ * down the listener is told so and callers fall back to polling.
+ */
+public class PushChannel {
+    private static final String TAG = "PushChannel";
+
+    public static final String EVENT_BLOCKED_APPS = "blocked_apps";
+    public static final String EVENT_SCREEN_TIME_RULES = "screen_time_rules";
+    public static final String EVENT_FILTER_CONFIG = "filter_config";
+    // The parent is editing rules; expect more changes shortly
+    public static final String EVENT_PARENT_ACTIVE = "parent_active";
+    static final String EVENT_HEARTBEAT = "heartbeat";
+
+    private static final long INITIAL_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 60000;
+    // The server has no stream endpoint; check again much later
+    private static final long UNSUPPORTED_RETRY_DELAY_MS = 30 * 60000;
+
+    /**
+     * Callbacks arrive on the stream reader thread
+     */
+    public interface Listener {
+        void onChangeEvent(ChangeEvent event);
+        void onStreamStateChanged(boolean connected);
+    }
+
+    /**
+     * One change notification; data is the raw JSON payload (may be empty)
+     */
+    public static final class ChangeEvent {
+        public final String type;
+        public final long sequence;
+        public final String data;
+
+        ChangeEvent(String type, long sequence, String data) {
+            this.type = type;
+            this.sequence = sequence;
+            this.data = data;
+        }
+
+        @Override
+        public String toString() {
+            return type + "#" + sequence;
+        }
+    }
+
+    private final OkHttpClient client;
+    private final String streamUrl;
+    private final Listener listener;
+    private final long initialReconnectDelayMs;
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor();
+    // Not AppExecutors IO: a stream read blocks for the life of the connection and would
+    // hold one of that pool's few threads. One connection at a time, so one thread.
+    private final ExecutorService streamReader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PushChannel-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Random random = new Random();
+
+    private volatile long lastSequence;
+    private volatile boolean connected;
+    // Guarded by this
+    private boolean running;
+    private Call activeCall;
+    private ScheduledFuture<?> pendingReconnect;
+    private long reconnectDelayMs;
+    private int connectionGeneration;
+
+    /**
+     * @param heartbeatTimeoutMs silence after which the stream counts as dead
+     *                           (a few heartbeat intervals)
+     */
+    public PushChannel(OkHttpClient baseClient, String streamUrl, long lastSequence,
+                       long heartbeatTimeoutMs, Listener listener) {
+        this(baseClient, streamUrl, lastSequence, heartbeatTimeoutMs, INITIAL_RECONNECT_DELAY_MS, listener);
+    }
+
+    PushChannel(OkHttpClient baseClient, String streamUrl, long lastSequence,
+                long heartbeatTimeoutMs, long initialReconnectDelayMs, Listener listener) {
+        // Same pool and dispatcher, but a read timeout that doubles as the heartbeat watchdog
+        this.client = baseClient.newBuilder()
+                .readTimeout(heartbeatTimeoutMs, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+        this.streamUrl = streamUrl;
+        this.lastSequence = lastSequence;
+        this.initialReconnectDelayMs = initialReconnectDelayMs;
+        this.reconnectDelayMs = initialReconnectDelayMs;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        connect();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        connectionGeneration++;
+        if (pendingReconnect != null) {
+            pendingReconnect.cancel(false);
+            pendingReconnect = null;
+        }
+        if (activeCall != null) {
+            activeCall.cancel();
+            activeCall = null;
+        }
+        setConnected(false);
+    }
+
+    /**
+     * Drop the current connection and reconnect right away (e.g. network changed)
+     */
+    public synchronized void reconnectNow() {
+        if (!running) {
+            return;
+        }
+        reconnectDelayMs = initialReconnectDelayMs;
+        if (activeCall != null) {
+            activeCall.cancel();
+        } else {
+            if (pendingReconnect != null) {
+                pendingReconnect.cancel(false);
+            }
+            connect();
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    private synchronized void connect() {
+        pendingReconnect = null;
+        if (!running) {
+            return;
+        }
+        int generation = ++connectionGeneration;
+        Request.Builder request = new Request.Builder()
+                .url(streamUrl)
+                .header("Accept", "text/event-stream")
+                .header("Cache-Control", "no-cache");
+        if (lastSequence > 0) {
+            request.header("Last-Event-ID", Long.toString(lastSequence));
+        }
+        Call call = client.newCall(request.build());
+        activeCall = call;
+
+        streamReader.execute(() -> readStream(call, generation));
+    }
+
+    private void readStream(Call call, int generation) {
+        long retryDelay = -1;
+        try (Response response = call.execute()) {
+            if (response.code() == 404 || response.code() == 405 || response.code() == 501) {
+                Log.w(TAG, "Push stream not supported by server (" + response.code() + ")");
+                retryDelay = UNSUPPORTED_RETRY_DELAY_MS;
+                return;
+            }
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Push stream rejected: " + response.code());
+            }
+
+            synchronized (this) {
+                if (generation != connectionGeneration) {
+                    return;
+                }
+                reconnectDelayMs = initialReconnectDelayMs;
+            }
+            Log.d(TAG, "✅ Push stream connected, resuming after #" + lastSequence);
+            setConnected(true);
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body.byteStream(), StandardCharsets.UTF_8));
+            parseEvents(reader);
+            Log.d(TAG, "Push stream closed by server");
+        } catch (IOException e) {
+            if (!call.isCanceled()) {
+                Log.w(TAG, "Push stream dropped: " + e.getMessage());
+            }
+        } finally {
+            onStreamEnded(generation, retryDelay);
+        }
+    }
+
+    /**
+     * Read SSE frames until the stream ends; a blank line dispatches the frame
+     */
+    private void parseEvents(BufferedReader reader) throws IOException {
+        String eventType = null;
+        String eventId = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                dispatch(eventType, eventId, data.toString());
+                eventType = null;
+                eventId = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                // Comment line - used as heartbeat, only resets the read timeout
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon >= 0 ? line.substring(0, colon) : line;
+            String value = colon >= 0 ? line.substring(colon + 1) : "";
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            switch (field) {
+                case "event":
+                    eventType = value;
+                    break;
+                case "id":
+                    eventId = value;
+                    break;
+                case "data":
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                default:
+                    // "retry" and unknown fields are ignored
+                    break;
+            }
+        }
+    }
+
+    private void dispatch(String eventType, String eventId, String data) {
+        if (eventType == null || EVENT_HEARTBEAT.equals(eventType)) {
+            return;
+        }
+        long sequence = 0;
+        if (eventId != null) {
+            try {
+                sequence = Long.parseLong(eventId.trim());
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring event with bad id: " + eventId);
+                return;
+            }
+            if (sequence <= lastSequence) {
+                // Replayed after a reconnect and already handled
+                return;
+            }
+            lastSequence = sequence;
+        }
+        ChangeEvent event = new ChangeEvent(eventType, sequence, data);
+        Log.d(TAG, "📨 Change event " + event);
+        try {
+            listener.onChangeEvent(event);
+        } catch (Exception e) {
+            Log.e(TAG, "Error handling change event " + event, e);
+        }
+    }
+
+    private void onStreamEnded(int generation, long retryDelay) {
+        synchronized (this) {
+            if (generation != connectionGeneration) {
+                return;
+            }
+            activeCall = null;
+            if (!running) {
+                return;
+            }
+            long delay;
+            if (retryDelay >= 0) {
+                delay = retryDelay;
+            } else {
+                // Full jitter so devices don't reconnect in lockstep after a server restart
+                delay = (long) (random.nextDouble() * reconnectDelayMs);
+                reconnectDelayMs = Math.min(reconnectDelayMs * 2, MAX_RECONNECT_DELAY_MS);
+            }
+            Log.d(TAG, "Reconnecting push stream in " + delay + "ms");
+            pendingReconnect = reconnectScheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        }
+        setConnected(false);
+    }
+
+    private synchronized void setConnected(boolean nowConnected) {
+        if (connected == nowConnected) {
+            return;
+        }
+        connected = nowConnected;
+        try {
+            listener.onStreamStateChanged(nowConnected);
+        } catch (Exception e) {
+            Log.e(TAG, "Error handling stream state change", e);
+        }
+    }
+}
@@ -22,12 +22,14 @@ public class ScreenTimeCalculator {
     private static final String KEY_TIMER_ACTIVE = "timer_active";
     
     private final AppUsageDatabaseHelper dbHelper;
+    private final DailyUsageAggregator usageAggregator;
     private final Context context;
     private final SharedPreferences prefs;
 
     public ScreenTimeCalculator(Context context) {
         this.context = context;
         this.dbHelper = ServiceLocator.getInstance(context).getDatabaseHelper();
+        this.usageAggregator = DailyUsageAggregator.getInstance(context);
         this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
 
@@ -51,6 +53,7 @@ public class ScreenTimeCalculator {
         
         Log.d(TAG, String.format("🎯 Timer-based limit set: Current usage=%d min, Additional=%d min, Target=%d min", 
                 currentUsage, limitMinutes, targetUsage));
+        ScreenTimeEnforcementScheduler.getInstance(context).reschedule();
     }
 
     /**
@@ -68,6 +71,17 @@ public class ScreenTimeCalculator {
         return currentUsage >= targetUsage;
     }
 
+    public boolean isTimerActive() {
+        return prefs.getBoolean(KEY_TIMER_ACTIVE, false);
+    }
+
+    /**
+     * Usage total (minutes) the active timer allows, or 0 without a timer
+     */
+    public long getTimerTargetMinutes() {
+        return isTimerActive() ? prefs.getLong(KEY_TIMER_TARGET_MINUTES, 0) : 0;
+    }
+
     /**
      * Get remaining time for timer-based limit
      */
@@ -112,6 +126,7 @@ public class ScreenTimeCalculator {
         editor.apply();
         
         Log.d(TAG, "🔄 Timer-based limit cleared");
+        ScreenTimeEnforcementScheduler.getInstance(context).reschedule();
     }
 
     /**
@@ -122,7 +137,7 @@ public class ScreenTimeCalculator {
     public boolean checkAndUpdateRulesIfChanged() {
         // SERVER-SIDE SYNC FLAG APPROACH:
         // Change detection is now handled entirely by the server using sync flags.
-        // The sync services (PeriodicHttpSyncService and DataSyncService) handle
+        // The screen time rules sync task (ScreenTimeRulesSync via SyncCoordinator) handles
         // applying rule changes when the server indicates there are unsynced updates.
         // This eliminates complex client-side timestamp comparison that was causing
         // unwanted timer resets.
@@ -130,70 +145,39 @@ public class ScreenTimeCalculator {
         Log.d(TAG, "📊 Rule change detection now handled by server-side sync flags");
         return false; // Never trigger timer resets from this method
     }
+    /**
+     * Today's usage from the in-memory aggregator (no database scan)
+     */
     public long getTodayUsageMinutes() {
-        long todayStart = getStartOfDay();
-        long currentTime = System.currentTimeMillis();
-        
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = null;
-        long totalUsageMs = 0;
-        int sessionCount = 0;
-
-        try {
-            // Get all app usage sessions that started or ended today
-            cursor = db.rawQuery(
-                "SELECT start_time, end_time, app_name FROM app_usage WHERE " +
-                "(start_time >= ? OR end_time >= ?) AND start_time <= ? " +
-                "ORDER BY start_time ASC",
-                new String[]{
-                    String.valueOf(todayStart),
-                    String.valueOf(todayStart),
-                    String.valueOf(currentTime)
-                }
-            );
-
-            Log.d(TAG, String.format("Found %d app usage sessions for today (start: %d, current: %d)", 
-                    cursor.getCount(), todayStart, currentTime));
+        return TimeUnit.MILLISECONDS.toMinutes(getTodayUsageMs());
+    }
 
-            while (cursor.moveToNext()) {
-                long startTime = cursor.getLong(0);
-                long endTime = cursor.getLong(1);
-                String appName = cursor.getString(2);
-                
-                // Adjust times to today's boundaries
-                long sessionStart = Math.max(startTime, todayStart);
-                long sessionEnd = Math.min(endTime, currentTime);
-                
-                // Only count if session is valid (end > start)
-                if (sessionEnd > sessionStart) {
-                    long sessionDuration = sessionEnd - sessionStart;
-                    totalUsageMs += sessionDuration;
-                    sessionCount++;
-                    
-                    Log.d(TAG, String.format("Session %d: %s - %d ms (start: %d, end: %d)", 
-                            sessionCount, appName, sessionDuration, sessionStart, sessionEnd));
-                } else {
-                    Log.d(TAG, String.format("Skipping invalid session: %s (start: %d >= end: %d)", 
-                            appName, sessionStart, sessionEnd));
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error calculating today's usage", e);
-        } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
-            db.close();
+    /**
+     * Today's usage in milliseconds, including the part of the open foreground session
+     * that the tracker has not written yet (it only extends the session every 30 seconds)
+     */
+    public long getTodayUsageMs() {
+        long now = System.currentTimeMillis();
+        long usedMs = usageAggregator.getTodayUsageMs();
+
+        ForegroundAppTracker.Snapshot foreground = ForegroundAppTracker.getInstance().getSnapshot();
+        if (foreground.packageName != null) {
+            long countedUntil = Math.max(usageAggregator.getLastUsageEndMs(),
+                    Math.max(foreground.since, getStartOfDay()));
+            usedMs += Math.max(0, now - countedUntil);
         }
+        return usedMs;
+    }
 
-        long usageMinutes = TimeUnit.MILLISECONDS.toMinutes(totalUsageMs);
-        Log.d(TAG, String.format("Total usage today: %d minutes (%d ms) from %d sessions", 
-                usageMinutes, totalUsageMs, sessionCount));
-        
-        // Also log some recent sessions for debugging
-        logRecentSessions();
-        
-        return usageMinutes;
+    /**
+     * Usage total (ms) at which today's screen time runs out: the timer target when a
+     * timer-based limit is active, otherwise the daily limit
+     */
+    public long getLimitUsageMs() {
+        if (prefs.getBoolean(KEY_TIMER_ACTIVE, false)) {
+            return TimeUnit.MINUTES.toMillis(prefs.getLong(KEY_TIMER_TARGET_MINUTES, 0));
+        }
+        return TimeUnit.MINUTES.toMillis(getCachedDailyLimit());
     }
     
     /**
@@ -227,7 +211,6 @@ public class ScreenTimeCalculator {
             if (cursor != null) {
                 cursor.close();
             }
-            db.close();
         }
     }
 
@@ -460,6 +443,8 @@ public class ScreenTimeCalculator {
                     dailyLimit > 0 ? (actualUsageMinutes * 100.0f) / dailyLimit : 0));
             Log.d(TAG, "============================================");
             
+            logRecentSessions();
+            
         } catch (Exception e) {
             Log.e(TAG, "Error in timing accuracy debug", e);
         }
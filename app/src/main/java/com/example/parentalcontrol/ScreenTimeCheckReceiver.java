@@ -63,14 +63,11 @@ public class ScreenTimeCheckReceiver extends BroadcastReceiver {
      */
     private void performEnhancedScreenTimeCheck(Context context, ScreenTimeManager screenTimeManager) {
         try {
-            ScreenTimeCalculator calculator = new ScreenTimeCalculator(context);
-            ScreenTimeRepository screenTimeRepo = new ScreenTimeRepository(context);
-            long dailyLimitMinutes = screenTimeRepo.getDailyLimit();
-            
-            // Get comprehensive screen time data
-            ScreenTimeCalculator.ScreenTimeCountdownData countdownData = calculator.getCountdownData();
-            long remainingMinutes = countdownData.remainingMinutes;
-            long usedMinutes = countdownData.usedMinutes;
+            // Shared state from the enforcement scheduler (computed here only in a fresh process)
+            ScreenTimeState.Snapshot snapshot = ScreenTimeState.getInstance().getSnapshot(context);
+            long dailyLimitMinutes = snapshot.dailyLimitMinutes;
+            long remainingMinutes = snapshot.remainingMinutes;
+            long usedMinutes = snapshot.usedMinutes;
             
             Log.d("ScreenTimeCheckReceiver", String.format("Screen time status: %d/%d minutes used, %d remaining", 
                     usedMinutes, dailyLimitMinutes, remainingMinutes));
@@ -1,12 +1,8 @@
 // ScreenTimeCountdownFragment.java
 package com.example.parentalcontrol;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -26,18 +22,9 @@ public class ScreenTimeCountdownFragment extends Fragment {
     private View warningContainer;
     private TextView tvWarningText;
 
-    private BroadcastReceiver screenTimeUpdateReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            int usedMinutes = intent.getIntExtra("used_minutes", 0);
-            int remainingMinutes = intent.getIntExtra("remaining_minutes", 0);
-            int dailyLimitMinutes = intent.getIntExtra("daily_limit_minutes", 120);
-            float percentageUsed = intent.getFloatExtra("percentage_used", 0);
-            boolean wasUpdated = intent.getBooleanExtra("was_updated", false);
-
-            updateUI(usedMinutes, remainingMinutes, dailyLimitMinutes, percentageUsed, wasUpdated);
-        }
-    };
+    private final ScreenTimeState.Listener screenTimeListener = snapshot -> updateUI(
+            (int) snapshot.usedMinutes, (int) snapshot.remainingMinutes,
+            (int) snapshot.dailyLimitMinutes, snapshot.percentageUsed);
 
     @Nullable
     @Override
@@ -62,16 +49,8 @@ public class ScreenTimeCountdownFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        // Register broadcast receiver
-        IntentFilter filter = new IntentFilter("com.example.parentalcontrol.SCREEN_TIME_UPDATE");
-        if (getContext() != null) {
-            androidx.core.content.ContextCompat.registerReceiver(
-                getContext(), 
-                screenTimeUpdateReceiver, 
-                filter, 
-                androidx.core.content.ContextCompat.RECEIVER_NOT_EXPORTED
-            );
-        }
+        // Render from the shared state; the current snapshot arrives right away
+        ScreenTimeState.getInstance().addListener(screenTimeListener);
         
         // Start the countdown service if not already running
         if (getContext() != null) {
@@ -83,25 +62,13 @@ public class ScreenTimeCountdownFragment extends Fragment {
     @Override
     public void onPause() {
         super.onPause();
-        // Unregister broadcast receiver
-        if (getContext() != null) {
-            try {
-                getContext().unregisterReceiver(screenTimeUpdateReceiver);
-            } catch (IllegalArgumentException e) {
-                // Receiver wasn't registered, ignore
-            }
-        }
+        ScreenTimeState.getInstance().removeListener(screenTimeListener);
     }
 
-    private void updateUI(int usedMinutes, int remainingMinutes, int dailyLimitMinutes, float percentageUsed, boolean wasUpdated) {
+    private void updateUI(int usedMinutes, int remainingMinutes, int dailyLimitMinutes, float percentageUsed) {
         if (getActivity() == null) return;
         
         getActivity().runOnUiThread(() -> {
-            // Log if rules were updated
-            if (wasUpdated) {
-                Log.d("ScreenTimeCountdown", "Screen time rules updated - UI refreshed");
-            }
-            
             // Update time displays
             tvUsedTime.setText(formatTime(usedMinutes));
             tvRemainingTime.setText(formatTime(remainingMinutes));
@@ -28,14 +28,16 @@ import android.widget.Toast;
 
 import androidx.core.app.NotificationCompat;
 
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
+
 import java.util.Calendar;
 
 public class ScreenTimeCountdownService extends Service {
     private static final String TAG = "ScreenTimeCountdown";
     private static final String CHANNEL_ID = "screen_time_countdown";
     private static final int NOTIFICATION_ID = 1001;
-    private static final int UPDATE_INTERVAL = 1000; // Update every 1 second for smooth countdown
-    private static final int RULE_CHECK_INTERVAL = 30000; // Check for rule changes every 30 seconds
     
     // ENHANCED LOCKDOWN: Time before making device totally unusable after limit reached
     private static final int COMPLETE_LOCKDOWN_DELAY_MS = 30000; // 30 seconds
@@ -46,31 +48,10 @@ public class ScreenTimeCountdownService extends Service {
     private WindowManager windowManager = null;
 
     private Handler handler;
-    private Runnable countdownRunnable;
-    private Runnable ruleCheckRunnable;
     private AppUsageDatabaseHelper dbHelper;
     private ScreenTimeRepository screenTimeRepo;
     private ScreenTimeCalculator screenTimeCalculator;
     private NotificationManager notificationManager;
-    private long lastRuleCheckTime = 0;
-    
-    // Notification cooldown tracking for better UX
-    private long last30MinWarningTime = 0;
-    private long last15MinWarningTime = 0;
-    private long last5MinWarningTime = 0;
-    private long last1MinWarningTime = 0;
-    private long lastLimitReachedTime = 0;
-    
-    // Cooldown intervals (in milliseconds)
-    private static final long WARNING_COOLDOWN_30MIN = 10 * 60 * 1000; // 10 minutes
-    private static final long WARNING_COOLDOWN_15MIN = 5 * 60 * 1000;  // 5 minutes
-    private static final long WARNING_COOLDOWN_5MIN = 2 * 60 * 1000;   // 2 minutes
-    private static final long WARNING_COOLDOWN_1MIN = 30 * 1000;       // 30 seconds
-    private static final long WARNING_COOLDOWN_LIMIT = 10 * 1000;      // 10 seconds
-    
-    // User-friendly notification throttling
-    private long lastWarningNotificationTime = 0;
-    private int lastNotifiedRemainingMinutes = -1; // Track the last notified remaining time
 
     @Override
     public void onCreate() {
@@ -85,7 +66,9 @@ public class ScreenTimeCountdownService extends Service {
         createNotificationChannel();
         handler = new Handler(Looper.getMainLooper());
         
-        startCountdown();
+        // The enforcement scheduler wakes us at each point on the timeline; no polling here
+        EventBus.getDefault().register(this);
+        ScreenTimeEnforcementScheduler.getInstance(this).reschedule();
     }
 
     @Override
@@ -123,86 +106,24 @@ public class ScreenTimeCountdownService extends Service {
         }
     }
 
-    private void startCountdown() {
-        // Main countdown runnable - updates every second for smooth countdown
-        // But increases frequency when close to limits
-        countdownRunnable = new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    updateCountdownDisplay();
-                    
-                    // Determine next update interval based on remaining time
-                    long nextInterval = getAdaptiveUpdateInterval();
-                    handler.postDelayed(this, nextInterval);
-                    
-                } catch (Exception e) {
-                    Log.e(TAG, "Error in countdown runnable", e);
-                    // Fallback to normal interval
-                    handler.postDelayed(this, UPDATE_INTERVAL);
-                }
-            }
-        };
-        
-        // Rule check runnable - checks for server updates every 30 seconds
-        ruleCheckRunnable = new Runnable() {
-            @Override
-            public void run() {
-                checkForRuleUpdates();
-                handler.postDelayed(this, RULE_CHECK_INTERVAL);
-            }
-        };
-        
-        // Start both runnables
-        handler.post(countdownRunnable);
-        handler.post(ruleCheckRunnable);
-    }
-    
     /**
-     * Get adaptive update interval based on remaining screen time
-     * Updates more frequently when close to limits for immediate response
+     * A point on the screen-time timeline was reached, or the timeline was re-armed
      */
-    private long getAdaptiveUpdateInterval() {
-        try {
-            ScreenTimeCalculator.ScreenTimeCountdownData data = screenTimeCalculator.getCountdownData();
-            long remainingMinutes = data.remainingMinutes;
-            
-            if (remainingMinutes <= 0) {
-                // Limit reached - update every 100ms for IMMEDIATE response
-                return 100;
-            } else if (remainingMinutes <= 1) {
-                // Critical zone (1 minute left) - update every 500ms for precision
-                return 500;
-            } else if (remainingMinutes <= 5) {
-                // Warning zone - update every 1 second
-                return 1000;
-            } else if (remainingMinutes <= 15) {
-                // Caution zone - update every 2 seconds
-                return 2000;
-            } else if (remainingMinutes <= 30) {
-                // Watch zone - update every 5 seconds
-                return 5000;
-            } else {
-                // Normal zone - update every 10 seconds
-                return 10000;
-            }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error calculating adaptive interval", e);
-            return UPDATE_INTERVAL; // Fallback to default
-        }
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onScreenTimeTimeline(ScreenTimeTimelineEvent event) {
+        updateCountdownDisplay(event.warningMinutes);
     }
     
     /**
      * Enhanced countdown display update with immediate limit detection
      */
-    private void updateCountdownDisplay() {
+    private void updateCountdownDisplay(int warningMinutes) {
         try {
-            // Get countdown data (uses actual usage only for accurate timing)
-            ScreenTimeCalculator.ScreenTimeCountdownData data = screenTimeCalculator.getCountdownData();
+            // Published by the enforcement scheduler just before this event
+            ScreenTimeState.Snapshot data = ScreenTimeState.getInstance().getSnapshot();
             
             // Check for immediate limit exceeded condition - CRITICAL PATH
-            if (data.isLimitExceeded()) {
+            if (warningMinutes == 0 || data.isLimitExceeded()) {
                 Log.d(TAG, "🚨 IMMEDIATE LIMIT DETECTION: Screen time limit exceeded - TRIGGERING IMMEDIATE LOCKDOWN");
                 
                 // Send critical notification IMMEDIATELY
@@ -257,30 +178,10 @@ public class ScreenTimeCountdownService extends Service {
             // Update notification with current status
             updateNotification(data);
             
-            // Send broadcast for UI updates
-            Intent broadcastIntent = new Intent("com.example.parentalcontrol.SCREEN_TIME_UPDATE");
-            broadcastIntent.putExtra("used_minutes", (int) data.usedMinutes);
-            broadcastIntent.putExtra("remaining_minutes", (int) data.remainingMinutes);
-            broadcastIntent.putExtra("daily_limit_minutes", (int) data.dailyLimitMinutes);
-            broadcastIntent.putExtra("percentage_used", data.percentageUsed);
-            broadcastIntent.putExtra("was_updated", data.wasUpdated);
-            sendBroadcast(broadcastIntent);
-            
-            // Send warning notifications based on remaining time
-            sendProgressiveWarningNotifications(data);
-            
-            // Debug timing accuracy every 30 seconds when close to limit
-            if (data.remainingMinutes <= 30) {
-                long currentTime = System.currentTimeMillis();
-                if (currentTime - lastRuleCheckTime >= 30000) { // Every 30 seconds
-                    screenTimeCalculator.debugTimingAccuracy();
-                }
-            }
-            
-            if (data.wasUpdated) {
-                Log.d(TAG, "Screen time rules were updated: " + data.toString());
-                // Reset notification cooldowns so user gets fresh warnings with new limits
-                resetNotificationCooldowns();
+            // Warnings are due only at the marks on the scheduler's timeline
+            if (warningMinutes > 0) {
+                sendTimelineWarningNotification(data, warningMinutes);
+                screenTimeCalculator.debugTimingAccuracy();
             }
             
         } catch (Exception e) {
@@ -289,113 +190,42 @@ public class ScreenTimeCountdownService extends Service {
     }
     
     /**
-     * Send progressive warning notifications based on remaining time with cooldown for better UX
+     * Send the warning for a mark on the timeline (30, 15, 5 or 1 minutes left)
      */
-    private void sendProgressiveWarningNotifications(ScreenTimeCalculator.ScreenTimeCountdownData data) {
+    private void sendTimelineWarningNotification(ScreenTimeState.Snapshot data, int minutesLeft) {
         try {
-            long remainingMinutes = data.remainingMinutes;
-            long currentTime = System.currentTimeMillis();
+            ScreenTimeCheckReceiver.NotificationPriority priority;
+            String title;
+            String message;
             
-            // Only send notifications if we're getting close to the limit
-            if (remainingMinutes > 30) {
-                return; // No notifications needed yet
-            }
-            
-            ScreenTimeCheckReceiver.NotificationPriority priority = ScreenTimeCheckReceiver.NotificationPriority.LOW;
-            String title = "";
-            String message = "";
-            boolean shouldSendNotification = false;
-            
-            if (remainingMinutes <= 0) {
-                // Critical - limit reached - IMMEDIATE LOCKDOWN
-                if (currentTime - lastLimitReachedTime >= WARNING_COOLDOWN_LIMIT) {
-                    priority = ScreenTimeCheckReceiver.NotificationPriority.CRITICAL;
-                    title = "Screen Time Limit Reached!";
-                    message = "Your daily screen time limit of " + data.dailyLimitMinutes + " minutes has been reached. Device will lock NOW.";
-                    shouldSendNotification = true;
-                    lastLimitReachedTime = currentTime;
-                }
-                
-            } else if (remainingMinutes == 1) {
+            if (minutesLeft == 1) {
                 // CRITICAL WARNING - exactly 1 minute before lockdown
-                if (currentTime - last1MinWarningTime >= WARNING_COOLDOWN_1MIN) {
-                    priority = ScreenTimeCheckReceiver.NotificationPriority.CRITICAL;
-                    title = "🚨 FINAL WARNING - 1 MINUTE LEFT";
-                    message = "Your device will LOCK in exactly 1 minute when your " + data.dailyLimitMinutes + " minute daily limit is reached!";
-                    shouldSendNotification = true;
-                    last1MinWarningTime = currentTime;
-                }
-                
-            } else if (remainingMinutes <= 5) {
-                // High priority - 5 minutes or less
-                if (currentTime - last5MinWarningTime >= WARNING_COOLDOWN_5MIN) {
-                    priority = ScreenTimeCheckReceiver.NotificationPriority.HIGH;
-                    title = "Screen Time Critical - " + remainingMinutes + " min left";
-                    message = "Only " + remainingMinutes + " minutes remaining! Device will lock when limit is reached.";
-                    shouldSendNotification = true;
-                    last5MinWarningTime = currentTime;
-                }
-                
-            } else if (remainingMinutes <= 15) {
-                // Normal priority - 15 minutes or less
-                if (currentTime - last15MinWarningTime >= WARNING_COOLDOWN_15MIN) {
-                    priority = ScreenTimeCheckReceiver.NotificationPriority.NORMAL;
-                    title = "Screen Time Warning - " + remainingMinutes + " min left";
-                    message = "You have " + remainingMinutes + " minutes of screen time remaining today.";
-                    shouldSendNotification = true;
-                    last15MinWarningTime = currentTime;
-                }
-                
-            } else if (remainingMinutes <= 30) {
-                // Low priority - 30 minutes or less
-                if (currentTime - last30MinWarningTime >= WARNING_COOLDOWN_30MIN) {
-                    priority = ScreenTimeCheckReceiver.NotificationPriority.LOW;
-                    title = "Screen Time Reminder";
-                    message = "You have " + remainingMinutes + " minutes remaining of your daily " + data.dailyLimitMinutes + " minute limit.";
-                    shouldSendNotification = true;
-                    last30MinWarningTime = currentTime;
-                }
-            } else {
-                return; // No notification needed
-            }
-            
-            // Only send the notification if cooldown period has passed
-            if (shouldSendNotification) {
-                EnhancedAlertNotifier.showScreenTimeNotification(this, title, message, priority);
-                Log.d(TAG, String.format("📢 Sent warning notification: %s (remaining: %d min)", title, remainingMinutes));
+                priority = ScreenTimeCheckReceiver.NotificationPriority.CRITICAL;
+                title = "🚨 FINAL WARNING - 1 MINUTE LEFT";
+                message = "Your device will LOCK in exactly 1 minute when your " + data.dailyLimitMinutes + " minute daily limit is reached!";
+            } else if (minutesLeft <= 5) {
+                priority = ScreenTimeCheckReceiver.NotificationPriority.HIGH;
+                title = "Screen Time Critical - " + minutesLeft + " min left";
+                message = "Only " + minutesLeft + " minutes remaining! Device will lock when limit is reached.";
+            } else if (minutesLeft <= 15) {
+                priority = ScreenTimeCheckReceiver.NotificationPriority.NORMAL;
+                title = "Screen Time Warning - " + minutesLeft + " min left";
+                message = "You have " + minutesLeft + " minutes of screen time remaining today.";
             } else {
-                Log.d(TAG, String.format("⏰ Skipped notification due to cooldown (remaining: %d min)", remainingMinutes));
+                priority = ScreenTimeCheckReceiver.NotificationPriority.LOW;
+                title = "Screen Time Reminder";
+                message = "You have " + minutesLeft + " minutes remaining of your daily " + data.dailyLimitMinutes + " minute limit.";
             }
             
-        } catch (Exception e) {
-            Log.e(TAG, "Error sending progressive warning notifications", e);
-        }
-    }
-
-    /**
-     * Check for rule updates from server (called every 30 seconds)
-     */
-    private void checkForRuleUpdates() {
-        try {
-            long currentTime = System.currentTimeMillis();
-            
-            // Only check if enough time has passed since last check
-            if (currentTime - lastRuleCheckTime >= RULE_CHECK_INTERVAL) {
-                Log.d(TAG, "Checking for screen time rule updates from server...");
-                
-                // This will trigger any pending sync operations
-                // The ScreenTimeCalculator will detect changes when rules are updated
-                lastRuleCheckTime = currentTime;
-                
-                Log.d(TAG, "Rule check completed");
-            }
+            EnhancedAlertNotifier.showScreenTimeNotification(this, title, message, priority);
+            Log.d(TAG, String.format("📢 Sent warning notification: %s (remaining: %d min)", title, minutesLeft));
             
         } catch (Exception e) {
-            Log.e(TAG, "Error checking for rule updates", e);
+            Log.e(TAG, "Error sending warning notification", e);
         }
     }
 
-    private void updateNotification(ScreenTimeCalculator.ScreenTimeCountdownData data) {
+    private void updateNotification(ScreenTimeState.Snapshot data) {
         Intent notificationIntent = new Intent(this, MainActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(
                 this, 0, notificationIntent, 
@@ -446,28 +276,12 @@ public class ScreenTimeCountdownService extends Service {
         return limit;
     }
 
-    /**
-     * Reset notification cooldowns for fresh notifications after rule updates
-     */
-    private void resetNotificationCooldowns() {
-        last30MinWarningTime = 0;
-        last15MinWarningTime = 0;
-        last5MinWarningTime = 0;
-        last1MinWarningTime = 0;
-        lastLimitReachedTime = 0;
-        Log.d(TAG, "🔄 Notification cooldowns reset - fresh warnings will be sent");
-    }
-
     @Override
     public void onDestroy() {
         super.onDestroy();
+        EventBus.getDefault().unregister(this);
         if (handler != null) {
-            if (countdownRunnable != null) {
-                handler.removeCallbacks(countdownRunnable);
-            }
-            if (ruleCheckRunnable != null) {
-                handler.removeCallbacks(ruleCheckRunnable);
-            }
+            handler.removeCallbacksAndMessages(null);
         }
         
         // Make sure to remove the overlay if the service is stopped
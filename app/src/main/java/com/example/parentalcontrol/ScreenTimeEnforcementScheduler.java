@@ -0,0 +1,188 @@
+package com.example.parentalcontrol;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.util.Log;
+
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arms one callback for the next instant on today's screen-time timeline
+ * While the screen is on and an app is in the foreground, usage grows at wall-clock rate,
+ * so the instant the limit is hit - and each warning mark before it - is known in advance.
+ * Instead of re-polling usage, a single main-thread callback is armed for the next of those
+ * instants (at most one per remaining minute, for the countdown display) and re-armed when
+ * the foreground app, the screen state or the rules change. With the screen off nothing is armed.
+ * Each pass publishes the resulting figures to ScreenTimeState for every other reader.
+ */
+public class ScreenTimeEnforcementScheduler {
+    private static final String TAG = "ScreenTimeEnforcement";
+
+    // Minutes left at which a warning is due; the limit itself is mark 0
+    private static final int[] WARNING_MARKS = {30, 15, 5, 1};
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    // Handler callbacks can run a little late, never early; allow for that when matching a mark
+    private static final long MARK_TOLERANCE_MS = 1000;
+
+    private static ScreenTimeEnforcementScheduler instance;
+
+    private final Context context;
+    private final ScreenTimeCalculator calculator;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable timelineCallback = this::onTimelineInstant;
+    private final Runnable rearm = this::arm;
+
+    // Main thread only
+    private boolean screenInteractive;
+    private int armedMark = ScreenTimeTimelineEvent.NO_WARNING;
+
+    private final BroadcastReceiver screenStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            screenInteractive = !Intent.ACTION_SCREEN_OFF.equals(intent.getAction());
+            if (screenInteractive && ScreenTimeState.getInstance().getSnapshot().isBedtime()) {
+                // Bedtime is only re-checked at its transitions, so re-lock a device woken during it
+                new BedtimeEnforcer(context).checkAndEnforceBedtime();
+            }
+            arm();
+        }
+    };
+
+    public static synchronized ScreenTimeEnforcementScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScreenTimeEnforcementScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ScreenTimeEnforcementScheduler(Context context) {
+        this.context = context;
+        this.calculator = new ScreenTimeCalculator(context);
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        screenInteractive = powerManager == null || powerManager.isInteractive();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        context.registerReceiver(screenStateReceiver, filter);
+        EventBus.getDefault().register(this);
+    }
+
+    /**
+     * Recompute the timeline and re-arm; call after the limit or today's usage changed
+     * Safe from any thread - the work happens on the main thread.
+     */
+    public void reschedule() {
+        mainHandler.post(rearm);
+    }
+
+    /**
+     * Compute and publish the current figures right away on the calling thread
+     */
+    void publishNow() {
+        publishState();
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onForegroundApp(ForegroundAppEvent event) {
+        arm();
+    }
+
+    private void onTimelineInstant() {
+        long remainingMs = getRemainingMs();
+        int mark = armedMark;
+        if (remainingMs <= 0) {
+            mark = 0;
+        } else if (mark == 0 || remainingMs > mark * MINUTE_MS + MARK_TOLERANCE_MS) {
+            // Usage was counted differently than projected; treat it as a plain refresh
+            mark = ScreenTimeTimelineEvent.NO_WARNING;
+        }
+        if (mark >= 0) {
+            Log.d(TAG, "⏰ Screen time mark reached: " + mark + " min left");
+        }
+        armNext(remainingMs, mark);
+    }
+
+    private void arm() {
+        long remainingMs = getRemainingMs();
+        // Over the limit: every re-arm re-asserts it (new foreground app, screen on)
+        armNext(remainingMs, remainingMs <= 0 ? 0 : ScreenTimeTimelineEvent.NO_WARNING);
+    }
+
+    private void armNext(long remainingMs, int firedMark) {
+        mainHandler.removeCallbacks(timelineCallback);
+        publishState();
+        EventBus.getDefault().post(new ScreenTimeTimelineEvent(firedMark, remainingMs));
+
+        if (!isUsageGrowing()) {
+            Log.d(TAG, "Screen off or no foreground app - timeline paused at " + remainingMs + " ms left");
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long delay;
+        if (remainingMs <= 0) {
+            // Keep re-asserting the limit once a minute while the device is still in use
+            armedMark = 0;
+            delay = MINUTE_MS;
+        } else {
+            // Next whole remaining minute; the last one is the limit itself
+            long minutesLeftAtNext = (remainingMs - 1) / MINUTE_MS;
+            armedMark = getMark(minutesLeftAtNext);
+            delay = remainingMs - minutesLeftAtNext * MINUTE_MS;
+        }
+
+        // Usage totals restart at midnight, so never wait past it
+        delay = Math.min(delay, getStartOfNextDay(now) - now);
+        mainHandler.postDelayed(timelineCallback, delay);
+        Log.d(TAG, "Next screen time check in " + delay + " ms (mark " + armedMark + ", " + remainingMs + " ms left)");
+    }
+
+    private void publishState() {
+        ScreenTimeCalculator.ScreenTimeCountdownData data = calculator.getCountdownData();
+        ScreenTimeState.getInstance().publishUsage(data.usedMinutes, data.remainingMinutes,
+                data.dailyLimitMinutes, calculator.isTimerActive(), calculator.getTimerTargetMinutes());
+    }
+
+    private boolean isUsageGrowing() {
+        return screenInteractive && ForegroundAppTracker.getInstance().isKnown();
+    }
+
+    private long getRemainingMs() {
+        return calculator.getLimitUsageMs() - calculator.getTodayUsageMs();
+    }
+
+    private static int getMark(long minutesLeft) {
+        if (minutesLeft == 0) {
+            return 0;
+        }
+        for (int mark : WARNING_MARKS) {
+            if (mark == minutesLeft) {
+                return mark;
+            }
+        }
+        return ScreenTimeTimelineEvent.NO_WARNING;
+    }
+
+    private static long getStartOfNextDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+}
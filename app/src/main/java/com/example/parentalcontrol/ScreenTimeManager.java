@@ -17,10 +17,6 @@ import org.json.JSONObject;
 
 import java.util.Calendar;
 
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-
 public class ScreenTimeManager {
     private final Context context;
     private final AlarmManager alarmManager;
@@ -73,22 +69,9 @@ public class ScreenTimeManager {
         // The database should already be updated by sync services with proper server timestamp
         // screenTimeRepo.saveScreenTimeRules(maxMinutes); // REMOVED - this was overwriting server timestamp
 
-        // Set repeating alarm for periodic checks
-        Intent intent = new Intent(context, ScreenTimeCheckReceiver.class);
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                0,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        // Check every 30 seconds for better synchronization with countdown service
-        alarmManager.setRepeating(
-                AlarmManager.RTC_WAKEUP,
-                System.currentTimeMillis(),
-                30 * 1000, // 30 second interval (improved synchronization)
-                pendingIntent
-        );
+        // No periodic alarm: the calculator re-armed ScreenTimeEnforcementScheduler for the exact
+        // instant the new limit is hit. Drop the repeating check left by older versions.
+        cancelScreenTimeChecks();
 
         Log.d("ScreenTimeManager", "Timer-based limit set successfully. Timer will run for " + maxMinutes + " minutes from current usage.");
 
@@ -125,6 +108,10 @@ public class ScreenTimeManager {
         setTimerBasedLimit(maxMinutes);
     }
 
+    /**
+     * Report the new limit to the server through the outbox; a newer limit replaces one
+     * that has not been sent yet
+     */
     private void syncScreenTimeRules(long maxMinutes) {
         try {
             String deviceId = Settings.Secure.getString(context.getContentResolver(),
@@ -134,17 +121,9 @@ public class ScreenTimeManager {
             json.put("device_id", deviceId);
             json.put("daily_limit_minutes", maxMinutes);
 
-            RequestBody body = RequestBody.create(json.toString(), AuthService.JSON);
-            Request request = new Request.Builder()
-                    .url(AuthService.BASE_URL + "api/set-screen-time/")
-                    .addHeader("Authorization", "Bearer " +
-                            AppController.getInstance().getAuthToken())
-                    .post(body)
-                    .build();
-
-            new OkHttpClient().newCall(request).execute();
+            ApiOutbox.getInstance(context).enqueue("api/set-screen-time/", json.toString(), "set-screen-time");
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.e("ScreenTimeManager", "Could not queue screen time limit for the server", e);
         }
     }
 
@@ -153,6 +132,13 @@ public class ScreenTimeManager {
      */
     public void cancelLimits() {
         // Cancel screen time checks
+        cancelScreenTimeChecks();
+        
+        // Cancel bedtime enforcement
+        cancelBedtimeEnforcement();
+    }
+
+    private void cancelScreenTimeChecks() {
         Intent intent = new Intent(context, ScreenTimeCheckReceiver.class);
         PendingIntent pendingIntent = PendingIntent.getBroadcast(
                 context,
@@ -161,9 +147,6 @@ public class ScreenTimeManager {
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
         alarmManager.cancel(pendingIntent);
-        
-        // Cancel bedtime enforcement
-        cancelBedtimeEnforcement();
     }    /**
      * Resets the screen time limit and clears all usage data for today
      * This effectively gives the user a fresh start with their screen time
@@ -217,26 +200,9 @@ public class ScreenTimeManager {
             // Reset the lock flag to allow new checks with updated limit
             lockInProgress = false;
             
-            // Cancel and restart alarms with new timing
+            // Cancel old alarms; enforcement now runs off the scheduler's deadline
             cancelLimits();
             
-            // Set up screen time monitoring with new limit
-            Intent intent = new Intent(context, ScreenTimeCheckReceiver.class);
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    0,
-                    intent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-
-            // Check every 30 seconds for better synchronization
-            alarmManager.setRepeating(
-                    AlarmManager.RTC_WAKEUP,
-                    System.currentTimeMillis(),
-                    30 * 1000, // 30 second interval
-                    pendingIntent
-            );
-            
             // Restart bedtime enforcement
             setupBedtimeEnforcement();
             
@@ -262,45 +228,24 @@ public class ScreenTimeManager {
      * This method now checks timer-based limits first, then falls back to traditional approach
      */
     public void checkScreenTime(Context context) {
-        // Use the new calculator for more accurate calculation
-        ScreenTimeCalculator calculator = new ScreenTimeCalculator(context);
-        
-        // Check for rule updates from web interface FIRST
-        ScreenTimeCalculator.ScreenTimeCountdownData countdownData = calculator.getCountdownData();
-        if (countdownData.wasUpdated) {
-            Log.d("ScreenTimeManager", "🔄 Web interface rule update detected - setting timer-based limit: " + countdownData.dailyLimitMinutes + " minutes");
-            // Timer is already set in the calculator, just reset other components
-            resetScreenTimeLimitWithNewLimit(countdownData.dailyLimitMinutes);
-        }
+        // Render from the shared state instead of re-querying usage and limits
+        ScreenTimeState.Snapshot snapshot = ScreenTimeState.getInstance().getSnapshot(context);
         
-        // Enhanced debugging
         Log.d("ScreenTimeManager", "=== ENHANCED TIMER-BASED SCREEN TIME CHECK START ===");
         
-        // Check timer-based limit first
-        boolean timerLimitExceeded = calculator.isTimerLimitExceeded();
-        long timerRemaining = calculator.getTimerRemainingMinutes();
-        
-        if (timerRemaining >= 0) {
-            // Timer is active
+        if (snapshot.timerActive) {
             Log.d("ScreenTimeManager", String.format("🎯 Timer-based check - Remaining: %d min, Exceeded: %s", 
-                    timerRemaining, timerLimitExceeded));
+                    snapshot.remainingMinutes, snapshot.isLimitExceeded()));
             
-            if (timerLimitExceeded) {
+            if (snapshot.isLimitExceeded()) {
                 triggerDeviceLock(context, "Timer-based screen time limit reached");
                 return;
             }
         } else {
-            // Fallback to traditional approach
-            Log.d("ScreenTimeManager", "📊 Fallback to traditional limit checking");
-            
-            long dailyLimitMinutes = countdownData.dailyLimitMinutes;
-            long actualUsage = calculator.getTodayUsageMinutes();
-            boolean traditionalLimitExceeded = actualUsage >= dailyLimitMinutes;
-            
             Log.d("ScreenTimeManager", String.format("Traditional check - Usage: %d min, Limit: %d min, Exceeded: %s", 
-                    actualUsage, dailyLimitMinutes, traditionalLimitExceeded));
+                    snapshot.usedMinutes, snapshot.dailyLimitMinutes, snapshot.isLimitExceeded()));
             
-            if (traditionalLimitExceeded) {
+            if (snapshot.isLimitExceeded()) {
                 triggerDeviceLock(context, "Daily screen time limit exceeded");
                 return;
             }
@@ -342,29 +287,16 @@ public class ScreenTimeManager {
     }
 
     /**
-     * Sets up bedtime enforcement with periodic checks
+     * Sets up bedtime enforcement: arms one exact alarm for the next bedtime warning, start
+     * or end, off the main thread (the first call reads the rules). Warnings and the lock
+     * come from that alarm and from BedtimeEnforcer.onRulesChanged, so calling this after
+     * every limit change does not repeat them. The alarm shares the PendingIntent of the
+     * old 5-minute repeating check, so it replaces it on upgraded installs.
      */
     public void setupBedtimeEnforcement() {
         Log.d("ScreenTimeManager", "Setting up bedtime enforcement");
-        
-        // Schedule periodic bedtime checks every 5 minutes
-        Intent bedtimeIntent = new Intent(context, BedtimeCheckReceiver.class);
-        PendingIntent bedtimePendingIntent = PendingIntent.getBroadcast(
-                context,
-                1001, // Different request code from screen time
-                bedtimeIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        // Check bedtime every 5 minutes (more frequent than screen time for better enforcement)
-        alarmManager.setRepeating(
-                AlarmManager.RTC_WAKEUP,
-                System.currentTimeMillis(),
-                5 * 60 * 1000, // 5 minute interval
-                bedtimePendingIntent
-        );
-
-        Log.d("ScreenTimeManager", "Bedtime enforcement scheduled for periodic checks every 5 minutes");
+        AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "bedtime-arm",
+                () -> new BedtimeEnforcer(context).armNextCheck());
     }
 
     /**
@@ -13,15 +13,25 @@ import java.util.Locale;
 
 public class ScreenTimeRepository {
     private final AppUsageDatabaseHelper dbHelper;
+    private final DatabaseManager databaseManager;
     private final Context context;
 
     public ScreenTimeRepository(Context context) {
         this.context = context;
-        this.dbHelper = ServiceLocator.getInstance(context).getDatabaseHelper();
+        this.databaseManager = ServiceLocator.getInstance(context).getDatabaseManager();
+        this.dbHelper = databaseManager.getHelper();
     }
 
+    /**
+     * Record this minute's screen time on the database writer thread
+     * Serializing the check-then-insert keeps one row per minute.
+     */
     public void calculateAndSaveMinuteScreenTime() {
         String currentTimestamp = getCurrentTimestamp();
+        databaseManager.executeWrite(() -> saveMinuteScreenTime(currentTimestamp));
+    }
+
+    private void saveMinuteScreenTime(String currentTimestamp) {
         int minutes = calculateCurrentMinuteScreenTime();
 
         SQLiteDatabase db = dbHelper.getWritableDatabase();
@@ -43,27 +53,12 @@ public class ScreenTimeRepository {
         }
 
         cursor.close();
-        db.close();
     }
 
     private int calculateCurrentMinuteScreenTime() {
-        long startOfMinute = getStartOfMinute();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        Cursor cursor = db.rawQuery(
-                "SELECT SUM(end_time - start_time) FROM app_usage WHERE end_time > ?",
-                new String[]{String.valueOf(startOfMinute)}
-        );
-
-        int totalMilliseconds = 0;
-        if (cursor.moveToFirst()) {
-            totalMilliseconds = (int) cursor.getLong(0);
-        }
-        cursor.close();
-        db.close();
-
-        // Convert milliseconds to minutes (round up if > 0)
-        return totalMilliseconds > 0 ? 1 : 0;
+        // Any usage reaching into this minute (the open session included) counts the minute
+        long lastUsageEnd = DailyUsageAggregator.getInstance(context).getLastUsageEndMs();
+        return lastUsageEnd > getStartOfMinute() ? 1 : 0;
     }
 
     private String getCurrentTimestamp() {
@@ -84,7 +79,6 @@ public class ScreenTimeRepository {
         values.put("daily_limit_minutes", dailyLimitMinutes);
         values.put("last_updated", System.currentTimeMillis());
         db.insert("screen_time_rules", null, values);
-        db.close();
     }
 
     public long getDailyLimit() {
@@ -103,7 +97,6 @@ public class ScreenTimeRepository {
             Log.d("ScreenTimeRepository", "No daily limit found in database, using default: " + dailyLimit + " minutes");
         }
         cursor.close();
-        db.close();
         
         // Also check all screen time rules for debugging
         logAllScreenTimeRules();
@@ -132,7 +125,6 @@ public class ScreenTimeRepository {
         Log.d("ScreenTimeRepository", "=== END SCREEN TIME RULES ===");
         
         cursor.close();
-        db.close();
     }
 
     /**
@@ -149,6 +141,8 @@ public class ScreenTimeRepository {
                     new String[]{String.valueOf(startOfDay)});
 
             Log.d("ScreenTimeRepository", "Cleared " + deletedRows + " app usage records from today");
+            dbHelper.rebuildRollupsSince(startOfDay);
+            DailyUsageAggregator.getInstance(context).rebuildFromDatabase();
 
             // Also clear screen time minute data for today
             String today = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
@@ -160,8 +154,6 @@ public class ScreenTimeRepository {
 
             Log.d("ScreenTimeRepository", "Cleared " + deletedScreenTime + " screen time records from today");
 
-            db.close();
-
         } catch (Exception e) {
             Log.e("ScreenTimeRepository", "Error clearing today's usage data", e);
         }
@@ -0,0 +1,116 @@
+package com.example.parentalcontrol;
+
+import static android.content.Context.MODE_PRIVATE;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fetches screen time rules and applies them when the server flags unsynced changes
+ * Daily limit, legacy bedtime window and weekly bedtime schedule are written to
+ * screen_time_rules, then bedtime and the timer-based limit are re-armed.
+ */
+public class ScreenTimeRulesSync {
+    private static final String TAG = "ScreenTimeRulesSync";
+    private static final String KEY_RULES_ETAG = "screen_time_rules_etag";
+
+    /**
+     * Blocking call; run it off the main thread
+     * @return true if new rules were applied
+     */
+    public static boolean syncNow(Context context, String deviceId, String authToken) throws IOException, JSONException {
+        SharedPreferences prefs = context.getSharedPreferences("ParentalControlPrefs", MODE_PRIVATE);
+        String etag = prefs.getString(KEY_RULES_ETAG, null);
+        Request.Builder request = new Request.Builder()
+                .url(AuthService.BASE_URL + "api/get-screen-time-rules/" + deviceId + "/")
+                .addHeader("Authorization", "Bearer " + authToken);
+        if (etag != null) {
+            // Unchanged rules cost a 304 with no body
+            request.addHeader("If-None-Match", etag);
+        }
+
+        try (Response response = AppController.getHttpClient().newCall(request.build()).execute()) {
+            if (response.code() == 304) {
+                Log.d(TAG, "✅ Screen time rules unchanged");
+                return false;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Failed to get screen time rules: " + response.code());
+            }
+            JSONObject json = new JSONObject(response.body().string());
+
+            // Server-side sync flag: only apply when the parent changed something
+            boolean hasChanges = json.optBoolean("has_changes", false);
+            if (hasChanges) {
+                applyRules(context, json);
+            } else {
+                Log.d(TAG, "✅ No unsynced screen time changes from server");
+            }
+            // Stored only after the rules it stands for are applied
+            prefs.edit().putString(KEY_RULES_ETAG, response.header("ETag")).apply();
+            return hasChanges;
+        }
+    }
+
+    private static void applyRules(Context context, JSONObject json) throws JSONException {
+        long dailyLimit = json.getLong("daily_limit_minutes");
+        String bedtimeStart = json.optString("bedtime_start", null);
+        String bedtimeEnd = json.optString("bedtime_end", null);
+        JSONArray bedtimeSchedule = json.optJSONArray("bedtime_schedule");
+
+        Log.d(TAG, "🔄 Server has unsynced screen time changes - applying new rules");
+        Log.d(TAG, String.format("   Daily limit: %d minutes", dailyLimit));
+        Log.d(TAG, String.format("   Bedtime: %s to %s", bedtimeStart, bedtimeEnd));
+
+        SharedPreferences prefs = context.getSharedPreferences("ParentalControlPrefs", MODE_PRIVATE);
+        prefs.edit()
+            .putLong("daily_limit_minutes", dailyLimit)
+            .apply();
+
+        SQLiteDatabase db = ServiceLocator.getInstance(context).getDatabaseHelper().getWritableDatabase();
+
+        ContentValues values = new ContentValues();
+        values.put("daily_limit_minutes", dailyLimit);
+        values.put("last_updated", System.currentTimeMillis()); // Mark as updated locally
+
+        if (bedtimeStart != null && !bedtimeStart.equals("null") && !bedtimeStart.trim().isEmpty() &&
+            bedtimeEnd != null && !bedtimeEnd.equals("null") && !bedtimeEnd.trim().isEmpty()) {
+            values.put("bedtime_start", bedtimeStart);
+            values.put("bedtime_end", bedtimeEnd);
+            Log.d(TAG, "   Applying bedtime rules: " + bedtimeStart + " to " + bedtimeEnd);
+        } else {
+            values.put("bedtime_start", (String) null);
+            values.put("bedtime_end", (String) null);
+            Log.d(TAG, "   Clearing bedtime rules");
+        }
+        // Weekly rules (per weekday / school nights), compiled by BedtimeSchedule
+        values.put("bedtime_schedule", bedtimeSchedule != null ? bedtimeSchedule.toString() : null);
+
+        int rowsUpdated = db.update("screen_time_rules", values, "id = ?", new String[]{"1"});
+        if (rowsUpdated == 0) {
+            values.put("id", 1);
+            db.insert("screen_time_rules", null, values);
+            Log.d(TAG, "📝 Inserted new screen time rule");
+        } else {
+            Log.d(TAG, "📝 Updated screen time rule");
+        }
+
+        // Recompile bedtime rules and re-arm the next bedtime alarm
+        BedtimeEnforcer.onRulesChanged(context);
+
+        // Apply timer-based limit (server already marked as synced)
+        new ScreenTimeManager(context).setTimerBasedLimit(dailyLimit);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide screen time state shared by the countdown service, receivers and UI
+ * Only the enforcement side publishes: ScreenTimeEnforcementScheduler for usage and limits,
+ * BedtimeEnforcer for bedtime. Everyone else reads the latest immutable snapshot or subscribes
+ * to changes, so one computation serves every reader.
+ */
+public class ScreenTimeState {
+    private static final String TAG = "ScreenTimeState";
+
+    private static final ScreenTimeState instance = new ScreenTimeState();
+
+    /**
+     * Called on the main thread whenever a new snapshot differs from the previous one
+     */
+    public interface Listener {
+        void onScreenTimeStateChanged(Snapshot snapshot);
+    }
+
+    /**
+     * Immutable view of today's screen time; computedAt is 0 until the first publication
+     */
+    public static final class Snapshot {
+        public final long usedMinutes;
+        public final long remainingMinutes;
+        public final long dailyLimitMinutes;
+        public final float percentageUsed;
+        public final boolean timerActive;
+        public final long timerTargetMinutes;
+        public final BedtimeEnforcer.BedtimeStatus bedtime;
+        public final long computedAt;
+
+        Snapshot(long usedMinutes, long remainingMinutes, long dailyLimitMinutes, boolean timerActive,
+                 long timerTargetMinutes, BedtimeEnforcer.BedtimeStatus bedtime, long computedAt) {
+            this.usedMinutes = usedMinutes;
+            this.remainingMinutes = remainingMinutes;
+            this.dailyLimitMinutes = dailyLimitMinutes;
+            this.percentageUsed = dailyLimitMinutes > 0 ? (usedMinutes * 100f) / dailyLimitMinutes : 0f;
+            this.timerActive = timerActive;
+            this.timerTargetMinutes = timerTargetMinutes;
+            this.bedtime = bedtime;
+            this.computedAt = computedAt;
+        }
+
+        Snapshot withBedtime(BedtimeEnforcer.BedtimeStatus bedtime) {
+            return new Snapshot(usedMinutes, remainingMinutes, dailyLimitMinutes, timerActive,
+                    timerTargetMinutes, bedtime, computedAt);
+        }
+
+        public boolean isLimitExceeded() {
+            return remainingMinutes <= 0;
+        }
+
+        public boolean isWarningState() {
+            return remainingMinutes <= 15 && remainingMinutes > 0;
+        }
+
+        public boolean isBedtime() {
+            return bedtime.inBedtimePeriod;
+        }
+
+        boolean sameAs(Snapshot other) {
+            return usedMinutes == other.usedMinutes
+                    && remainingMinutes == other.remainingMinutes
+                    && dailyLimitMinutes == other.dailyLimitMinutes
+                    && timerActive == other.timerActive
+                    && timerTargetMinutes == other.timerTargetMinutes
+                    && bedtime.hasBedtimeRules == other.bedtime.hasBedtimeRules
+                    && bedtime.inBedtimePeriod == other.bedtime.inBedtimePeriod;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ScreenTimeState{used=%dm, remaining=%dm, limit=%dm, %.1f%%, timer=%s, bedtime=%s}",
+                    usedMinutes, remainingMinutes, dailyLimitMinutes, percentageUsed,
+                    timerActive ? timerTargetMinutes + "m" : "off", bedtime.inBedtimePeriod);
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot current = new Snapshot(0, 0, 0, false, 0,
+            new BedtimeEnforcer.BedtimeStatus(false, null, null, false), 0);
+
+    public static ScreenTimeState getInstance() {
+        return instance;
+    }
+
+    private ScreenTimeState() {
+    }
+
+    /**
+     * Latest snapshot; may still be the empty initial one (computedAt == 0)
+     */
+    public Snapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Latest snapshot, computed once on the calling thread if nothing has been published yet
+     * (e.g. a receiver woken in a fresh process)
+     */
+    public Snapshot getSnapshot(Context context) {
+        Snapshot snapshot = current;
+        if (snapshot.computedAt == 0) {
+            ScreenTimeEnforcementScheduler.getInstance(context).publishNow();
+            snapshot = current;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Subscribe to changes; the current snapshot is delivered right away if there is one
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        Snapshot snapshot = current;
+        if (snapshot.computedAt != 0) {
+            mainHandler.post(() -> {
+                if (listeners.contains(listener)) {
+                    listener.onScreenTimeStateChanged(current);
+                }
+            });
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publish usage and limits (enforcement scheduler only); bedtime carries over
+     */
+    void publishUsage(long usedMinutes, long remainingMinutes, long dailyLimitMinutes,
+                      boolean timerActive, long timerTargetMinutes) {
+        Snapshot next;
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            next = new Snapshot(usedMinutes, remainingMinutes, dailyLimitMinutes, timerActive,
+                    timerTargetMinutes, previous.bedtime, System.currentTimeMillis());
+            current = next;
+        }
+        notifyIfChanged(previous, next);
+    }
+
+    /**
+     * Publish the bedtime status (BedtimeEnforcer only)
+     */
+    void publishBedtime(BedtimeEnforcer.BedtimeStatus bedtime) {
+        Snapshot next;
+        Snapshot previous;
+        synchronized (this) {
+            previous = current;
+            next = previous.withBedtime(bedtime);
+            current = next;
+        }
+        notifyIfChanged(previous, next);
+    }
+
+    private void notifyIfChanged(Snapshot previous, Snapshot next) {
+        // Nothing to render until usage has been published once
+        if (next.computedAt == 0 || (previous.computedAt != 0 && previous.sameAs(next))) {
+            return;
+        }
+        Log.d(TAG, "State changed: " + next);
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            dispatch(next);
+        } else {
+            mainHandler.post(() -> dispatch(next));
+        }
+    }
+
+    private void dispatch(Snapshot snapshot) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onScreenTimeStateChanged(snapshot);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in screen time listener", e);
+            }
+        }
+    }
+}
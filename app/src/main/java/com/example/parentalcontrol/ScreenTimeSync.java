@@ -4,20 +4,15 @@ package com.example.parentalcontrol;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.database.Cursor;
-import android.os.Handler;
-import android.os.Looper;
+import android.database.sqlite.SQLiteDatabase;
 import android.provider.Settings;
 import android.util.Log;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.concurrent.TimeUnit;
-
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ScreenTimeSync {
     private static final String TAG = "ScreenTimeSync";
@@ -35,68 +30,58 @@ public class ScreenTimeSync {
     }
 
     public void syncScreenTime(SyncCallback callback) {
-        new Thread(() -> {
+        AppExecutors.TaskHandle handle = AppExecutors.getInstance().execute(AppExecutors.Pool.DB_WRITE, "screen-time-enqueue", () -> {
             try {
-                Cursor cursor = dbHelper.getUnsyncedScreenTime();
-                JSONArray screenTimeData = new JSONArray();
-                JSONArray dates = new JSONArray();
-
-                while (cursor.moveToNext()) {
-                    JSONObject entry = new JSONObject();
-                    String date = cursor.getString(0);
-                    int minutes = cursor.getInt(1);
-
-                    entry.put("date", date);
-                    entry.put("total_minutes", minutes);
-                    screenTimeData.put(entry);
-                    dates.put(date);
-                }
-                cursor.close();
-
-                if (screenTimeData.length() > 0) {
-                    String authToken = AppController.getInstance().getAuthToken();
-                    if (authToken == null || authToken.isEmpty()) {
-                        throw new Exception("No authentication token available");
-                    }
-
-                    OkHttpClient client = new OkHttpClient.Builder()
-                            .connectTimeout(10, TimeUnit.SECONDS)
-                            .readTimeout(10, TimeUnit.SECONDS)
-                            .build();
-
-                    JSONObject payload = new JSONObject();
-                    payload.put("device_id", getDeviceId());
-                    payload.put("screen_time_data", screenTimeData);
-
-                    Request request = new Request.Builder()
-                            .url(AuthService.BASE_URL + "api/sync-screen-time/")
-                            .addHeader("Authorization", "Bearer " + authToken)
-                            .post(RequestBody.create(payload.toString(), AuthService.JSON))
-                            .build();
-
-                    Response response = client.newCall(request).execute();
-
-                    if (response.isSuccessful()) {
-                        // Mark records as synced
-                        for (int i = 0; i < dates.length(); i++) {
-                            String date = dates.getString(i);
-                            dbHelper.updateScreenTimeSyncStatus(date, 1);
-                        }
-                        notifySuccess(callback);
-                    } else {
-                        String responseBody = response.body() != null ?
-                                response.body().string() : "No response body";
-                        throw new Exception("Sync failed: " + response.message() +
-                                ", Body: " + responseBody);
-                    }
-                } else {
-                    notifySuccess(callback);
-                }
+                syncNow();
+                AppExecutors.runOnMain(callback::onSuccess);
             } catch (Exception e) {
                 Log.e(TAG, "Screen time sync error", e);
-                notifyFailure(callback, e);
+                AppExecutors.runOnMain(() -> callback.onFailure(e));
+            }
+        });
+        if (handle.isRejected()) {
+            AppExecutors.runOnMain(() -> callback.onFailure(
+                    new RejectedExecutionException("Screen time sync not started - executor shut down")));
+        }
+    }
+
+    /**
+     * Queue unsynced screen time in the outbox on the caller's thread
+     * The per-minute rows are sent as one total per day, as the endpoint expects.
+     */
+    public void syncNow() throws JSONException {
+        JSONArray screenTimeData = new JSONArray();
+        long upToId = 0;
+        try (Cursor cursor = dbHelper.getUnsyncedScreenTime()) {
+            while (cursor.moveToNext()) {
+                JSONObject entry = new JSONObject();
+                entry.put("date", cursor.getString(0));
+                entry.put("total_minutes", cursor.getInt(1));
+                screenTimeData.put(entry);
+                upToId = Math.max(upToId, cursor.getLong(2));
             }
-        }).start();
+        }
+
+        if (screenTimeData.length() == 0) {
+            return;
+        }
+        JSONObject payload = new JSONObject();
+        payload.put("device_id", getDeviceId());
+        payload.put("screen_time_data", screenTimeData);
+
+        // Hand the upload to the outbox and mark the rows in one transaction;
+        // delivery, retries and backoff happen there
+        ApiOutbox outbox = ApiOutbox.getInstance(context);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            outbox.enqueue(db, "api/sync-screen-time/", payload.toString(), null);
+            dbHelper.updateScreenTimeSyncStatus(upToId, 1);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        outbox.drainSoon(0);
     }
 
     @SuppressLint("HardwareIds")
@@ -106,12 +91,4 @@ public class ScreenTimeSync {
                 Settings.Secure.ANDROID_ID
         );
     }
-
-    private void notifySuccess(SyncCallback callback) {
-        new Handler(Looper.getMainLooper()).post(callback::onSuccess);
-    }
-
-    private void notifyFailure(SyncCallback callback, Exception e) {
-        new Handler(Looper.getMainLooper()).post(() -> callback.onFailure(e));
-    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.example.parentalcontrol;
+
+/**
+ * Event that's fired by ScreenTimeEnforcementScheduler when a point on today's
+ * screen-time timeline is reached, or when the timeline was re-armed
+ */
+public class ScreenTimeTimelineEvent {
+    /** Nothing to warn about; the countdown display just needs a refresh */
+    public static final int NO_WARNING = -1;
+
+    // Minutes left at the warning mark that was reached (0 = limit reached), or NO_WARNING
+    public final int warningMinutes;
+    public final long remainingMs;
+
+    public ScreenTimeTimelineEvent(int warningMinutes, long remainingMs) {
+        this.warningMinutes = warningMinutes;
+        this.remainingMs = remainingMs;
+    }
+
+    public boolean isLimitReached() {
+        return warningMinutes == 0;
+    }
+}
@@ -68,10 +68,13 @@ public class ServiceDebugActivity extends AppCompatActivity {
             status.append("Auth Token Length: ").append(app.getAuthToken().length()).append("\n");
         }
           status.append("\n=== SERVICE STATUS ===\n");
-        status.append("✓ DataSyncService: 10-second sync interval\n");
-        status.append("✓ BlockingSyncService: 10-second polling\n");
-        status.append("✓ PeriodicHttpSyncService: Comprehensive 10-second HTTP requests\n");
-        status.append("✓ All services make HTTP requests to web interface every 10 seconds\n");
+        status.append("✓ SyncCoordinator: one sync cycle for all services\n");
+        status.append(SyncCoordinator.getInstance(this).getStatusSummary());
+        status.append(HttpMetricsListener.getSummary()).append("\n");
+        status.append("Outbox: ").append(ApiOutbox.getInstance(this).getPendingCount()).append(" pending writes\n");
+        status.append(CircuitBreaker.getInstance().getSummary());
+        status.append("\n=== EXECUTORS ===\n");
+        status.append(AppExecutors.getInstance().getSummary());
         
         // Check if services are running
         ServiceManager serviceManager = app.getServiceManager();
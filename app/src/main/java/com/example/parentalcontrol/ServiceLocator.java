@@ -5,7 +5,7 @@ import android.content.Context;
 
 public class ServiceLocator {
     private static ServiceLocator instance;
-    private AppUsageDatabaseHelper dbHelper;
+    private final DatabaseManager databaseManager;
 
     public static synchronized ServiceLocator getInstance(Context context) {
         if (instance == null) {
@@ -15,11 +15,18 @@ public class ServiceLocator {
     }
 
     private ServiceLocator(Context context) {
-        dbHelper = new AppUsageDatabaseHelper(context);
+        databaseManager = DatabaseManager.getInstance(context);
     }
 
+    /**
+     * Process-wide database helper. The connection stays open - never close it.
+     */
     public AppUsageDatabaseHelper getDatabaseHelper() {
-        return dbHelper;
+        return databaseManager.getHelper();
+    }
+
+    public DatabaseManager getDatabaseManager() {
+        return databaseManager;
     }
 
     public ContentFilter getContentFilter() {
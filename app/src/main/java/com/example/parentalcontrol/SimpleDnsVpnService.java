@@ -1,6 +1,5 @@
 package com.example.parentalcontrol;
 
-import android.app.ActivityManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -35,6 +34,10 @@ public class SimpleDnsVpnService extends VpnService {
     private static final String CHANNEL_ID = "simple_dns_vpn_channel";
     private static final int NOTIFICATION_ID = 5004;
     
+    public static final String ACTION_UPDATE_ML_MODEL = "UPDATE_ML_MODEL";
+    public static final String EXTRA_MODEL_URL = "model_url";
+    public static final String EXTRA_MODEL_SHA256 = "model_sha256";
+    
     private ParcelFileDescriptor vpnInterface;
     private ExecutorService executorService;
     private boolean isRunning = false;
@@ -88,10 +91,36 @@ public class SimpleDnsVpnService extends VpnService {
             return START_NOT_STICKY;
         }
         
+        // Hot-swap the classifier model without tearing down the VPN interface
+        if (intent != null && ACTION_UPDATE_ML_MODEL.equals(intent.getAction())) {
+            updateMlModel(intent.getStringExtra(EXTRA_MODEL_URL), intent.getStringExtra(EXTRA_MODEL_SHA256));
+            return START_STICKY;
+        }
+        
         startVpn();
         return START_STICKY;
     }
     
+    private void updateMlModel(String modelUrl, String sha256) {
+        if (modelUrl == null || sha256 == null) {
+            Log.w(TAG, "[updateMlModel] Missing model URL or checksum");
+            return;
+        }
+        
+        Log.i(TAG, "[updateMlModel] Fetching classifier model from " + modelUrl);
+        MLModelRegistry.getInstance(this).downloadAndInstall(modelUrl, sha256, new MLModelRegistry.InstallCallback() {
+            @Override
+            public void onInstalled(int modelVersion) {
+                Log.i(TAG, "[updateMlModel] ✅ Classifier model v" + modelVersion + " live - VPN untouched");
+            }
+            
+            @Override
+            public void onRejected(String reason) {
+                Log.w(TAG, "[updateMlModel] Classifier model update rejected: " + reason);
+            }
+        });
+    }
+    
     private void startLocalWebServer() {
         try {
             localWebServer.start();
@@ -692,6 +721,10 @@ public class SimpleDnsVpnService extends VpnService {
         
         // Check if browser is active (with fallback for detection issues)
         boolean browserActive = isBrowserActive();
+        if (!browserActive && ForegroundAppTracker.getInstance().isKnown()) {
+            Log.d(TAG, "[shouldPerformRedirect] 📱 Foreground app is not a browser, skipping redirect: " + domain);
+            return false;
+        }
         if (!browserActive) {
             // If browser detection fails but we suspect it might be wrong, allow redirects during peak usage times
             boolean allowFallback = shouldAllowFallbackRedirect();
@@ -738,109 +771,26 @@ public class SimpleDnsVpnService extends VpnService {
     }
     
     /**
-     * Check if a browser app is currently in the foreground using multiple detection methods
+     * Check if a browser app is currently in the foreground
+     * Reads the shared ForegroundAppTracker (a volatile field), so it is safe to call for
+     * every blocked query.
      */
     private boolean isBrowserActive() {
-        // Method 1: Try modern UsageStatsManager (API 21+)
-        boolean browserActiveMethod1 = isBrowserActiveViaUsageStats();
-        
-        // Method 2: Try legacy getRunningTasks (fallback)
-        boolean browserActiveMethod2 = isBrowserActiveViaRunningTasks();
+        boolean browserInForeground = ForegroundAppTracker.getInstance().isBrowserForeground();
         
-        // Method 3: Check running processes for browser apps
-        boolean browserActiveMethod3 = isBrowserActiveViaRunningProcesses();
+        // Assume browser is active during redirect window (fallback)
+        boolean withinRedirectWindow = isWithinRecentRedirectWindow();
         
-        // Method 4: Always assume browser is active during redirect window (fallback)
-        boolean browserActiveMethod4 = isWithinRecentRedirectWindow();
+        boolean finalResult = browserInForeground || withinRedirectWindow;
         
-        boolean finalResult = browserActiveMethod1 || browserActiveMethod2 || browserActiveMethod3 || browserActiveMethod4;
-        
-        Log.d(TAG, String.format("[isBrowserActive] Detection methods - UsageStats: %s, RunningTasks: %s, Processes: %s, RecentWindow: %s → Final: %s", 
-                browserActiveMethod1, browserActiveMethod2, browserActiveMethod3, browserActiveMethod4, finalResult));
+        Log.d(TAG, String.format("[isBrowserActive] Foreground: %s, RecentWindow: %s → Final: %s", 
+                ForegroundAppTracker.getInstance().getForegroundPackage(), withinRedirectWindow, finalResult));
         
         return finalResult;
     }
     
     /**
-     * Method 1: Check browser activity using UsageStatsManager (most reliable on modern Android)
-     */
-    private boolean isBrowserActiveViaUsageStats() {
-        try {
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-                return false; // UsageStatsManager not available
-            }
-            
-            // Note: This requires PACKAGE_USAGE_STATS permission which is hard to get
-            // For now, we'll implement a simpler approach
-            return false;
-            
-        } catch (Exception e) {
-            Log.w(TAG, "[isBrowserActiveViaUsageStats] Error", e);
-            return false;
-        }
-    }
-    
-    /**
-     * Method 2: Legacy method using getRunningTasks (deprecated but sometimes works)
-     */
-    private boolean isBrowserActiveViaRunningTasks() {
-        try {
-            ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
-            if (activityManager == null) return false;
-            
-            // Get running tasks (deprecated but still available)
-            List<ActivityManager.RunningTaskInfo> runningTasks = activityManager.getRunningTasks(1);
-            if (runningTasks.isEmpty()) return false;
-            
-            String topActivity = runningTasks.get(0).topActivity.getPackageName();
-            
-            // Check if it's a browser app
-            boolean isBrowser = isBrowserPackage(topActivity);
-            
-            Log.d(TAG, "[isBrowserActiveViaRunningTasks] Top app: " + topActivity + ", is browser: " + isBrowser);
-            return isBrowser;
-            
-        } catch (Exception e) {
-            Log.w(TAG, "[isBrowserActiveViaRunningTasks] Error", e);
-            return false;
-        }
-    }
-    
-    /**
-     * Method 3: Check running processes for browser applications
-     */
-    private boolean isBrowserActiveViaRunningProcesses() {
-        try {
-            ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
-            if (activityManager == null) return false;
-            
-            List<ActivityManager.RunningAppProcessInfo> runningProcesses = activityManager.getRunningAppProcesses();
-            if (runningProcesses == null) return false;
-            
-            for (ActivityManager.RunningAppProcessInfo processInfo : runningProcesses) {
-                // Check if process is in foreground and is a browser
-                if (processInfo.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND ||
-                    processInfo.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
-                    
-                    for (String processName : processInfo.pkgList) {
-                        if (isBrowserPackage(processName)) {
-                            Log.d(TAG, "[isBrowserActiveViaRunningProcesses] Found active browser process: " + processName);
-                            return true;
-                        }
-                    }
-                }
-            }
-            
-            return false;
-            
-        } catch (Exception e) {
-            Log.w(TAG, "[isBrowserActiveViaRunningProcesses] Error", e);
-            return false;
-        }
-    }
-    
-    /**
-     * Method 4: Assume browser is active if we're within a recent redirect window
+     * Assume browser is active if we're within a recent redirect window
      * This prevents blocking redirects when browser detection fails
      */
     private boolean isWithinRecentRedirectWindow() {
@@ -857,36 +807,6 @@ public class SimpleDnsVpnService extends VpnService {
         return withinWindow;
     }
     
-    /**
-     * Check if a package name corresponds to a browser application
-     */
-    private boolean isBrowserPackage(String packageName) {
-        if (packageName == null) return false;
-        
-        String lowerPackage = packageName.toLowerCase();
-        
-        // Common browser package patterns
-        return lowerPackage.contains("chrome") ||
-               lowerPackage.contains("firefox") ||
-               lowerPackage.contains("browser") ||
-               lowerPackage.contains("opera") ||
-               lowerPackage.contains("edge") ||
-               lowerPackage.contains("samsung") ||
-               lowerPackage.contains("webview") ||
-               lowerPackage.contains("brave") ||
-               lowerPackage.contains("vivaldi") ||
-               lowerPackage.contains("dolphin") ||
-               lowerPackage.contains("uc.browser") ||
-               lowerPackage.contains("duckduckgo") ||
-               // Specific package names
-               lowerPackage.equals("com.android.browser") ||
-               lowerPackage.equals("com.google.android.apps.chrome") ||
-               lowerPackage.equals("org.mozilla.firefox") ||
-               lowerPackage.equals("com.opera.browser") ||
-               lowerPackage.equals("com.microsoft.emmx") ||
-               lowerPackage.equals("com.sec.android.app.sbrowser");
-    }
-
     /**
      * Trigger immediate browser redirect as backup mechanism
      * This ensures that even if DNS redirect doesn't work, browser still goes to Django blocked page
@@ -0,0 +1,531 @@
+package com.example.parentalcontrol;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Single owner of all periodic backend sync
+ * Sync tasks (block list, screen time rules, usage uploads, device status) are registered
+ * once and run in cycles on one background thread. A cycle runs every task that is due, so
+ * tasks requested close together share one cycle, and a request made while a task is in
+ * flight is answered by one follow-up run instead of a parallel request. The cycle cadence
+ * is derived from battery, screen, Doze and network state in one place.
+ *
+ * While the PushChannel stream is up, change events trigger the pull tasks directly and
+ * those tasks only run as a slow safety sweep; when the stream is down they fall back to
+ * polling at an AdaptiveCadence interval, which stretches while nothing changes and snaps
+ * back when something does.
+ */
+public class SyncCoordinator {
+    private static final String TAG = "SyncCoordinator";
+
+    public static final String TASK_BLOCKED_APPS = "blocked_apps";
+    public static final String TASK_SCREEN_TIME_RULES = "screen_time_rules";
+    public static final String TASK_APP_USAGE = "app_usage";
+    public static final String TASK_SCREEN_TIME_UPLOAD = "screen_time_upload";
+    public static final String TASK_DEVICE_STATUS = "device_status";
+
+    // Requests arriving within this window are served by the same cycle
+    private static final long COALESCE_WINDOW_MS = 300;
+    // Push-covered tasks still run this often while the stream is up, in case an event was lost
+    private static final long PUSH_SAFETY_INTERVAL_MS = 15 * 60000;
+    // Server heartbeats every 15 s; three missed ones mean the stream is dead
+    private static final long PUSH_HEARTBEAT_TIMEOUT_MS = 45000;
+    private static final String PREFS_NAME = "SyncCoordinatorPrefs";
+    private static final String KEY_PUSH_SEQUENCE = "push_last_sequence";
+
+    /**
+     * One unit of backend sync; runs on the coordinator thread and may block
+     */
+    public interface SyncTask {
+        /**
+         * @return true if the server reported changes (feeds the polling cadence)
+         */
+        boolean run(Context context, String deviceId, String authToken) throws Exception;
+    }
+
+    private static final class TaskEntry {
+        final String name;
+        final int everyCycles;
+        final boolean pushCovered;
+        final SyncTask task;
+        int cyclesSinceRun;
+        long lastRunAt;
+        boolean requested;
+        long runs;
+        long failures;
+
+        TaskEntry(String name, int everyCycles, boolean pushCovered, SyncTask task) {
+            this.name = name;
+            this.everyCycles = everyCycles;
+            this.pushCovered = pushCovered;
+            this.task = task;
+            // Run everything on the first cycle
+            this.cyclesSinceRun = everyCycles;
+        }
+    }
+
+    private static SyncCoordinator instance;
+
+    private final Context context;
+    private final Handler handler;
+    private final Runnable cycleRunnable = this::runCycle;
+    private final String deviceId;
+
+    // Coordinator thread only
+    private final Map<String, TaskEntry> tasks = new LinkedHashMap<>();
+    private boolean started;
+    private boolean cycleScheduled;
+    private long nextCycleAt;
+    private long cycleCount;
+    private volatile String statusSummary = "Sync not started\n";
+
+    // Cadence inputs; receivers and the network callback run on the coordinator thread
+    private final AdaptiveCadence.Conditions conditions = new AdaptiveCadence.Conditions();
+    private final AdaptiveCadence cadence = new AdaptiveCadence();
+    private boolean networkAvailable = true;
+    private boolean pushConnected;
+    private PushChannel pushChannel;
+    private final CircuitBreaker breaker = CircuitBreaker.getInstance();
+
+    private final BroadcastReceiver deviceStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_BATTERY_CHANGED.equals(action)) {
+                int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+                if (level >= 0 && scale > 0) {
+                    conditions.batteryPercent = level * 100 / scale;
+                }
+                int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+                conditions.charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                        || status == BatteryManager.BATTERY_STATUS_FULL;
+                return;
+            }
+            if (Intent.ACTION_SCREEN_ON.equals(action)) {
+                conditions.screenOn = true;
+                // Catch up right away instead of waiting out the screen-off interval
+                scheduleCycle(COALESCE_WINDOW_MS);
+            } else if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                conditions.screenOn = false;
+            } else if (PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED.equals(action)) {
+                PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+                conditions.deviceIdle = powerManager != null && powerManager.isDeviceIdleMode();
+                if (!conditions.deviceIdle) {
+                    scheduleCycle(COALESCE_WINDOW_MS);
+                }
+            }
+            Log.d(TAG, "Device state changed - next interval " + getCycleIntervalMs() + "ms");
+        }
+    };
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            boolean wasAvailable = networkAvailable;
+            networkAvailable = true;
+            if (!wasAvailable) {
+                Log.d(TAG, "Network back - syncing now");
+                scheduleCycle(COALESCE_WINDOW_MS);
+                if (pushChannel != null) {
+                    pushChannel.reconnectNow();
+                }
+                ApiOutbox.getInstance(context).drainSoon(0);
+            }
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            conditions.networkMetered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            networkAvailable = false;
+            Log.d(TAG, "Network lost - sync paused");
+        }
+    };
+
+    public static synchronized SyncCoordinator getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncCoordinator(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @SuppressLint("HardwareIds")
+    private SyncCoordinator(Context context) {
+        this.context = context;
+        this.deviceId = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+
+        HandlerThread thread = new HandlerThread("SyncCoordinator");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+
+        registerDefaultTasks();
+    }
+
+    /**
+     * Start the sync cycles; safe to call repeatedly from any service
+     */
+    public void start() {
+        handler.post(() -> {
+            if (started) {
+                return;
+            }
+            started = true;
+            registerStateListeners();
+            startPushChannel();
+            // Starts delivering writes queued by a previous process
+            ApiOutbox.getInstance(context);
+            Log.d(TAG, "Sync coordinator started with " + tasks.size() + " tasks");
+            scheduleCycle(0);
+        });
+    }
+
+    /**
+     * Register a task that runs every everyCycles cycles (1 = every cycle)
+     * @param pushCovered the push stream announces changes for this task, so it is only
+     *                    polled while the stream is down
+     */
+    public void registerTask(String name, int everyCycles, boolean pushCovered, SyncTask task) {
+        handler.post(() -> tasks.put(name, new TaskEntry(name, Math.max(1, everyCycles), pushCovered, task)));
+    }
+
+    /**
+     * Run the named task as soon as possible; requests made close together, or while the
+     * task is already running, are served by one run
+     */
+    public void requestSync(String name) {
+        handler.post(() -> {
+            TaskEntry entry = tasks.get(name);
+            if (entry == null) {
+                Log.w(TAG, "Sync requested for unknown task " + name);
+                return;
+            }
+            entry.requested = true;
+            scheduleCycle(COALESCE_WINDOW_MS);
+        });
+    }
+
+    /**
+     * Include the named task in the next regular cycle without pulling that cycle forward
+     */
+    public void markDue(String name) {
+        handler.post(() -> {
+            TaskEntry entry = tasks.get(name);
+            if (entry != null) {
+                entry.requested = true;
+            }
+        });
+    }
+
+    /**
+     * The parent is editing rules (parent_active push event): poll at full speed for a while,
+     * so their edits still land quickly if the stream drops
+     */
+    public void onParentActive() {
+        handler.post(() -> {
+            cadence.onParentActive(SystemClock.elapsedRealtime());
+            Log.d(TAG, "Parent active - fast polling");
+            scheduleCycle(COALESCE_WINDOW_MS);
+        });
+    }
+
+    /**
+     * Per-task run and failure counts as of the last cycle, for diagnostics
+     */
+    public String getStatusSummary() {
+        return statusSummary;
+    }
+
+    private void registerDefaultTasks() {
+        registerTask(TASK_BLOCKED_APPS, 1, true, (context, deviceId, authToken) -> {
+            BlockedAppsUpdatedEvent delta = BlockedAppsSync.syncNow(context, deviceId, authToken);
+            if (!delta.isEmpty()) {
+                AlertNotifier.showNotification(
+                    context,
+                    "App Blocking Updated",
+                    "The list of blocked apps has been updated from the web interface"
+                );
+            }
+            return !delta.isEmpty();
+        });
+        registerTask(TASK_SCREEN_TIME_RULES, 3, true,
+                (context, deviceId, authToken) -> ScreenTimeRulesSync.syncNow(context, deviceId, authToken));
+        registerTask(TASK_APP_USAGE, 6, false, (context, deviceId, authToken) -> {
+            DataSync.uploadNow(context, authToken);
+            return false;
+        });
+        registerTask(TASK_SCREEN_TIME_UPLOAD, 6, false, (context, deviceId, authToken) -> {
+            new ScreenTimeRepository(context).calculateAndSaveMinuteScreenTime();
+            new ScreenTimeSync(context).syncNow();
+            return false;
+        });
+        // A heartbeat to the server, not a change poll: runs on its own cycle count whether
+        // or not the stream is up, and never feeds the adaptive cadence
+        registerTask(TASK_DEVICE_STATUS, 6, false, (context, deviceId, authToken) -> {
+            pingDeviceStatus(deviceId);
+            return false;
+        });
+    }
+
+    private void startPushChannel() {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        pushChannel = new PushChannel(AppController.getHttpClient(),
+                AuthService.BASE_URL + "api/events/" + deviceId + "/",
+                prefs.getLong(KEY_PUSH_SEQUENCE, 0),
+                PUSH_HEARTBEAT_TIMEOUT_MS,
+                new PushChannel.Listener() {
+                    @Override
+                    public void onChangeEvent(PushChannel.ChangeEvent event) {
+                        // Events without an id carry sequence 0; keep the last resume point
+                        if (event.sequence > 0) {
+                            prefs.edit().putLong(KEY_PUSH_SEQUENCE, event.sequence).apply();
+                        }
+                        onPushEvent(event);
+                    }
+
+                    @Override
+                    public void onStreamStateChanged(boolean connected) {
+                        handler.post(() -> {
+                            pushConnected = connected;
+                            Log.d(TAG, connected ? "Push stream up - polling paused"
+                                    : "Push stream down - falling back to polling");
+                        });
+                    }
+                });
+        pushChannel.start();
+    }
+
+    private void onPushEvent(PushChannel.ChangeEvent event) {
+        switch (event.type) {
+            case PushChannel.EVENT_BLOCKED_APPS:
+                requestSync(TASK_BLOCKED_APPS);
+                break;
+            case PushChannel.EVENT_SCREEN_TIME_RULES:
+                requestSync(TASK_SCREEN_TIME_RULES);
+                break;
+            case PushChannel.EVENT_FILTER_CONFIG:
+                ContentFilterEngine.applyRemoteConfig(context, event.data);
+                break;
+            case PushChannel.EVENT_PARENT_ACTIVE:
+                onParentActive();
+                break;
+            default:
+                Log.d(TAG, "Ignoring unknown change event " + event);
+                break;
+        }
+    }
+
+    private void registerStateListeners() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
+        context.registerReceiver(deviceStateReceiver, filter, null, handler);
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            conditions.screenOn = powerManager.isInteractive();
+            conditions.deviceIdle = powerManager.isDeviceIdleMode();
+        }
+
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            try {
+                networkAvailable = connectivityManager.getActiveNetwork() != null;
+                conditions.networkMetered = connectivityManager.isActiveNetworkMetered();
+                connectivityManager.registerDefaultNetworkCallback(networkCallback, handler);
+            } catch (Exception e) {
+                Log.w(TAG, "Could not watch network state", e);
+            }
+        }
+    }
+
+    private void scheduleCycle(long delayMs) {
+        long at = SystemClock.uptimeMillis() + delayMs;
+        if (cycleScheduled && nextCycleAt <= at) {
+            return;
+        }
+        handler.removeCallbacks(cycleRunnable);
+        cycleScheduled = true;
+        nextCycleAt = at;
+        handler.postAtTime(cycleRunnable, at);
+    }
+
+    private void runCycle() {
+        cycleScheduled = false;
+        if (!networkAvailable) {
+            // The network callback starts the next cycle once a connection is back
+            Log.d(TAG, "No network - skipping sync cycle");
+            return;
+        }
+
+        String authToken = AppController.getInstance().getAuthToken();
+        if (authToken == null || authToken.isEmpty()) {
+            Log.w(TAG, "❌ Cannot sync - no authentication token");
+            recoverAuthentication();
+            if (started) {
+                scheduleCycle(getCycleIntervalMs());
+            }
+            return;
+        }
+
+        cycleCount++;
+        long cycleStart = SystemClock.elapsedRealtime();
+        long pollInterval = cadence.getIntervalMs(conditions);
+        StringBuilder ran = new StringBuilder();
+        boolean polled = false;
+        boolean changed = false;
+        for (TaskEntry entry : tasks.values()) {
+            entry.cyclesSinceRun++;
+            if (!entry.requested && !isDue(entry, cycleStart, pollInterval)) {
+                continue;
+            }
+            String breakerKey = "task:" + entry.name;
+            if (!breaker.tryAcquire(breakerKey)) {
+                // Backing off after failures; stays due and runs once the breaker allows it
+                continue;
+            }
+            entry.requested = false;
+            entry.cyclesSinceRun = 0;
+            entry.lastRunAt = cycleStart;
+            entry.runs++;
+            try {
+                boolean taskChanged = entry.task.run(context, deviceId, authToken);
+                breaker.recordSuccess(breakerKey);
+                if (entry.pushCovered) {
+                    polled = true;
+                    changed |= taskChanged;
+                }
+            } catch (CircuitBreaker.BackingOffException e) {
+                // An endpoint the task needs is backing off; its own breaker paces the retry
+                breaker.release(breakerKey);
+                Log.d(TAG, "⏸️ Sync task " + entry.name + " deferred: " + e.getMessage());
+            } catch (Exception e) {
+                entry.failures++;
+                breaker.recordFailure(breakerKey);
+                Log.w(TAG, "❌ Sync task " + entry.name + " failed: " + e.getMessage()
+                        + " - next try in " + breaker.getDelayMs(breakerKey) + "ms");
+            }
+            ran.append(entry.name).append(' ');
+        }
+
+        if (polled) {
+            long previous = cadence.getAdaptiveIntervalMs();
+            cadence.onPollResult(changed, cycleStart);
+            if (changed && cadence.getAdaptiveIntervalMs() != previous) {
+                Log.d(TAG, "⚡ Server changes - polling every " + cadence.getIntervalMs(conditions) / 1000 + "s");
+            }
+        }
+
+        long interval = getCycleIntervalMs();
+        statusSummary = buildStatusSummary(interval);
+        Log.d(TAG, "=== Sync cycle #" + cycleCount + " ran [" + ran.toString().trim() + "] in "
+                + (SystemClock.elapsedRealtime() - cycleStart) + "ms, next in " + interval + "ms ===");
+
+        // Requests that arrived while this cycle ran are already queued behind it
+        // and will pull the next cycle forward themselves
+        if (started) {
+            scheduleCycle(interval);
+        }
+    }
+
+    /**
+     * Push-covered tasks poll for server changes, so without the stream they also follow the
+     * adaptive polling interval on top of their cycle count
+     */
+    private boolean isDue(TaskEntry entry, long now, long pollInterval) {
+        if (entry.lastRunAt == 0) {
+            return true;
+        }
+        if (entry.pushCovered) {
+            if (pushConnected) {
+                return now - entry.lastRunAt >= PUSH_SAFETY_INTERVAL_MS;
+            }
+            if (now - entry.lastRunAt < pollInterval) {
+                return false;
+            }
+        }
+        return entry.cyclesSinceRun >= entry.everyCycles;
+    }
+
+    private String buildStatusSummary(long interval) {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Cycles: ").append(cycleCount)
+                .append(", interval: ").append(interval / 1000).append("s")
+                .append(", polling: ").append(cadence.getIntervalMs(conditions) / 1000).append("s")
+                .append(", push: ").append(pushConnected ? "connected" : "polling").append("\n");
+        for (TaskEntry entry : tasks.values()) {
+            summary.append("  ").append(entry.name)
+                    .append(" (every ").append(entry.everyCycles).append("): ")
+                    .append(entry.runs).append(" runs, ")
+                    .append(entry.failures).append(" failures\n");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Cycle cadence from the strongest power or network constraint
+     */
+    private long getCycleIntervalMs() {
+        return AdaptiveCadence.getBaseIntervalMs(conditions);
+    }
+
+    private void recoverAuthentication() {
+        String refreshToken = AppController.getInstance().getRefreshToken();
+        if (refreshToken == null || refreshToken.isEmpty()) {
+            return;
+        }
+        Log.d(TAG, "Attempting to refresh authentication token");
+        // Joins a refresh already started by the authenticator or the renewal schedule
+        TokenManager.getInstance().refreshAsync(new AuthService.AuthCallback() {
+            @Override
+            public void onSuccess(String accessToken, String refreshToken) {
+                Log.d(TAG, "Authentication token refreshed - syncing now");
+                // Delivered on the main thread; cycle state belongs to the coordinator thread
+                handler.post(() -> scheduleCycle(COALESCE_WINDOW_MS));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Failed to refresh authentication token", e);
+            }
+        });
+    }
+
+    private static void pingDeviceStatus(String deviceId) throws IOException {
+        Request request = new Request.Builder()
+                .url(AuthService.BASE_URL + "api/device-status/" + deviceId + "/")
+                .build();
+        try (Response response = AppController.getHttpClient(AppController.HTTP_FAST_TIMEOUT_SECONDS,
+                AppController.HTTP_FAST_TIMEOUT_SECONDS).newCall(request).execute()) {
+            Log.d(TAG, "Device status ping: " + response.code());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.parentalcontrol;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+import okhttp3.Authenticator;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * Answers a backend 401 by renewing the access token once and retrying the request
+ * Concurrent 401s share the same refresh through TokenManager; a request that was sent
+ * with a token someone else has already replaced is simply retried with the new one.
+ */
+public class TokenAuthenticator implements Authenticator {
+    private static final String TAG = "TokenAuthenticator";
+
+    @Override
+    public Request authenticate(Route route, Response response) throws IOException {
+        Request request = response.request();
+        String url = request.url().toString();
+        if (!url.startsWith(AuthService.BASE_URL) || url.startsWith(AuthService.BASE_URL + "api/token/")) {
+            return null;
+        }
+        if (response.priorResponse() != null) {
+            // Already retried with a renewed token; the credentials themselves are bad
+            Log.w(TAG, "❌ Still unauthorized after token renewal: " + request.url().encodedPath());
+            return null;
+        }
+        String header = request.header("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return null;
+        }
+
+        String token;
+        try {
+            token = TokenManager.getInstance().refreshBlocking(header.substring("Bearer ".length()));
+        } catch (IOException e) {
+            Log.e(TAG, "Token renewal after 401 failed: " + e.getMessage());
+            return null;
+        }
+        Log.d(TAG, "🔑 Retrying " + request.url().encodedPath() + " with renewed token");
+        return request.newBuilder()
+                .header("Authorization", "Bearer " + token)
+                .build();
+    }
+}
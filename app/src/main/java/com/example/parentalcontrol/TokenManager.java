@@ -5,29 +5,49 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.RejectedExecutionException;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
 
 /**
- * Manages authentication tokens with automatic refresh capabilities
- * Ensures tokens never expire by proactively refreshing them
+ * Owns access token renewal for the whole app
+ * Refreshes are single-flight: whoever needs a new token first (the HTTP authenticator on a
+ * 401, the auth interceptor for a token about to expire, the scheduled renewal) starts the
+ * refresh, and every other caller waits for that same result instead of refreshing again.
+ * Renewal is scheduled ahead of the JWT exp claim, so requests normally never see an
+ * expired token; refresh attempts are paced by CircuitBreaker when the token endpoint fails.
  */
 public class TokenManager {
     private static final String TAG = "TokenManager";
-    private static final long REFRESH_INTERVAL_DAYS = 30; // Refresh every 30 days
+    private static final String REFRESH_ENDPOINT = "api/token/refresh/";
+    // Fallback for tokens without a readable exp claim
+    private static final long REFRESH_INTERVAL_DAYS = 30;
     private static final long REFRESH_INTERVAL_MS = REFRESH_INTERVAL_DAYS * 24 * 60 * 60 * 1000;
-    
+    // Scheduled renewal runs this long before exp
+    private static final long RENEW_BEFORE_EXPIRY_MS = 5 * 60 * 1000;
+    // A token this close to exp is renewed before a request goes out with it
+    private static final long EXPIRY_MARGIN_MS = 60 * 1000;
+    private static final long MIN_RENEW_DELAY_MS = 30 * 1000;
+    private static final long REFRESH_WAIT_SECONDS = 30;
+
     private static TokenManager instance;
     private Handler refreshHandler;
-    private Runnable refreshRunnable;
-    private boolean isRefreshScheduled = false;
+    private final Runnable refreshRunnable = this::performTokenRefresh;
+    private final CircuitBreaker breaker = CircuitBreaker.getInstance();
+    private final Object refreshLock = new Object();
+    private CompletableFuture<String> refreshInFlight;
     
     private TokenManager() {
         refreshHandler = new Handler(Looper.getMainLooper());
@@ -41,45 +61,30 @@ public class TokenManager {
     }
     
     /**
-     * Start automatic token refresh schedule
+     * (Re)schedule renewal ahead of the current token's expiry
      */
     public void startAutoRefresh() {
-        if (isRefreshScheduled) {
-            Log.d(TAG, "Auto refresh already scheduled");
-            return;
-        }
-        
         String refreshToken = AppController.getInstance().getRefreshToken();
         if (refreshToken == null || refreshToken.isEmpty()) {
             Log.d(TAG, "No refresh token available, cannot start auto refresh");
             return;
         }
-        
-        refreshRunnable = new Runnable() {
-            @Override
-            public void run() {
-                performTokenRefresh();
-                // Schedule next refresh
-                refreshHandler.postDelayed(this, REFRESH_INTERVAL_MS);
-            }
-        };
-        
-        // Start first refresh in 1 hour
-        refreshHandler.postDelayed(refreshRunnable, 60 * 60 * 1000);
-        isRefreshScheduled = true;
-        
-        Log.d(TAG, "Auto token refresh scheduled every " + REFRESH_INTERVAL_DAYS + " days");
+
+        long expiresAt = getExpiryMs(AppController.getInstance().getAuthToken());
+        long delay = expiresAt > 0
+                ? Math.max(MIN_RENEW_DELAY_MS, expiresAt - RENEW_BEFORE_EXPIRY_MS - System.currentTimeMillis())
+                : REFRESH_INTERVAL_MS;
+        refreshHandler.removeCallbacks(refreshRunnable);
+        refreshHandler.postDelayed(refreshRunnable, delay);
+        Log.d(TAG, "Token renewal scheduled in " + delay / 1000 + "s");
     }
     
     /**
      * Stop automatic token refresh
      */
     public void stopAutoRefresh() {
-        if (refreshRunnable != null) {
-            refreshHandler.removeCallbacks(refreshRunnable);
-            isRefreshScheduled = false;
-            Log.d(TAG, "Auto token refresh stopped");
-        }
+        refreshHandler.removeCallbacks(refreshRunnable);
+        Log.d(TAG, "Auto token refresh stopped");
     }
     
     /**
@@ -88,9 +93,144 @@ public class TokenManager {
     public void refreshNow() {
         performTokenRefresh();
     }
-    
+
+    /**
+     * Refresh in the background and report on the main thread; joins a refresh in flight
+     */
+    public void refreshAsync(AuthService.AuthCallback callback) {
+        String staleToken = AppController.getInstance().getAuthToken();
+        AppExecutors.TaskHandle handle = AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "token-refresh", () -> {
+            try {
+                String accessToken = refreshBlocking(staleToken);
+                String refreshToken = AppController.getInstance().getRefreshToken();
+                AppExecutors.runOnMain(() -> callback.onSuccess(accessToken, refreshToken));
+            } catch (IOException e) {
+                AppExecutors.runOnMain(() -> callback.onFailure(e));
+            }
+        });
+        if (handle.isRejected()) {
+            AppExecutors.runOnMain(() -> callback.onFailure(
+                    new RejectedExecutionException("Token refresh not started - IO queue full")));
+        }
+    }
+
     /**
-     * Internal method to perform token refresh
+     * A new access token replacing staleToken (null: the current one, whatever it is).
+     * If another caller already replaced it, that token is returned without a request;
+     * if a refresh is in flight, this waits for it. Blocking - never call on the main thread.
+     */
+    public String refreshBlocking(String staleToken) throws IOException {
+        CompletableFuture<String> refresh;
+        boolean owner = false;
+        synchronized (refreshLock) {
+            String current = AppController.getInstance().getAuthToken();
+            if (staleToken != null && current != null && !current.isEmpty()
+                    && !current.equals(staleToken) && !expiresSoon(current)) {
+                return current;
+            }
+            if (refreshInFlight == null) {
+                refreshInFlight = new CompletableFuture<>();
+                owner = true;
+            }
+            refresh = refreshInFlight;
+        }
+
+        if (owner) {
+            try {
+                refresh.complete(requestNewToken());
+            } catch (Exception e) {
+                refresh.completeExceptionally(e);
+            } finally {
+                synchronized (refreshLock) {
+                    refreshInFlight = null;
+                }
+            }
+        } else {
+            Log.d(TAG, "Joining token refresh in flight");
+        }
+
+        try {
+            return refresh.get(REFRESH_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Token refresh failed", cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for token refresh", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for token refresh", e);
+        }
+    }
+
+    /**
+     * The current access token, renewed first if it is about to expire. Falls back to the
+     * current token when renewal fails, leaving the server (and the authenticator) to decide.
+     */
+    public String getFreshToken() {
+        String current = AppController.getInstance().getAuthToken();
+        if (current == null || current.isEmpty() || !expiresSoon(current)) {
+            return current;
+        }
+        try {
+            Log.d(TAG, "Access token expires within " + EXPIRY_MARGIN_MS / 1000 + "s - renewing before use");
+            return refreshBlocking(current);
+        } catch (IOException e) {
+            Log.w(TAG, "Proactive token renewal failed: " + e.getMessage());
+            return current;
+        }
+    }
+
+    /**
+     * Expiry of a JWT from its exp claim, in epoch milliseconds; 0 when it has none
+     */
+    public static long getExpiryMs(String jwt) {
+        if (jwt == null) {
+            return 0;
+        }
+        String[] parts = jwt.split("\\.");
+        if (parts.length < 2) {
+            return 0;
+        }
+        try {
+            JSONObject claims = new JSONObject(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+            return claims.optLong("exp", 0) * 1000;
+        } catch (IllegalArgumentException | JSONException e) {
+            return 0;
+        }
+    }
+
+    private static boolean expiresSoon(String token) {
+        long expiresAt = getExpiryMs(token);
+        return expiresAt > 0 && expiresAt - System.currentTimeMillis() < EXPIRY_MARGIN_MS;
+    }
+
+    /**
+     * The one place that calls the token endpoint; runs on the refresh owner's thread
+     */
+    private String requestNewToken() throws IOException, JSONException {
+        String refreshToken = AppController.getInstance().getRefreshToken();
+        if (refreshToken == null || refreshToken.isEmpty()) {
+            throw new IOException("No refresh token available");
+        }
+        if (!breaker.tryAcquire(REFRESH_ENDPOINT)) {
+            throw new CircuitBreaker.BackingOffException("Token refresh", breaker.getDelayMs(REFRESH_ENDPOINT));
+        }
+        String accessToken;
+        try {
+            accessToken = AuthService.refreshAccessToken(refreshToken);
+        } catch (IOException | JSONException e) {
+            // A rejected refresh token will not fix itself either, so every failure paces retries
+            breaker.recordFailure(REFRESH_ENDPOINT);
+            throw e;
+        }
+        breaker.recordSuccess(REFRESH_ENDPOINT);
+        Log.d(TAG, "✅ Access token renewed");
+        refreshHandler.post(this::startAutoRefresh);
+        return accessToken;
+    }
+
+    /**
+     * Scheduled renewal
      */
     private void performTokenRefresh() {
         String refreshToken = AppController.getInstance().getRefreshToken();
@@ -99,20 +239,23 @@ public class TokenManager {
             return;
         }
         
-        Log.d(TAG, "Performing automatic token refresh...");
+        Log.d(TAG, "Performing scheduled token renewal...");
         
-        AuthService.refreshToken(refreshToken, new AuthService.AuthCallback() {
+        refreshAsync(new AuthService.AuthCallback() {
             @Override
             public void onSuccess(String accessToken, String refreshToken) {
                 Log.d(TAG, "Token refresh successful");
-                // Token is already saved by AuthService
+                // The next renewal was scheduled from the new token's expiry
             }
             
             @Override
             public void onFailure(Exception e) {
                 Log.e(TAG, "Token refresh failed", e);
-                // Don't clear tokens on failure - they might still be valid for a long time
-                // Only log the error and try again on next scheduled refresh
+                // Don't clear tokens on failure - the refresh token may still be good;
+                // retry when the breaker allows it
+                refreshHandler.removeCallbacks(refreshRunnable);
+                refreshHandler.postDelayed(refreshRunnable,
+                        Math.max(MIN_RENEW_DELAY_MS, breaker.getDelayMs(REFRESH_ENDPOINT)));
             }
         });
     }
@@ -128,12 +271,9 @@ public class TokenManager {
         }
         
         // Simple validation by making a test API call
-        new Thread(() -> {
+        AppExecutors.TaskHandle handle = AppExecutors.getInstance().execute(AppExecutors.Pool.IO, "validate-token", () -> {
             try {
-                OkHttpClient client = new OkHttpClient.Builder()
-                        .connectTimeout(10, TimeUnit.SECONDS)
-                        .readTimeout(10, TimeUnit.SECONDS)
-                        .build();
+                OkHttpClient client = AppController.getHttpClient();
                 
                 // Use a simple endpoint to validate token
                 Request request = new Request.Builder()
@@ -141,18 +281,26 @@ public class TokenManager {
                         .addHeader("Authorization", "Bearer " + token)
                         .build();
                 
-                Response response = client.newCall(request).execute();
-                boolean isValid = response.isSuccessful();
+                boolean isValid;
+                int code;
+                try (Response response = client.newCall(request).execute()) {
+                    isValid = response.isSuccessful();
+                    code = response.code();
+                }
                 
-                new Handler(Looper.getMainLooper()).post(() ->
+                AppExecutors.runOnMain(() ->
                         callback.onValidationResult(isValid, 
-                                isValid ? "Token is valid" : "Token validation failed: " + response.code()));
+                                isValid ? "Token is valid" : "Token validation failed: " + code));
                 
             } catch (Exception e) {
-                new Handler(Looper.getMainLooper()).post(() ->
+                AppExecutors.runOnMain(() ->
                         callback.onValidationResult(false, "Validation error: " + e.getMessage()));
             }
-        }).start();
+        });
+        if (handle.isRejected()) {
+            AppExecutors.runOnMain(() ->
+                    callback.onValidationResult(false, "Validation not started - IO queue full"));
+        }
     }
     
     /**
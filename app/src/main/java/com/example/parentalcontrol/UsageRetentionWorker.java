@@ -0,0 +1,47 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily retention job for raw usage data
+ * Raw app_usage sessions and screen_time minutes older than RAW_RETENTION_DAYS are
+ * removed once synced; their time is already folded into the hourly/daily rollups.
+ */
+public class UsageRetentionWorker extends Worker {
+    private static final String TAG = "UsageRetentionWorker";
+    private static final int RAW_RETENTION_DAYS = 30;
+
+    public UsageRetentionWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(RAW_RETENTION_DAYS);
+            String cutoffTimestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault())
+                    .format(new Date(cutoff));
+
+            AppUsageDatabaseHelper dbHelper = ServiceLocator.getInstance(getApplicationContext()).getDatabaseHelper();
+            int removed = dbHelper.compactRawUsage(cutoff, cutoffTimestamp);
+
+            Log.d(TAG, "Retention pass complete: " + removed + " raw sessions older than " +
+                    RAW_RETENTION_DAYS + " days removed");
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Error compacting raw usage", e);
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.parentalcontrol;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind journal for app usage sessions
+ * Sessions are appended to a small file (so a crash loses nothing) and buffered in
+ * memory, then committed to app_usage in one transaction per batch on the shared
+ * database writer thread. A batch is flushed when it reaches BATCH_SIZE sessions,
+ * FLUSH_DELAY_MS after its first session, or when the tracker shuts down.
+ *
+ * The session still in the foreground rides along with every batch as an upsert keyed on
+ * package and start time: its app_usage row appears with the first flush after an
+ * autosave, its end time moves forward in place, and closing the session finalises the
+ * same row. Autosaves only journal and arm the usual delayed flush, so a long session is
+ * visible to DataSync, the rollups and today's totals within FLUSH_DELAY_MS without a
+ * transaction per autosave, and each session is still exactly one row.
+ */
+public class UsageSessionJournal {
+    private static final String TAG = "UsageSessionJournal";
+    private static final String JOURNAL_FILE = "usage_sessions.journal";
+    private static final int BATCH_SIZE = 20;
+    private static final long FLUSH_DELAY_MS = 60 * 1000;
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 2000;
+
+    private static UsageSessionJournal instance;
+
+    private final AppUsageDatabaseHelper dbHelper;
+    private final File journalFile;
+    private final ScheduledExecutorService writer;
+    private final Object lock = new Object();
+
+    // Sessions appended to the journal but not yet committed, guarded by lock
+    private final List<AppUsage> pending = new ArrayList<>();
+    private AppUsage openSession;
+    private boolean flushScheduled = false;
+
+    public static synchronized UsageSessionJournal getInstance(Context context) {
+        if (instance == null) {
+            instance = new UsageSessionJournal(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private UsageSessionJournal(Context context) {
+        DatabaseManager databaseManager = ServiceLocator.getInstance(context).getDatabaseManager();
+        this.dbHelper = databaseManager.getHelper();
+        this.writer = databaseManager.getWriteExecutor();
+        this.journalFile = new File(context.getFilesDir(), JOURNAL_FILE);
+        recoverJournal();
+    }
+
+    /**
+     * Record a finished session. Cheap: one small file append, no database work.
+     * Closes the open session if this is its final extent.
+     */
+    public void append(String packageName, long startTime, long endTime) {
+        synchronized (lock) {
+            appendToFile(packageName, startTime, endTime);
+
+            if (openSession != null && isSameSession(openSession, packageName, startTime)) {
+                openSession = null;
+            }
+            pending.add(new AppUsage(packageName, startTime, endTime));
+
+            if (pending.size() >= BATCH_SIZE) {
+                writer.execute(this::flushPending);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                writer.schedule(this::flushPending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Move the end of the still-running session forward (periodic autosave)
+     * Journaled; the next batch flush upserts it into its app_usage row.
+     */
+    public void updateOpenSession(String packageName, long startTime, long endTime) {
+        synchronized (lock) {
+            appendToFile(packageName, startTime, endTime);
+
+            if (openSession != null && isSameSession(openSession, packageName, startTime)) {
+                openSession.setEndTime(endTime);
+            } else {
+                openSession = new AppUsage(packageName, startTime, endTime);
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                writer.schedule(this::flushPending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void appendToFile(String packageName, long startTime, long endTime) {
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            out.write(encode(packageName, startTime, endTime).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Still buffered in memory; only crash safety is lost for this entry
+            Log.e(TAG, "Error appending session to journal", e);
+        }
+    }
+
+    private static boolean isSameSession(AppUsage session, String packageName, long startTime) {
+        return session.getStartTime() == startTime && session.getPackageName().equals(packageName);
+    }
+
+    /**
+     * Commit everything buffered, including the open session, and wait briefly for it
+     * (used on service shutdown)
+     */
+    public void flushNow() {
+        synchronized (lock) {
+            if (openSession != null) {
+                pending.add(openSession);
+                openSession = null;
+            }
+        }
+        Future<?> flush = writer.submit(this::flushPending);
+        try {
+            flush.get(SHUTDOWN_FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // The journal file still holds the sessions; they are replayed on next start
+            Log.w(TAG, "Shutdown flush did not finish in time", e);
+        }
+    }
+
+    /**
+     * Number of sessions waiting to be committed
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    // Runs on the writer thread only
+    private void flushPending() {
+        List<AppUsage> batch;
+        int committedPending;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty() && openSession == null) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            committedPending = pending.size();
+            if (openSession != null) {
+                // A copy: the open entry keeps moving while the batch is written
+                batch.add(new AppUsage(openSession.getPackageName(), openSession.getStartTime(),
+                        openSession.getEndTime()));
+            }
+        }
+
+        try {
+            dbHelper.upsertAppUsageBatch(batch);
+        } catch (Exception e) {
+            Log.e(TAG, "Error committing " + batch.size() + " sessions - will retry", e);
+            synchronized (lock) {
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    writer.schedule(this::flushPending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+            return;
+        }
+
+        synchronized (lock) {
+            // Appends made while the batch was being written stay pending
+            pending.subList(0, committedPending).clear();
+            List<AppUsage> uncommitted = new ArrayList<>(pending);
+            if (openSession != null) {
+                uncommitted.add(openSession);
+            }
+            rewriteJournal(uncommitted);
+        }
+        Log.d(TAG, "Committed " + batch.size() + " sessions in one transaction");
+    }
+
+    /**
+     * Replace the journal with the given sessions (write to temp file, then rename)
+     */
+    private void rewriteJournal(List<AppUsage> sessions) {
+        if (sessions.isEmpty()) {
+            if (journalFile.exists() && !journalFile.delete()) {
+                Log.w(TAG, "Could not delete journal file");
+            }
+            return;
+        }
+
+        File tmpFile = new File(journalFile.getParentFile(), JOURNAL_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            for (AppUsage session : sessions) {
+                out.write(encode(session.getPackageName(), session.getStartTime(), session.getEndTime())
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error rewriting journal", e);
+            return;
+        }
+        if (!tmpFile.renameTo(journalFile)) {
+            Log.e(TAG, "Could not replace journal file");
+        }
+    }
+
+    /**
+     * Commit sessions left in the journal by a previous process
+     * Runs once before anything else touches the journal. Replay goes through the same
+     * upsert as normal flushes: repeated lines for one session collapse into one row and
+     * sessions that already reached the database are left alone, so replay is idempotent.
+     */
+    private void recoverJournal() {
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        List<AppUsage> recovered = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AppUsage session = decode(line);
+                if (session != null) {
+                    recovered.add(session);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading journal", e);
+        }
+
+        if (!recovered.isEmpty()) {
+            try {
+                dbHelper.upsertAppUsageBatch(recovered);
+                Log.i(TAG, "Recovered " + recovered.size() + " journaled session entries");
+            } catch (Exception e) {
+                Log.e(TAG, "Error recovering journal - keeping it for next start", e);
+                synchronized (lock) {
+                    pending.addAll(recovered);
+                }
+                return;
+            }
+        }
+
+        if (!journalFile.delete()) {
+            Log.w(TAG, "Could not delete recovered journal");
+        }
+    }
+
+    private static String encode(String packageName, long startTime, long endTime) {
+        return packageName + "\t" + startTime + "\t" + endTime + "\n";
+    }
+
+    private static AppUsage decode(String line) {
+        // A torn final line from a crash mid-append is simply dropped
+        String[] parts = line.split("\t");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new AppUsage(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.parentalcontrol;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays change logs against the polling cadence and compares request counts and
+ * freshness (time from a server-side change to the poll that picks it up) with the
+ * fixed cadence the coordinator used before. Results are printed as a table.
+ */
+public class AdaptiveCadenceSimulationTest {
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    /**
+     * A replayed week: rule changes plus parent_active hints, in ms from the start
+     */
+    private static final class ChangeLog {
+        final String name;
+        final List<Long> changes = new ArrayList<>();
+        final List<Long> parentActive = new ArrayList<>();
+
+        ChangeLog(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Result {
+        long requests;
+        final List<Long> staleness = new ArrayList<>();
+
+        long percentile(double p) {
+            if (staleness.isEmpty()) {
+                return 0;
+            }
+            List<Long> sorted = new ArrayList<>(staleness);
+            Collections.sort(sorted);
+            return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(p * sorted.size()) - 1));
+        }
+
+        long max() {
+            return percentile(1.0);
+        }
+    }
+
+    @Test
+    public void quietWeekCostsAFractionOfTheRequests() {
+        ChangeLog log = new ChangeLog("quiet week");
+        log.changes.add(2 * DAY + 10 * HOUR);
+        log.changes.add(5 * DAY + 18 * HOUR + 30 * MINUTE);
+
+        Result fixed = simulate(log, false);
+        Result adaptive = simulate(log, true);
+        print(log, fixed, adaptive);
+
+        assertTrue(adaptive.requests * 10 < fixed.requests);
+        assertTrue(adaptive.max() <= AdaptiveCadence.MAX_INTERVAL_MS + AdaptiveCadence.MIN_INTERVAL_MS);
+    }
+
+    @Test
+    public void parentSessionsAreServedAtFullSpeed() {
+        // Each evening the parent opens the dashboard and makes a few edits
+        ChangeLog log = new ChangeLog("evening edits");
+        for (int day = 0; day < 7; day++) {
+            long session = day * DAY + 19 * HOUR;
+            log.parentActive.add(session);
+            log.changes.add(session + MINUTE);
+            log.changes.add(session + 3 * MINUTE);
+            log.changes.add(session + 4 * MINUTE + 20 * SECOND);
+        }
+
+        Result fixed = simulate(log, false);
+        Result adaptive = simulate(log, true);
+        print(log, fixed, adaptive);
+
+        assertTrue(adaptive.requests * 5 < fixed.requests);
+        // Hinted edits are as fresh as with fixed polling
+        assertTrue(adaptive.max() <= 2 * AdaptiveCadence.MIN_INTERVAL_MS);
+    }
+
+    @Test
+    public void unhintedBurstsRecoverQuickly() {
+        // Edits arrive in bursts with no parent_active hint (e.g. push stream down)
+        ChangeLog log = new ChangeLog("unhinted bursts");
+        Random random = new Random(42);
+        for (int day = 0; day < 7; day++) {
+            long burst = day * DAY + (8 + random.nextInt(12)) * HOUR;
+            for (int i = 0; i < 6; i++) {
+                burst += MINUTE + random.nextInt(3 * (int) MINUTE);
+                log.changes.add(burst);
+            }
+        }
+
+        Result fixed = simulate(log, false);
+        Result adaptive = simulate(log, true);
+        print(log, fixed, adaptive);
+
+        assertTrue(adaptive.requests * 5 < fixed.requests);
+        // Only the first change of a burst waits out a long interval
+        assertTrue(adaptive.percentile(0.5) <= 2 * MINUTE);
+        assertTrue(adaptive.max() <= AdaptiveCadence.MAX_INTERVAL_MS + AdaptiveCadence.MIN_INTERVAL_MS);
+    }
+
+    /**
+     * Poll through one week in coordinator cycles
+     * @param adaptive false reproduces the old cadence: one poll per cycle
+     */
+    private static Result simulate(ChangeLog log, boolean adaptive) {
+        AdaptiveCadence cadence = new AdaptiveCadence();
+        Result result = new Result();
+        int nextChange = 0;
+        int nextHint = 0;
+        long lastPoll = Long.MIN_VALUE / 2;
+        long now = 0;
+
+        while (now < 7 * DAY) {
+            AdaptiveCadence.Conditions conditions = conditionsAt(now);
+            while (nextHint < log.parentActive.size() && log.parentActive.get(nextHint) <= now) {
+                cadence.onParentActive(log.parentActive.get(nextHint++));
+                // The coordinator runs a cycle right away on the hint
+                lastPoll = Long.MIN_VALUE / 2;
+            }
+
+            if (!adaptive || now - lastPoll >= cadence.getIntervalMs(conditions)) {
+                result.requests++;
+                boolean changed = false;
+                while (nextChange < log.changes.size() && log.changes.get(nextChange) <= now) {
+                    result.staleness.add(now - log.changes.get(nextChange++));
+                    changed = true;
+                }
+                cadence.onPollResult(changed, now);
+                lastPoll = now;
+            }
+
+            long next = now + AdaptiveCadence.getBaseIntervalMs(conditions);
+            if (nextHint < log.parentActive.size()) {
+                next = Math.min(next, log.parentActive.get(nextHint));
+            }
+            now = next;
+        }
+        return result;
+    }
+
+    // Screen off at night, Doze in the small hours, otherwise an unplugged phone on Wi-Fi
+    private static AdaptiveCadence.Conditions conditionsAt(long now) {
+        long hour = (now % DAY) / HOUR;
+        AdaptiveCadence.Conditions conditions = new AdaptiveCadence.Conditions();
+        conditions.batteryPercent = 80;
+        conditions.screenOn = hour >= 7 && hour < 23;
+        conditions.deviceIdle = hour >= 1 && hour < 6;
+        return conditions;
+    }
+
+    private static void print(ChangeLog log, Result fixed, Result adaptive) {
+        System.out.println("=== " + log.name + ": " + log.changes.size() + " changes ===");
+        System.out.println(String.format("%-9s %9s %9s %9s %9s", "cadence", "requests", "p50 (s)", "p95 (s)", "max (s)"));
+        for (int i = 0; i < 2; i++) {
+            Result result = i == 0 ? fixed : adaptive;
+            System.out.println(String.format("%-9s %9d %9d %9d %9d", i == 0 ? "fixed" : "adaptive", result.requests,
+                    result.percentile(0.5) / SECOND, result.percentile(0.95) / SECOND, result.max() / SECOND));
+        }
+    }
+}
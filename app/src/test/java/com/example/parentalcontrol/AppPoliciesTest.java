@@ -0,0 +1,184 @@
+package com.example.parentalcontrol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.pm.ApplicationInfo;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles policies and schedules from their JSON form and checks blocked minutes and
+ * transitions, including windows that run past midnight and past the end of the week.
+ */
+public class AppPoliciesTest {
+    private static final int SUN = 0;
+    private static final int WED = 3;
+    private static final int THU = 4;
+    private static final int SAT = 6;
+
+    private static final String GAME = "com.example.game";
+    private static final String VIDEO = "com.example.video";
+
+    @Test
+    public void overnightWindowRunsIntoTheNextDay() throws JSONException {
+        BedtimeSchedule schedule = BedtimeSchedule.fromJson(
+                "[{\"days\": \"daily\", \"start\": \"21:00\", \"end\": \"07:00\"}]");
+
+        assertFalse(schedule.isRestricted(minute(WED, "20:59")));
+        assertTrue(schedule.isRestricted(minute(WED, "21:00")));
+        assertTrue(schedule.isRestricted(minute(THU, "06:59")));
+        assertFalse(schedule.isRestricted(minute(THU, "07:00")));
+    }
+
+    @Test
+    public void saturdayNightWrapsIntoSundayMorning() throws JSONException {
+        BedtimeSchedule schedule = BedtimeSchedule.fromJson(
+                "[{\"days\": [\"sat\"], \"start\": \"22:00\", \"end\": \"02:00\"}]");
+
+        assertTrue(schedule.isRestricted(minute(SAT, "23:59")));
+        assertTrue(schedule.isRestricted(minute(SUN, "00:00")));
+        assertTrue(schedule.isRestricted(minute(SUN, "01:59")));
+        assertFalse(schedule.isRestricted(minute(SUN, "02:00")));
+        assertFalse(schedule.isRestricted(minute(SAT, "21:59")));
+
+        // From Saturday night the next flip is in the following week
+        assertEquals(at(7, "02:00"), schedule.getNextTransition(at(SAT, "23:00")));
+        // From Sunday before the end it is the end on that same morning
+        assertEquals(at(SUN, "02:00"), schedule.getNextTransition(at(SUN, "01:00")));
+        assertEquals(at(SAT, "22:00"), schedule.getNextTransition(at(SUN, "02:00")));
+    }
+
+    @Test
+    public void notCoversTheWholeWeekAndNothingBeyondIt() {
+        BedtimeSchedule always = BedtimeSchedule.EMPTY.not();
+
+        assertFalse(always.isEmpty());
+        assertTrue(always.isRestricted(0));
+        assertTrue(always.isRestricted(BedtimeSchedule.MINUTES_PER_WEEK - 1));
+        assertEquals(Long.MAX_VALUE, always.getNextTransition(at(WED, "12:00")));
+        assertTrue(always.not().isEmpty());
+    }
+
+    @Test
+    public void orAndNotCombineBitwise() throws JSONException {
+        BedtimeSchedule evening = BedtimeSchedule.fromJson(
+                "[{\"days\": \"daily\", \"start\": \"18:00\", \"end\": \"20:00\"}]");
+        BedtimeSchedule night = BedtimeSchedule.nightly("22:00", "06:00");
+        BedtimeSchedule both = evening.or(night);
+
+        assertTrue(both.isRestricted(minute(WED, "19:00")));
+        assertTrue(both.isRestricted(minute(WED, "23:00")));
+        assertFalse(both.isRestricted(minute(WED, "21:00")));
+
+        BedtimeSchedule inverse = both.not();
+        assertFalse(inverse.isRestricted(minute(WED, "19:00")));
+        assertTrue(inverse.isRestricted(minute(WED, "21:00")));
+        assertEquals(at(WED, "22:00"), inverse.getNextTransition(at(WED, "21:00")));
+    }
+
+    @Test
+    public void blockPolicyBlocksOnlyDuringItsSchedule() throws JSONException {
+        AppPolicies policies = AppPolicies.compile("[{\"packages\": [\"" + GAME + "\"], \"action\": \"block\","
+                + " \"schedule\": [{\"days\": \"school_nights\", \"start\": \"19:00\", \"end\": \"07:00\"}]}]",
+                Collections.emptyMap());
+
+        assertTrue(policies.isBlocked(GAME, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "20:00")));
+        assertTrue(policies.isBlocked(GAME, ApplicationInfo.CATEGORY_UNDEFINED, minute(THU, "06:00")));
+        assertFalse(policies.isBlocked(GAME, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "18:59")));
+        // Friday is not a school night
+        assertFalse(policies.isBlocked(GAME, ApplicationInfo.CATEGORY_UNDEFINED, minute(5, "20:00")));
+        assertFalse(policies.isBlocked(VIDEO, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "20:00")));
+    }
+
+    @Test
+    public void allowOnlyWithConditionSetAllowsItsWindow() throws JSONException {
+        AppPolicies policies = AppPolicies.compile(allowOnlyVideo(), conditions(true));
+
+        assertFalse(policies.isBlocked(VIDEO, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "17:30")));
+        assertTrue(policies.isBlocked(VIDEO, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "16:59")));
+        assertTrue(policies.isBlocked(VIDEO, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "20:00")));
+    }
+
+    @Test
+    public void allowOnlyWithConditionUnsetBlocksAllTheTime() throws JSONException {
+        for (AppPolicies policies : new AppPolicies[]{
+                AppPolicies.compile(allowOnlyVideo(), conditions(false)),
+                AppPolicies.compile(allowOnlyVideo(), Collections.emptyMap())}) {
+            assertTrue(policies.isBlocked(VIDEO, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "17:30")));
+            assertTrue(policies.isBlocked(VIDEO, ApplicationInfo.CATEGORY_UNDEFINED, minute(SUN, "00:00")));
+            assertEquals(Long.MAX_VALUE, policies.getNextTransition(at(WED, "12:00")));
+        }
+    }
+
+    @Test
+    public void blockWithConditionUnsetBlocksNothing() throws JSONException {
+        String json = "[{\"packages\": [\"" + GAME + "\"], \"action\": \"block\", \"condition\": \"grounded\"}]";
+
+        assertTrue(AppPolicies.compile(json, Collections.emptyMap()).isEmpty());
+        Map<String, Boolean> grounded = new HashMap<>();
+        grounded.put("grounded", true);
+        assertTrue(AppPolicies.compile(json, grounded).isBlocked(GAME, ApplicationInfo.CATEGORY_UNDEFINED, minute(WED, "12:00")));
+    }
+
+    @Test
+    public void categoryPolicyAppliesToEveryAppInIt() throws JSONException {
+        AppPolicies policies = AppPolicies.compile("[{\"categories\": [\"game\"],"
+                + " \"schedule\": [{\"days\": \"daily\", \"start\": \"21:00\", \"end\": \"07:00\"}]}]",
+                Collections.emptyMap());
+
+        assertTrue(policies.hasCategoryPolicies());
+        assertTrue(policies.isBlocked(GAME, ApplicationInfo.CATEGORY_GAME, minute(WED, "22:00")));
+        assertFalse(policies.isBlocked(VIDEO, ApplicationInfo.CATEGORY_VIDEO, minute(WED, "22:00")));
+    }
+
+    @Test
+    public void nextTransitionIsTheEarliestOfAllTargets() throws JSONException {
+        AppPolicies policies = AppPolicies.compile("["
+                + "{\"packages\": [\"" + GAME + "\"], \"schedule\": [{\"days\": \"daily\", \"start\": \"21:00\", \"end\": \"07:00\"}]},"
+                + "{\"categories\": [\"video\"], \"schedule\": [{\"days\": [\"sat\"], \"start\": \"22:00\", \"end\": \"02:00\"}]}]",
+                Collections.emptyMap());
+
+        assertEquals(at(WED, "21:00"), policies.getNextTransition(at(WED, "12:00")));
+        // Both next flips fall in the following week; the video block ends first, at 02:00
+        assertEquals(at(7, "02:00"), policies.getNextTransition(at(SAT, "23:30")));
+    }
+
+    @Test(expected = JSONException.class)
+    public void unknownActionIsRejected() throws JSONException {
+        AppPolicies.compile("[{\"packages\": [\"" + GAME + "\"], \"action\": \"mute\"}]", Collections.emptyMap());
+    }
+
+    private static String allowOnlyVideo() {
+        return "[{\"packages\": [\"" + VIDEO + "\"], \"action\": \"allow_only\", \"condition\": \"homework_done\","
+                + " \"schedule\": [{\"days\": \"daily\", \"start\": \"17:00\", \"end\": \"20:00\"}]}]";
+    }
+
+    private static Map<String, Boolean> conditions(boolean homeworkDone) {
+        Map<String, Boolean> conditions = new HashMap<>();
+        conditions.put("homework_done", homeworkDone);
+        return conditions;
+    }
+
+    private static int minute(int day, String time) {
+        return day * BedtimeSchedule.MINUTES_PER_DAY + BedtimeSchedule.parseTime(time);
+    }
+
+    /**
+     * Local time on a day of a week without DST changes (day 0 = Sunday 4 January 2026)
+     */
+    private static long at(int day, String time) {
+        int minute = BedtimeSchedule.parseTime(time);
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2026, Calendar.JANUARY, 4 + day, minute / 60, minute % 60);
+        return calendar.getTimeInMillis();
+    }
+}
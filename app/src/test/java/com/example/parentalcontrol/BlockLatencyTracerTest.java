@@ -0,0 +1,179 @@
+package com.example.parentalcontrol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Drives blocked-app launches through the accessibility service's BlockEnforcement on a
+ * virtual clock and looper and holds the path to its latency budget. Only the device's
+ * costs are simulated: window event dispatch, the store lookup, a busy main looper and
+ * the launcher coming up after GLOBAL_ACTION_HOME (with a slow tail); the pre-block
+ * delay and the tracer stamps come from the code under test.
+ */
+public class BlockLatencyTracerTest {
+    private static final int LAUNCHES = 500;
+
+    @Test
+    public void accessibilityPathStaysWithinBudget() {
+        BlockLatencyTracer tracer = new BlockLatencyTracer();
+        replay(tracer, AppBlockAccessibilityService.BLOCK_DELAY_MS, new Random(7));
+
+        long p95 = tracer.getPercentileMs(BlockLatencyTracer.Path.ACCESSIBILITY, 0.95);
+        System.out.println("accessibility p50 " + tracer.getPercentileMs(BlockLatencyTracer.Path.ACCESSIBILITY, 0.5)
+                + "ms, p95 " + p95 + "ms (budget " + BlockLatencyTracer.BUDGET_MS + "ms)");
+        assertTrue("p95 " + p95 + "ms over budget", p95 <= BlockLatencyTracer.BUDGET_MS);
+        assertEquals(0, tracer.getUnconfirmed(BlockLatencyTracer.Path.ACCESSIBILITY));
+    }
+
+    @Test
+    public void longerBlockDelayBreaksTheBudget() {
+        // Guards the guard: a regression in the pre-block delay must fail the check above
+        BlockLatencyTracer tracer = new BlockLatencyTracer();
+        replay(tracer, AppBlockAccessibilityService.BLOCK_DELAY_MS + 300, new Random(7));
+
+        assertTrue(tracer.getPercentileMs(BlockLatencyTracer.Path.ACCESSIBILITY, 0.95) > BlockLatencyTracer.BUDGET_MS);
+    }
+
+    @Test
+    public void percentileIsResolvedNearTheBudget() {
+        // A p95 just under or just over the budget is read to within 50ms, not rounded to it
+        assertEquals(950, p95Of(940));
+        assertEquals(1050, p95Of(1020));
+    }
+
+    @Test
+    public void percentilesComeFromBucketBounds() {
+        BlockLatencyTracer tracer = new BlockLatencyTracer();
+        for (int latency = 1; latency <= 100; latency++) {
+            String pkg = "app" + latency;
+            BlockLatencyTracer.Trace trace = tracer.begin(BlockLatencyTracer.Path.POLLING, pkg, 1000);
+            tracer.decided(trace, 1000);
+            tracer.enforced(trace, 1000);
+            tracer.onLeftForeground(pkg, 1000 + latency);
+        }
+
+        assertEquals(50, tracer.getPercentileMs(BlockLatencyTracer.Path.POLLING, 0.5));
+        assertEquals(100, tracer.getPercentileMs(BlockLatencyTracer.Path.POLLING, 0.95));
+        assertEquals(0, tracer.getPercentileMs(BlockLatencyTracer.Path.RULE_PUSH, 0.95));
+    }
+
+    @Test
+    public void appThatNeverLeavesIsCountedAsUnconfirmed() {
+        BlockLatencyTracer tracer = new BlockLatencyTracer();
+        BlockLatencyTracer.Trace trace = tracer.begin(BlockLatencyTracer.Path.RULE_PUSH, "com.game", 1000);
+        tracer.decided(trace, 1000);
+        tracer.enforced(trace, 1010);
+
+        // The next trace sweeps out the stale one
+        tracer.begin(BlockLatencyTracer.Path.RULE_PUSH, "com.other", 1000 + BlockLatencyTracer.CONFIRM_TIMEOUT_MS + 1);
+
+        assertEquals(1, tracer.getUnconfirmed(BlockLatencyTracer.Path.RULE_PUSH));
+        assertEquals(0, tracer.getPercentileMs(BlockLatencyTracer.Path.RULE_PUSH, 0.95));
+    }
+
+    @Test
+    public void appLeavingBeforeEnforcementIsNotABlock() {
+        BlockLatencyTracer tracer = new BlockLatencyTracer();
+        BlockLatencyTracer.Trace trace = tracer.begin(BlockLatencyTracer.Path.ACCESSIBILITY, "com.game", 1000);
+        tracer.decided(trace, 1005);
+        tracer.onLeftForeground("com.game", 1200);
+        tracer.enforced(trace, 1505);
+
+        assertEquals(0, tracer.getPercentileMs(BlockLatencyTracer.Path.ACCESSIBILITY, 0.95));
+        assertEquals(0, tracer.getUnconfirmed(BlockLatencyTracer.Path.ACCESSIBILITY));
+    }
+
+    /**
+     * p95 of 95 blocks taking latencyMs and a slow tail of five
+     */
+    private static long p95Of(long latencyMs) {
+        BlockLatencyTracer tracer = new BlockLatencyTracer();
+        for (int i = 0; i < 100; i++) {
+            String pkg = "app" + i;
+            BlockLatencyTracer.Trace trace = tracer.begin(BlockLatencyTracer.Path.POLLING, pkg, 1000);
+            tracer.decided(trace, 1000);
+            tracer.enforced(trace, 1000);
+            tracer.onLeftForeground(pkg, 1000 + (i < 95 ? latencyMs : 5000));
+        }
+        return tracer.getPercentileMs(BlockLatencyTracer.Path.POLLING, 0.95);
+    }
+
+    /**
+     * One launch of a blocked app every few seconds, blocked the way the accessibility service does
+     */
+    private static void replay(BlockLatencyTracer tracer, long blockDelayMs, Random random) {
+        VirtualLooper looper = new VirtualLooper(random);
+        BlockEnforcement enforcement = new BlockEnforcement(tracer, looper, looper, blockDelayMs,
+                new BlockEnforcement.Actions() {
+                    @Override
+                    public void goHome(String packageName) {
+                        // Launcher window event; one in thirty transitions is slow
+                        long homeTransition = random.nextInt(30) == 0 ? 350 + random.nextInt(250) : 100 + random.nextInt(200);
+                        looper.postAt(looper.now + homeTransition, () -> tracer.onLeftForeground(packageName, looper.now));
+                    }
+
+                    @Override
+                    public void onBlocked(String packageName) {
+                    }
+                });
+
+        long shownAt = 1000;
+        for (int i = 0; i < LAUNCHES; i++) {
+            shownAt += 5000 + random.nextInt(5000);
+            String pkg = "com.blocked.app" + (i % 7);
+            long seenAt = shownAt;
+            // Window event reaches the service, which looks the app up before blocking it
+            looper.postAt(seenAt + 10 + random.nextInt(90), () -> {
+                looper.now += 1 + random.nextInt(10);
+                enforcement.block(pkg, BlockLatencyTracer.Path.ACCESSIBILITY, seenAt);
+            });
+            looper.runUntil(shownAt + BlockLatencyTracer.CONFIRM_TIMEOUT_MS / 10);
+        }
+    }
+
+    /**
+     * Main looper on a virtual clock; delayed posts land up to 30ms late as on a busy device
+     */
+    private static final class VirtualLooper implements BlockEnforcement.Scheduler, BlockEnforcement.Clock {
+        private final PriorityQueue<long[]> queue = new PriorityQueue<>(
+                (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        private final List<Runnable> tasks = new ArrayList<>();
+        private final Random random;
+        long now;
+
+        VirtualLooper(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            postAt(now + delayMs + random.nextInt(30), task);
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return now;
+        }
+
+        void postAt(long at, Runnable task) {
+            tasks.add(task);
+            queue.add(new long[]{at, tasks.size() - 1});
+        }
+
+        void runUntil(long until) {
+            while (!queue.isEmpty() && queue.peek()[0] <= until) {
+                long[] next = queue.poll();
+                now = Math.max(now, next[0]);
+                tasks.get((int) next[1]).run();
+            }
+            now = Math.max(now, until);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.parentalcontrol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import fi.iki.elonen.NanoHTTPD;
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs PushChannel against a local SSE server
+ */
+public class PushChannelTest {
+    private static final long HEARTBEAT_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 20;
+    private static final long WAIT_SECONDS = 5;
+
+    private MockEventServer server;
+    private PushChannel channel;
+    private final BlockingQueue<PushChannel.ChangeEvent> events = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Boolean> states = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockEventServer();
+        server.start(NanoHTTPD.SOCKET_READ_TIMEOUT, true);
+    }
+
+    @After
+    public void tearDown() {
+        if (channel != null) {
+            channel.stop();
+        }
+        server.stop();
+    }
+
+    @Test
+    public void deliversTypedEventsInOrder() throws Exception {
+        startChannel(0);
+        EventStream stream = server.awaitStream();
+        assertEquals(Boolean.TRUE, states.poll(WAIT_SECONDS, TimeUnit.SECONDS));
+
+        stream.send("id: 1\nevent: blocked_apps\ndata: {\"package\":\"com.game\"}\n\n");
+        stream.send(": heartbeat\n\n");
+        stream.send("id: 2\nevent: screen_time_rules\ndata:\n\n");
+        stream.send("id: 3\nevent: filter_config\ndata: {\"block_gaming\":\n");
+        stream.send("data: true}\n\n");
+
+        PushChannel.ChangeEvent first = events.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertEquals(PushChannel.EVENT_BLOCKED_APPS, first.type);
+        assertEquals(1, first.sequence);
+        assertEquals("{\"package\":\"com.game\"}", first.data);
+
+        PushChannel.ChangeEvent second = events.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(PushChannel.EVENT_SCREEN_TIME_RULES, second.type);
+        assertEquals("", second.data);
+
+        PushChannel.ChangeEvent third = events.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(third);
+        assertEquals(PushChannel.EVENT_FILTER_CONFIG, third.type);
+        assertEquals("{\"block_gaming\":\ntrue}", third.data);
+        assertEquals(3, channel.getLastSequence());
+    }
+
+    @Test
+    public void resumesFromLastSequenceAndDropsReplays() throws Exception {
+        startChannel(5);
+        EventStream stream = server.awaitStream();
+        assertEquals("5", server.lastEventIds.get(0));
+
+        stream.send("id: 6\nevent: blocked_apps\ndata: {}\n\n");
+        assertEquals(6, events.poll(WAIT_SECONDS, TimeUnit.SECONDS).sequence);
+        stream.close();
+
+        EventStream resumed = server.awaitStream();
+        assertEquals("6", server.lastEventIds.get(1));
+        // Server replays the last event before sending the new one
+        resumed.send("id: 6\nevent: blocked_apps\ndata: {}\n\n");
+        resumed.send("id: 7\nevent: screen_time_rules\ndata: {}\n\n");
+
+        PushChannel.ChangeEvent next = events.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(next);
+        assertEquals(7, next.sequence);
+        assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void silentStreamIsReconnectedAfterHeartbeatTimeout() throws Exception {
+        startChannel(0);
+        EventStream stream = server.awaitStream();
+        assertEquals(Boolean.TRUE, states.poll(WAIT_SECONDS, TimeUnit.SECONDS));
+
+        // Heartbeats keep the stream alive past the timeout
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(HEARTBEAT_TIMEOUT_MS / 2);
+            stream.send(": heartbeat\n\n");
+        }
+        assertTrue(states.isEmpty());
+        assertEquals(1, server.lastEventIds.size());
+
+        // Then the server goes quiet without closing the connection
+        assertEquals(Boolean.FALSE, states.poll(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(server.awaitStream());
+        assertEquals(Boolean.TRUE, states.poll(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(channel.isConnected());
+    }
+
+    @Test
+    public void unsupportedServerIsNotHammered() throws Exception {
+        server.notFound = true;
+        startChannel(0);
+
+        Thread.sleep(HEARTBEAT_TIMEOUT_MS);
+        assertEquals(1, server.lastEventIds.size());
+        assertNull(states.poll());
+        assertFalse(channel.isConnected());
+    }
+
+    private void startChannel(long lastSequence) {
+        channel = new PushChannel(new OkHttpClient(), "http://localhost:" + server.getListeningPort() + "/events/",
+                lastSequence, HEARTBEAT_TIMEOUT_MS, RECONNECT_DELAY_MS, new PushChannel.Listener() {
+                    @Override
+                    public void onChangeEvent(PushChannel.ChangeEvent event) {
+                        events.add(event);
+                    }
+
+                    @Override
+                    public void onStreamStateChanged(boolean connected) {
+                        states.add(connected);
+                    }
+                });
+        channel.start();
+    }
+
+    /**
+     * Serves one open-ended text/event-stream per request, fed by the test
+     */
+    private static class MockEventServer extends NanoHTTPD {
+        final List<String> lastEventIds = new CopyOnWriteArrayList<>();
+        final BlockingQueue<EventStream> streams = new LinkedBlockingQueue<>();
+        volatile boolean notFound;
+
+        MockEventServer() {
+            super("localhost", 0);
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            String lastEventId = session.getHeaders().get("last-event-id");
+            lastEventIds.add(lastEventId != null ? lastEventId : "");
+            if (notFound) {
+                return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "");
+            }
+            EventStream stream = new EventStream();
+            streams.add(stream);
+            return newChunkedResponse(Response.Status.OK, "text/event-stream", stream);
+        }
+
+        @Override
+        protected boolean useGzipWhenAccepted(Response r) {
+            // Compression would buffer the stream
+            return false;
+        }
+
+        EventStream awaitStream() throws InterruptedException {
+            EventStream stream = streams.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull("No stream connection", stream);
+            return stream;
+        }
+    }
+
+    /**
+     * Response body that hands out whatever the test sent, one write per read
+     */
+    private static class EventStream extends InputStream {
+        private static final byte[] END = new byte[0];
+        private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        private boolean ended;
+
+        void send(String text) {
+            chunks.add(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+            chunks.add(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            try {
+                byte[] chunk = chunks.take();
+                if (chunk == END) {
+                    ended = true;
+                    return -1;
+                }
+                // Tests send small frames, well under the server's read buffer
+                int count = Math.min(chunk.length, length);
+                System.arraycopy(chunk, 0, buffer, offset, count);
+                return count;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}